@@ -21,21 +21,27 @@ CREATE TABLE IF NOT EXISTS BLUEPRINT (
 	NAME		VARCHAR(36) NOT NULL,
 	DESCRIPTION	VARCHAR(256),
 	VERSION		VARCHAR(36),
-	YAML		LONG VARCHAR
+	YAML		LONG VARCHAR,
+	REVISION	BIGINT NOT NULL DEFAULT 1,
+	MODIFIED	TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS REGION (
 	UUID		VARCHAR(36) NOT NULL PRIMARY KEY,
 	NAME		VARCHAR(36) NOT NULL,
 	DESCRIPTION	VARCHAR(256),
-	PARENT  VARCHAR(36)
+	PARENT  VARCHAR(36),
+	REVISION	BIGINT NOT NULL DEFAULT 1,
+	MODIFIED	TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS HARDWARE (
 	UUID		VARCHAR(36) NOT NULL PRIMARY KEY,
 	NAME		VARCHAR(36) NOT NULL,
 	DESCRIPTION	VARCHAR(256),
-	YAML		LONG VARCHAR
+	YAML		LONG VARCHAR,
+	REVISION	BIGINT NOT NULL DEFAULT 1,
+	MODIFIED	TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS NODE (
@@ -43,13 +49,17 @@ CREATE TABLE IF NOT EXISTS NODE (
 	NAME		 VARCHAR(36) NOT NULL,
 	DESCRIPTION	 VARCHAR(256),
 	HARDWARE     VARCHAR(36) NOT NULL,
-	YAML		 LONG VARCHAR
+	YAML		 LONG VARCHAR,
+	REVISION	BIGINT NOT NULL DEFAULT 1,
+	MODIFIED	TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS EDGESITE (
 	UUID		VARCHAR(36) NOT NULL PRIMARY KEY,
 	NAME		VARCHAR(36) NOT NULL,
-	DESCRIPTION	VARCHAR(256)
+	DESCRIPTION	VARCHAR(256),
+	REVISION	BIGINT NOT NULL DEFAULT 1,
+	MODIFIED	TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS EDGESITE_ARRAYS (
@@ -66,7 +76,9 @@ CREATE TABLE IF NOT EXISTS POD (
 	STATE       VARCHAR(12) NOT NULL,
 	BP_UUID     VARCHAR(36) NOT NULL,
 	ES_UUID	    VARCHAR(36) NOT NULL,
-	YAML		LONG VARCHAR
+	YAML		LONG VARCHAR,
+	REVISION	BIGINT NOT NULL DEFAULT 1,
+	MODIFIED	TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
 );
 
 CREATE TABLE IF NOT EXISTS POD_EVENTS (
@@ -114,5 +126,33 @@ CREATE TABLE IF NOT EXISTS SESSIONS (
 	EXPIRES		BIGINT
 );
 
+CREATE TABLE IF NOT EXISTS REVOKED_TOKENS (
+	UUID		VARCHAR(36) NOT NULL,
+	REVOKED		BIGINT NOT NULL,
+	EXPIRES		BIGINT NOT NULL
+);
+
 CREATE INDEX IF NOT EXISTS POD_EVENTS_INDEX ON POD_EVENTS (UUID);
 CREATE INDEX IF NOT EXISTS POD_WORKFLOWS_INDEX ON POD_WORKFLOWS (UUID);
+CREATE INDEX IF NOT EXISTS USER_ROLES_INDEX ON USER_ROLES (USER_UUID);
+CREATE INDEX IF NOT EXISTS ROLE_ATTRIBUTES_INDEX ON ROLE_ATTRIBUTES (ROLE_UUID);
+CREATE INDEX IF NOT EXISTS NODE_HARDWARE_INDEX ON NODE (HARDWARE);
+CREATE INDEX IF NOT EXISTS EDGESITE_ARRAYS_FKEY_INDEX ON EDGESITE_ARRAYS (TYPE, FKEY);
+CREATE INDEX IF NOT EXISTS POD_ES_UUID_INDEX ON POD (ES_UUID);
+CREATE INDEX IF NOT EXISTS POD_BP_UUID_INDEX ON POD (BP_UUID);
+CREATE INDEX IF NOT EXISTS REGION_PARENT_INDEX ON REGION (PARENT);
+CREATE INDEX IF NOT EXISTS REVOKED_TOKENS_INDEX ON REVOKED_TOKENS (UUID);
+
+-- REVISION and MODIFIED were added after the first release; add them to existing tables
+ALTER TABLE BLUEPRINT ADD COLUMN IF NOT EXISTS REVISION BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE BLUEPRINT ADD COLUMN IF NOT EXISTS MODIFIED TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+ALTER TABLE REGION ADD COLUMN IF NOT EXISTS REVISION BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE REGION ADD COLUMN IF NOT EXISTS MODIFIED TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+ALTER TABLE HARDWARE ADD COLUMN IF NOT EXISTS REVISION BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE HARDWARE ADD COLUMN IF NOT EXISTS MODIFIED TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+ALTER TABLE NODE ADD COLUMN IF NOT EXISTS REVISION BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE NODE ADD COLUMN IF NOT EXISTS MODIFIED TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+ALTER TABLE EDGESITE ADD COLUMN IF NOT EXISTS REVISION BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE EDGESITE ADD COLUMN IF NOT EXISTS MODIFIED TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
+ALTER TABLE POD ADD COLUMN IF NOT EXISTS REVISION BIGINT NOT NULL DEFAULT 1;
+ALTER TABLE POD ADD COLUMN IF NOT EXISTS MODIFIED TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3);
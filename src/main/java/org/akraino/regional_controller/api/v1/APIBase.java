@@ -16,17 +16,23 @@
 
 package org.akraino.regional_controller.api.v1;
 
+import java.util.Date;
+
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.NotAuthorizedException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
-import org.akraino.regional_controller.beans.Role;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.beans.UserSession;
-import org.akraino.regional_controller.db.DB;
-import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.Revision;
+import org.akraino.regional_controller.utils.JSONtoYAML;
 import org.akraino.regional_controller.utils.YAMLtoJSON;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -58,8 +64,7 @@ public class APIBase {
 			api_logger.info("{} user {}, realip {} => 401", method, null, realIp);
 			throw new NotAuthorizedException("ARC-4007: not authorized");
 		}
-		DB db = DBFactory.getDB();
-		UserSession us = db.getSession(token);
+		UserSession us = UserSession.findSession(token);
 		if (us == null) {
 			api_logger.info("{} user {}, realip {} => 401", method, null, realIp);
 			throw new NotAuthorizedException("ARC-4007: not authorized");
@@ -75,16 +80,12 @@ public class APIBase {
 	/**
 	 * Check if a user is allowed access to one of a number of role attributes
 	 * @param u the User
-	 * @param requiredRoles the list of role attributes to check against
+	 * @param requiredRoles the compiled mask of role attributes to check against (see {@link Permissions#required(String...)})
 	 * @throws ForbiddenException if the user is not allowed the role
 	 */
-	protected void checkRBAC(User u, String[] requiredRoles, String method, String realIp) {
-		for (Role ur : u.getRoles()) {
-			for (String rr : requiredRoles) {
-				if (ur.getAttributes().contains(rr)) {
-					return;
-				}
-			}
+	protected void checkRBAC(User u, long requiredRoles, String method, String realIp) {
+		if (Permissions.allows(u.getPermissions(), requiredRoles)) {
+			return;
 		}
 		api_logger.info("{} user {}, realip {} => 401", method, null, realIp);
 		throw new ForbiddenException("ARC-3021: RBAC does not allow");
@@ -110,4 +111,69 @@ public class APIBase {
 		}
 		throw new ClientErrorException("ARC-2007: unsupported media type", HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
 	}
+
+	/**
+	 * Check the If-Match header of an update against the object's current revision.  Only the revision
+	 * number in each tag is compared, so that a tag stays usable when something shown as part of the
+	 * object (such as an event of a POD) changes.  The update itself is also made conditional upon the
+	 * revision (see {@link org.akraino.regional_controller.db.StaleRevisionException}), so a change made
+	 * after this check is still caught.
+	 * @param ifMatch the If-Match header (may be null, in which case the update is unconditional)
+	 * @param rev the current revision of the object
+	 * @throws ClientErrorException a 412 response if no tag in the header matches the revision
+	 */
+	protected void checkIfMatch(String ifMatch, Revision rev, String method, User u, String realIp) {
+		if (ifMatch == null || EntityTags.matches(ifMatch, rev)) {
+			return;
+		}
+		api_logger.info("{} user {}, realip {} => 412", method, u.getName(), realIp);
+		throw new ClientErrorException("ARC-2010: the object has been modified; its current revision is "+rev.getNumber(),
+			HttpServletResponse.SC_PRECONDITION_FAILED);
+	}
+
+	/**
+	 * Evaluate the preconditions (If-None-Match, If-Modified-Since, ...) of a GET of one object, using
+	 * only its revision, so that an unchanged object need not be loaded or converted at all.
+	 * @param request the request
+	 * @param rev the current revision of the object
+	 * @param derived anything shown as part of the object that is not kept in its own row (see
+	 *   {@link #details(JSONObject, boolean, Revision, Object...)})
+	 * @return the response to send (normally a 304), or null if the object should be sent
+	 */
+	protected static Response checkPreconditions(Request request, Revision rev, Object... derived) {
+		EntityTag tag = EntityTags.of(rev, derived);
+		ResponseBuilder rb = isDated(rev, derived)
+			? request.evaluatePreconditions(new Date(rev.getModified()), tag)
+			: request.evaluatePreconditions(tag);
+		return (rb == null) ? null : rb.tag(tag).build();
+	}
+
+	/**
+	 * Build the response to a GET of one object, with its ETag and Last-Modified headers.  Last-Modified
+	 * is left out if part of the object is derived from other objects, since the object's modification
+	 * time does not cover those.
+	 * @param jo the object
+	 * @param yaml true to send YAML, false to send JSON
+	 * @param rev the revision of the object that jo was built from
+	 * @param derived the same values passed to {@link #checkPreconditions(Request, Revision, Object...)}
+	 * @return the response
+	 */
+	protected static Response details(JSONObject jo, boolean yaml, Revision rev, Object... derived) {
+		ResponseBuilder rb = Response.ok(format(jo, yaml)).tag(EntityTags.of(rev, derived));
+		if (isDated(rev, derived)) {
+			rb.lastModified(new Date(rev.getModified()));
+		}
+		return rb.build();
+	}
+
+	/**
+	 * @return jo as YAML, or as JSON
+	 */
+	protected static String format(JSONObject jo, boolean yaml) {
+		return yaml ? new JSONtoYAML(jo).toString() : jo.toString();
+	}
+
+	private static boolean isDated(Revision rev, Object... derived) {
+		return derived.length == 0 && rev.getModified() > 0;
+	}
 }
@@ -29,8 +29,16 @@ public class APIExceptionMapper implements ExceptionMapper<WebApplicationExcepti
 
 	@Override
 	public Response toResponse(WebApplicationException ex) {
-		Response r = ex.getResponse();
-		String msg = ex.getMessage();
+		return errorResponse(ex.getResponse().getStatus(), ex.getMessage());
+	}
+
+	/**
+	 * Build the JSON error response for a message of the form "ARC-xxxx: message".
+	 * @param status the HTTP status code
+	 * @param msg the message
+	 * @return the response
+	 */
+	static Response errorResponse(int status, String msg) {
 		String errid = "ARC-9999";
 		int ix = msg.indexOf(':');
 		if (ix > 0) {
@@ -39,12 +47,12 @@ public class APIExceptionMapper implements ExceptionMapper<WebApplicationExcepti
 		}
 		String url = String.format("/docs/errors.html#%s", errid.toLowerCase());
 		JSONObject jo = new JSONObject();
-		jo.put("code", r.getStatus());
+		jo.put("code", status);
 		jo.put("errorId", errid);
 		jo.put("message", msg);
 		jo.put("errorUrl", url);
 		return Response
-			.status(r.getStatus())
+			.status(status)
 			.entity(jo.toString())
 			.type(MediaType.APPLICATION_JSON).
 			build();
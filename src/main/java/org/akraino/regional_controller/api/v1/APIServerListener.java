@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.akraino.regional_controller.beans.BlueprintValidator;
+import org.akraino.regional_controller.beans.SessionTokens;
+
+/**
+ * Does the work that should happen once, when the API server web application starts (loading the
+ * Blueprint schemas, and checking the session token settings), and releases the threads it uses when the web application is stopped.
+ */
+public class APIServerListener implements ServletContextListener {
+	@Override
+	public void contextInitialized(ServletContextEvent sce) {
+		BlueprintValidator.getInstance();
+		SessionTokens.getInstance();
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent sce) {
+		BlueprintValidator.shutdown();
+	}
+}
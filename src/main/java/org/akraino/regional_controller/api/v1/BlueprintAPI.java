@@ -19,11 +19,13 @@ package org.akraino.regional_controller.api.v1;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -36,16 +38,25 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Blueprint;
+import org.akraino.regional_controller.beans.BlueprintHierarchy;
+import org.akraino.regional_controller.beans.BlueprintValidator;
 import org.akraino.regional_controller.beans.POD;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
-import org.akraino.regional_controller.utils.JSONtoYAML;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
+import org.akraino.regional_controller.db.Revision;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -53,15 +64,16 @@ import org.json.JSONObject;
 /**
  * The Blueprint API supports
  * - GET: to retrieve a list of Blueprints, or information about one Blueprint.
+ * - POST /validate: to check many Blueprints at once, without creating them.
  */
 @Path(BlueprintAPI.BLUEPRINT_PATH)
 public class BlueprintAPI extends APIBase {
 	public static final String BLUEPRINT_PATH = "blueprint";
 
-	protected static final String[] BLUEPRINT_CREATE_RBAC = { "create-*", "create-blueprint" };
-	protected static final String[] BLUEPRINT_READ_RBAC   = { "read-*",   "read-blueprint" };
-	protected static final String[] BLUEPRINT_UPDATE_RBAC = { "update-*", "update-blueprint" };
-	protected static final String[] BLUEPRINT_DELETE_RBAC = { "delete-*", "delete-blueprint" };
+	protected static final long BLUEPRINT_CREATE_RBAC = Permissions.required("create-*", "create-blueprint");
+	protected static final long BLUEPRINT_READ_RBAC   = Permissions.required("read-*",   "read-blueprint");
+	protected static final long BLUEPRINT_UPDATE_RBAC = Permissions.required("update-*", "update-blueprint");
+	protected static final long BLUEPRINT_DELETE_RBAC = Permissions.required("delete-*", "delete-blueprint");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -86,79 +98,133 @@ public class BlueprintAPI extends APIBase {
 		}
 	}
 
+	@POST
+	@Path("/validate")
+	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
+	@Produces(MediaType.APPLICATION_JSON)
+	public String validateBlueprints(
+		@HeaderParam(SESSION_TOKEN_HDR) final String token,
+		@HeaderParam(REAL_IP_HDR)       final String realIp,
+		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		String content)
+	{
+		String method = "POST /api/v1/blueprint/validate";
+		User u = checkToken(token, method, realIp);
+		checkRBAC(u, BLUEPRINT_CREATE_RBAC, method, realIp);
+
+		BlueprintValidator validator = BlueprintValidator.getInstance();
+		List<JSONObject> docs = new ArrayList<>();
+		try {
+			JSONArray ja = getContent(ctype, content).getJSONArray("blueprints");
+			if (ja.length() > validator.getMaxDocuments()) {
+				api_logger.info("{} user {}, realip {} => 400", method, u.getName(), realIp);
+				throw new BadRequestException("ARC-1035: Too many blueprints; the maximum is "+validator.getMaxDocuments());
+			}
+			for (int i = 0; i < ja.length(); i++) {
+				docs.add(ja.optJSONObject(i));
+			}
+		} catch (JSONException e) {
+			logger.warn(e.toString());
+			api_logger.info("{} user {}, realip {} => 400", method, u.getName(), realIp);
+			throw new BadRequestException("ARC-1030: "+e.toString());
+		}
+
+		JSONArray results = new JSONArray();
+		int invalid = 0;
+		for (JSONObject jo : validator.validateAll(docs)) {
+			if (!jo.optBoolean("valid")) {
+				invalid++;
+			}
+			results.put(jo);
+		}
+		api_logger.info("{} user {}, realip {} => 200 ({} of {} invalid)", method, u.getName(), realIp, invalid, docs.size());
+		JSONObject jo = new JSONObject();
+		jo.put("results", results);
+		return jo.toString();
+	}
+
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getBlueprintsJSON(
+	public Response getBlueprintsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params,
+		@QueryParam(BaseBean.VERSION_TAG) String version,
+		@Context Request request
 	) {
-		JSONObject jo = getBlueprintsCommon(token, realIp);
-		return jo.toString();
+		return getBlueprintsCommon(token, realIp, params, version).toResponse(request);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getBlueprintsYAML(
+	public Response getBlueprintsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params,
+		@QueryParam(BaseBean.VERSION_TAG) String version,
+		@Context Request request
 	) {
-		JSONObject jo = getBlueprintsCommon(token, realIp);
-		return new JSONtoYAML(jo).toString();
+		return getBlueprintsCommon(token, realIp, params, version).asYAML().toResponse(request);
 	}
 
-	private JSONObject getBlueprintsCommon(String token, String realIp) {
+	private ListOutput<Blueprint> getBlueprintsCommon(String token, String realIp, ListParams params, String version) {
 		String method = "GET /api/v1/blueprint";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, BLUEPRINT_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (Blueprint bp : Blueprint.getBlueprints()) {
+		ListQuery q = params.toListQuery(BaseBean.VERSION_TAG);
+		q.addFilter(BaseBean.VERSION_TAG, version);
+		api_logger.info("{} user {}, realip {} => 200", method, u.getName(), realIp);
+		return new ListOutput<>("blueprints", Blueprint.class, q, Blueprint::getBlueprints, bp -> {
 			JSONObject jo = bp.toJSON();
 			jo.put("url", buildUrl(jo.getString("uuid")));
-			ja.put(jo);
-		}
-		api_logger.info("{} user {}, realip {} => 200", method, u.getName(), realIp);
-		JSONObject jo = new JSONObject();
-		jo.put("blueprints", ja);
-		return jo;
+			return q.project(jo);
+		});
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getBlueprintsDetailsJSON(
+	public Response getBlueprintsDetailsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid
+		@PathParam("uuid") String uuid,
+		@Context Request request
 	) {
-		JSONObject jo = getBlueprintsDetailsCommon(token, realIp, uuid);
-		return jo.toString();
+		return getBlueprintsDetailsCommon(token, realIp, uuid, request, false);
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(APPLICATION_YAML)
-	public String getBlueprintsDetailsYAML(
+	public Response getBlueprintsDetailsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid
+		@PathParam("uuid") String uuid,
+		@Context Request request
 	) {
-		JSONObject jo = getBlueprintsDetailsCommon(token, realIp, uuid);
-		return new JSONtoYAML(jo).toString();
+		return getBlueprintsDetailsCommon(token, realIp, uuid, request, true);
 	}
 
-	private JSONObject getBlueprintsDetailsCommon(String token, String realIp, String uuid) {
+	private Response getBlueprintsDetailsCommon(String token, String realIp, String uuid, Request request, boolean yaml) {
 		String method = "GET /api/v1/blueprint/"+uuid;
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, BLUEPRINT_READ_RBAC, method, realIp);
 
+		// Check the revision first, so that an unchanged Blueprint is neither loaded nor converted
+		Revision rev = DBFactory.getDB().getRevision(Blueprint.class, uuid);
+		Response r = (rev == null) ? null : checkPreconditions(request, rev);
+		if (r != null) {
+			api_logger.info("{} user {}, realip {} => {}", method, u.getName(), realIp, r.getStatus());
+			return r;
+		}
 		Blueprint bp = Blueprint.getBlueprintByUUID(uuid);
 		if (bp == null) {
 			api_logger.info("{} user {}, realip {} => 404", method, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
 		api_logger.info("{} user {}, realip {} => 200", method, u.getName(), realIp);
-		return bp.toJSON();
+		return details(bp.toJSON(), yaml, bp.getRevision());
 	}
 
 	@PUT
@@ -168,6 +234,7 @@ public class BlueprintAPI extends APIBase {
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
 		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
 		@PathParam("uuid") String uuid,
 		String content
 	) {
@@ -175,11 +242,12 @@ public class BlueprintAPI extends APIBase {
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, BLUEPRINT_UPDATE_RBAC, method, realIp);
 
-		Blueprint bp = Blueprint.getBlueprintByUUID(uuid);
+		Blueprint bp = Blueprint.getBlueprintForUpdate(uuid);
 		if (bp == null) {
 			api_logger.info("{} user {}, realip {} => 404", method, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
+		checkIfMatch(ifMatch, bp.getRevision(), method, u, realIp);
 
 		try {
 			// Can only change the description of the Blueprint
@@ -241,6 +309,8 @@ public class BlueprintAPI extends APIBase {
 		try {
 			DB db = DBFactory.getDB();
 			db.deleteBlueprint(b);
+			RequestContext.forget(Blueprint.class, b.getUuid());
+			BlueprintHierarchy.getInstance().invalidate();
 			api_logger.info("{} user {}, realip {} => 204", method, u.getName(), realIp);
 			return Response.noContent().build();
 		} catch (SQLException e) {
@@ -0,0 +1,361 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import javax.annotation.Priority;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.akraino.regional_controller.db.DBFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Compresses responses, and decompresses request bodies, using gzip or deflate.
+ * <ul>
+ * <li>The encoding of a response is chosen from the request's Accept-Encoding header.  The response is
+ *     compressed as it is written, so a streamed response (e.g. a list, or workflow logs) is never held
+ *     in memory.  Responses shorter than api.compression.threshold bytes are sent uncompressed; up to
+ *     that many bytes are buffered before deciding.</li>
+ * <li>A request body with a Content-Encoding of gzip or deflate is decompressed as it is read.  The
+ *     decompressed body may be no longer than api.compression.max_request_size bytes.</li>
+ * </ul>
+ * Compression of responses may be turned off with api.compression.enabled.
+ */
+@Provider
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ContainerResponseFilter, WriterInterceptor, ReaderInterceptor {
+	public static final String DEFAULT_ENABLED          = "true";
+	public static final String DEFAULT_THRESHOLD        = "1024";
+	public static final String DEFAULT_MAX_REQUEST_SIZE = "67108864";
+
+	private static final String GZIP     = "gzip";
+	private static final String X_GZIP   = "x-gzip";
+	private static final String DEFLATE  = "deflate";
+	private static final String IDENTITY = "identity";
+	private static final String ENCODING_PROPERTY = CompressionInterceptor.class.getName() + ".encoding";
+	private static final int    BUFFER_SIZE = 8192;
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final boolean enabled;
+	private final int threshold;
+	private final long max_request_size;
+
+	public CompressionInterceptor() {
+		Properties props = new Properties();
+		try (InputStream is = getClass().getClassLoader().getResourceAsStream(DBFactory.PROPERTIES_FILE)) {
+			if (is != null) {
+				props.load(is);
+			}
+		} catch (IOException e) {
+			logger.error("Cannot read api.properties!");
+		}
+		this.enabled          = Boolean.parseBoolean(props.getProperty("api.compression.enabled", DEFAULT_ENABLED).trim());
+		this.threshold        = Integer.parseInt(props.getProperty("api.compression.threshold", DEFAULT_THRESHOLD).trim());
+		this.max_request_size = Long.parseLong(props.getProperty("api.compression.max_request_size", DEFAULT_MAX_REQUEST_SIZE).trim());
+	}
+
+	/**
+	 * Choose the encoding of the response, now that the request and the response headers are both known.
+	 */
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+		if (!enabled || !response.hasEntity() || HttpMethod.HEAD.equals(request.getMethod())) {
+			return;
+		}
+		// The response depends upon Accept-Encoding whether or not it ends up being compressed
+		response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (response.getHeaderString(HttpHeaders.CONTENT_ENCODING) == null) {
+			String encoding = negotiate(request.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+			if (encoding != null) {
+				request.setProperty(ENCODING_PROPERTY, encoding);
+			}
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		String encoding = (String) context.getProperty(ENCODING_PROPERTY);
+		if (encoding == null) {
+			context.proceed();
+			return;
+		}
+		CompressingOutputStream out = new CompressingOutputStream(context, encoding, threshold);
+		context.setOutputStream(out);
+		try {
+			context.proceed();
+		} finally {
+			out.finish();
+		}
+	}
+
+	@Override
+	public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+		MultivaluedMap<String, String> headers = context.getHeaders();
+		String encoding = headers.getFirst(HttpHeaders.CONTENT_ENCODING);
+		if (encoding == null || IDENTITY.equalsIgnoreCase(encoding.trim())) {
+			return context.proceed();
+		}
+		encoding = encoding.trim().toLowerCase();
+		InputStream in;
+		try {
+			switch (encoding) {
+			case GZIP:
+			case X_GZIP:
+				in = new GZIPInputStream(context.getInputStream(), BUFFER_SIZE);
+				break;
+			case DEFLATE:
+				in = new InflaterInputStream(context.getInputStream());
+				break;
+			default:
+				throw new ClientErrorException("ARC-2008: unsupported content encoding "+encoding, HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+			}
+		} catch (ZipException | EOFException e) {
+			throw new BadRequestException("ARC-1037: the request body is not valid "+encoding+" data");
+		}
+		headers.remove(HttpHeaders.CONTENT_ENCODING);
+		headers.remove(HttpHeaders.CONTENT_LENGTH);
+		context.setInputStream(new LimitedInputStream(in, encoding, max_request_size));
+		return context.proceed();
+	}
+
+	/**
+	 * Pick the encoding to use from an Accept-Encoding header.
+	 * @param accept the header (may be null)
+	 * @return gzip or deflate (whichever has the higher q-value; gzip if they are equal), or null if
+	 * neither is acceptable
+	 */
+	static String negotiate(final String accept) {
+		if (accept == null) {
+			return null;
+		}
+		float gzip = -1f;
+		float deflate = -1f;
+		float any = -1f;
+		for (String item : accept.split(",")) {
+			String[] parts = item.split(";");
+			String coding = parts[0].trim().toLowerCase();
+			float q = 1f;
+			for (int i = 1; i < parts.length; i++) {
+				String p = parts[i].trim();
+				if (p.startsWith("q=") || p.startsWith("Q=")) {
+					try {
+						q = Float.parseFloat(p.substring(2).trim());
+					} catch (NumberFormatException e) {
+						q = 0f;
+					}
+				}
+			}
+			switch (coding) {
+			case GZIP:
+			case X_GZIP:
+				gzip = Math.max(gzip, q);
+				break;
+			case DEFLATE:
+				deflate = Math.max(deflate, q);
+				break;
+			case "*":
+				any = q;
+				break;
+			default:
+				break;
+			}
+		}
+		if (gzip < 0f) {
+			gzip = any;
+		}
+		if (deflate < 0f) {
+			deflate = any;
+		}
+		if (gzip > 0f && gzip >= deflate) {
+			return GZIP;
+		}
+		return (deflate > 0f) ? DEFLATE : null;
+	}
+
+	/**
+	 * Holds back the first bytes of a response, up to the threshold, so that a short response can be
+	 * sent as is.  Once the threshold is passed, the Content-Encoding header is set (the headers are not
+	 * committed until the first byte reaches the underlying stream), and the rest is compressed on the fly.
+	 */
+	private static final class CompressingOutputStream extends OutputStream {
+		private final WriterInterceptorContext context;
+		private final OutputStream out;
+		private final String encoding;
+		private byte[] buffer;
+		private int count;
+		private OutputStream target;	// null until it is decided whether to compress
+		private Deflater deflater;		// set only for deflate; GZIPOutputStream ends its own
+		private boolean finished;
+
+		CompressingOutputStream(final WriterInterceptorContext context, final String encoding, final int threshold) {
+			this.context  = context;
+			this.out      = context.getOutputStream();
+			this.encoding = encoding;
+			this.buffer   = new byte[Math.max(threshold, 0)];
+			this.count    = 0;
+			this.target   = null;
+			this.deflater = null;
+			this.finished = false;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (target == null) {
+				if (count + len <= buffer.length) {
+					System.arraycopy(b, off, buffer, count, len);
+					count += len;
+					return;
+				}
+				start(true);
+			}
+			target.write(b, off, len);
+		}
+
+		private void start(final boolean compress) throws IOException {
+			if (compress) {
+				MultivaluedMap<String, Object> headers = context.getHeaders();
+				headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+				headers.remove(HttpHeaders.CONTENT_LENGTH);
+				// syncFlush, so that a flush of a long running stream sends what has been written so far
+				if (GZIP.equals(encoding)) {
+					target = new GZIPOutputStream(out, BUFFER_SIZE, true);
+				} else {
+					deflater = new Deflater();
+					target = new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true);
+				}
+			} else {
+				target = out;
+			}
+			target.write(buffer, 0, count);
+			buffer = null;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			// Until the threshold is reached there is nothing to flush
+			if (target != null) {
+				target.flush();
+			}
+		}
+
+		/**
+		 * Write whatever is still buffered, and the compression trailer, without closing the stream.
+		 */
+		void finish() throws IOException {
+			if (finished) {
+				return;
+			}
+			finished = true;
+			if (target == null) {
+				start(false);
+			} else if (target instanceof DeflaterOutputStream) {
+				((DeflaterOutputStream) target).finish();
+			}
+			target.flush();
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			finish();
+			out.close();
+		}
+	}
+
+	/**
+	 * Limits the size of a decompressed request body, and reports corrupt compressed data as a bad request.
+	 */
+	private static final class LimitedInputStream extends FilterInputStream {
+		private final String encoding;
+		private final long max;
+		private long total;
+
+		LimitedInputStream(final InputStream in, final String encoding, final long max) {
+			super(in);
+			this.encoding = encoding;
+			this.max      = max;
+			this.total    = 0;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return (n < 0) ? -1 : (b[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n;
+			try {
+				n = super.read(b, off, len);
+			} catch (ZipException | EOFException e) {
+				throw new BadRequestException("ARC-1037: the request body is not valid "+encoding+" data");
+			}
+			if (n > 0) {
+				total += n;
+				if (total > max) {
+					throw new ClientErrorException("ARC-1037: the decompressed request body is longer than "+max+" bytes",
+						HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+				}
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			byte[] b = new byte[(int) Math.min(n, BUFFER_SIZE)];
+			int r = read(b, 0, b.length);
+			return (r < 0) ? 0 : r;
+		}
+	}
+}
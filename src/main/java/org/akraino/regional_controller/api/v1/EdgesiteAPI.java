@@ -24,6 +24,7 @@ import java.util.TreeSet;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -37,18 +38,23 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Edgesite;
-import org.akraino.regional_controller.beans.Node;
 import org.akraino.regional_controller.beans.POD;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.Region;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
-import org.akraino.regional_controller.utils.JSONtoYAML;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
+import org.akraino.regional_controller.db.Revision;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -60,10 +66,10 @@ import org.json.JSONObject;
 public class EdgesiteAPI extends APIBase {
 	public static final String EDGESITE_PATH = "edgesite";
 
-	protected static final String[] EDGESITE_CREATE_RBAC = { "create-*", "create-edgesite" };
-	protected static final String[] EDGESITE_READ_RBAC   = { "read-*",   "read-edgesite" };
-	protected static final String[] EDGESITE_UPDATE_RBAC = { "update-*", "update-edgesite" };
-	protected static final String[] EDGESITE_DELETE_RBAC = { "delete-*", "delete-edgesite" };
+	protected static final long EDGESITE_CREATE_RBAC = Permissions.required("create-*", "create-edgesite");
+	protected static final long EDGESITE_READ_RBAC   = Permissions.required("read-*",   "read-edgesite");
+	protected static final long EDGESITE_UPDATE_RBAC = Permissions.required("update-*", "update-edgesite");
+	protected static final long EDGESITE_DELETE_RBAC = Permissions.required("delete-*", "delete-edgesite");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -94,67 +100,70 @@ public class EdgesiteAPI extends APIBase {
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getEdgesitesJSON(
+	public Response getEdgesitesJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@QueryParam("region") String region
+		@QueryParam(Edgesite.REGION_FILTER) String region,
+		@QueryParam(Edgesite.NODE_FILTER) String node,
+		@BeanParam ListParams params,
+		@Context Request request
 	) {
-		JSONObject jo = getEdgesitesCommon(token, realIp, region);
-		return jo.toString();
+		return getEdgesitesCommon(token, realIp, region, node, params).toResponse(request);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getEdgesitesYAML(
+	public Response getEdgesitesYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@QueryParam("region") String region
+		@QueryParam(Edgesite.REGION_FILTER) String region,
+		@QueryParam(Edgesite.NODE_FILTER) String node,
+		@BeanParam ListParams params,
+		@Context Request request
 	) {
-		JSONObject jo = getEdgesitesCommon(token, realIp, region);
-		return new JSONtoYAML(jo).toString();
+		return getEdgesitesCommon(token, realIp, region, node, params).asYAML().toResponse(request);
 	}
 
-	private JSONObject getEdgesitesCommon(String token, String realIp, String region) {
+	private ListOutput<Edgesite> getEdgesitesCommon(String token, String realIp, String region, String node, ListParams params) {
 		String method = "GET /api/v1/edgesite";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, EDGESITE_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (Edgesite e : Edgesite.getEdgesitesByRegion(region)) {
+		ListQuery q = params.toListQuery(Edgesite.REGION_FILTER, Edgesite.NODE_FILTER);
+		q.addFilter(Edgesite.REGION_FILTER, region);
+		q.addFilter(Edgesite.NODE_FILTER, node);
+		return new ListOutput<>("edgesites", Edgesite.class, q, Edgesite::getEdgesites, e -> {
 			JSONObject jo = e.toJSON();
 			jo.put("url", "/api/v1/edgesite/" + jo.get("uuid"));
-			ja.put(jo);
-		}
-		JSONObject jo = new JSONObject();
-		jo.put("edgesites", ja);
-		return jo;
+			return q.project(jo);
+		});
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getEdgesiteDetailsJSON(
+	public Response getEdgesiteDetailsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid)
+		@PathParam("uuid") String uuid,
+		@Context Request request)
 	{
-		JSONObject jo = getEdgesiteDetailsCommon(token, realIp, uuid);
-		return jo.toString();
+		return getEdgesiteDetailsCommon(token, realIp, uuid, request, false);
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(APPLICATION_YAML)
-	public String getEdgesiteDetailsYAML(
+	public Response getEdgesiteDetailsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid)
+		@PathParam("uuid") String uuid,
+		@Context Request request)
 	{
-		JSONObject jo = getEdgesiteDetailsCommon(token, realIp, uuid);
-		return new JSONtoYAML(jo).toString();
+		return getEdgesiteDetailsCommon(token, realIp, uuid, request, true);
 	}
 
-	private JSONObject getEdgesiteDetailsCommon(String token, String realIp, String uuid) {
+	private Response getEdgesiteDetailsCommon(String token, String realIp, String uuid, Request request, boolean yaml) {
 		String method = "GET /api/v1/edgesite";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, EDGESITE_READ_RBAC, method, realIp);
@@ -162,11 +171,16 @@ public class EdgesiteAPI extends APIBase {
 		if (uuid == null || "".equals(uuid)) {
 			throw new BadRequestException("ARC-1028: bad UUID");
 		}
+		Revision rev = DBFactory.getDB().getRevision(Edgesite.class, uuid);
+		Response r = (rev == null) ? null : checkPreconditions(request, rev);
+		if (r != null) {
+			return r;
+		}
 		Edgesite e = Edgesite.getEdgesiteByUUID(uuid);
 		if (e == null) {
 			throw new NotFoundException("ARC-4001: object not found");
 		}
-		return e.toJSON();
+		return details(e.toJSON(), yaml, e.getRevision());
 	}
 
 	@PUT
@@ -175,6 +189,7 @@ public class EdgesiteAPI extends APIBase {
 		@HeaderParam(SESSION_TOKEN_HDR) final String token,
 		@HeaderParam(REAL_IP_HDR)       final String realIp,
 		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
 		@PathParam("uuid") String uuid,
 		String content)
 	{
@@ -182,11 +197,12 @@ public class EdgesiteAPI extends APIBase {
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, EDGESITE_UPDATE_RBAC, method, realIp);
 
-		Edgesite es = Edgesite.getEdgesiteByUUID(uuid);
+		Edgesite es = Edgesite.getEdgesiteForUpdate(uuid);
 		if (es == null) {
 			api_logger.info("{} user {}, realip {} => 404", method, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
+		checkIfMatch(ifMatch, es.getRevision(), method, u, realIp);
 
 		try {
 			// Can only change the name & description of the Edgesite
@@ -213,26 +229,7 @@ public class EdgesiteAPI extends APIBase {
 			Set<String> nset = null;
 			if (keys.contains(Edgesite.NODES_TAG)) {
 				// Make sure all of the Nodes are valid and not in use
-				JSONArray nodes = jo.getJSONArray(Edgesite.NODES_TAG);
-				if (nodes == null || nodes.length() == 0) {
-					logger.warn("No nodes listed in JSON");
-					throw new BadRequestException("ARC-1019: No nodes listed in JSON");
-				}
-				nset = new TreeSet<>();
-				for (int i = 0; i < nodes.length(); i++) {
-					String nodeid = nodes.getString(i);
-					Node node = Node.getNodeByUUID(nodeid);
-					if (node == null) {
-						logger.warn("Invalid Node UUID="+nodeid);
-						throw new BadRequestException("ARC-1003: Invalid Node UUID "+nodeid);
-					}
-					Edgesite es2 = node.getEdgesite();
-					if (es2 != null && !es2.getUuid().equals(es.getUuid())) {
-						logger.warn("Node is already a member of EdgeSite "+es2.getUuid());
-						throw new BadRequestException("ARC-1020: Node is already a member of EdgeSite "+es2.getUuid());
-					}
-					nset.add(nodeid);
-				}
+				nset = Edgesite.checkNodes(jo.getJSONArray(Edgesite.NODES_TAG), es.getUuid());
 				if (es.getPOD() != null) {
 					// TODO -  If the Edge Site is currently being used by a POD, then the list of nodes may only be expanded, and nodes currently in use may not be removed.
 				}
@@ -302,11 +299,16 @@ public class EdgesiteAPI extends APIBase {
 			}
 			// You can delete an Edgesite if it is being used by a DEAD POD
 			// (the POD state changes to ZOMBIE)
-			p.setState(POD.State.ZOMBIE);
+			if (!p.setState(POD.State.ZOMBIE)) {
+				api_logger.info("{} user {}, realip {} => 409", method, u.getName(), realIp);
+				throw new ClientErrorException("ARC-2011: POD "+p.getUuid()+" on this Edgesite was changed by another request",
+					HttpServletResponse.SC_CONFLICT);
+			}
 		}
 		try {
 			DB db = DBFactory.getDB();
 			db.deleteEdgesite(e);
+			RequestContext.forget(Edgesite.class, e.getUuid());
 			api_logger.info("{} user {}, realip {} => 204", method, u.getName(), realIp);
 			return Response.noContent().build();
 		} catch (SQLException ex) {
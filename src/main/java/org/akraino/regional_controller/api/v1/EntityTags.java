@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.akraino.regional_controller.db.Revision;
+
+/**
+ * Builds the entity tags sent with (and compared against) the objects returned by the GET APIs.
+ * The tags are weak, since the JSON and the YAML forms of an object (compressed or not) share a tag.
+ * If-Match nevertheless accepts them (unlike the strong comparison of RFC 7232), comparing only the
+ * revision they name; this deviation is documented in api.rst.
+ */
+final class EntityTags {
+	private static final int DIGEST_LENGTH = 12;	// bytes of the SHA-256 that are kept
+
+	private EntityTags() {
+		// static methods only
+	}
+
+	/**
+	 * Build the tag of one object.
+	 * @param rev the object's revision
+	 * @param derived anything shown as part of the object that is not kept in its own row (e.g. the
+	 *   children of a Region); these are folded into the tag as a digest
+	 * @return the tag
+	 */
+	static EntityTag of(final Revision rev, final Object... derived) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(Long.toString(rev.getNumber(), 36)).append('-').append(Long.toString(rev.getModified(), 36));
+		if (derived.length > 0) {
+			sb.append('-').append(digest(Arrays.deepToString(derived)));
+		}
+		return new EntityTag(sb.toString(), true);
+	}
+
+	/**
+	 * Check whether an If-Match header names a revision.  The header is a comma separated list of tags
+	 * (weak or strong) or "*"; a tag matches if it was built by {@link #of(Revision, Object...)} from
+	 * a revision with the same number.
+	 * @param header the header
+	 * @param rev the revision
+	 * @return true if the header is "*" or one of its tags matches
+	 */
+	static boolean matches(final String header, final Revision rev) {
+		for (String t : header.split(",")) {
+			t = t.trim();
+			if (t.equals("*")) {
+				return true;
+			}
+			if (t.startsWith("W/")) {
+				t = t.substring(2);
+			}
+			if (t.length() < 2 || t.charAt(0) != '"' || t.charAt(t.length()-1) != '"') {
+				continue;
+			}
+			t = t.substring(1, t.length()-1);
+			int ix = t.indexOf('-');
+			try {
+				if (ix > 0 && Long.parseLong(t.substring(0, ix), 36) == rev.getNumber()) {
+					return true;
+				}
+			} catch (NumberFormatException e) {
+				// not one of our tags
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Start a digest that is fed a piece at a time (e.g. one page of a list), for {@link #ofDigest}.
+	 */
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every JVM is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void update(final MessageDigest md, final CharSequence text) {
+		md.update(text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Build a tag from a digest made by {@link #newDigest}; the digest is reset.
+	 */
+	static EntityTag ofDigest(final MessageDigest md) {
+		return new EntityTag(encode(md.digest()), true);
+	}
+
+	private static String digest(final CharSequence text) {
+		MessageDigest md = newDigest();
+		update(md, text);
+		return encode(md.digest());
+	}
+
+	private static String encode(final byte[] hash) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, DIGEST_LENGTH));
+	}
+}
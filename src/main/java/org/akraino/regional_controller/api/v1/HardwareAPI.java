@@ -19,10 +19,12 @@ package org.akraino.regional_controller.api.v1;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -35,17 +37,22 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Hardware;
 import org.akraino.regional_controller.beans.Node;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
-import org.akraino.regional_controller.utils.JSONtoYAML;
-import org.json.JSONArray;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
+import org.akraino.regional_controller.db.Revision;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -53,10 +60,10 @@ import org.json.JSONObject;
 public class HardwareAPI extends APIBase {
 	public static final String HARDWARE_PATH = "hardware";
 
-	protected static final String[] HARDWARE_CREATE_RBAC = { "create-*", "create-hardware" };
-	protected static final String[] HARDWARE_READ_RBAC   = { "read-*",   "read-hardware" };
-	protected static final String[] HARDWARE_UPDATE_RBAC = { "update-*", "update-hardware" };
-	protected static final String[] HARDWARE_DELETE_RBAC = { "delete-*", "delete-hardware" };
+	protected static final long HARDWARE_CREATE_RBAC = Permissions.required("create-*", "create-hardware");
+	protected static final long HARDWARE_READ_RBAC   = Permissions.required("read-*",   "read-hardware");
+	protected static final long HARDWARE_UPDATE_RBAC = Permissions.required("update-*", "update-hardware");
+	protected static final long HARDWARE_DELETE_RBAC = Permissions.required("delete-*", "delete-hardware");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -85,65 +92,64 @@ public class HardwareAPI extends APIBase {
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getHardwareJSON(
+	public Response getHardwareJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params,
+		@Context Request request
 	) {
-		JSONObject jo = getHardwareCommon(token, realIp);
-		return jo.toString();
+		return getHardwareCommon(token, realIp, params).toResponse(request);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getHardwareYAML(
+	public Response getHardwareYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params,
+		@Context Request request
 	) {
-		JSONObject jo = getHardwareCommon(token, realIp);
-		return new JSONtoYAML(jo).toString();
+		return getHardwareCommon(token, realIp, params).asYAML().toResponse(request);
 	}
 
-	private JSONObject getHardwareCommon(String token, String realIp) {
+	private ListOutput<Hardware> getHardwareCommon(String token, String realIp, ListParams params) {
 		String method = "GET /api/v1/hardware";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, HARDWARE_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (Hardware h : Hardware.getHardware()) {
+		ListQuery q = params.toListQuery();
+		return new ListOutput<>("hardware", Hardware.class, q, Hardware::getHardware, h -> {
 			JSONObject jo = h.toJSON();
 			jo.put("url", buildUrl(jo.getString("uuid")));
-			ja.put(jo);
-		}
-		JSONObject jo = new JSONObject();
-		jo.put("hardware", ja);
-		return jo;
+			return q.project(jo);
+		});
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getHardwareDetailsJSON(
+	public Response getHardwareDetailsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR)       String realIp,
-		@PathParam("uuid") String uuid
+		@PathParam("uuid") String uuid,
+		@Context Request request
 	) {
-		JSONObject jo = getHardwareDetailsCommon(token, realIp, uuid);
-		return jo.toString();
+		return getHardwareDetailsCommon(token, realIp, uuid, request, false);
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(APPLICATION_YAML)
-	public String getHardwareDetailsYAML(
+	public Response getHardwareDetailsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR)       String realIp,
-		@PathParam("uuid") String uuid
+		@PathParam("uuid") String uuid,
+		@Context Request request
 	) {
-		JSONObject jo = getHardwareDetailsCommon(token, realIp, uuid);
-		return new JSONtoYAML(jo).toString();
+		return getHardwareDetailsCommon(token, realIp, uuid, request, true);
 	}
 
-	private JSONObject getHardwareDetailsCommon(String token, String realIp, String uuid) {
+	private Response getHardwareDetailsCommon(String token, String realIp, String uuid, Request request, boolean yaml) {
 		String method = "GET /api/v1/hardware/"+uuid;
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, HARDWARE_READ_RBAC, method, realIp);
@@ -151,11 +157,16 @@ public class HardwareAPI extends APIBase {
 		if (uuid == null || "".equals(uuid)) {
 			throw new BadRequestException("ARC-1028: bad UUID");
 		}
+		Revision rev = DBFactory.getDB().getRevision(Hardware.class, uuid);
+		Response r = (rev == null) ? null : checkPreconditions(request, rev);
+		if (r != null) {
+			return r;
+		}
 		Hardware h = Hardware.getHardwareByUUID(uuid);
 		if (h == null) {
 			throw new NotFoundException("ARC-4001: object not found");
 		}
-		return h.toJSON();
+		return details(h.toJSON(), yaml, h.getRevision());
 	}
 
 	@PUT
@@ -165,6 +176,7 @@ public class HardwareAPI extends APIBase {
 		@HeaderParam(SESSION_TOKEN_HDR) final String token,
 		@HeaderParam(REAL_IP_HDR)       final String realIp,
 		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
 		@PathParam("uuid") String uuid,
 		String content
 	) {
@@ -172,11 +184,12 @@ public class HardwareAPI extends APIBase {
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, HARDWARE_UPDATE_RBAC, method, realIp);
 
-		Hardware hw = Hardware.getHardwareByUUID(uuid);
+		Hardware hw = Hardware.getHardwareForUpdate(uuid);
 		if (hw == null) {
 			api_logger.info("{} user {}, realip {} => 404", "PUT /api/v1/hardware/"+uuid, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
+		checkIfMatch(ifMatch, hw.getRevision(), method, u, realIp);
 
 		try {
 			// Can only change the name, description & YAML of Hardware
@@ -203,10 +216,8 @@ public class HardwareAPI extends APIBase {
 			if (keys.contains(BaseBean.YAML_TAG)) {
 				JSONObject yaml = jo.getJSONObject(BaseBean.YAML_TAG);
 				// Make sure this profile is not in use
-				for (Node n : Node.getNodes()) {
-					if (n.getHardware().equals(uuid)) {
-						throw new ForbiddenException("ARC-3019: Not allowed to modify the YAML for a Hardware profile that is in use.");
-					}
+				if (!hw.getNodes().isEmpty()) {
+					throw new ForbiddenException("ARC-3019: Not allowed to modify the YAML for a Hardware profile that is in use.");
 				}
 				hw.setYaml(yaml.toString());
 				doupdate = true;
@@ -240,14 +251,15 @@ public class HardwareAPI extends APIBase {
 			throw new NotFoundException("ARC-4001: object not found");
 		}
 		// Check if hardware is in use (any nodes have hardware == uuid), if so send a 409
-		for (Node n : Node.getNodes()) {
-			if (n.getHardware().equals(uuid)) {
-				throw new ClientErrorException("ARC-2006: This hardware profile is still in use by Node "+n.getUuid(), HttpServletResponse.SC_CONFLICT);
-			}
+		List<Node> list = h.getNodes();
+		if (!list.isEmpty()) {
+			Node n = list.get(0);
+			throw new ClientErrorException("ARC-2006: This hardware profile is still in use by Node "+n.getUuid(), HttpServletResponse.SC_CONFLICT);
 		}
 		try {
 			DB db = DBFactory.getDB();
 			db.deleteHardware(h);
+			RequestContext.forget(Hardware.class, h.getUuid());
 			return Response.noContent().build();
 		} catch (SQLException e) {
 			return Response.serverError().build();
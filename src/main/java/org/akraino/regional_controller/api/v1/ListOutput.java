@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.akraino.regional_controller.db.DB;
+import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.Revision;
+import org.akraino.regional_controller.utils.JSONtoYAML;
+import org.akraino.regional_controller.utils.YAMLConverter;
+import org.json.JSONObject;
+
+/**
+ * The response of a list API, written straight to the response stream in either JSON or YAML form.
+ * Each bean is converted to JSON, and written, one at a time, so the response as a whole is never
+ * held in memory (neither as a tree of JSONObjects, nor as a String).  The output is the same as
+ * that of building a JSONObject of the form <code>{ tag: [ ... ], next: cursor }</code> and
+ * converting it to a String.
+ *
+ * A query with a limit is read as one page.  A query without one is read {@link ListQuery#MAX_LIMIT}
+ * beans at a time, each page starting after the last UUID of the one before, so that memory use does
+ * not grow with the length of the list.  {@link #toResponse(Request)} tags the list with an ETag made
+ * from the revisions of the beans in it, which are read (also a page at a time) without the beans, so
+ * that an unchanged list can be answered with a 304 without loading it.
+ */
+public class ListOutput<T extends BaseBean> implements StreamingOutput {
+	private final String tag;
+	private final Class<T> type;
+	private final ListQuery query;
+	private final Function<ListQuery, List<T>> loader;
+	private final Function<T, JSONObject> converter;
+	private Function<List<String>, Object> derived;
+	private boolean yaml;
+
+	/**
+	 * Something done with each bean of the list as it is written.
+	 */
+	private interface BeanWriter<T> {
+		void write(T bean) throws IOException;
+	}
+
+	/**
+	 * @param tag the name of the list in the response
+	 * @param type the class of the beans, whose revisions are read for the ETag
+	 * @param query the query
+	 * @param loader reads one page of the beans (and anything the converter needs for them)
+	 * @param converter turns one bean into the JSON to show in the list
+	 */
+	public ListOutput(String tag, Class<T> type, ListQuery query, Function<ListQuery, List<T>> loader, Function<T, JSONObject> converter) {
+		this.tag       = tag;
+		this.type      = type;
+		this.query     = query;
+		this.loader    = loader;
+		this.converter = converter;
+		this.derived   = null;
+		this.yaml      = false;
+	}
+
+	/**
+	 * Declare what is shown for each bean that is not kept in the bean's own row (and so is not covered
+	 * by its revision), so that it is included in the list's ETag.
+	 * @param derived returns the derived values of the beans with some UUIDs (one page of the list)
+	 * @return this
+	 */
+	public ListOutput<T> dependsOn(Function<List<String>, Object> derived) {
+		this.derived = derived;
+		return this;
+	}
+
+	/**
+	 * Write the list as YAML rather than JSON.
+	 * @return this
+	 */
+	public ListOutput<T> asYAML() {
+		this.yaml = true;
+		return this;
+	}
+
+	/**
+	 * @return the (weak) ETag of the list, made from the UUID and revision of every bean in it
+	 */
+	public EntityTag getEntityTag() {
+		DB db = DBFactory.getDB();
+		MessageDigest md = EntityTags.newDigest();
+		ListQuery q = firstPage();
+		String next;
+		while (true) {
+			Map<String, Revision> page = db.getRevisions(type, q);
+			StringBuilder sb = new StringBuilder();
+			String last = null;
+			for (Map.Entry<String, Revision> me : page.entrySet()) {
+				Revision rev = me.getValue();
+				sb.append('|').append(me.getKey()).append(',').append(rev.getNumber()).append(',').append(rev.getModified());
+				last = me.getKey();
+			}
+			if (derived != null && !page.isEmpty()) {
+				sb.append('|').append(derived.apply(new ArrayList<>(page.keySet())));
+			}
+			EntityTags.update(md, sb);
+			if (query.getLimit() > 0) {
+				next = (page.size() >= query.getLimit()) ? last : null;
+				break;
+			}
+			if (page.size() < ListQuery.MAX_LIMIT) {
+				next = null;
+				break;
+			}
+			q = query.page(last, ListQuery.MAX_LIMIT);
+		}
+		EntityTags.update(md, tag + '|' + next);
+		return EntityTags.ofDigest(md);
+	}
+
+	/**
+	 * Build the response to a GET of this list: a 304 if the request's If-None-Match matches the list's
+	 * ETag, otherwise the list itself.  No Last-Modified header is sent, as removing a bean from the list
+	 * does not make the list any newer than the beans that remain.
+	 * @param request the request
+	 * @return the response
+	 */
+	public Response toResponse(Request request) {
+		EntityTag etag = getEntityTag();
+		ResponseBuilder rb = request.evaluatePreconditions(etag);
+		if (rb == null) {
+			rb = Response.ok(this);
+		}
+		return rb.tag(etag).build();
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException, WebApplicationException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+		if (yaml) {
+			writeYAML(writer);
+		} else {
+			writeJSON(writer);
+		}
+		writer.flush();
+	}
+
+	private void writeJSON(Writer writer) throws IOException {
+		writer.write("{");
+		writer.write(JSONObject.quote(tag));
+		writer.write(":[");
+		boolean[] first = { true };
+		String next = forEachBean(bean -> {
+			if (!first[0]) {
+				writer.write(",");
+			}
+			converter.apply(bean).write(writer);
+			first[0] = false;
+		});
+		writer.write("]");
+		if (next != null) {
+			writer.write(",\"next\":");
+			writer.write(JSONObject.quote(next));
+		}
+		writer.write("}");
+	}
+
+	private void writeYAML(Writer writer) throws IOException {
+		writer.write(tag);
+		boolean[] first = { true };
+		String next = forEachBean(bean -> {
+			if (first[0]) {
+				// A block sequence may start at the same indent as its key, which is how SnakeYAML writes one
+				writer.write(":\n");
+				first[0] = false;
+			}
+			JSONtoYAML.writeListItem(converter.apply(bean), writer);
+		});
+		if (first[0]) {
+			writer.write(": []\n");
+		}
+		if (next != null) {
+			writer.write("next: ");
+			YAMLConverter.writeScalar(next, writer);
+		}
+	}
+
+	/**
+	 * Pass each bean of the list, in order, to a BeanWriter, reading the beans a page at a time.
+	 * @return the cursor for the page after the list, or null
+	 */
+	private String forEachBean(BeanWriter<T> bw) throws IOException {
+		ListQuery q = firstPage();
+		while (true) {
+			List<T> page = loader.apply(q);
+			for (T bean : page) {
+				bw.write(bean);
+			}
+			if (query.getLimit() > 0) {
+				return query.getNextCursor(page);
+			}
+			if (page.size() < ListQuery.MAX_LIMIT) {
+				return null;
+			}
+			q = query.page(page.get(page.size() - 1).getUuid(), ListQuery.MAX_LIMIT);
+		}
+	}
+
+	/**
+	 * @return the query for the first page of the list
+	 */
+	private ListQuery firstPage() {
+		return (query.getLimit() > 0) ? query : query.page(query.getCursor(), ListQuery.MAX_LIMIT);
+	}
+}
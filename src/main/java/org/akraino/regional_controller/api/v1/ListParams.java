@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.UriInfo;
+
+import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The query parameters shared by all of the list (GET /api/v1/xxx) endpoints:
+ * <ul>
+ * <li>limit - the maximum number of objects to return (1 to {@link ListQuery#MAX_LIMIT}); if not given,
+ *     the limit is api.list.default_limit, which by default is 0 (no limit), since older clients do not
+ *     follow the "next" cursor</li>
+ * <li>cursor - the "next" value from the previous page</li>
+ * <li>uuid - a comma separated list of the UUIDs of the objects wanted</li>
+ * <li>name - the name of the object wanted</li>
+ * <li>name~ - a string that the names of the objects wanted must contain</li>
+ * <li>fields - a comma separated list of the fields wanted in each object (uuid and url are always
+ *     returned)</li>
+ * </ul>
+ * The filters specific to each type of object are added by each endpoint, which names them when it
+ * builds the ListQuery, so that any other query parameter (e.g. a misspelt filter) is rejected, rather
+ * than being ignored, or giving an empty list.
+ */
+public class ListParams {
+	public static final String DEFAULT_LIMIT = "0";
+
+	private static final Set<String> COMMON_PARAMETERS =
+		new TreeSet<>(Arrays.asList("limit", "cursor", "uuid", "name", "name~", "fields"));
+
+	private static final Logger logger = LogManager.getLogger();
+	private static final int default_limit = readDefaultLimit();
+
+	@QueryParam("limit")
+	private String limit;
+
+	@QueryParam("cursor")
+	private String cursor;
+
+	@QueryParam("uuid")
+	private String uuid;
+
+	@QueryParam("name")
+	private String name;
+
+	@QueryParam("name~")
+	private String name_contains;
+
+	@QueryParam("fields")
+	private String fields;
+
+	@Context
+	private UriInfo uri_info;
+
+	public ListParams() {
+		// filled in by Jersey
+	}
+
+	/**
+	 * Build the ListQuery described by these parameters.
+	 * @param accepted the names of the other query parameters (e.g. the filters) the endpoint accepts
+	 * @return the query
+	 * @throws BadRequestException if the limit is not valid, too many UUIDs are asked for, or the
+	 *   request has a query parameter that the endpoint does not accept
+	 */
+	public ListQuery toListQuery(final String... accepted) throws BadRequestException {
+		checkParameters(accepted);
+		ListQuery q = new ListQuery();
+		if (notEmpty(limit)) {
+			int n;
+			try {
+				n = Integer.parseInt(limit.trim());
+			} catch (NumberFormatException e) {
+				n = -1;
+			}
+			if (n < 1 || n > ListQuery.MAX_LIMIT) {
+				throw new BadRequestException("ARC-1036: limit must be between 1 and "+ListQuery.MAX_LIMIT);
+			}
+			q.setLimit(n);
+		} else {
+			q.setLimit(default_limit);
+		}
+		if (notEmpty(cursor)) {
+			q.setCursor(cursor.trim());
+		}
+		if (notEmpty(uuid)) {
+			List<String> uuids = split(uuid);
+			if (uuids.size() > ListQuery.MAX_UUIDS) {
+				throw new BadRequestException("ARC-1036: no more than "+ListQuery.MAX_UUIDS+" UUIDs may be requested at once");
+			}
+			q.setUuids(uuids);
+		}
+		if (notEmpty(name)) {
+			q.setName(name);
+		}
+		if (notEmpty(name_contains)) {
+			q.setNameContains(name_contains);
+		}
+		if (notEmpty(fields)) {
+			Set<String> set = new TreeSet<>(split(fields));
+			q.setFields(set);
+		}
+		return q;
+	}
+
+	private void checkParameters(final String... accepted) throws BadRequestException {
+		if (uri_info == null) {
+			return;
+		}
+		Set<String> known = new TreeSet<>(COMMON_PARAMETERS);
+		known.addAll(Arrays.asList(accepted));
+		for (String key : uri_info.getQueryParameters().keySet()) {
+			if (!known.contains(key)) {
+				throw new BadRequestException("ARC-1038: unknown parameter "+key+"; the parameters accepted are "+known);
+			}
+		}
+	}
+
+	/**
+	 * Read api.list.default_limit; values outside 0 to {@link ListQuery#MAX_LIMIT} are brought into that range.
+	 */
+	private static int readDefaultLimit() {
+		Properties props = new Properties();
+		try (InputStream is = ListParams.class.getClassLoader().getResourceAsStream(DBFactory.PROPERTIES_FILE)) {
+			if (is != null) {
+				props.load(is);
+			}
+		} catch (IOException e) {
+			logger.error("Cannot read api.properties!");
+		}
+		int n = Integer.parseInt(props.getProperty("api.list.default_limit", DEFAULT_LIMIT).trim());
+		return Math.max(0, Math.min(n, ListQuery.MAX_LIMIT));
+	}
+
+	private static boolean notEmpty(final String s) {
+		return s != null && !s.trim().isEmpty();
+	}
+
+	private static List<String> split(final String s) {
+		List<String> list = new ArrayList<>();
+		for (String t : s.split(",")) {
+			t = t.trim();
+			if (!t.isEmpty()) {
+				list.add(t);
+			}
+		}
+		return list;
+	}
+}
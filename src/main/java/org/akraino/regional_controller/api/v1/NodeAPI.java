@@ -23,6 +23,7 @@ import java.util.Set;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -36,17 +37,22 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Edgesite;
 import org.akraino.regional_controller.beans.Node;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
-import org.akraino.regional_controller.utils.JSONtoYAML;
-import org.json.JSONArray;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
+import org.akraino.regional_controller.db.Revision;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -54,10 +60,10 @@ import org.json.JSONObject;
 public class NodeAPI extends APIBase {
 	public static final String NODE_PATH = "node";
 
-	protected static final String[] NODE_CREATE_RBAC = { "create-*", "create-node" };
-	protected static final String[] NODE_READ_RBAC   = { "read-*",   "read-node" };
-	protected static final String[] NODE_UPDATE_RBAC = { "update-*", "update-node" };
-	protected static final String[] NODE_DELETE_RBAC = { "delete-*", "delete-node" };
+	protected static final long NODE_CREATE_RBAC = Permissions.required("create-*", "create-node");
+	protected static final long NODE_READ_RBAC   = Permissions.required("read-*",   "read-node");
+	protected static final long NODE_UPDATE_RBAC = Permissions.required("update-*", "update-node");
+	protected static final long NODE_DELETE_RBAC = Permissions.required("delete-*", "delete-node");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -84,67 +90,69 @@ public class NodeAPI extends APIBase {
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getNodesJSON(
+	public Response getNodesJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@QueryParam("region") String region)
+		@QueryParam("region") String region,
+		@BeanParam ListParams params,
+		@QueryParam(Node.HARDWARE_TAG) String hardware,
+		@Context Request request)
 	{
-		JSONObject jo = getNodesCommon(token, realIp);
-		return jo.toString();
+		return getNodesCommon(token, realIp, params, hardware).toResponse(request);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getNodesYAML(
+	public Response getNodesYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@QueryParam("region") String region)
+		@QueryParam("region") String region,
+		@BeanParam ListParams params,
+		@QueryParam(Node.HARDWARE_TAG) String hardware,
+		@Context Request request)
 	{
-		JSONObject jo = getNodesCommon(token, realIp);
-		return new JSONtoYAML(jo).toString();
+		return getNodesCommon(token, realIp, params, hardware).asYAML().toResponse(request);
 	}
 
-	private JSONObject getNodesCommon(String token, String realIp) {
+	private ListOutput<Node> getNodesCommon(String token, String realIp, ListParams params, String hardware) {
 		String method = "GET /api/v1/node";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, NODE_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (Node n : Node.getNodes()) {
+		ListQuery q = params.toListQuery("region", Node.HARDWARE_TAG);
+		q.addFilter(Node.HARDWARE_TAG, hardware);
+		return new ListOutput<>("nodes", Node.class, q, Node::getNodes, n -> {
 			JSONObject jo = n.toJSON();
 			jo.put("url", buildUrl(jo.getString("uuid")));
-			ja.put(jo);
-		}
-		JSONObject jo = new JSONObject();
-		jo.put("nodes", ja);
-		return jo;
+			return q.project(jo);
+		});
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getNodeDetailsJSON(
+	public Response getNodeDetailsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid)
+		@PathParam("uuid") String uuid,
+		@Context Request request)
 	{
-		JSONObject jo = getNodeDetailsCommon(token, realIp, uuid);
-		return jo.toString();
+		return getNodeDetailsCommon(token, realIp, uuid, request, false);
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(APPLICATION_YAML)
-	public String getNodeDetailsYAML(
+	public Response getNodeDetailsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid)
+		@PathParam("uuid") String uuid,
+		@Context Request request)
 	{
-		JSONObject jo = getNodeDetailsCommon(token, realIp, uuid);
-		return new JSONtoYAML(jo).toString();
+		return getNodeDetailsCommon(token, realIp, uuid, request, true);
 	}
 
-	private JSONObject getNodeDetailsCommon(String token, String realIp, String uuid) {
+	private Response getNodeDetailsCommon(String token, String realIp, String uuid, Request request, boolean yaml) {
 		String method = "GET /api/v1/node/"+uuid;
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, NODE_READ_RBAC, method, realIp);
@@ -152,11 +160,16 @@ public class NodeAPI extends APIBase {
 		if (uuid == null || "".equals(uuid)) {
 			throw new BadRequestException("ARC-1028: bad UUID");
 		}
+		Revision rev = DBFactory.getDB().getRevision(Node.class, uuid);
+		Response r = (rev == null) ? null : checkPreconditions(request, rev);
+		if (r != null) {
+			return r;
+		}
 		Node n = Node.getNodeByUUID(uuid);
 		if (n == null) {
 			throw new NotFoundException("ARC-4001: object not found");
 		}
-		return n.toJSON();
+		return details(n.toJSON(), yaml, n.getRevision());
 	}
 
 	@PUT
@@ -166,6 +179,7 @@ public class NodeAPI extends APIBase {
 		@HeaderParam(SESSION_TOKEN_HDR) final String token,
 		@HeaderParam(REAL_IP_HDR)       final String realIp,
 		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
 		@PathParam("uuid") String uuid,
 		String content
 	) {
@@ -173,11 +187,12 @@ public class NodeAPI extends APIBase {
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, NODE_UPDATE_RBAC, method, realIp);
 
-		Node n = Node.getNodeByUUID(uuid);
+		Node n = Node.getNodeForUpdate(uuid);
 		if (n == null) {
 			api_logger.info("{} user {}, realip {} => 404", method, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
+		checkIfMatch(ifMatch, n.getRevision(), method, u, realIp);
 
 		try {
 			// Can only change the name, description & YAML of the Node
@@ -204,10 +219,8 @@ public class NodeAPI extends APIBase {
 			if (keys.contains(BaseBean.YAML_TAG)) {
 				JSONObject yaml = jo.getJSONObject(BaseBean.YAML_TAG);
 				// Make sure this Node is not in use
-				for (Edgesite es : Edgesite.getEdgesites()) {
-					if (es.getNodes().contains(uuid)) {
-						throw new ForbiddenException("ARC-3020: Not allowed to modify the YAML for a Node that is in use.");
-					}
+				if (n.getEdgesite() != null) {
+					throw new ForbiddenException("ARC-3020: Not allowed to modify the YAML for a Node that is in use.");
 				}
 				n.setYaml(yaml.toString());
 				doupdate = true;
@@ -241,14 +254,14 @@ public class NodeAPI extends APIBase {
 			throw new NotFoundException("ARC-4001: object not found");
 		}
 		// Check if Node is in use (any Edgesites have Node == uuid), if so send a 409
-		for (Edgesite e : Edgesite.getEdgesites()) {
-			if (e.getNodes().contains(n.getUuid())) {
-				throw new ClientErrorException("ARC-2003: This Node is still in use by Edgesite "+e.getUuid(), HttpServletResponse.SC_CONFLICT);
-			}
+		Edgesite es = n.getEdgesite();
+		if (es != null) {
+			throw new ClientErrorException("ARC-2003: This Node is still in use by Edgesite "+es.getUuid(), HttpServletResponse.SC_CONFLICT);
 		}
 		try {
 			DB db = DBFactory.getDB();
 			db.deleteNode(n);
+			RequestContext.forget(Node.class, n.getUuid());
 			return Response.noContent().build();
 		} catch (SQLException e) {
 			return Response.serverError().build();
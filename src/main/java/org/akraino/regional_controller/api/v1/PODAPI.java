@@ -21,15 +21,20 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
+import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotAllowedException;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
@@ -39,7 +44,10 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 
@@ -49,9 +57,13 @@ import org.akraino.regional_controller.beans.Edgesite;
 import org.akraino.regional_controller.beans.POD;
 import org.akraino.regional_controller.beans.PODEvent;
 import org.akraino.regional_controller.beans.PODWorkflow;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.Revision;
+import org.akraino.regional_controller.db.Transaction;
 import org.akraino.regional_controller.utils.JSONtoYAML;
 import org.akraino.regional_controller.workflow.WorkFlow;
 import org.akraino.regional_controller.workflow.WorkFlowFactory;
@@ -63,10 +75,10 @@ import org.json.JSONObject;
 public class PODAPI extends APIBase {
 	public static final String POD_PATH = "pod";
 
-	protected static final String[] POD_CREATE_RBAC = { "create-*", "create-pod" };
-	protected static final String[] POD_READ_RBAC   = { "read-*",   "read-pod" };
-	protected static final String[] POD_UPDATE_RBAC = { "update-*", "update-pod" };
-	protected static final String[] POD_DELETE_RBAC = { "delete-*", "delete-pod" };
+	protected static final long POD_CREATE_RBAC = Permissions.required("create-*", "create-pod");
+	protected static final long POD_READ_RBAC   = Permissions.required("read-*",   "read-pod");
+	protected static final long POD_UPDATE_RBAC = Permissions.required("update-*", "update-pod");
+	protected static final long POD_DELETE_RBAC = Permissions.required("delete-*", "delete-pod");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -114,8 +126,13 @@ public class PODAPI extends APIBase {
 			POD oldpod = es.getPOD();
 			if (oldpod != null) {
 				if (oldpod.getState() == POD.State.DEAD) {
-					// This Edgesite is being repurposed, so set the old POD to ZOMBIE
-					oldpod.setState(POD.State.ZOMBIE);
+					// This Edgesite is being repurposed, so set the old POD to ZOMBIE.  If another request
+					// got there first, it is reusing the Edgesite, so this one may not.
+					if (!oldpod.setState(POD.State.ZOMBIE)) {
+						String msg = "The Edgesite "+edgesite+" is being reused by another request";
+						logger.warn(msg);
+						throw new ClientErrorException("ARC-2011: "+msg, HttpServletResponse.SC_CONFLICT);
+					}
 				}
 				if (oldpod.getState() != POD.State.ZOMBIE) {
 					String msg = "The Edgesite "+edgesite+" is already in use by POD "+es.getPOD().getUuid();
@@ -163,14 +180,24 @@ public class PODAPI extends APIBase {
 			}
 
 			try {
-				// 7. Create the POD in the DB.
-				POD p = POD.createPod(jo);
-				String uuid = p.getUuid();
+				// 7. Create the POD, and its "create" workflow, in the DB in one transaction.
 				JSONObject y = jo.optJSONObject(BaseBean.YAML_TAG);
 				if (y == null) {
 					y = new JSONObject();
 				}
-				PODWorkflow pwf = PODWorkflow.createPodWorkflow(p, Blueprint.WF_CREATE, y);
+				POD p;
+				PODWorkflow pwf;
+				try (Transaction tx = DBFactory.getDB().beginTransaction()) {
+					p = POD.createPod(jo);
+					pwf = PODWorkflow.createPodWorkflow(p, Blueprint.WF_CREATE, y);
+					if (pwf == null) {
+						String msg = "Could not create workflow "+Blueprint.WF_CREATE+" for POD "+p.getUuid();
+						logger.error(msg);
+						throw new InternalServerErrorException("ARC-4003: "+msg);
+					}
+					tx.commit();
+				}
+				String uuid = p.getUuid();
 
 				// 8. Run the "create" workflow
 				if (!p.startWorkFlow(pwf)) {
@@ -184,6 +211,9 @@ public class PODAPI extends APIBase {
 			} catch (URISyntaxException e) {
 				logger.warn(e.toString());
 				throw new BadRequestException("ARC-1030: "+e.toString());
+			} catch (SQLException e) {
+				logger.error(e);
+				throw new InternalServerErrorException("ARC-4003: "+e.getMessage());
 			}
 		} catch (JSONException e) {
 			logger.warn("Invalid JSON object: "+e);
@@ -193,66 +223,78 @@ public class PODAPI extends APIBase {
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getPODsJSON(
+	public Response getPODsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params,
+		@QueryParam(POD.STATE_TAG) String state,
+		@QueryParam(POD.BLUEPRINT_TAG) String blueprint,
+		@QueryParam(POD.EDGESITE_TAG) String edgesite,
+		@Context Request request
 	) {
-		JSONObject jo = getPODsCommon(token, realIp);
-		return jo.toString();
+		return getPODsCommon(token, realIp, params, state, blueprint, edgesite).toResponse(request);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getPODsYAML(
+	public Response getPODsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params,
+		@QueryParam(POD.STATE_TAG) String state,
+		@QueryParam(POD.BLUEPRINT_TAG) String blueprint,
+		@QueryParam(POD.EDGESITE_TAG) String edgesite,
+		@Context Request request
 	) {
-		JSONObject jo = getPODsCommon(token, realIp);
-		return new JSONtoYAML(jo).toString();
+		return getPODsCommon(token, realIp, params, state, blueprint, edgesite).asYAML().toResponse(request);
 	}
 
-	private JSONObject getPODsCommon(String token, String realIp)
+	private ListOutput<POD> getPODsCommon(String token, String realIp, ListParams params, String state, String blueprint, String edgesite)
 	{
 		String method = "GET /api/v1/pod";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, POD_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (POD p : POD.getPods()) {
+		ListQuery q = params.toListQuery(POD.STATE_TAG, POD.BLUEPRINT_TAG, POD.EDGESITE_TAG);
+		q.addFilter(POD.STATE_TAG, (state == null) ? null : state.toUpperCase());
+		q.addFilter(POD.BLUEPRINT_TAG, blueprint);
+		q.addFilter(POD.EDGESITE_TAG, edgesite);
+		return new ListOutput<>("pods", POD.class, q, page -> {
+			List<POD> pods = POD.getPods(page);
+			POD.loadBlueprints(pods);
+			return pods;
+		}, p -> {
 			JSONObject jo = p.toJSON();
 			jo.put("url", "/api/v1/pod/" + jo.get("uuid"));
-			ja.put(jo);
-		}
-		JSONObject jo = new JSONObject();
-		jo.put("pods", ja);
-		return jo;
+			return q.project(jo);
+		});
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getPODDetailsJSON(
+	public Response getPODDetailsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid)
+		@PathParam("uuid") String uuid,
+		@Context Request request)
 	{
-		JSONObject jo = getPODDetailsCommon(token, realIp, uuid);
-		return jo.toString();
+		return getPODDetailsCommon(token, realIp, uuid, request, false);
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(APPLICATION_YAML)
-	public String getPODDetailsYAML(
+	public Response getPODDetailsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid)
+		@PathParam("uuid") String uuid,
+		@Context Request request)
 	{
-		JSONObject jo = getPODDetailsCommon(token, realIp, uuid);
-		return new JSONtoYAML(jo).toString();
+		return getPODDetailsCommon(token, realIp, uuid, request, true);
 	}
 
-	private JSONObject getPODDetailsCommon(String token, String realIp, String uuid) {
+	private Response getPODDetailsCommon(String token, String realIp, String uuid, Request request, boolean yaml) {
 		String method = "GET /api/v1/pod/"+uuid;
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, POD_READ_RBAC, method, realIp);
@@ -260,6 +302,12 @@ public class PODAPI extends APIBase {
 		if (uuid == null || "".equals(uuid)) {
 			throw new BadRequestException("ARC-1028: bad UUID");
 		}
+		// New events and workflow instances update the POD's modification time, so the revision covers them
+		Revision rev = DBFactory.getDB().getRevision(POD.class, uuid);
+		Response r = (rev == null) ? null : checkPreconditions(request, rev);
+		if (r != null) {
+			return r;
+		}
 		POD p = POD.getPodByUUID(uuid);
 		if (p == null) {
 			throw new NotFoundException("ARC-4001: object not found");
@@ -281,7 +329,7 @@ public class PODAPI extends APIBase {
 			j2.put(String.format("/api/v1/pod/%s/%s_%d", uuid, pwf.getName(), pwf.getIndex()));
 		}
 		jo.put("workflow_instances", j2);
-		return jo;
+		return details(jo, yaml, p.getRevision());
 	}
 
 	@GET
@@ -400,6 +448,7 @@ public class PODAPI extends APIBase {
 		@HeaderParam(SESSION_TOKEN_HDR) final String token,
 		@HeaderParam(REAL_IP_HDR)       final String realIp,
 		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
 	  	@PathParam("uuid")              final String uuid,
 		String content
 	) {
@@ -407,11 +456,12 @@ public class PODAPI extends APIBase {
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, POD_UPDATE_RBAC, method, realIp);
 
-		POD p = POD.getPodByUUID(uuid);
+		POD p = POD.getPodForUpdate(uuid);
 		if (p == null) {
 			api_logger.info("{} user {}, realip {} => 404", method, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
+		checkIfMatch(ifMatch, p.getRevision(), method, u, realIp);
 
 		try {
 			// Can only change the description/blueprint of a POD
@@ -579,7 +629,7 @@ public class PODAPI extends APIBase {
 
 		// If user requests that the delete be forced, delete immediately, without a workflow
 		if (force) {
-			p.setState(POD.State.DEAD);
+			changeState(p, POD.State.DEAD, method, u, realIp);
 			return Response.ok().build();
 		}
 
@@ -598,7 +648,7 @@ public class PODAPI extends APIBase {
 			// from the DB.  It is put into the DEAD state, from which the Edgesite may
 			// be reused, and in which case the POD goes to the ZOMBIE state.
 			// POD history may always be retrieved even after the POD is DELETE-ed.
-			p.setState(POD.State.DEAD);
+			changeState(p, POD.State.DEAD, method, u, realIp);
 			return Response.ok().build();
 		}
 
@@ -613,4 +663,16 @@ public class PODAPI extends APIBase {
 		// Return 202 - Accepted
 		return Response.accepted().build();
 	}
+
+	/**
+	 * Move a POD to a new state, or send a 409 if another request changed its state first.
+	 */
+	private void changeState(POD p, POD.State newstate, String method, User u, String realIp) {
+		try {
+			p.changeState(newstate);
+		} catch (ClientErrorException e) {
+			api_logger.info("{} user {}, realip {} => 409", method, u.getName(), realIp);
+			throw e;
+		}
+	}
 }
@@ -30,6 +30,7 @@ import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.beans.POD;
 import org.akraino.regional_controller.beans.PODEvent;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.utils.JSONtoYAML;
 import org.json.JSONArray;
@@ -44,8 +45,8 @@ import org.json.JSONObject;
 public class PODEventAPI extends APIBase {
 	public static final String PODEVENT_PATH = "podevent";
 
-	protected static final String[] PODEVENT_CREATE_RBAC = { "create-*", "create-podevent" };
-	protected static final String[] PODEVENT_READ_RBAC   = { "read-*",   "read-podevent" };
+	protected static final long PODEVENT_CREATE_RBAC = Permissions.required("create-*", "create-podevent");
+	protected static final long PODEVENT_READ_RBAC   = Permissions.required("read-*",   "read-podevent");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -19,11 +19,18 @@ package org.akraino.regional_controller.api.v1;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -37,16 +44,23 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Edgesite;
+import org.akraino.regional_controller.beans.POD;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.Region;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
-import org.akraino.regional_controller.utils.JSONtoYAML;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
+import org.akraino.regional_controller.db.Revision;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -54,16 +68,16 @@ import org.json.JSONObject;
 /**
  * The Region API supports
  * - POST: to create a new region
- * - GET: to retrieve a list of regions, or information about one region
+ * - GET: to retrieve a list of regions, or information about one region (optionally, with everything below it)
  */
 @Path(RegionAPI.REGION_PATH)
 public class RegionAPI extends APIBase {
 	public static final String REGION_PATH = "region";
 
-	protected static final String[] REGION_CREATE_RBAC = { "create-*", "create-region" };
-	protected static final String[] REGION_READ_RBAC   = { "read-*",   "read-region" };
-	protected static final String[] REGION_UPDATE_RBAC = { "update-*", "update-region" };
-	protected static final String[] REGION_DELETE_RBAC = { "delete-*", "delete-region" };
+	protected static final long REGION_CREATE_RBAC = Permissions.required("create-*", "create-region");
+	protected static final long REGION_READ_RBAC   = Permissions.required("read-*",   "read-region");
+	protected static final long REGION_UPDATE_RBAC = Permissions.required("update-*", "update-region");
+	protected static final long REGION_DELETE_RBAC = Permissions.required("delete-*", "delete-region");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -96,85 +110,165 @@ public class RegionAPI extends APIBase {
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getRegionsJSON(
+	public Response getRegionsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@QueryParam("region") String region
+		@QueryParam("region") String region,
+		@BeanParam ListParams params,
+		@QueryParam(Region.PARENT_TAG) String parent,
+		@Context Request request
 	) {
-		JSONObject jo = getRegionsCommon(token, realIp, region);
-		return jo.toString();
+		return getRegionsCommon(token, realIp, params, parent).toResponse(request);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getRegionsYAML(
+	public Response getRegionsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@QueryParam("region") String region
+		@QueryParam("region") String region,
+		@BeanParam ListParams params,
+		@QueryParam(Region.PARENT_TAG) String parent,
+		@Context Request request
 	) {
-		JSONObject jo = getRegionsCommon(token, realIp, region);
-		return new JSONtoYAML(jo).toString();
+		return getRegionsCommon(token, realIp, params, parent).asYAML().toResponse(request);
 	}
 
-	private JSONObject getRegionsCommon(String token, String realIp, String region) {
+	private ListOutput<Region> getRegionsCommon(String token, String realIp, ListParams params, String parent) {
 		String method = "GET /api/v1/region";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, REGION_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (Region r : Region.getRegions()) {
-			JSONObject jo = r.toJSON();
+		ListQuery q = params.toListQuery("region", Region.PARENT_TAG);
+		q.addFilter(Region.PARENT_TAG, parent);
+		// The children of every Region on the page being written, found with one query per page
+		Map<String, Set<String>> children = new HashMap<>();
+		return new ListOutput<>("regions", Region.class, q, page -> {
+			List<Region> regions = Region.getRegions(page);
+			List<String> uuids = new ArrayList<>();
+			for (Region r : regions) {
+				uuids.add(r.getUuid());
+			}
+			children.clear();
+			children.putAll(Region.getChildMapOf(uuids));
+			return regions;
+		}, r -> {
+			JSONObject jo = r.toJSON(children.getOrDefault(r.getUuid().toLowerCase(), Collections.emptySet()));
 			jo.put("url", "/api/v1/region/" + jo.get("uuid"));
-			ja.put(jo);
-		}
-		JSONObject jo = new JSONObject();
-		jo.put("regions", ja);
-		return jo;
+			return q.project(jo);
+		}).dependsOn(uuids -> new TreeMap<>(Region.getChildMapOf(uuids)));
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getRegionDetailsJSON(
+	public Response getRegionDetailsJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid
+		@PathParam("uuid") String uuid,
+		@QueryParam("recursive") boolean recursive,
+		@Context Request request
 	) {
-		JSONObject jo = getRegionDetailsCommon(token, realIp, uuid);
-		return jo.toString();
+		return getRegionDetailsCommon(token, realIp, uuid, recursive, request, false);
 	}
 
 	@GET
 	@Path("/{uuid}")
 	@Produces(APPLICATION_YAML)
-	public String getRegionDetailsYAML(
+	public Response getRegionDetailsYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
 		@HeaderParam(REAL_IP_HDR) String realIp,
-		@PathParam("uuid") String uuid
+		@PathParam("uuid") String uuid,
+		@QueryParam("recursive") boolean recursive,
+		@Context Request request
 	) {
-		JSONObject jo = getRegionDetailsCommon(token, realIp, uuid);
-		return new JSONtoYAML(jo).toString();
+		return getRegionDetailsCommon(token, realIp, uuid, recursive, request, true);
 	}
 
-	private JSONObject getRegionDetailsCommon(String token, String realIp, String uuid) {
+	private Response getRegionDetailsCommon(String token, String realIp, String uuid, boolean recursive, Request request, boolean yaml) {
 		String method = "GET /api/v1/region/"+uuid;
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, REGION_READ_RBAC, method, realIp);
+		if (recursive) {
+			checkRBAC(u, EdgesiteAPI.EDGESITE_READ_RBAC, method, realIp);
+			checkRBAC(u, PODAPI.POD_READ_RBAC, method, realIp);
+		}
 
 		if (uuid == null || "".equals(uuid)) {
 			throw new BadRequestException("ARC-1028: bad UUID");
 		}
+		// The children and Edgesites of the Region are not in its row, so they are part of the ETag.  They are
+		// read from the DB, so that a change made on another API server changes the tag.  A recursive request
+		// shows too many other objects to be worth tagging.
+		Set<String> children  = Region.getChildUUIDs(uuid);
+		Set<String> edgesites = new TreeSet<>();
+		for (Edgesite e : Edgesite.getEdgesitesByRegion(uuid)) {
+			edgesites.add(e.getUuid());
+		}
+		Object[] derived = { children, edgesites };
+		if (!recursive) {
+			Revision rev = DBFactory.getDB().getRevision(Region.class, uuid);
+			Response resp = (rev == null) ? null : checkPreconditions(request, rev, derived);
+			if (resp != null) {
+				return resp;
+			}
+		}
 		Region r = Region.getRegionByUUID(uuid);
 		if (r == null) {
 			throw new NotFoundException("ARC-4001: object not found");
 		}
-		// Get a list of Edgesites in the region
-		JSONObject jo = r.toJSON();
-		JSONArray ja = new JSONArray();
-		for (Edgesite e : Edgesite.getEdgesitesByRegion(uuid)) {
-			ja.put(e.getUuid());
+		JSONObject jo = r.toJSON(children);
+		jo.put("edgesites", new JSONArray(edgesites));
+		if (recursive) {
+			jo.put("descendants", getDescendants(r));
+			return Response.ok(format(jo, yaml)).build();
+		}
+		return details(jo, yaml, r.getRevision(), derived);
+	}
+
+	/**
+	 * Build the lists of all Regions below a Region, and of all Edgesites and PODs in the Region or
+	 * below it.  There is one query for each of the Regions, Edgesites and PODs, each restricted to the
+	 * subtree, so the cost depends on the size of the subtree rather than of the whole inventory.
+	 */
+	private JSONObject getDescendants(Region r) {
+		List<Region> descendants = Region.getDescendants(r.getUuid());
+		// Every child of a descendant is also a descendant
+		Map<String, Set<String>> children = Region.getChildMap(descendants);
+		JSONArray rarray = new JSONArray();
+		List<String> subtree = new ArrayList<>();
+		subtree.add(r.getUuid());
+		for (Region r2 : descendants) {
+			JSONObject jo = r2.toJSON(children.getOrDefault(r2.getUuid().toLowerCase(), Collections.emptySet()));
+			jo.put("url", "/api/v1/region/" + r2.getUuid());
+			rarray.put(jo);
+			subtree.add(r2.getUuid());
+		}
+		ListQuery eq = new ListQuery();
+		eq.addFilter(Edgesite.REGION_FILTER, subtree);
+		List<Edgesite> edgesites = Edgesite.getEdgesites(eq);
+		JSONArray earray = new JSONArray();
+		List<String> esUuids = new ArrayList<>();
+		for (Edgesite e : edgesites) {
+			JSONObject jo = e.toJSON();
+			jo.put("url", "/api/v1/edgesite/" + e.getUuid());
+			earray.put(jo);
+			esUuids.add(e.getUuid());
 		}
-		jo.put("edgesites", ja);
+		ListQuery pq = new ListQuery();
+		pq.addFilter(POD.EDGESITE_TAG, esUuids);
+		List<POD> pods = POD.getPods(pq);
+		POD.loadBlueprints(pods);
+		JSONArray parray = new JSONArray();
+		for (POD p : pods) {
+			JSONObject jo = p.toJSON();
+			jo.put("url", "/api/v1/pod/" + p.getUuid());
+			parray.put(jo);
+		}
+		JSONObject jo = new JSONObject();
+		jo.put("regions",   rarray);
+		jo.put("edgesites", earray);
+		jo.put("pods",      parray);
 		return jo;
 	}
 
@@ -185,6 +279,7 @@ public class RegionAPI extends APIBase {
 		@HeaderParam(SESSION_TOKEN_HDR) final String token,
 		@HeaderParam(REAL_IP_HDR)       final String realIp,
 		@HeaderParam(CONTENT_TYPE_HDR)  final String ctype,
+		@HeaderParam(HttpHeaders.IF_MATCH) final String ifMatch,
 		@PathParam("uuid")              final String uuid,
 		String content
 	) {
@@ -195,11 +290,12 @@ public class RegionAPI extends APIBase {
 		if (uuid.equals(Region.UNIVERSAL_REGION)) {
 			throw new ForbiddenException("ARC-3016: Not allowed to modify the Universal region.");
 		}
-		Region r = Region.getRegionByUUID(uuid);
+		Region r = Region.getRegionForUpdate(uuid);
 		if (r == null) {
 			api_logger.info("{} user {}, realip {} => 404", method, u.getName(), realIp);
 			throw new NotFoundException("ARC-4001: object not found");
 		}
+		checkIfMatch(ifMatch, r.getRevision(), method, u, realIp);
 
 		try {
 			// Can only change the name, description & YAML of the Node
@@ -230,6 +326,9 @@ public class RegionAPI extends APIBase {
 					if (parent.equals(uuid)) {
 						throw new ForbiddenException("ARC-3022: Your parent cannot be yourself!");
 					}
+					if (Region.isDescendant(parent, uuid)) {
+						throw new ForbiddenException("ARC-3024: Your parent cannot be one of your descendants!");
+					}
 					if (Region.getRegionByUUID(parent) == null) {
 						throw new ForbiddenException("ARC-3001: No regions exists with UUID "+parent);
 					}
@@ -283,6 +382,7 @@ public class RegionAPI extends APIBase {
 		try {
 			DB db = DBFactory.getDB();
 			db.deleteRegion(r);
+			RequestContext.forget(Region.class, r.getUuid());
 			api_logger.info("{} user {}, realip {} => 204", method, u.getName(), realIp);
 			return Response.noContent().build();
 		} catch (SQLException e) {
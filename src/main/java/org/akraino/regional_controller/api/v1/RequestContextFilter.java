@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import java.io.IOException;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.akraino.regional_controller.db.RequestContext;
+
+/**
+ * Binds a {@link RequestContext} (one DB Connection, plus an identity map of loaded beans) to each API
+ * request, and releases it once the response has been written.  The Connection is given back to the
+ * pool as soon as the resource method returns, so that it is not held while the entity is written to
+ * the client; the identity map is kept until the entity is written, since a streamed entity (see
+ * {@link ListOutput}) may still use it.
+ */
+@Provider
+@PreMatching
+public class RequestContextFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+	@Override
+	public void filter(ContainerRequestContext request) {
+		RequestContext.begin();
+	}
+
+	@Override
+	public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+		// No entity will be written for a HEAD request
+		if (!response.hasEntity() || HttpMethod.HEAD.equals(request.getMethod())) {
+			RequestContext.end();
+		} else {
+			RequestContext.releaseConnection();
+		}
+	}
+
+	@Override
+	public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+		try {
+			context.proceed();
+		} finally {
+			RequestContext.end();
+		}
+	}
+}
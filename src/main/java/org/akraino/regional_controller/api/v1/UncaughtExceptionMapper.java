@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.api.v1;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import org.akraino.regional_controller.db.RequestContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Turns any exception that escapes a resource method, other than a WebApplicationException (which the
+ * {@link APIExceptionMapper} handles), into a 500 response.  Jersey does not run the response filters
+ * for an exception that is not mapped, so the request's {@link RequestContext} is ended here; otherwise
+ * its Connection would stay checked out until the thread served another request.
+ */
+@Provider
+public class UncaughtExceptionMapper implements ExceptionMapper<Throwable> {
+	private static final Logger logger = LogManager.getLogger();
+
+	@Override
+	public Response toResponse(Throwable ex) {
+		if (ex instanceof WebApplicationException) {
+			WebApplicationException wae = (WebApplicationException) ex;
+			return APIExceptionMapper.errorResponse(wae.getResponse().getStatus(), wae.getMessage());
+		}
+		RequestContext.end();
+		logger.error("Uncaught exception", ex);
+		return APIExceptionMapper.errorResponse(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "ARC-9999: "+ex.getClass().getSimpleName()+"; see the API server log");
+	}
+}
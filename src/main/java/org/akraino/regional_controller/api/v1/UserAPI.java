@@ -23,6 +23,7 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.BeanParam;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.ForbiddenException;
@@ -36,12 +37,17 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.akraino.regional_controller.beans.BaseBean;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.Role;
+import org.akraino.regional_controller.beans.SessionTokens;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.akraino.regional_controller.utils.JSONtoYAML;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -51,10 +57,10 @@ import org.json.JSONObject;
 public class UserAPI extends APIBase {
 	public static final String USER_PATH = "user";
 
-	protected static final String[] USER_CREATE_RBAC = { "create-*", "create-user" };
-	protected static final String[] USER_READ_RBAC   = { "read-*",   "read-user" };
-	protected static final String[] USER_UPDATE_RBAC = { "update-*", "update-user" };
-	protected static final String[] USER_DELETE_RBAC = { "delete-*", "delete-user" };
+	protected static final long USER_CREATE_RBAC = Permissions.required("create-*", "create-user");
+	protected static final long USER_READ_RBAC   = Permissions.required("read-*",   "read-user");
+	protected static final long USER_UPDATE_RBAC = Permissions.required("update-*", "update-user");
+	protected static final long USER_DELETE_RBAC = Permissions.required("delete-*", "delete-user");
 
 	@POST
 	@Consumes({APPLICATION_YAML, MediaType.APPLICATION_JSON})
@@ -81,39 +87,36 @@ public class UserAPI extends APIBase {
 
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
-	public String getUsersJSON(
+	public StreamingOutput getUsersJSON(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params
 	) {
-		JSONObject jo = getUsersCommon(token, realIp);
-		return jo.toString();
+		return getUsersCommon(token, realIp, params);
 	}
 
 	@GET
 	@Produces(APPLICATION_YAML)
-	public String getUsersYAML(
+	public StreamingOutput getUsersYAML(
 		@HeaderParam(SESSION_TOKEN_HDR) String token,
-		@HeaderParam(REAL_IP_HDR) String realIp
+		@HeaderParam(REAL_IP_HDR) String realIp,
+		@BeanParam ListParams params
 	) {
-		JSONObject jo = getUsersCommon(token, realIp);
-		return new JSONtoYAML(jo).toString();
+		return getUsersCommon(token, realIp, params).asYAML();
 	}
 
-	private JSONObject getUsersCommon(String token, String realIp) {
+	private ListOutput<User> getUsersCommon(String token, String realIp, ListParams params) {
 		String method = "GET /api/v1/user";
 		User u = checkToken(token, method, realIp);
 		checkRBAC(u, USER_READ_RBAC, method, realIp);
 
-		JSONArray ja = new JSONArray();
-		for (User bp : User.getUsers()) {
+		ListQuery q = params.toListQuery();
+		api_logger.info("{} user {}, realip {} => 200", method, u.getName(), realIp);
+		return new ListOutput<>("users", User.class, q, User::getUsers, bp -> {
 			JSONObject jo = bp.toJSON();
 			jo.put("url", buildUrl(jo.getString("uuid")));
-			ja.put(jo);
-		}
-		api_logger.info("{} user {}, realip {} => 200", method, u.getName(), realIp);
-		JSONObject jo = new JSONObject();
-		jo.put("users", ja);
-		return jo;
+			return q.project(jo);
+		});
 	}
 
 	@GET
@@ -252,6 +255,8 @@ public class UserAPI extends APIBase {
 		try {
 			DB db = DBFactory.getDB();
 			db.deleteUser(b);
+			RequestContext.forget(User.class, b.getUuid());
+			SessionTokens.getInstance().revokeUser(b.getUuid());
 			api_logger.info("{} user {}, realip {} => 204", method, u.getName(), realIp);
 			return Response.noContent().build();
 		} catch (SQLException e) {
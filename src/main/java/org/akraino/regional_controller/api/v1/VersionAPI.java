@@ -23,7 +23,9 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 
 import org.akraino.regional_controller.beans.Blueprint;
+import org.akraino.regional_controller.beans.Permissions;
 import org.akraino.regional_controller.beans.User;
+import org.akraino.regional_controller.db.DBFactory;
 import org.akraino.regional_controller.utils.BuildUtil;
 import org.akraino.regional_controller.utils.JSONtoYAML;
 import org.json.JSONObject;
@@ -32,7 +34,7 @@ import org.json.JSONObject;
 public class VersionAPI extends APIBase {
 	public static final String VERSION_PATH = "version";
 
-	protected static final String[] VERSION_READ_RBAC = { "read-*", "read-version" };
+	protected static final long VERSION_READ_RBAC = Permissions.required("read-*", "read-version");
 
 	/**
 	 * Retrieve a list of component versions for the Regional Controller.
@@ -77,6 +79,7 @@ public class VersionAPI extends APIBase {
 		jo.put("api_version", BuildUtil.getVersion());
 		jo.put("api_builddate", BuildUtil.getBuildDate());
 		jo.put("blueprints", blueprints);
+		jo.put("db", DBFactory.getDB().getStatistics());
 		return jo;
 	}
 }
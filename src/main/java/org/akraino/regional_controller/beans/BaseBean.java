@@ -16,7 +16,18 @@
 
 package org.akraino.regional_controller.beans;
 
+import java.sql.SQLException;
+
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.Revision;
+import org.akraino.regional_controller.db.StaleRevisionException;
 import org.akraino.regional_controller.utils.JSONtoYAML;
+import org.akraino.regional_controller.utils.YAMLDocument;
 import org.json.JSONObject;
 
 public class BaseBean {
@@ -30,11 +41,14 @@ public class BaseBean {
 	private final String uuid;
 	private String name;
 	private String description;
+	private YAMLDocument document;		// parsed form of the bean's YAML, if it has any
+	private Revision revision;			// maintained by the DB
 
 	protected BaseBean(String uuid, String name, String description) {
 		this.uuid = uuid.toLowerCase();
 		this.name = name;
 		this.description = description;
+		this.revision = Revision.NONE;
 	}
 
 	public String getUuid() {
@@ -62,6 +76,67 @@ public class BaseBean {
 		this.description = description;
 	}
 
+	/**
+	 * @return the revision of this bean, as of when it was read from (or last written to) the DB
+	 */
+	public Revision getRevision() {
+		return revision;
+	}
+
+	public void setRevision(Revision revision) {
+		this.revision = revision;
+	}
+
+	/**
+	 * Translate the failure of an update of this bean into the exception to return to the client:
+	 * a 409 if the bean was changed by another request since it was read, otherwise a 500.
+	 */
+	protected static WebApplicationException updateFailed(final SQLException e) {
+		if (e instanceof StaleRevisionException) {
+			return new ClientErrorException("ARC-2009: "+e.getMessage()+"; it was modified by another request.", Status.CONFLICT);
+		}
+		return new InternalServerErrorException("ARC-4003: "+e.getMessage());
+	}
+
+	/**
+	 * Get the parsed form of some YAML belonging to this bean.  The parse is shared with every other copy
+	 * of this bean holding the same YAML, and is only redone when the YAML changes.
+	 * @param yaml the bean's YAML
+	 * @return the (immutable) document
+	 */
+	protected YAMLDocument getDocument(final String yaml) {
+		YAMLDocument d = document;
+		if (d == null || !d.isParsedFrom(yaml)) {
+			d = YAMLDocument.parse(getClass().getSimpleName()+":"+uuid, yaml);
+			document = d;
+		}
+		return d;
+	}
+
+	/**
+	 * Forget the parsed YAML; called whenever the bean's YAML is replaced.
+	 */
+	protected void clearDocument() {
+		document = null;
+	}
+
+	/**
+	 * Get the value of a field that a list of beans may be filtered on (see {@link ListQuery}).
+	 * Subclasses add their own fields.
+	 * @param filter the name of the field
+	 * @return the value (or a Collection of values) of the field, or null if the bean has no such field
+	 */
+	public Object getFilterValue(final String filter) {
+		switch (filter) {
+		case UUID_TAG:
+			return uuid;
+		case NAME_TAG:
+			return name;
+		default:
+			return null;
+		}
+	}
+
 	public JSONObject toJSON() {
 		JSONObject jo = new JSONObject();
 		jo.put(UUID_TAG,  uuid);
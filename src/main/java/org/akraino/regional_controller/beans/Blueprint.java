@@ -16,8 +16,6 @@
 
 package org.akraino.regional_controller.beans;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -35,18 +33,14 @@ import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.akraino.regional_controller.utils.JSONtoYAML;
-import org.akraino.regional_controller.utils.YAMLtoJSON;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.everit.json.schema.Schema;
 import org.everit.json.schema.ValidationException;
-import org.everit.json.schema.Validator;
-import org.everit.json.schema.loader.SchemaLoader;
 import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
-import org.json.JSONTokener;
 
 public class Blueprint extends BaseBean {
 	// Some standard workflow names
@@ -55,22 +49,37 @@ public class Blueprint extends BaseBean {
 	public static final String WF_DELETE = "delete";
 	public static final String WF_REGEX  = "^[a-zA-Z0-9_]{1,36}$";	// WF names must match this RE
 	public static final String PARENT_TAG = "parent";
+	public static final String WORKFLOW_TAG = "workflow";
 	public static final String HARDWARE_STANZA = "hardware_profile";
 
-	private static final Map<String, String> schema_map = new HashMap<>();
-	static {
-		// Currently only handle version 1.0.0 of the Blueprint schema
-		schema_map.put("1.0.0", "blueprint_schema-1.0.0.json");
+	public static String createBlueprint(JSONObject json) throws WebApplicationException {
+		Blueprint b = validateBlueprint(json);
+		try {
+			DB db = DBFactory.getDB();
+			db.createBlueprint(b);
+			BlueprintHierarchy.getInstance().invalidate();
+			return b.getUuid();
+		} catch (SQLException e1) {
+			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+		}
 	}
 
-	public static String createBlueprint(JSONObject json) throws WebApplicationException {
+	/**
+	 * Check a Blueprint document for correctness, exactly as {@link #createBlueprint(JSONObject)} does,
+	 * without storing it.
+	 * @param json the Blueprint document
+	 * @return the (unsaved) Blueprint
+	 * @throws WebApplicationException (a BadRequestException) describing the first problem found
+	 */
+	public static Blueprint validateBlueprint(JSONObject json) throws WebApplicationException {
 		Logger logger = LogManager.getLogger();
+		BlueprintValidator validator = BlueprintValidator.getInstance();
 		String schema = json.optString(SCHEMA_TAG);
 		if (schema == null || "".equals(schema)) {
 			logger.warn("Missing schema version");
 			throw new BadRequestException("ARC-1016: Missing schema version");
 		}
-		if (!schema_map.keySet().contains(schema)) {
+		if (!validator.isKnownVersion(schema)) {
 			logger.warn("The schema version "+schema+" is not recognized by this software.");
 			throw new BadRequestException("ARC-1024: The schema version "+schema+" is not recognized by this software.");
 		}
@@ -103,21 +112,8 @@ public class Blueprint extends BaseBean {
 
 		// Compare with appropriate JSON schema to validate the rest of the blueprint
 		try {
-			String schemafile = schema_map.get(schema);
-			Object dummyobject = new Blueprint("", "", "", "", "");
-			try (InputStream inputStream = dummyobject.getClass().getClassLoader().getResourceAsStream(schemafile)) {
-				if (inputStream == null) {
-					logger.warn("The schema version "+schema+" is not recognized by this software.");
-					throw new BadRequestException("ARC-1024: The schema version "+schema+" is not recognized by this software.");
-				}
-				JSONObject rawSchema = new JSONObject(new JSONTokener(inputStream));
-				Schema schema2 = SchemaLoader.load(rawSchema);
-				// throws a ValidationException if this object is invalid
-				Validator validator = Validator.builder().build();
-				validator.performValidation(schema2, json);
-			}
-		} catch (IOException ex) {
-			// ignore
+			// throws a ValidationException if this object is invalid
+			validator.validate(schema, json);
 		} catch (ValidationException ex) {
 			logger.warn("Blueprint fails validation.");
 			final StringBuilder sb = new StringBuilder();
@@ -158,13 +154,7 @@ public class Blueprint extends BaseBean {
 				throw new BadRequestException("ARC-1031: "+m);
 			}
 		}
-		try {
-			DB db = DBFactory.getDB();
-			db.createBlueprint(b);
-			return uuid;
-		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
-		}
+		return b;
 	}
 
 	public static Collection<Blueprint> getBlueprints() {
@@ -173,16 +163,48 @@ public class Blueprint extends BaseBean {
 	}
 
 	public static Blueprint getBlueprintByUUID(final String uuid) {
-		Map<String, Blueprint> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(Blueprint.class, uuid, db::getBlueprint);
+	}
+
+	/**
+	 * Look up a Blueprint that is about to be modified, reading it from the DB rather than any cache (see
+	 * {@link RequestContext#reload}).
+	 */
+	public static Blueprint getBlueprintForUpdate(final String uuid) {
+		DB db = DBFactory.getUncachedDB();
+		return RequestContext.reload(Blueprint.class, uuid, db::getBlueprint);
+	}
+
+	/**
+	 * Get many Blueprints at once, with (at most) one DB query.
+	 * @param uuids the UUIDs of the Blueprints
+	 * @return the Blueprints found, in the order of uuids
+	 */
+	public static List<Blueprint> getBlueprintsByUUID(final Collection<String> uuids) {
+		DB db = DBFactory.getDB();
+		return RequestContext.lookupAll(Blueprint.class, uuids, db::getBlueprints);
+	}
+
+	/**
+	 * Get one page of the Blueprints that match a query.
+	 * @param q the query
+	 * @return the Blueprints, in UUID order
+	 */
+	public static List<Blueprint> getBlueprints(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getBlueprints(q);
 	}
 
 	public void updateBlueprint() throws WebApplicationException {
 		try {
 			DB db = DBFactory.getDB();
 			db.updateBlueprint(this);
+			RequestContext.replace(Blueprint.class, this);
+			BlueprintHierarchy.getInstance().invalidate();
 		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+			RequestContext.forget(Blueprint.class, getUuid());
+			throw updateFailed(e1);
 		}
 	}
 
@@ -203,19 +225,7 @@ public class Blueprint extends BaseBean {
 	 * @return true if it is a descendant
 	 */
 	public static boolean isChildBlueprint(String child, String parent) {
-		Logger logger = LogManager.getLogger();
-		logger.info("child="+child + " parent="+parent);
-		Blueprint b = getBlueprintByUUID(child);
-		logger.info("getBlueprintByUUID returns "+b);
-		if (b == null)
-			return false;
-		String parent_id = b.getParent();
-		logger.info("parent_id is "+parent_id);
-		if (parent_id == null)
-			return false;
-		if (parent_id.equalsIgnoreCase(parent))
-			return true;
-		return isChildBlueprint(parent_id, parent);
+		return BlueprintHierarchy.getInstance().isDescendant(child, parent);
 	}
 
 	private final String version;
@@ -233,9 +243,7 @@ public class Blueprint extends BaseBean {
 
 	public String getParent() {
 		if (yaml != null) {
-			YAMLtoJSON y = new YAMLtoJSON(yaml);
-			JSONObject jo = y.toJSON();
-			String parent = jo.optString(PARENT_TAG);
+			String parent = getDocument(yaml).getString(PARENT_TAG);
 			if (parent != null && parent.length() > 0)
 				return parent;
 		}
@@ -248,6 +256,7 @@ public class Blueprint extends BaseBean {
 
 	public void setYaml(String j) {
 		this.yaml = j;
+		clearDocument();
 	}
 
 	/**
@@ -255,14 +264,7 @@ public class Blueprint extends BaseBean {
 	 * @return the collection (which may be empty).
 	 */
 	public List<POD> getPODs() {
-		List<POD> list = new ArrayList<>();
-		String uuid = getUuid();
-		for (POD p : POD.getPods()) {
-			if (p.getBlueprint().equals(uuid)) {
-				list.add(p);
-			}
-		}
-		return list;
+		return POD.getPods(ListQuery.where(POD.BLUEPRINT_TAG, getUuid()));
 	}
 
 	/**
@@ -270,21 +272,7 @@ public class Blueprint extends BaseBean {
 	 * @return the set of workflow names
 	 */
 	public Set<String> getWorkFlowNames() {
-		Set<String> set = new HashSet<>();
-		String parent = getParent();
-		if (parent != null) {
-			Blueprint parentbp = getBlueprintByUUID(parent);
-			set = parentbp.getWorkFlowNames();
-		}
-		if (yaml != null) {
-			YAMLtoJSON y = new YAMLtoJSON(yaml);
-			JSONObject jo = y.toJSON();
-			jo = jo.optJSONObject("workflow");
-			if (jo != null) {
-				set.addAll(jo.keySet());
-			}
-		}
-		return set;
+		return new HashSet<>(BlueprintHierarchy.getInstance().resolve(this).getWorkFlowNames());
 	}
 
 	/**
@@ -298,448 +286,56 @@ public class Blueprint extends BaseBean {
 	 * { uuid: <UUID> [ , min: <N> ] [,  max: <N> ] }	# match the UUID of a HW profile
 	 * { name: <RE> [ , min: <N> ] [,  max: <N> ] }		# match the name of a HW profile with a regex
 	 *
+	 * The rule is compiled once per Blueprint (see {@link HardwareRule}).
+	 *
 	 * @param e the Edgesite to test against.
 	 * @return true if compatible, false otherwise
 	 */
 	public List<String> isCompatibleHardware(Edgesite e) {
-		JSONObject jo = getObjectStanza(HARDWARE_STANZA);
-		if (jo == null)
+		HardwareRule rule = BlueprintHierarchy.getInstance().resolve(this).getHardwareRule();
+		if (rule == null)
 			return new ArrayList<>();
-		return matchRules(jo, e);
-	}
-	private List<String> matchRules(JSONObject rule, Edgesite es) {
-		JSONArray ja = rule.optJSONArray("and");
-		if (ja != null)
-			return matchAndRule(ja, es);
-		ja = rule.optJSONArray("or");
-		if (ja != null)
-			return matchOrRule(ja, es);
-
-		List<String> errors = new ArrayList<>();
-		String uuid = rule.optString("uuid");
-		String name = rule.optString("name");
-		int    min  = rule.optInt("min");
-		int    max  = rule.optInt("max");
-		if (min == 0)
-			min = 1;
-		if (max == 0)
-			max = 1000000;
-		if (!"".equals(uuid) && !"".equals(name)) {
-			errors.add("Bad rule: uuid and name cannot be used together");
-		} else if (!"".equals(uuid)) {
-			String s = matchUUIDRule(es, uuid, min, max);
-			if (s != null)
-				errors.add(s);
-		} else if (!"".equals(name)) {
-			String s = matchNameRule(es, name, min, max);
-			if (s != null)
-				errors.add(s);
-		} else {
-			errors.add("Bad rule: no and, or, uuid, or name");
-		}
-		return errors;
-	}
-	private String matchUUIDRule(Edgesite es, String uuid, int min, int max) {
-		int matches = 0;
-		for (String nuuid : es.getNodes()) {
-			Node n = Node.getNodeByUUID(nuuid);
-			Hardware h = Hardware.getHardwareByUUID(n.getHardware());
-			if (h.getUuid().equalsIgnoreCase(uuid)) {
-				matches++;
-			}
-		}
-		if (matches < min)
-			return "The number of nodes matching the hardware UUID of "+uuid+" is less than the minimum of "+min;
-		if (matches > max)
-			return "The number of nodes matching the hardware UUID of "+uuid+" is greater than the maximum of "+max;
-		return null;
-	}
-	private String matchNameRule(Edgesite es, String name, int min, int max) {
-		int matches = 0;
-		for (String nuuid : es.getNodes()) {
-			Node n = Node.getNodeByUUID(nuuid);
-			Hardware h = Hardware.getHardwareByUUID(n.getHardware());
-			String hname = h.getName();
-			if (hname.matches(name)) {
-				matches++;
-			}
-		}
-		if (matches < min)
-			return "The number of nodes matching the hardware name RE of "+name+" is less than the minimum of "+min;
-		if (matches > max)
-			return "The number of nodes matching the hardware name RE of "+name+" is greater than the maximum of "+max;
-		return null;
-	}
-	private List<String> matchAndRule(JSONArray ja, Edgesite e) {
-		List<String> errors = new ArrayList<>();
-		for (int i = 0; i < ja.length(); i++) {
-			JSONObject jo = ja.getJSONObject(i);
-			if (jo != null) {
-				errors.addAll(matchRules(jo, e));
-			}
-		}
-		return errors;
-	}
-	private List<String> matchOrRule(JSONArray ja, Edgesite e) {
-		List<String> errors = new ArrayList<>();
-		for (int i = 0; i < ja.length(); i++) {
-			JSONObject jo = ja.getJSONObject(i);
-			if (jo != null) {
-				List<String> z = matchRules(jo, e);
-				if (z.isEmpty())
-					return z;	// One rule succeeded, so the "or" succeeds
-				errors.addAll(z);
-			}
-		}
-		return errors;
+		return rule.match(HardwareRule.Inventory.forEdgesite(e));
 	}
 
 	/**
 	 * Verify if the YAML provided by the user (from a POST) is compatible with the the input_schema in the workflow
-	 * section of the blueprint specified by <i>wf</i>.
+	 * section of the blueprint specified by <i>wf</i>.  The input_schema is compiled once per Blueprint and workflow
+	 * (see {@link InputSchema}).
 	 * @param wf the workflow in the blueprint to check
 	 * @param jo the input YAML, converted to JSON
 	 * @return
 	 */
 	public List<String> isCompatibleYAML(String wf, JSONObject input) {
-		List<String> errors = new ArrayList<>();
-		JSONObject schema = getObjectStanza("workflow/"+wf+"/input_schema");
-		recursiveCompare("", schema, input, errors);
-		return errors;
-	}
-	private void recursiveCompare(String prefix, JSONObject schema, JSONObject input, List<String> errors) {
-		if (schema == null)
-			schema = new JSONObject();
-		if (input == null)
-			input = new JSONObject();
-		for (String key : schema.keySet()) {
-			JSONObject j2 = schema.getJSONObject(key);
-			String type = j2.optString("type");
-			if (type == null || "".equals(type)) {
-				errors.add("Bad input_schema; missing type for key: "+prefix+key);
-			} else {
-				switch (type) {
-				case "object":
-					try {
-						JSONObject props = j2.getJSONObject("properties");
-						try {
-							JSONObject v = input.getJSONObject(key);
-							recursiveCompare(prefix+key+".", props, v, errors);
-						} catch (JSONException x) {
-							errors.add("Missing required object: "+prefix+key);
-						}
-					} catch (JSONException x) {
-						errors.add("Bad input_schema; missing properties for key: "+prefix+key);
-					}
-					break;
-				case "array":
-					try {
-						JSONObject items = j2.getJSONObject("items");
-						String type2 = items.optString("type");
-						if (type == null || "".equals(type)) {
-							errors.add("Bad input_schema; missing type for key: "+prefix+key+".items");
-						} else {
-							try {
-								JSONArray a = input.getJSONArray(key);
-								for (int i = 0; i < a.length(); i++) {
-									String fullkey = String.format("%s%s[%d]", prefix, key, i);
-									switch (type2) {
-									case "object":
-										try {
-											JSONObject props = items.getJSONObject("properties");
-											try {
-												JSONObject v = a.getJSONObject(i);
-												recursiveCompare(fullkey+".", props, v, errors);
-											} catch (JSONException x) {
-												errors.add("Missing required object: "+fullkey);
-											}
-										} catch (JSONException x) {
-											errors.add("Bad input_schema; missing properties for key: "+prefix+key);
-										}
-										break;
-									case "array":
-										errors.add("Arrays of arrays not allowed for key: "+prefix+key);
-										break;
-									case "string":
-									case "ipaddress":
-									case "ipv4":
-									case "ipv6":
-									case "cidr":
-									case "cidrv4":
-									case "cidrv6":
-										try {
-											String v = a.getString(i);
-											switch (type2) {
-											case "ipaddress":
-												if (!isValidIPAddress(v)) {
-													errors.add("The value \""+v+"\" for key "+fullkey+" is not a valid IP address.");
-												}
-												break;
-											case "ipv4":
-												if (!isValidIPV4Address(v)) {
-													errors.add("The value \""+v+"\" for key "+fullkey+" is not a valid IPV4 address.");
-												}
-												break;
-											case "ipv6":
-												if (!isValidIPV6Address(v)) {
-													errors.add("The value \""+v+"\" for key "+fullkey+" is not a valid IPV6 address.");
-												}
-												break;
-											case "cidr":
-												if (!isValidCIDR(v)) {
-													errors.add("The value \""+v+"\" for key "+fullkey+" is not a valid CIDR.");
-												}
-												break;
-											case "cidrv4":
-												if (!isValidV4CIDR(v)) {
-													errors.add("The value \""+v+"\" for key "+fullkey+" is not a valid IPV4 CIDR.");
-												}
-												break;
-											case "cidrv6":
-												if (!isValidV6CIDR(v)) {
-													errors.add("The value \""+v+"\" for key "+fullkey+" is not a valid IPV6 CIDR.");
-												}
-												break;
-											}
-										} catch (JSONException x) {
-											errors.add("Missing required value of type "+type2+": "+fullkey);
-										}
-										break;
-									case "integer":
-										try {
-											a.getInt(i);
-										} catch (JSONException x) {
-											errors.add("Missing or invalid required value of type integer: "+fullkey);
-										}
-										break;
-									}
-								}
-							} catch (JSONException x) {
-								errors.add("Missing required list: "+prefix+key);
-							}
-						}
-					} catch (JSONException x) {
-						errors.add("Bad input_schema; missing items for key: "+prefix+key);
-					}
-					break;
-				case "string":
-					validateString(input, prefix, key, errors);
-					break;
-				case "ipaddress":
-					validateIPaddress(input, prefix, key, errors);
-					break;
-				case "ipv4":
-					validateIPv4address(input, prefix, key, errors);
-					break;
-				case "ipv6":
-					validateIPv6address(input, prefix, key, errors);
-					break;
-				case "cidr":
-					validateCIDR(input, prefix, key, errors);
-					break;
-				case "cidrv4":
-					validateV4CIDR(input, prefix, key, errors);
-					break;
-				case "cidrv6":
-					validateV6CIDR(input, prefix, key, errors);
-					break;
-				case "integer":
-					validateInteger(input, prefix, key, errors);
-					break;
-				default:
-					errors.add("Unknown schema type : "+type);
-					break;
-				}
-			}
-		}
-	}
-	private void validateString(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			input.getString(key);
-		} catch (JSONException x) {
-			errors.add("Missing required value of type string: "+prefix+key);
-		}
-	}
-	private void validateIPaddress(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			String v = input.getString(key);
-			if (!isValidIPAddress(v)) {
-				errors.add("The value \""+v+"\" for key "+prefix+key+" is not a valid IP address.");
-			}
-		} catch (JSONException x) {
-			errors.add("Missing required value of type ipaddress: "+prefix+key);
-		}
-	}
-	private void validateIPv4address(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			String v = input.getString(key);
-			if (!isValidIPV4Address(v)) {
-				errors.add("The value \""+v+"\" for key "+prefix+key+" is not a valid IPV4 address.");
-			}
-		} catch (JSONException x) {
-			errors.add("Missing required value of type ipv4: "+prefix+key);
-		}
-	}
-	private void validateIPv6address(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			String v = input.getString(key);
-			if (!isValidIPV6Address(v)) {
-				errors.add("The value \""+v+"\" for key "+prefix+key+" is not a valid IPV6 address.");
-			}
-		} catch (JSONException x) {
-			errors.add("Missing required value of type ipv6: "+prefix+key);
-		}
-	}
-	private void validateCIDR(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			String v = input.getString(key);
-			if (!isValidCIDR(v)) {
-				errors.add("The value \""+v+"\" for key "+prefix+key+" is not a valid CIDR.");
-			}
-		} catch (JSONException x) {
-			errors.add("Missing required value of type cidr: "+prefix+key);
-		}
-	}
-	private void validateV4CIDR(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			String v = input.getString(key);
-			if (!isValidV4CIDR(v)) {
-				errors.add("The value \""+v+"\" for key "+prefix+key+" is not a valid IPV4 CIDR.");
-			}
-		} catch (JSONException x) {
-			errors.add("Missing required value of type cidrv4: "+prefix+key);
-		}
-	}
-	private void validateV6CIDR(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			String v = input.getString(key);
-			if (!isValidV6CIDR(v)) {
-				errors.add("The value \""+v+"\" for key "+prefix+key+" is not a valid IPV6 CIDR.");
-			}
-		} catch (JSONException x) {
-			errors.add("Missing required value of type cidrv6: "+prefix+key);
-		}
-	}
-	private void validateInteger(JSONObject input, String prefix, String key, List<String> errors) {
-		try {
-			input.getInt(key);
-		} catch (JSONException x) {
-			errors.add("Missing or invalid required value of type integer: "+prefix+key);
-		}
-	}
-	private boolean isValidIPV4Address(final String ip) {
-		String[] octets = ip.split("\\.");
-		if (octets == null || octets.length != 4)
-			return false;
-		for (String octet : octets) {
-			int n = Integer.parseInt(octet);
-			if (n < 0 || n > 255)
-				return false;
-		}
-		return true;
-	}
-	private boolean isValidIPV6Address(final String ip) {
-		// Special check for loopback address
-		if (! ip.equals("::1")) {
-			String[] hextets = ip.split(":");
-			if (hextets == null || hextets.length > 8)
-				return false;
-			boolean expect_empty = hextets.length != 8;
-			for (String hextet : hextets) {
-				if (hextet.length() == 0) {
-					if (expect_empty) {
-						expect_empty = false;
-					} else {
-						return false;
-					}
-				} else {
-					if (!hextet.matches("[0-9a-fA-F]{1,4}")) {
-						return false;
-					}
-				}
-			}
-		}
-		return true;
-	}
-	private boolean isValidIPAddress(final String ip) {
-		return isValidIPV4Address(ip) || isValidIPV6Address(ip);
-	}
-	private boolean isValidV4CIDR(final String cidr) {
-		String[] parts = cidr.split("/");
-		if (parts.length == 2) {
-			try {
-				int n = Integer.parseInt(parts[1]);
-				if (n >= 0 && n <= 32) {
-					return isValidIPV4Address(parts[0]);
-				}
-			} catch (NumberFormatException x) {
-				// fall thru
-			}
-		}
-		return false;
-	}
-	private boolean isValidV6CIDR(final String cidr) {
-		String[] parts = cidr.split("/");
-		if (parts.length == 2) {
-			try {
-				int n = Integer.parseInt(parts[1]);
-				if (n >= 0 && n <= 128) {
-					return isValidIPV6Address(parts[0]);
-				}
-			} catch (NumberFormatException x) {
-				// fall thru
-			}
-		}
-		return false;
-	}
-	private boolean isValidCIDR(final String cidr) {
-		return isValidV4CIDR(cidr) || isValidV6CIDR(cidr);
+		return BlueprintHierarchy.getInstance().resolve(this).getInputSchema(wf).validate(input);
 	}
 
+	/**
+	 * Get a mapping from this Blueprint, or the nearest ancestor that defines one at path.
+	 * @param path the '/' separated path to the stanza
+	 * @return a copy of the stanza, or null if there is none
+	 */
 	public JSONObject getObjectStanza(final String path) {
-		String[] pp = path.split("/");
-		JSONObject jo = getStanzaCommon(pp);
-		if (jo != null) {
-			jo = jo.optJSONObject(pp[pp.length-1]);
-			if (jo != null)
-				return jo;
-		}
-		String parent = getParent();
-		if (parent != null) {
-			Blueprint parentbp = getBlueprintByUUID(parent);
-			return parentbp.getObjectStanza(path);
-		}
-		return null;
+		return BlueprintHierarchy.getInstance().resolve(this).getObjectStanza(path);
 	}
 
+	/**
+	 * Get a sequence from this Blueprint, or the nearest ancestor that defines one at path.
+	 * @param path the '/' separated path to the stanza
+	 * @return a copy of the stanza, or null if there is none
+	 */
 	public JSONArray getArrayStanza(final String path) {
-		String[] pp = path.split("/");
-		JSONObject jo = getStanzaCommon(pp);
-		JSONArray ja = null;
-		if (jo != null) {
-			ja = jo.optJSONArray(pp[pp.length-1]);
-			if (ja != null)
-				return ja;
-		}
-		String parent = getParent();
-		if (parent != null) {
-			Blueprint parentbp = getBlueprintByUUID(parent);
-			return parentbp.getArrayStanza(path);
-		}
-		return null;
+		return BlueprintHierarchy.getInstance().resolve(this).getArrayStanza(path);
 	}
 
-	private JSONObject getStanzaCommon(String[] pp) {
-		if (yaml == null)
-			return null;
-		YAMLtoJSON y = new YAMLtoJSON(yaml);
-		JSONObject jo = y.toJSON();
-		for (int i = 0; i < pp.length-1; i++) {
-			jo = jo.optJSONObject(pp[i]);
-			if (jo == null)
-				return null;
+	@Override
+	public Object getFilterValue(final String filter) {
+		switch (filter) {
+		case VERSION_TAG:
+			return version;
+		default:
+			return super.getFilterValue(filter);
 		}
-		return jo;
 	}
 
 	@Override
@@ -747,7 +343,7 @@ public class Blueprint extends BaseBean {
 		JSONObject jo = super.toJSON();
 		jo.put("version",  version);
 		if (yaml != null && !"".equals(yaml)) {
-			jo.put("yaml", new YAMLtoJSON(yaml).toJSON());
+			jo.put("yaml", getDocument(yaml).toJSON());
 		}
 		return jo;
 	}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.utils.YAMLDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Resolves Blueprint inheritance.  For every Blueprint, the chain of parsed documents from the Blueprint
+ * up through all of its ancestors, the set of ancestor UUIDs, and the set of workflow names are computed
+ * once, from a single read of the Blueprint table.  A stanza lookup then searches the chain in memory
+ * (a stanza in a child overrides the same stanza in its parent), and remembers which level answered.
+ * Parent loops are detected and broken, with a warning.
+ *
+ * The hierarchy is rebuilt after a Blueprint is created, modified or deleted on this server, when an
+ * unknown Blueprint is asked for (at most every few seconds), and otherwise every minute, in order to
+ * pick up changes made by other API servers.
+ */
+public class BlueprintHierarchy {
+	private static final long RELOAD_MIN       = 5000L;		// ms
+	private static final long REFRESH_INTERVAL = 60000L;	// ms
+	private static final Logger logger = LogManager.getLogger();
+
+	private static BlueprintHierarchy singleton = null;
+
+	public static synchronized BlueprintHierarchy getInstance() {
+		if (singleton == null) {
+			singleton = new BlueprintHierarchy();
+		}
+		return singleton;
+	}
+
+	private volatile Map<String, Effective> index;
+	private volatile long loaded;
+
+	private BlueprintHierarchy() {
+		this.index  = null;
+		this.loaded = 0;
+	}
+
+	/**
+	 * Discard the hierarchy, so that it will be rebuilt on next use.
+	 */
+	public void invalidate() {
+		index = null;
+	}
+
+	/**
+	 * Check if one Blueprint is a descendant of another.
+	 * @param child the child UUID
+	 * @param parent the parent UUID
+	 * @return true if parent is an ancestor of child
+	 */
+	public boolean isDescendant(final String child, final String parent) {
+		if (child == null || parent == null) {
+			return false;
+		}
+		Effective e = lookup(child.toLowerCase());
+		return e != null && e.ancestors.contains(parent.toLowerCase());
+	}
+
+	/**
+	 * Get the resolved form of a Blueprint.  A Blueprint that is not (yet) in the DB, or whose YAML
+	 * has been changed, is resolved on the fly against the hierarchy of its parents.
+	 */
+	Effective resolve(final Blueprint b) {
+		YAMLDocument doc = b.getDocument(b.getYaml());
+		Effective e = getIndex().get(b.getUuid());
+		if (e != null && e.chain.get(0).isParsedFrom(b.getYaml())) {
+			return e;
+		}
+		String parent = parentOf(doc);
+		Effective pe = (parent == null) ? null : lookup(parent);
+		return new Effective(b.getUuid(), doc, pe);
+	}
+
+	private Effective lookup(final String uuid) {
+		Effective e = getIndex().get(uuid);
+		if (e == null && System.currentTimeMillis() - loaded > RELOAD_MIN) {
+			// Perhaps it was created on another API server
+			e = reload().get(uuid);
+		}
+		return e;
+	}
+
+	private synchronized Map<String, Effective> reload() {
+		// Another thread may have reloaded the index while this one was waiting for the lock
+		Map<String, Effective> m = index;
+		if (m == null || System.currentTimeMillis() - loaded > RELOAD_MIN) {
+			m = build();
+			index  = m;
+			loaded = System.currentTimeMillis();
+		}
+		return m;
+	}
+
+	private Map<String, Effective> getIndex() {
+		Map<String, Effective> m = index;
+		if (m == null || System.currentTimeMillis() - loaded > REFRESH_INTERVAL) {
+			synchronized (this) {
+				m = index;
+				if (m == null || System.currentTimeMillis() - loaded > REFRESH_INTERVAL) {
+					m = build();
+					index  = m;
+					loaded = System.currentTimeMillis();
+				}
+			}
+		}
+		return m;
+	}
+
+	private Map<String, Effective> build() {
+		Map<String, Blueprint> all = new HashMap<>();
+		for (Blueprint b : DBFactory.getDB().getBlueprints()) {
+			all.put(b.getUuid(), b);
+		}
+		Map<String, Effective> m = new HashMap<>();
+		for (String uuid : all.keySet()) {
+			build(uuid, all, m, new LinkedHashSet<>());
+		}
+		logger.debug("Blueprint hierarchy built, {} blueprints", m.size());
+		return Collections.unmodifiableMap(m);
+	}
+
+	private Effective build(final String uuid, final Map<String, Blueprint> all, final Map<String, Effective> m, final Set<String> visiting) {
+		Effective e = m.get(uuid);
+		if (e != null) {
+			return e;
+		}
+		Blueprint b = all.get(uuid);
+		if (b == null) {
+			return null;
+		}
+		visiting.add(uuid);
+		YAMLDocument doc = b.getDocument(b.getYaml());
+		String parent = parentOf(doc);
+		Effective pe = null;
+		if (parent != null) {
+			if (visiting.contains(parent)) {
+				logger.warn("Blueprint {} has a parent loop through {}; ignoring its parent", uuid, parent);
+			} else {
+				pe = build(parent, all, m, visiting);
+			}
+		}
+		visiting.remove(uuid);
+		e = new Effective(uuid, doc, pe);
+		m.put(uuid, e);
+		return e;
+	}
+
+	private static String parentOf(final YAMLDocument doc) {
+		String parent = doc.getString(Blueprint.PARENT_TAG);
+		return (parent == null || parent.isEmpty()) ? null : parent.toLowerCase();
+	}
+
+	/**
+	 * The resolved (effective) form of one Blueprint.
+	 */
+	static class Effective {
+		private static final Integer NONE = -1;
+
+		private final String uuid;
+		private final List<YAMLDocument> chain;		// this Blueprint's document, then its ancestors'
+		private final Set<String> ancestors;
+		private final Set<String> workflows;
+		private final Map<String, Integer> objects;	// path -> index in chain of the answering document
+		private final Map<String, Integer> arrays;
+		private final Map<String, InputSchema> schemas;	// workflow name -> compiled input_schema
+		private HardwareRule hardware_rule;
+		private boolean hardware_compiled;
+
+		private Effective(final String uuid, final YAMLDocument doc, final Effective parent) {
+			List<YAMLDocument> c = new ArrayList<>();
+			Set<String> a = new HashSet<>();
+			Set<String> w = new HashSet<>();
+			c.add(doc);
+			if (parent != null) {
+				c.addAll(parent.chain);
+				a.addAll(parent.ancestors);
+				a.add(parent.uuid);
+				w.addAll(parent.workflows);
+			}
+			Map<String, Object> wf = doc.getMap(Blueprint.WORKFLOW_TAG);
+			if (wf != null) {
+				w.addAll(wf.keySet());
+			}
+			if (a.contains(uuid)) {
+				// Only possible for a Blueprint resolved on the fly that closes a loop
+				logger.warn("Blueprint {} is its own ancestor", uuid);
+			}
+			this.uuid      = uuid;
+			this.chain     = Collections.unmodifiableList(c);
+			this.ancestors = Collections.unmodifiableSet(a);
+			this.workflows = Collections.unmodifiableSet(w);
+			this.objects   = new ConcurrentHashMap<>();
+			this.arrays    = new ConcurrentHashMap<>();
+			this.schemas   = new ConcurrentHashMap<>();
+		}
+
+		/**
+		 * @return the compiled hardware_profile stanza, or null if there is none
+		 */
+		synchronized HardwareRule getHardwareRule() {
+			if (!hardware_compiled) {
+				JSONObject jo = getObjectStanza(Blueprint.HARDWARE_STANZA);
+				hardware_rule = (jo == null) ? null : HardwareRule.compile(jo);
+				hardware_compiled = true;
+			}
+			return hardware_rule;
+		}
+
+		/**
+		 * @return the compiled input_schema of a workflow
+		 */
+		InputSchema getInputSchema(final String wf) {
+			return schemas.computeIfAbsent(wf, k -> InputSchema.compile(getObjectStanza(Blueprint.WORKFLOW_TAG+"/"+k+"/input_schema")));
+		}
+
+		Set<String> getWorkFlowNames() {
+			return workflows;
+		}
+
+		JSONObject getObjectStanza(final String path) {
+			final String[] pp = path.split("/");
+			int ix = objects.computeIfAbsent(path, k -> find(pp, true));
+			return (ix < 0) ? null : chain.get(ix).getJSONObject(pp);
+		}
+
+		JSONArray getArrayStanza(final String path) {
+			final String[] pp = path.split("/");
+			int ix = arrays.computeIfAbsent(path, k -> find(pp, false));
+			return (ix < 0) ? null : chain.get(ix).getJSONArray(pp);
+		}
+
+		private Integer find(final String[] pp, final boolean object) {
+			for (int i = 0; i < chain.size(); i++) {
+				Object node = chain.get(i).get(pp);
+				if (object ? (node instanceof Map) : (node instanceof List)) {
+					return i;
+				}
+			}
+			return NONE;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.akraino.regional_controller.db.DBFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.everit.json.schema.Schema;
+import org.everit.json.schema.ValidationException;
+import org.everit.json.schema.Validator;
+import org.everit.json.schema.loader.SchemaLoader;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * The BlueprintValidator holds the Blueprint JSON schemas, each loaded and compiled once (when the API
+ * server starts), and a small, bounded pool of threads used to validate many Blueprints at once.
+ * The size of the pool and the maximum number of Blueprints in one request are set by the
+ * api.validate.threads and api.validate.max_documents properties.
+ */
+public class BlueprintValidator {
+	public static final String DEFAULT_THREADS       = "4";
+	public static final String DEFAULT_MAX_DOCUMENTS = "200";
+
+	private static final Logger logger = LogManager.getLogger();
+	private static final Map<String, String> schema_map = new HashMap<>();
+	static {
+		// Currently only handle version 1.0.0 of the Blueprint schema
+		schema_map.put("1.0.0", "blueprint_schema-1.0.0.json");
+	}
+
+	private static BlueprintValidator singleton = null;
+
+	public static synchronized BlueprintValidator getInstance() {
+		if (singleton == null) {
+			singleton = new BlueprintValidator();
+		}
+		return singleton;
+	}
+
+	/**
+	 * Stop the validation threads (when the API server is shutting down).
+	 */
+	public static synchronized void shutdown() {
+		if (singleton != null) {
+			singleton.executor.shutdownNow();
+			singleton = null;
+		}
+	}
+
+	private final Map<String, Schema> schemas;
+	private final Validator validator;
+	private final ThreadPoolExecutor executor;
+	private final int max_documents;
+
+	private BlueprintValidator() {
+		Properties props = new Properties();
+		InputStream is = null;
+		try {
+			is = getClass().getClassLoader().getResourceAsStream(DBFactory.PROPERTIES_FILE);
+			props.load(is);
+		} catch (IOException e) {
+			logger.error("Cannot read api.properties!");
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		int threads        = Integer.parseInt(props.getProperty("api.validate.threads", DEFAULT_THREADS).trim());
+		this.max_documents = Integer.parseInt(props.getProperty("api.validate.max_documents", DEFAULT_MAX_DOCUMENTS).trim());
+		this.schemas       = Collections.unmodifiableMap(loadSchemas());
+		this.validator     = Validator.builder().build();
+		this.executor      = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(max_documents), new ValidatorThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+		logger.info("BlueprintValidator: schema versions {}, {} threads", schemas.keySet(), threads);
+	}
+
+	private Map<String, Schema> loadSchemas() {
+		Map<String, Schema> map = new HashMap<>();
+		for (Map.Entry<String, String> e : schema_map.entrySet()) {
+			try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(e.getValue())) {
+				if (inputStream == null) {
+					logger.error("Cannot find the Blueprint schema "+e.getValue());
+				} else {
+					JSONObject rawSchema = new JSONObject(new JSONTokener(inputStream));
+					map.put(e.getKey(), SchemaLoader.load(rawSchema));
+				}
+			} catch (IOException | RuntimeException ex) {
+				logger.error("Cannot load the Blueprint schema "+e.getValue()+": "+ex);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * @return true if the Blueprint schema version is recognized by this software
+	 */
+	public boolean isKnownVersion(final String version) {
+		return schemas.containsKey(version);
+	}
+
+	/**
+	 * @return the maximum number of Blueprints that may be validated in one request
+	 */
+	public int getMaxDocuments() {
+		return max_documents;
+	}
+
+	/**
+	 * Validate a Blueprint document against a version of the Blueprint schema.
+	 * @param version the schema version (which must be known)
+	 * @param json the Blueprint
+	 * @throws ValidationException if the Blueprint is not valid
+	 */
+	public void validate(final String version, final JSONObject json) throws ValidationException {
+		validator.performValidation(schemas.get(version), json);
+	}
+
+	/**
+	 * Validate several Blueprint documents in parallel (see {@link Blueprint#validateBlueprint(JSONObject)}).
+	 * @param docs the Blueprints
+	 * @return one result per Blueprint, in the same order, each with index, name and valid fields,
+	 * and an error field if the Blueprint is not valid
+	 */
+	public List<JSONObject> validateAll(final List<JSONObject> docs) {
+		List<Future<JSONObject>> futures = new ArrayList<>(docs.size());
+		for (int i = 0; i < docs.size(); i++) {
+			final int index = i;
+			final JSONObject doc = docs.get(i);
+			futures.add(executor.submit(() -> validateOne(index, doc)));
+		}
+		List<JSONObject> results = new ArrayList<>(docs.size());
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				results.add(futures.get(i).get());
+			} catch (ExecutionException e) {
+				results.add(result(i, docs.get(i), "ARC-9999: "+e.getCause()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				results.add(result(i, docs.get(i), "ARC-9999: interrupted"));
+			}
+		}
+		return results;
+	}
+
+	private JSONObject validateOne(final int index, final JSONObject doc) {
+		if (doc == null) {
+			return result(index, null, "ARC-1030: not a JSON object");
+		}
+		try {
+			Blueprint.validateBlueprint(doc);
+			return result(index, doc, null);
+		} catch (WebApplicationException e) {
+			return result(index, doc, e.getMessage());
+		}
+	}
+
+	private static JSONObject result(final int index, final JSONObject doc, final String error) {
+		JSONObject jo = new JSONObject();
+		jo.put("index", index);
+		if (doc != null) {
+			jo.put(BaseBean.NAME_TAG, doc.optString(BaseBean.NAME_TAG));
+		}
+		jo.put("valid", error == null);
+		if (error != null) {
+			jo.put("error", error);
+		}
+		return jo;
+	}
+
+	private static class ValidatorThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "BlueprintValidator-"+count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -20,6 +20,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +33,8 @@ import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
@@ -41,6 +44,8 @@ public class Edgesite extends BaseBean {
 	private static final Logger logger = LogManager.getLogger();
 	public static final String NODES_TAG   = "nodes";
 	public static final String REGIONS_TAG = "regions";
+	public static final String REGION_FILTER = "region";	// list filters: Edgesites in a Region, or using a Node
+	public static final String NODE_FILTER   = "node";
 
 	public static String createEdgesite(JSONObject json) throws WebApplicationException {
 		String n = json.optString(NAME_TAG);
@@ -54,26 +59,7 @@ public class Edgesite extends BaseBean {
 		}
 
 		// Make sure all of the Nodes are valid and not in use
-		JSONArray nodes = json.optJSONArray(NODES_TAG);
-		if (nodes == null || nodes.length() == 0) {
-			logger.warn("No nodes listed in JSON");
-			throw new BadRequestException("ARC-1019: No nodes listed in JSON");
-		}
-		Set<String> nset = new TreeSet<>();
-		for (int i = 0; i < nodes.length(); i++) {
-			String nodeid = nodes.getString(i);
-			Node node = Node.getNodeByUUID(nodeid);
-			if (node == null) {
-				logger.warn("Invalid Node UUID="+nodeid);
-				throw new BadRequestException("ARC-1003: Invalid Node UUID "+nodeid);
-			}
-			Edgesite es = node.getEdgesite();
-			if (es != null) {
-				logger.warn("Node is already a member of EdgeSite "+es.getUuid());
-				throw new BadRequestException("ARC-1020: Node is already a member of EdgeSite "+es.getUuid());
-			}
-			nset.add(nodeid);
-		}
+		Set<String> nset = checkNodes(json.optJSONArray(NODES_TAG), null);
 
 		// Make sure all regions are valid
 		JSONArray regions = json.optJSONArray(REGIONS_TAG);
@@ -117,6 +103,44 @@ public class Edgesite extends BaseBean {
 		}
 	}
 
+	/**
+	 * Check the Nodes listed for an Edgesite: each must exist, and must not be a member of another
+	 * Edgesite.  The Nodes are read with one DB query, and the Edgesites using them with another.
+	 * @param nodes the UUIDs of the Nodes
+	 * @param self the UUID of the Edgesite being modified, or null if it is being created
+	 * @return the UUIDs of the Nodes
+	 * @throws BadRequestException if there are no Nodes, or one is invalid or already in use
+	 */
+	public static Set<String> checkNodes(final JSONArray nodes, final String self) throws BadRequestException {
+		if (nodes == null || nodes.length() == 0) {
+			logger.warn("No nodes listed in JSON");
+			throw new BadRequestException("ARC-1019: No nodes listed in JSON");
+		}
+		List<String> nlist = new ArrayList<>();
+		for (int i = 0; i < nodes.length(); i++) {
+			nlist.add(nodes.getString(i));
+		}
+		Set<String> found = new HashSet<>();
+		for (Node node : Node.getNodesByUUID(nlist)) {
+			found.add(node.getUuid().toLowerCase());
+		}
+		for (String nodeid : nlist) {
+			if (!found.contains(nodeid.toLowerCase())) {
+				logger.warn("Invalid Node UUID="+nodeid);
+				throw new BadRequestException("ARC-1003: Invalid Node UUID "+nodeid);
+			}
+		}
+		ListQuery q = new ListQuery();
+		q.addFilter(NODE_FILTER, nlist);
+		for (Edgesite es : getEdgesites(q)) {
+			if (!es.getUuid().equals(self)) {
+				logger.warn("Node is already a member of EdgeSite "+es.getUuid());
+				throw new BadRequestException("ARC-1020: Node is already a member of EdgeSite "+es.getUuid());
+			}
+		}
+		return new TreeSet<>(nlist);
+	}
+
 	public static Collection<Edgesite> getEdgesites() {
 		Map<String, Edgesite> map = pullFromDB();
 		return map.values();
@@ -127,27 +151,52 @@ public class Edgesite extends BaseBean {
 			// Return all regions
 			return getEdgesites();
 		} else {
-			Collection<Edgesite> c = new ArrayList<>();
-			for (Edgesite e : getEdgesites()) {
-				if (e.getRegions().contains(region_uuid)) {
-					c.add(e);
-				}
-			}
-			return c;
+			return getEdgesites(ListQuery.where(REGION_FILTER, region_uuid));
 		}
 	}
 
 	public static Edgesite getEdgesiteByUUID(final String uuid) {
-		Map<String, Edgesite> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(Edgesite.class, uuid, db::getEdgesite);
+	}
+
+	/**
+	 * Look up an Edgesite that is about to be modified, reading it from the DB rather than any cache (see
+	 * {@link RequestContext#reload}).
+	 */
+	public static Edgesite getEdgesiteForUpdate(final String uuid) {
+		DB db = DBFactory.getUncachedDB();
+		return RequestContext.reload(Edgesite.class, uuid, db::getEdgesite);
+	}
+
+	/**
+	 * Get many Edgesites at once, with (at most) one DB query.
+	 * @param uuids the UUIDs of the Edgesites
+	 * @return the Edgesites found, in the order of uuids
+	 */
+	public static List<Edgesite> getEdgesitesByUUID(final Collection<String> uuids) {
+		DB db = DBFactory.getDB();
+		return RequestContext.lookupAll(Edgesite.class, uuids, db::getEdgesites);
+	}
+
+	/**
+	 * Get one page of the Edgesites that match a query.
+	 * @param q the query
+	 * @return the Edgesites, in UUID order
+	 */
+	public static List<Edgesite> getEdgesites(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getEdgesites(q);
 	}
 
 	public void updateEdgesite() throws WebApplicationException {
 		try {
 			DB db = DBFactory.getDB();
 			db.updateEdgesite(this);
+			RequestContext.replace(Edgesite.class, this);
 		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+			RequestContext.forget(Edgesite.class, getUuid());
+			throw updateFailed(e1);
 		}
 	}
 
@@ -197,19 +246,30 @@ public class Edgesite extends BaseBean {
 	}
 
 	/**
-	 * Return the POD (if any) that is using this Edgesite.
+	 * Return the POD (if any) that is using this Edgesite; ZOMBIE PODs no longer use it.
 	 * @return the POD, or null
 	 */
 	public POD getPOD() {
-		String uuid = getUuid();
-		for (POD p : POD.getPods()) {
-			if (p.getEdgesite().equals(uuid)) {
+		for (POD p : POD.getPods(ListQuery.where(POD.EDGESITE_TAG, getUuid()))) {
+			if (p.getState() != POD.State.ZOMBIE) {
 				return p;
 			}
 		}
 		return null;
 	}
 
+	@Override
+	public Object getFilterValue(final String filter) {
+		switch (filter) {
+		case REGION_FILTER:
+			return regions;
+		case NODE_FILTER:
+			return nodes;
+		default:
+			return super.getFilterValue(filter);
+		}
+	}
+
 	@Override
 	public JSONObject toJSON() {
 		JSONObject jo = super.toJSON();
@@ -29,7 +29,8 @@ import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
-import org.akraino.regional_controller.utils.YAMLtoJSON;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.json.JSONObject;
 
 public class Hardware extends BaseBean {
@@ -68,16 +69,37 @@ public class Hardware extends BaseBean {
 	}
 
 	public static Hardware getHardwareByUUID(final String uuid) {
-		Map<String, Hardware> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(Hardware.class, uuid, db::getHardware);
+	}
+
+	/**
+	 * Look up a Hardware profile that is about to be modified, reading it from the DB rather than any cache (see
+	 * {@link RequestContext#reload}).
+	 */
+	public static Hardware getHardwareForUpdate(final String uuid) {
+		DB db = DBFactory.getUncachedDB();
+		return RequestContext.reload(Hardware.class, uuid, db::getHardware);
+	}
+
+	/**
+	 * Get one page of the Hardware profiles that match a query.
+	 * @param q the query
+	 * @return the Hardware profiles, in UUID order
+	 */
+	public static List<Hardware> getHardware(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getHardware(q);
 	}
 
 	public void updateHardware() throws WebApplicationException {
 		try {
 			DB db = DBFactory.getDB();
 			db.updateHardware(this);
+			RequestContext.replace(Hardware.class, this);
 		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+			RequestContext.forget(Hardware.class, getUuid());
+			throw updateFailed(e1);
 		}
 	}
 
@@ -104,13 +126,22 @@ public class Hardware extends BaseBean {
 
 	public void setYaml(String j) {
 		this.yaml = j;
+		clearDocument();
+	}
+
+	/**
+	 * Return the list of Nodes that are using this Hardware profile.
+	 * @return the list (which may be empty).
+	 */
+	public List<Node> getNodes() {
+		return Node.getNodes(ListQuery.where(Node.HARDWARE_TAG, getUuid()));
 	}
 
 	@Override
 	public JSONObject toJSON() {
 		JSONObject jo = super.toJSON();
 		if (yaml != null && !"".equals(yaml)) {
-			jo.put("yaml", new YAMLtoJSON(yaml).toJSON());
+			jo.put("yaml", getDocument(yaml).toJSON());
 		}
 		return jo;
 	}
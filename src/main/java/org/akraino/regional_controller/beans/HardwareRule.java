@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.akraino.regional_controller.db.DB;
+import org.akraino.regional_controller.db.DBFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A compiled form of the hardware_profile stanza of a Blueprint.  The rule tree is compiled once (with
+ * name regular expressions precompiled), and is then matched against the {@link Inventory} of an
+ * Edgesite: the number of Nodes of each type of Hardware in the Edgesite.
+ *
+ * A Rule is:
+ * { and: [ list of rules ] }		# all subsidiary rules must match
+ * { or: [ list of rules ] }		# any one subsidiary rule must match
+ * { uuid: <UUID> [ , min: <N> ] [,  max: <N> ] }	# match the UUID of a HW profile
+ * { name: <RE> [ , min: <N> ] [,  max: <N> ] }		# match the name of a HW profile with a regex
+ */
+public abstract class HardwareRule {
+	private static final int DEFAULT_MAX = 1000000;
+
+	/**
+	 * Compile a rule tree.  Malformed rules compile to a rule that always fails with an explanation.
+	 * @param rule the rule (from the hardware_profile stanza)
+	 * @return the compiled rule
+	 */
+	public static HardwareRule compile(final JSONObject rule) {
+		JSONArray ja = rule.optJSONArray("and");
+		if (ja != null)
+			return new AndRule(compileList(ja));
+		ja = rule.optJSONArray("or");
+		if (ja != null)
+			return new OrRule(compileList(ja));
+
+		String uuid = rule.optString("uuid");
+		String name = rule.optString("name");
+		int    min  = rule.optInt("min");
+		int    max  = rule.optInt("max");
+		if (min == 0)
+			min = 1;
+		if (max == 0)
+			max = DEFAULT_MAX;
+		if (!"".equals(uuid) && !"".equals(name)) {
+			return new BadRule("Bad rule: uuid and name cannot be used together");
+		} else if (!"".equals(uuid)) {
+			return new UUIDRule(uuid, min, max);
+		} else if (!"".equals(name)) {
+			try {
+				return new NameRule(name, min, max);
+			} catch (PatternSyntaxException e) {
+				return new BadRule("Bad rule: invalid hardware name RE "+name);
+			}
+		} else {
+			return new BadRule("Bad rule: no and, or, uuid, or name");
+		}
+	}
+
+	private static List<HardwareRule> compileList(final JSONArray ja) {
+		List<HardwareRule> list = new ArrayList<>(ja.length());
+		for (int i = 0; i < ja.length(); i++) {
+			JSONObject jo = ja.optJSONObject(i);
+			if (jo != null) {
+				list.add(compile(jo));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Match this rule against an Edgesite's inventory.
+	 * @param inv the inventory
+	 * @return a list of the reasons the rule does not match (empty if it matches)
+	 */
+	public List<String> match(final Inventory inv) {
+		List<String> errors = new ArrayList<>();
+		match(inv, errors);
+		return errors;
+	}
+
+	/**
+	 * Match this rule, adding any failures to errors.
+	 * @return true if the rule matched
+	 */
+	protected abstract boolean match(Inventory inv, List<String> errors);
+
+	private static class AndRule extends HardwareRule {
+		private final HardwareRule[] rules;
+
+		private AndRule(List<HardwareRule> rules) {
+			this.rules = rules.toArray(new HardwareRule[rules.size()]);
+		}
+		@Override
+		protected boolean match(Inventory inv, List<String> errors) {
+			boolean rv = true;
+			for (HardwareRule r : rules) {
+				rv &= r.match(inv, errors);
+			}
+			return rv;
+		}
+	}
+
+	private static class OrRule extends HardwareRule {
+		private final HardwareRule[] rules;
+
+		private OrRule(List<HardwareRule> rules) {
+			this.rules = rules.toArray(new HardwareRule[rules.size()]);
+		}
+		@Override
+		protected boolean match(Inventory inv, List<String> errors) {
+			if (rules.length == 0)
+				return true;
+			List<String> z = new ArrayList<>();
+			for (HardwareRule r : rules) {
+				if (r.match(inv, z))
+					return true;	// One rule succeeded, so the "or" succeeds
+			}
+			errors.addAll(z);
+			return false;
+		}
+	}
+
+	private static abstract class CountRule extends HardwareRule {
+		private final int min;
+		private final int max;
+
+		private CountRule(int min, int max) {
+			this.min = min;
+			this.max = max;
+		}
+		@Override
+		protected boolean match(Inventory inv, List<String> errors) {
+			int matches = 0;
+			for (int i = 0; i < inv.count.length; i++) {
+				if (matches(inv, i)) {
+					matches += inv.count[i];
+				}
+			}
+			if (matches < min) {
+				errors.add("The number of nodes matching the "+describe()+" is less than the minimum of "+min);
+				return false;
+			}
+			if (matches > max) {
+				errors.add("The number of nodes matching the "+describe()+" is greater than the maximum of "+max);
+				return false;
+			}
+			return true;
+		}
+		protected abstract boolean matches(Inventory inv, int ix);
+		protected abstract String describe();
+	}
+
+	private static class UUIDRule extends CountRule {
+		private final String uuid;
+		private final String key;
+
+		private UUIDRule(String uuid, int min, int max) {
+			super(min, max);
+			this.uuid = uuid;
+			this.key  = uuid.toLowerCase();
+		}
+		@Override
+		protected boolean matches(Inventory inv, int ix) {
+			return key.equals(inv.uuid[ix]);
+		}
+		@Override
+		protected String describe() {
+			return "hardware UUID of "+uuid;
+		}
+	}
+
+	private static class NameRule extends CountRule {
+		private final String name;
+		private final Pattern pattern;
+
+		private NameRule(String name, int min, int max) {
+			super(min, max);
+			this.name    = name;
+			this.pattern = Pattern.compile(name);
+		}
+		@Override
+		protected boolean matches(Inventory inv, int ix) {
+			return pattern.matcher(inv.name[ix]).matches();
+		}
+		@Override
+		protected String describe() {
+			return "hardware name RE of "+name;
+		}
+	}
+
+	private static class BadRule extends HardwareRule {
+		private final String message;
+
+		private BadRule(String message) {
+			this.message = message;
+		}
+		@Override
+		protected boolean match(Inventory inv, List<String> errors) {
+			errors.add(message);
+			return false;
+		}
+	}
+
+	/**
+	 * The number of Nodes of each type of Hardware in an Edgesite.
+	 */
+	public static final class Inventory {
+		/**
+		 * Build the inventory of an Edgesite, reading all of its Nodes, and then all of their Hardware,
+		 * with one DB call each.  Nodes (or Hardware) that cannot be found are not counted.
+		 * @param e the Edgesite
+		 * @return the inventory
+		 */
+		public static Inventory forEdgesite(final Edgesite e) {
+			DB db = DBFactory.getDB();
+			List<Node> nodes = db.getNodes(e.getNodes());
+			Set<String> hwids = new HashSet<>();
+			for (Node n : nodes) {
+				if (n.getHardware() != null) {
+					hwids.add(n.getHardware());
+				}
+			}
+			Map<String, Hardware> hwmap = new HashMap<>();
+			for (Hardware h : db.getHardware(hwids)) {
+				hwmap.put(h.getUuid(), h);
+			}
+			List<Hardware> list = new ArrayList<>(nodes.size());
+			for (Node n : nodes) {
+				Hardware h = (n.getHardware() == null) ? null : hwmap.get(n.getHardware().toLowerCase());
+				if (h != null) {
+					list.add(h);
+				}
+			}
+			return new Inventory(list);
+		}
+
+		private final String[] uuid;
+		private final String[] name;
+		private final int[] count;
+
+		/**
+		 * @param hardware the Hardware of each Node (one entry per Node)
+		 */
+		public Inventory(final Collection<Hardware> hardware) {
+			Map<String, Hardware> types = new LinkedHashMap<>();
+			Map<String, Integer> counts = new HashMap<>();
+			for (Hardware h : hardware) {
+				types.putIfAbsent(h.getUuid(), h);
+				counts.merge(h.getUuid(), 1, Integer::sum);
+			}
+			int n = types.size();
+			this.uuid  = new String[n];
+			this.name  = new String[n];
+			this.count = new int[n];
+			int i = 0;
+			for (Hardware h : types.values()) {
+				uuid[i]  = h.getUuid();
+				name[i]  = (h.getName() == null) ? "" : h.getName();
+				count[i] = counts.get(h.getUuid());
+				i++;
+			}
+		}
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.akraino.regional_controller.utils.IPAddresses;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A compiled form of the input_schema stanza of a Blueprint workflow.  Each key of the schema is
+ * compiled once into a typed validator, so that validating the YAML supplied with a POD create or
+ * update is a walk of the input, with no reinterpretation of the schema.  The schema types are:
+ * object (with properties), array (with items), string, integer, ipaddress, ipv4, ipv6, cidr, cidrv4
+ * and cidrv6.  Errors in the schema itself are reported when the schema is used, as they always have been.
+ */
+public final class InputSchema {
+	/**
+	 * Compile an input_schema.
+	 * @param schema the input_schema stanza (may be null, which accepts any input)
+	 * @return the compiled schema
+	 */
+	public static InputSchema compile(final JSONObject schema) {
+		return new InputSchema(compileProperties(schema));
+	}
+
+	private final Field[] fields;
+
+	private InputSchema(Field[] fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * Validate input against this schema.
+	 * @param input the input YAML, converted to JSON (may be null)
+	 * @return the list of problems found (empty if the input is valid)
+	 */
+	public List<String> validate(final JSONObject input) {
+		List<String> errors = new ArrayList<>();
+		validateFields(fields, input, "", errors);
+		return errors;
+	}
+
+	private static void validateFields(final Field[] fields, final JSONObject input, final String prefix, final List<String> errors) {
+		for (Field f : fields) {
+			Object v = (input == null) ? null : input.opt(f.key);
+			f.check.validate(v, prefix, f.key, -1, errors);
+		}
+	}
+
+	private static Field[] compileProperties(final JSONObject schema) {
+		if (schema == null)
+			return new Field[0];
+		List<Field> list = new ArrayList<>();
+		for (String key : schema.keySet()) {
+			list.add(new Field(key, compileField(schema.optJSONObject(key))));
+		}
+		return list.toArray(new Field[list.size()]);
+	}
+
+	private static Check compileField(final JSONObject j2) {
+		String type = (j2 == null) ? "" : j2.optString("type");
+		switch (type) {
+		case "":
+			return new BadSchema("Bad input_schema; missing type for key: ", "");
+		case "object":
+			return compileObject(j2);
+		case "array":
+			JSONObject items = j2.optJSONObject("items");
+			if (items == null)
+				return new BadSchema("Bad input_schema; missing items for key: ", "");
+			String type2 = items.optString("type");
+			if ("".equals(type2))
+				return new BadSchema("Bad input_schema; missing type for key: ", ".items");
+			return new ArrayCheck(compileItems(type2, items));
+		default:
+			Check c = compileScalar(type);
+			return (c != null) ? c : new UnknownType(type);
+		}
+	}
+
+	private static Check compileItems(final String type2, final JSONObject items) {
+		switch (type2) {
+		case "object":
+			return compileObject(items);
+		case "array":
+			return new BadSchema("Arrays of arrays not allowed for key: ", "");
+		default:
+			// Items of an unknown type are not checked
+			Check c = compileScalar(type2);
+			return (c != null) ? c : NO_CHECK;
+		}
+	}
+
+	private static Check compileObject(final JSONObject j2) {
+		JSONObject props = j2.optJSONObject("properties");
+		if (props == null)
+			return new BadSchema("Bad input_schema; missing properties for key: ", "");
+		return new ObjectCheck(compileProperties(props));
+	}
+
+	private static Check compileScalar(final String type) {
+		switch (type) {
+		case "string":
+			return new StringCheck(type, null, null);
+		case "ipaddress":
+			return new StringCheck(type, IPAddresses::isIPAddress, "IP address");
+		case "ipv4":
+			return new StringCheck(type, IPAddresses::isIPv4, "IPV4 address");
+		case "ipv6":
+			return new StringCheck(type, IPAddresses::isIPv6, "IPV6 address");
+		case "cidr":
+			return new StringCheck(type, IPAddresses::isCIDR, "CIDR");
+		case "cidrv4":
+			return new StringCheck(type, IPAddresses::isV4CIDR, "IPV4 CIDR");
+		case "cidrv6":
+			return new StringCheck(type, IPAddresses::isV6CIDR, "IPV6 CIDR");
+		case "integer":
+			return INTEGER_CHECK;
+		default:
+			return null;
+		}
+	}
+
+	private static class Field {
+		private final String key;
+		private final Check check;
+
+		private Field(String key, Check check) {
+			this.key   = key;
+			this.check = check;
+		}
+	}
+
+	/**
+	 * A validator for one value.  The value is named by prefix, key and (for array elements) index;
+	 * the name is only built when it is needed for an error message, or to descend into an object.
+	 */
+	private static abstract class Check {
+		abstract void validate(Object v, String prefix, String key, int index, List<String> errors);
+
+		static String name(String prefix, String key, int index) {
+			return (index < 0) ? prefix + key : prefix + key + "[" + index + "]";
+		}
+	}
+
+	private static final Check NO_CHECK = new Check() {
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			// nothing to check
+		}
+	};
+
+	private static final Check INTEGER_CHECK = new Check() {
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			if (!isInteger(v)) {
+				errors.add("Missing or invalid required value of type integer: "+name(prefix, key, index));
+			}
+		}
+		private boolean isInteger(Object v) {
+			if (v instanceof Number)
+				return true;
+			if (v instanceof String) {
+				try {
+					Integer.parseInt((String) v);
+					return true;
+				} catch (NumberFormatException x) {
+					return false;
+				}
+			}
+			return false;
+		}
+	};
+
+	private static class StringCheck extends Check {
+		private final String type;
+		private final Predicate<String> syntax;
+		private final String description;
+
+		private StringCheck(String type, Predicate<String> syntax, String description) {
+			this.type        = type;
+			this.syntax      = syntax;
+			this.description = description;
+		}
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			if (!(v instanceof String)) {
+				errors.add("Missing required value of type "+type+": "+name(prefix, key, index));
+			} else if (syntax != null && !syntax.test((String) v)) {
+				errors.add("The value \""+v+"\" for key "+name(prefix, key, index)+" is not a valid "+description+".");
+			}
+		}
+	}
+
+	private static class ObjectCheck extends Check {
+		private final Field[] fields;
+
+		private ObjectCheck(Field[] fields) {
+			this.fields = fields;
+		}
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			if (v instanceof JSONObject) {
+				validateFields(fields, (JSONObject) v, name(prefix, key, index)+".", errors);
+			} else {
+				errors.add("Missing required object: "+name(prefix, key, index));
+			}
+		}
+	}
+
+	private static class ArrayCheck extends Check {
+		private final Check items;
+
+		private ArrayCheck(Check items) {
+			this.items = items;
+		}
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			if (v instanceof JSONArray) {
+				JSONArray a = (JSONArray) v;
+				for (int i = 0; i < a.length(); i++) {
+					items.validate(a.opt(i), prefix, key, i, errors);
+				}
+			} else {
+				errors.add("Missing required list: "+prefix+key);
+			}
+		}
+	}
+
+	/**
+	 * A mistake in the schema, reported (against the schema key) whenever the key is validated.
+	 */
+	private static class BadSchema extends Check {
+		private final String message;
+		private final String suffix;
+
+		private BadSchema(String message, String suffix) {
+			this.message = message;
+			this.suffix  = suffix;
+		}
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			errors.add(message+prefix+key+suffix);
+		}
+	}
+
+	private static class UnknownType extends Check {
+		private final String type;
+
+		private UnknownType(String type) {
+			this.type = type;
+		}
+		@Override
+		void validate(Object v, String prefix, String key, int index, List<String> errors) {
+			errors.add("Unknown schema type : "+type);
+		}
+	}
+}
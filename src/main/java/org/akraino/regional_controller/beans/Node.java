@@ -29,8 +29,9 @@ import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.akraino.regional_controller.utils.JSONtoYAML;
-import org.akraino.regional_controller.utils.YAMLtoJSON;
 import org.json.JSONObject;
 
 public class Node extends BaseBean {
@@ -80,16 +81,47 @@ public class Node extends BaseBean {
 	}
 
 	public static Node getNodeByUUID(final String uuid) {
-		Map<String, Node> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(Node.class, uuid, db::getNode);
+	}
+
+	/**
+	 * Look up a Node that is about to be modified, reading it from the DB rather than any cache (see
+	 * {@link RequestContext#reload}).
+	 */
+	public static Node getNodeForUpdate(final String uuid) {
+		DB db = DBFactory.getUncachedDB();
+		return RequestContext.reload(Node.class, uuid, db::getNode);
+	}
+
+	/**
+	 * Get many Nodes at once, with (at most) one DB query.
+	 * @param uuids the UUIDs of the Nodes
+	 * @return the Nodes found, in the order of uuids
+	 */
+	public static List<Node> getNodesByUUID(final Collection<String> uuids) {
+		DB db = DBFactory.getDB();
+		return RequestContext.lookupAll(Node.class, uuids, db::getNodes);
+	}
+
+	/**
+	 * Get one page of the Nodes that match a query.
+	 * @param q the query
+	 * @return the Nodes, in UUID order
+	 */
+	public static List<Node> getNodes(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getNodes(q);
 	}
 
 	public void updateNode() throws WebApplicationException {
 		try {
 			DB db = DBFactory.getDB();
 			db.updateNode(this);
+			RequestContext.replace(Node.class, this);
 		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+			RequestContext.forget(Node.class, getUuid());
+			throw updateFailed(e1);
 		}
 	}
 
@@ -126,17 +158,26 @@ public class Node extends BaseBean {
 
 	public void setYaml(String j) {
 		this.yaml = j;
+		clearDocument();
 	}
 
+	/**
+	 * Return the Edgesite (if any) that has this Node as a member.
+	 * @return the Edgesite, or null
+	 */
 	public Edgesite getEdgesite() {
-		String myuuid = getUuid();
-		for (Edgesite es : Edgesite.getEdgesites()) {
-			for (String uuid : es.getNodes()) {
-				if (uuid.equalsIgnoreCase(myuuid))
-					return es;
-			}
+		List<Edgesite> list = Edgesite.getEdgesites(ListQuery.where(Edgesite.NODE_FILTER, getUuid()));
+		return list.isEmpty() ? null : list.get(0);
+	}
+
+	@Override
+	public Object getFilterValue(final String filter) {
+		switch (filter) {
+		case HARDWARE_TAG:
+			return hardware;
+		default:
+			return super.getFilterValue(filter);
 		}
-		return null;
 	}
 
 	@Override
@@ -144,7 +185,7 @@ public class Node extends BaseBean {
 		JSONObject jo = super.toJSON();
 		jo.put("hardware", hardware);
 		if (yaml != null && !"".equals(yaml)) {
-			jo.put("yaml", new YAMLtoJSON(yaml).toJSON());
+			jo.put("yaml", getDocument(yaml).toJSON());
 		}
 		return jo;
 	}
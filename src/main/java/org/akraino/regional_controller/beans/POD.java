@@ -17,21 +17,26 @@
 package org.akraino.regional_controller.beans;
 
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
+import org.akraino.regional_controller.db.Transaction;
 import org.akraino.regional_controller.utils.JSONtoYAML;
-import org.akraino.regional_controller.utils.YAMLtoJSON;
 import org.akraino.regional_controller.workflow.WorkFlow;
 import org.akraino.regional_controller.workflow.WorkFlowFactory;
 import org.apache.logging.log4j.LogManager;
@@ -54,8 +59,37 @@ public class POD extends BaseBean {
 	}
 
 	public static POD getPodByUUID(final String uuid) {
-		Map<String, POD> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(POD.class, uuid, db::getPod);
+	}
+
+	/**
+	 * Look up a POD that is about to be modified, reading it from the DB rather than any cache (see
+	 * {@link RequestContext#reload}).
+	 */
+	public static POD getPodForUpdate(final String uuid) {
+		DB db = DBFactory.getUncachedDB();
+		return RequestContext.reload(POD.class, uuid, db::getPod);
+	}
+
+	/**
+	 * Get many PODs at once, with (at most) one DB query.
+	 * @param uuids the UUIDs of the PODs
+	 * @return the PODs found, in the order of uuids
+	 */
+	public static List<POD> getPodsByUUID(final Collection<String> uuids) {
+		DB db = DBFactory.getDB();
+		return RequestContext.lookupAll(POD.class, uuids, db::getPods);
+	}
+
+	/**
+	 * Get one page of the PODs that match a query.
+	 * @param q the query
+	 * @return the PODs, in UUID order
+	 */
+	public static List<POD> getPods(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getPods(q);
 	}
 
 	public static POD createPod(JSONObject json) throws WebApplicationException {
@@ -86,11 +120,11 @@ public class POD extends BaseBean {
 			u = UUID.randomUUID();
 		} while (getPodByUUID(u.toString()) != null);
 		POD p = new POD(u.toString(), n, desc, blueprint, edgesite, (new JSONtoYAML(y)).toString());
-		try {
-			DB db = DBFactory.getDB();
+		DB db = DBFactory.getDB();
+		try (Transaction tx = db.beginTransaction()) {
 			db.createPod(p);
-			PODEvent pe = p.createPodEvent("INFO", "Pod created.");
-			pe.writeEvent();
+			db.createPodEvent(p.createPodEvent("INFO", "Pod created."));
+			tx.commit();
 			return p;
 		} catch (SQLException e1) {
 			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
@@ -101,8 +135,10 @@ public class POD extends BaseBean {
 		try {
 			DB db = DBFactory.getDB();
 			db.updatePod(this);
+			RequestContext.replace(POD.class, this);
 		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+			RequestContext.forget(POD.class, getUuid());
+			throw updateFailed(e1);
 		}
 	}
 
@@ -179,67 +215,123 @@ public class POD extends BaseBean {
 		return state;
 	}
 
-	public void setState(State newstate) {
-		if (this.state != newstate) {
-			boolean ok = false;
-			Logger logger = LogManager.getLogger();
-			switch (this.state) {
-			case NEW:
-				ok = (newstate == State.WORKFLOW) || (newstate == State.DEAD);
-				break;
-
-			case WORKFLOW:
-				ok = (newstate == State.ACTIVE) || (newstate == State.FAILED) || (newstate == State.DEAD);
-				break;
-
-			case ACTIVE:
-			case FAILED:
-				ok = (newstate == State.WORKFLOW) || (newstate == State.DEAD);
-				break;
-
-			case DEAD:
-				ok = (newstate == State.ZOMBIE);
-				break;
+	/**
+	 * Move the POD to a new state, if the POD state machine allows it.  The state is changed with a
+	 * conditional update in the DB (see {@link DB#updatePodState(POD, State, State, String)}), so that of
+	 * two threads (or API servers) racing to change the state, only one succeeds.  The loser rereads the
+	 * POD, and tries again only if the transition is still allowed from the state the POD is now in.
+	 * @param newstate the new state
+	 * @return true if this call changed the state; false if the transition is not allowed, or the POD
+	 * was already in (or was moved by another request to) the new state
+	 * @throws InternalServerErrorException a 500 (ARC-4003) if the DB could not be updated
+	 */
+	public boolean setState(State newstate) {
+		return moveTo(newstate) != null;
+	}
 
-			case ZOMBIE:
-				ok = false;
-				break;
+	/**
+	 * Move the POD to a new state, and fail with a 409 if that is not possible; a POD that is already
+	 * in the new state (e.g. when a request is repeated) is left as it is.
+	 * @param newstate the new state
+	 * @throws ClientErrorException a 409 if the POD is in a state from which it cannot be moved to
+	 *   newstate (which may be because another request moved it first)
+	 * @throws InternalServerErrorException a 500 (ARC-4003) if the DB could not be updated
+	 */
+	public void changeState(State newstate) throws ClientErrorException {
+		if (!setState(newstate) && state != newstate) {
+			throw new ClientErrorException("ARC-2011: POD "+getUuid()+" cannot be moved to state "+newstate
+				+" from state "+state, Status.CONFLICT);
+		}
+	}
 
-			default:
-				logger.warn("Internal error, setState() with unknown state "+newstate);
-				return;
+	/**
+	 * Move the POD to a new state, as {@link #setState(State)} does.
+	 * @return the state the POD was moved from, or null if this call did not change the state
+	 * @throws InternalServerErrorException a 500 (ARC-4003) if the DB could not be updated
+	 */
+	private State moveTo(State newstate) {
+		Logger logger = LogManager.getLogger();
+		DB db = DBFactory.getDB();
+		State from = this.state;
+		while (from != newstate) {
+			if (!isValidTransition(from, newstate)) {
+				logger.warn("Bad POD state transition requested: "+from+" -> "+newstate);
+				return null;
 			}
-			if (ok) {
-				if (this.state == State.WORKFLOW) {
-					// Mark end time of pod_workflow - there should be only one that is running for this UUID
-					DB db = DBFactory.getDB();
-					Timestamp ts = new Timestamp(System.currentTimeMillis());
-					for (PODWorkflow pw : db.getPODWorkflows(getUuid())) {
-						if (pw.getEndtime() == null) {
-							pw.setEndtime(ts);
-							try {
-								db.updatePodWorkflow(pw);
-							} catch (SQLException e) {
-								logger.warn("Internal error, while updating PODWorkflow: "+e);
-							}
-						}
+			// The Edgesite of a ZOMBIE POD is being reused, so point to a non-existent ES
+			String es = (newstate == State.ZOMBIE) ? "00000000-0000-0000-0000-000000000000" : null;	// TODO make sure this works
+			try {
+				if (db.updatePodState(this, from, newstate, es)) {
+					this.state = newstate;
+					if (es != null) {
+						this.edgesite = es;
 					}
-				}
-				this.state = newstate;
-				if (newstate == State.ZOMBIE) {
-					// The Edgesite for this POD is being reused, so point to a non-existent ES
-					this.edgesite = "00000000-0000-0000-0000-000000000000";	// TODO make sure this works
-				}
-				try {
-					DB db = DBFactory.getDB();
-					db.updatePod(this);
+					RequestContext.replace(POD.class, this);
 					logger.info("Set State of POD "+this.getUuid()+" to "+state.toString());
-				} catch (SQLException e) {
-					logger.warn("Internal error, while updating POD: "+e);
+					return from;
 				}
+			} catch (SQLException e) {
+				// Not a lost transition; the caller must not report it as a conflict
+				logger.warn("Internal error, while updating POD: "+e);
+				RequestContext.forget(POD.class, getUuid());
+				throw new InternalServerErrorException("ARC-4003: "+e.getMessage());
+			}
+			// The state was changed by someone else since this copy of the POD was read; reread it from
+			// the DB itself, since a cached copy may be just as out of date
+			POD current = DBFactory.getUncachedDB().getPod(getUuid());
+			if (current == null) {
+				logger.warn("POD "+getUuid()+" no longer exists, state not set to "+newstate);
+				return null;
+			}
+			this.state     = current.state;
+			this.edgesite  = current.edgesite;
+			this.blueprint = current.blueprint;
+			setRevision(current.getRevision());
+			from = current.state;
+		}
+		return null;
+	}
+
+	/**
+	 * Move the POD out of the WORKFLOW state, back to the state it was in before a workflow that could
+	 * not be started.  This undoes {@link #moveTo(State)}, so the state machine is not consulted, but
+	 * it is still a conditional update, so that a state set by someone else meanwhile is not overwritten.
+	 */
+	private void revertWorkflow(State previous) {
+		Logger logger = LogManager.getLogger();
+		try {
+			if (DBFactory.getDB().updatePodState(this, State.WORKFLOW, previous, null)) {
+				this.state = previous;
+				RequestContext.replace(POD.class, this);
+				logger.info("Set State of POD "+this.getUuid()+" back to "+previous);
 			} else {
-				logger.warn("Bad POD state transition requested: "+state+" -> "+newstate);
+				logger.warn("POD "+getUuid()+" left the WORKFLOW state before it could be set back to "+previous);
+				RequestContext.forget(POD.class, getUuid());
 			}
+		} catch (SQLException e) {
+			logger.warn("Internal error, while updating POD: "+e);
+			RequestContext.forget(POD.class, getUuid());
+		}
+	}
+
+	static boolean isValidTransition(State from, State to) {
+		switch (from) {
+		case NEW:
+			return (to == State.WORKFLOW) || (to == State.DEAD);
+
+		case WORKFLOW:
+			return (to == State.ACTIVE) || (to == State.FAILED) || (to == State.DEAD);
+
+		case ACTIVE:
+		case FAILED:
+			return (to == State.WORKFLOW) || (to == State.DEAD);
+
+		case DEAD:
+			return (to == State.ZOMBIE);
+
+		case ZOMBIE:
+		default:
+			return false;
 		}
 	}
 
@@ -249,6 +341,20 @@ public class POD extends BaseBean {
 
 	public void setYaml(String j) {
 		this.yaml = j;
+		clearDocument();
+	}
+
+	/**
+	 * Load the Blueprints used by a list of PODs with one query, so that calling
+	 * {@link #getBlueprintObject()} (or {@link #toJSON()}) on each POD does not query the DB again.
+	 * @param pods the PODs
+	 */
+	public static void loadBlueprints(final Collection<POD> pods) {
+		Set<String> uuids = new HashSet<>();
+		for (POD p : pods) {
+			uuids.add(p.getBlueprint());
+		}
+		Blueprint.getBlueprintsByUUID(uuids);
 	}
 
 	public Blueprint getBlueprintObject() {
@@ -278,16 +384,44 @@ public class POD extends BaseBean {
 
 	public synchronized boolean startWorkFlow(PODWorkflow pwf) {
 		if (isAlive() && ! isWorkflowRunning()) {
-			WorkFlow wf = WorkFlowFactory.getWorkFlow();
-			if (wf.initialize(this, pwf)) {
-				wf.start();
-				setState(State.WORKFLOW);
-				return true;
+			// The POD is claimed (moved to WORKFLOW) before the workflow is initialized, so that a second
+			// request racing to start a workflow fails without preparing one, and a STATUS event from the
+			// workflow cannot arrive before the move
+			State previous = moveTo(State.WORKFLOW);
+			if (previous == null) {
+				return false;
 			}
+			boolean started = false;
+			try {
+				WorkFlow wf = WorkFlowFactory.getWorkFlow();
+				if (wf.initialize(this, pwf)) {
+					wf.start();
+					started = true;
+				}
+			} finally {
+				if (!started) {
+					revertWorkflow(previous);
+				}
+			}
+			return started;
 		}
 		return false;
 	}
 
+	@Override
+	public Object getFilterValue(final String filter) {
+		switch (filter) {
+		case STATE_TAG:
+			return state;
+		case BLUEPRINT_TAG:
+			return blueprint;
+		case EDGESITE_TAG:
+			return edgesite;
+		default:
+			return super.getFilterValue(filter);
+		}
+	}
+
 	@Override
 	public JSONObject toJSON() {
 		JSONObject jo = super.toJSON();
@@ -295,7 +429,7 @@ public class POD extends BaseBean {
 		jo.put(EDGESITE_TAG, edgesite);
 		jo.put(STATE_TAG, state.toString());
 		if (yaml != null && !"".equals(yaml)) {
-			jo.put(YAML_TAG, new YAMLtoJSON(yaml).toJSON());
+			jo.put(YAML_TAG, getDocument(yaml).toJSON());
 		}
 		Blueprint bp = getBlueprintObject();
 		jo.put("workflows", new JSONArray(bp.getWorkFlowNames()));
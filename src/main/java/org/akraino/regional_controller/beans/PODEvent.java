@@ -27,6 +27,7 @@ import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.Transaction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
@@ -101,12 +102,16 @@ public class PODEvent {
 
 	public void writeEvent() {
 		Logger logger = LogManager.getLogger();
+		DB db = DBFactory.getDB();
 		try {
-			DB db = DBFactory.getDB();
-			db.createPodEvent(this);
+			if (!level.equals(LEVEL_STATUS)) {
+				db.createPodEvent(this);
+				return;
+			}
 
-			// If the PodEvent has a level of STATUS, this will change state of the POD
-			if (level.equals(LEVEL_STATUS)) {
+			// A PodEvent with a level of STATUS will change state of the POD; record both in one transaction
+			try (Transaction tx = db.beginTransaction()) {
+				db.createPodEvent(this);
 				String s = message;
 				int ix = s.indexOf(':');
 				if (ix >= 0) {
@@ -117,13 +122,18 @@ public class PODEvent {
 					logger.warn("Internal error: cannot find POD "+uuid);
 				} else {
 					s = s.trim();
+					POD.State newstate = null;
 					try {
-						POD.State newstate = POD.State.valueOf(s);
-						pod.setState(newstate);	// This will update the POD in the DB
+						newstate = POD.State.valueOf(s);
 					} catch (IllegalArgumentException e) {
 						logger.warn("Workflow error: invalid state "+s);
 					}
+					if (newstate != null) {
+						// This will update the POD in the DB; if it cannot, the event is not recorded either
+						pod.changeState(newstate);
+					}
 				}
+				tx.commit();
 			}
 		} catch (SQLException e) {
 			logger.warn(e);
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Compiles role attributes (of the form {verb}-{object}) into a permission bitmask, with one bit for
+ * each (verb, object) pair.  Either half of an attribute may be the wildcard "*", in which case it is
+ * expanded to every verb or object when compiled; a bare "*" grants everything.  An RBAC check is then
+ * just a single AND of the User's mask and the mask of the operation being attempted.
+ * Attributes that name an unknown verb or object compile to no bits.
+ */
+public final class Permissions {
+	public static final String WILDCARD = "*";
+	public static final long   NONE     = 0L;
+
+	/** The verbs, in bit order. */
+	private static final String[] VERBS   = { "create", "read", "update", "delete" };
+	/** The objects, in bit order.  There may be at most 16 of these. */
+	private static final String[] OBJECTS = {
+		"blueprint", "edgesite", "hardware", "node", "pod", "podevent", "region", "user", "version"
+	};
+	private static final int  STRIDE      = 16;
+	private static final long ALL_OBJECTS = (1L << OBJECTS.length) - 1;
+
+	static {
+		if (OBJECTS.length > STRIDE || VERBS.length * STRIDE > Long.SIZE) {
+			throw new ExceptionInInitializerError("Too many RBAC verbs or objects to fit in a long");
+		}
+	}
+
+	private Permissions() {
+		// static methods only
+	}
+
+	/**
+	 * Compile the attributes granted by a Role into a permission mask.  Wildcards are expanded.
+	 * @param attributes the role attributes
+	 * @return the mask
+	 */
+	public static long compile(final Collection<String> attributes) {
+		long mask = NONE;
+		if (attributes != null) {
+			for (String s : attributes) {
+				mask |= compile(s);
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * Compile the list of attributes that an API operation accepts (e.g. { "read-*", "read-region" }) into
+	 * the mask that a User must intersect.  Since wildcards are expanded on the granting side, an attribute
+	 * such as "read-*" in this list is implied by "read-region", and contributes nothing further.
+	 * @param attributes the acceptable role attributes
+	 * @return the mask
+	 */
+	public static long required(final String... attributes) {
+		long mask = NONE;
+		for (String s : attributes) {
+			if (!s.contains(WILDCARD)) {
+				mask |= compile(s);
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @param granted the mask held by a User or Role
+	 * @param required the mask required by an operation
+	 * @return true if any of the required permissions have been granted
+	 */
+	public static boolean allows(final long granted, final long required) {
+		return (granted & required) != 0;
+	}
+
+	/**
+	 * Compile one attribute into a permission mask.
+	 * @param attribute the attribute, e.g. "update-node", "read-*" or "*"
+	 * @return the mask
+	 */
+	public static long compile(final String attribute) {
+		if (attribute == null) {
+			return NONE;
+		}
+		String attr = attribute.trim();
+		if (WILDCARD.equals(attr)) {
+			attr = WILDCARD + "-" + WILDCARD;
+		}
+		int ix = attr.indexOf('-');
+		if (ix <= 0) {
+			return NONE;
+		}
+		long objects = objectBits(attr.substring(ix+1));
+		if (objects == NONE) {
+			return NONE;
+		}
+		String verb = attr.substring(0, ix);
+		long mask = NONE;
+		for (int v = 0; v < VERBS.length; v++) {
+			if (WILDCARD.equals(verb) || VERBS[v].equals(verb)) {
+				mask |= objects << (v * STRIDE);
+			}
+		}
+		return mask;
+	}
+
+	private static long objectBits(final String object) {
+		if (WILDCARD.equals(object)) {
+			return ALL_OBJECTS;
+		}
+		int ix = Arrays.asList(OBJECTS).indexOf(object);
+		return (ix < 0) ? NONE : (1L << ix);
+	}
+}
@@ -17,19 +17,23 @@
 package org.akraino.regional_controller.beans;
 
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 
 import javax.ws.rs.BadRequestException;
-import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -76,20 +80,53 @@ public class Region extends BaseBean {
 
 	public static Collection<Region> getRegions() {
 		Map<String, Region> map = pullFromDB();
+		// So that the child Regions of each Region can be found without further queries
+		RequestContext.remember(Region.class, map.values());
 		return map.values();
 	}
 
 	public static Region getRegionByUUID(final String uuid) {
-		Map<String, Region> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(Region.class, uuid, db::getRegion);
+	}
+
+	/**
+	 * Look up a Region that is about to be modified, reading it from the DB rather than any cache (see
+	 * {@link RequestContext#reload}).
+	 */
+	public static Region getRegionForUpdate(final String uuid) {
+		DB db = DBFactory.getUncachedDB();
+		return RequestContext.reload(Region.class, uuid, db::getRegion);
+	}
+
+	/**
+	 * Get many Regions at once, with (at most) one DB query.
+	 * @param uuids the UUIDs of the Regions
+	 * @return the Regions found, in the order of uuids
+	 */
+	public static List<Region> getRegionsByUUID(final Collection<String> uuids) {
+		DB db = DBFactory.getDB();
+		return RequestContext.lookupAll(Region.class, uuids, db::getRegions);
+	}
+
+	/**
+	 * Get one page of the Regions that match a query.
+	 * @param q the query
+	 * @return the Regions, in UUID order
+	 */
+	public static List<Region> getRegions(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getRegions(q);
 	}
 
 	public void updateRegion() throws WebApplicationException {
 		try {
 			DB db = DBFactory.getDB();
 			db.updateRegion(this);
+			RequestContext.replace(Region.class, this);
 		} catch (SQLException e1) {
-			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
+			RequestContext.forget(Region.class, getUuid());
+			throw updateFailed(e1);
 		}
 	}
 
@@ -128,14 +165,50 @@ public class Region extends BaseBean {
 	 * @return the list (which may be empty).
 	 */
 	public List<Region> getChildRegions() {
-		List<Region> list = new ArrayList<>();
-		String uuid = getUuid();
-		for (Region r : Region.getRegions()) {
-			if (r.getParent().equals(uuid)) {
-				list.add(r);
+		return getRegions(ListQuery.where(PARENT_TAG, getUuid()));
+	}
+
+	/**
+	 * Return the UUIDs of the Regions that are using a Region as their parent.
+	 * @param uuid the UUID of the Region
+	 * @return the UUIDs, in order (the set may be empty)
+	 */
+	public static Set<String> getChildUUIDs(final String uuid) {
+		Set<String> set = new TreeSet<>();
+		for (Region r : getRegions(ListQuery.where(PARENT_TAG, uuid))) {
+			set.add(r.getUuid());
+		}
+		return set;
+	}
+
+	/**
+	 * Find the children of many Regions at once, with one query.
+	 * @param uuids the UUIDs of the Regions
+	 * @return a map from the UUID (in lower case) of each Region to the UUIDs of its children; Regions
+	 *   without children are not in it
+	 */
+	public static Map<String, Set<String>> getChildMapOf(final Collection<String> uuids) {
+		if (uuids.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		ListQuery q = new ListQuery();
+		q.addFilter(PARENT_TAG, uuids);
+		return getChildMap(getRegions(q));
+	}
+
+	/**
+	 * Build a map from the UUID (in lower case) of each Region's parent to the UUIDs of its children.
+	 * @param regions the Regions
+	 * @return the map
+	 */
+	public static Map<String, Set<String>> getChildMap(final Collection<Region> regions) {
+		Map<String, Set<String>> map = new HashMap<>();
+		for (Region r : regions) {
+			if (r.getParent() != null && !r.getParent().isEmpty()) {
+				map.computeIfAbsent(r.getParent().toLowerCase(), k -> new TreeSet<>()).add(r.getUuid());
 			}
 		}
-		return list;
+		return map;
 	}
 
 	/**
@@ -143,31 +216,73 @@ public class Region extends BaseBean {
 	 * @return the list (which may be empty).
 	 */
 	public List<Edgesite> getEdgesites() {
-		List<Edgesite> list = new ArrayList<>();
-		String uuid = getUuid();
-		for (Edgesite e : Edgesite.getEdgesites()) {
-			for (String r : e.getRegions()) {
-				if (r.equals(uuid)) {
-					list.add(e);
-				}
+		return Edgesite.getEdgesites(ListQuery.where(Edgesite.REGION_FILTER, getUuid()));
+	}
+
+	/**
+	 * Return every Region below a Region in the Region tree (its children, their children, and so on).
+	 * @param uuid the UUID of the Region
+	 * @return the Regions, in UUID order (the list may be empty)
+	 */
+	public static List<Region> getDescendants(final String uuid) {
+		DB db = DBFactory.getDB();
+		return db.getDescendantRegions(uuid);
+	}
+
+	/**
+	 * Check if one Region is below another in the Region tree, by walking up its chain of parents.  Loops
+	 * already in the chain are tolerated.
+	 * @param region the UUID of the possible descendant
+	 * @param ancestor the UUID of the possible ancestor
+	 * @return true if ancestor is the parent of region, or the parent of its parent, and so on
+	 */
+	public static boolean isDescendant(final String region, final String ancestor) {
+		Set<String> seen = new HashSet<>();
+		String r = region;
+		while (r != null && !r.isEmpty() && seen.add(r.toLowerCase())) {
+			ListQuery q = new ListQuery();
+			q.setUuids(Collections.singletonList(r));
+			List<Region> list = getRegions(q);
+			r = list.isEmpty() ? null : list.get(0).getParent();
+			if (r != null && r.equalsIgnoreCase(ancestor)) {
+				return true;
 			}
 		}
-		return list;
+		return false;
 	}
 
+	@Override
+	public Object getFilterValue(final String filter) {
+		switch (filter) {
+		case PARENT_TAG:
+			return parent;
+		default:
+			return super.getFilterValue(filter);
+		}
+	}
+
+	/**
+	 * Build the JSON form of the Region's own row.  Its children are not in the row, so are not shown;
+	 * use {@link #toJSON(Collection)} to show them.
+	 */
 	@Override
 	public JSONObject toJSON() {
+		return toJSON(Collections.emptySet());
+	}
+
+	/**
+	 * Build the JSON form of the Region, given its children; e.g. from {@link #getChildMapOf}, so that a
+	 * list of Regions does not need a query per Region.
+	 * @param children the UUIDs of the Region's child Regions
+	 * @return the JSON
+	 */
+	public JSONObject toJSON(final Collection<String> children) {
 		JSONObject jo = super.toJSON();
 		if (parent != null) {
 			jo.put("parent",  parent);
 		}
-		List<Region> children = getChildRegions();
 		if (children.size() > 0) {
-			JSONArray ja = new JSONArray();
-			for (Region ch : children) {
-				ja.put(ch.getUuid());
-			}
-			jo.put("children",  ja);
+			jo.put("children",  new JSONArray(children));
 		}
 		return jo;
 	}
@@ -16,6 +16,7 @@
 
 package org.akraino.regional_controller.beans;
 
+import java.util.Collections;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -24,11 +25,13 @@ import org.json.JSONObject;
 
 /**
  *
- * Role attributes are of the form {create,read,update,delete}-{object}
+ * Role attributes are of the form {create,read,update,delete}-{object}.  They are compiled into a
+ * {@link Permissions} mask when the Role is built, so the attributes may not be modified afterwards.
  *
  */
 public class Role extends BaseBean implements Comparable<Role> {
 	private final Set<String> attributes;
+	private final long permissions;
 
 	public Role(String uuid, String name, String description, String[] attributes) {
 		super(uuid, name, description);
@@ -36,10 +39,18 @@ public class Role extends BaseBean implements Comparable<Role> {
 		for (String s : attributes) {
 			this.attributes.add(s);
 		}
+		this.permissions = Permissions.compile(this.attributes);
 	}
 
 	public Set<String> getAttributes() {
-		return attributes;
+		return Collections.unmodifiableSet(attributes);
+	}
+
+	/**
+	 * @return the compiled permission mask for this Role's attributes
+	 */
+	public long getPermissions() {
+		return permissions;
 	}
 
 	@Override
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.akraino.regional_controller.db.DBFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * SessionTokens issues and verifies HMAC-signed (JWT) session tokens.  When api.token.mode = jwt,
+ * the token itself carries the user's UUID, name, roles and expiry time, so that a token can be
+ * checked without consulting the SESSIONS table.  All API servers sharing the same api.token.secret
+ * will accept each other's tokens.  Logouts, and changes to Users, are recorded in the REVOKED_TOKENS
+ * table (which only needs to hold a revocation until the tokens it covers would have expired anyway),
+ * and each API server re-reads the table every api.token.revocation_refresh seconds, so a revocation
+ * made on one server is enforced by all of them, and survives a restart.
+ */
+public class SessionTokens {
+	public static final String MODE_DB  = "db";
+	public static final String MODE_JWT = "jwt";
+
+	private static final String ISSUER     = "arc";
+	private static final String NAME_CLAIM = "name";
+	private static final String ROLE_CLAIM = "roles";
+	private static final String IAT_CLAIM  = "iat_ms";	// issue time in ms; "iat" only has 1s precision
+	private static final int MIN_SECRET_BYTES = 32;		// HS256 needs a key of at least 256 bits
+	private static final Logger logger     = LogManager.getLogger();
+
+	private static SessionTokens singleton = null;
+
+	public static synchronized SessionTokens getInstance() {
+		if (singleton == null) {
+			singleton = new SessionTokens();
+		}
+		return singleton;
+	}
+
+	private final boolean signed;
+	private final long max_age;
+	private final Key key;
+	private final long refresh_interval;
+	private final Map<String, Long> revoked;		// token ID or user UUID -> time of revocation
+	private final AtomicBoolean refreshing;
+	private volatile long next_refresh;
+
+	private SessionTokens() {
+		this(loadProperties());
+	}
+
+	/**
+	 * Build a SessionTokens from the api.token.* properties.  An unusable api.token.secret is reported
+	 * here (which is when the server starts), and replaced by a random key, rather than failing every
+	 * request that has a token.
+	 * @param props the API server properties
+	 */
+	SessionTokens(Properties props) {
+		this.signed           = MODE_JWT.equalsIgnoreCase(props.getProperty("api.token.mode", MODE_DB).trim());
+		this.max_age          = Long.parseLong(props.getProperty("api.maxage", "3600").trim()) * 1000L;
+		this.refresh_interval = Long.parseLong(props.getProperty("api.token.revocation_refresh", "5").trim()) * 1000L;
+		this.revoked          = new ConcurrentHashMap<>();
+		this.refreshing       = new AtomicBoolean(false);
+		this.next_refresh     = 0L;
+		String secret = props.getProperty("api.token.secret", "").trim();
+		String error  = checkSecret(secret);
+		if (!signed) {
+			this.key = null;
+		} else if ("".equals(secret)) {
+			logger.warn("api.token.secret is not set; using a random key. Tokens will not survive a restart.");
+			this.key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+		} else if (error != null) {
+			logger.error("{}; using a random key. Tokens will not be accepted by other API servers, nor survive a restart.", error);
+			this.key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+		} else {
+			this.key = Keys.hmacShaKeyFor(Base64.getDecoder().decode(secret));
+		}
+		logger.info("SessionTokens: mode = {}", signed ? MODE_JWT : MODE_DB);
+	}
+
+	private static Properties loadProperties() {
+		Properties props = new Properties();
+		InputStream is = null;
+		try {
+			is = SessionTokens.class.getClassLoader().getResourceAsStream(DBFactory.PROPERTIES_FILE);
+			props.load(is);
+		} catch (IOException e) {
+			logger.error("Cannot read api.properties!");
+		} finally {
+			if (is != null) {
+				try {
+					is.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		return props;
+	}
+
+	/**
+	 * Check that a secret can be used to sign tokens: it must be Base64, and decode to at least 256 bits.
+	 * @param secret the value of api.token.secret
+	 * @return null if the secret is usable (or not set), otherwise a description of what is wrong with it
+	 */
+	static String checkSecret(final String secret) {
+		if (secret == null || "".equals(secret)) {
+			return null;
+		}
+		byte[] b;
+		try {
+			b = Base64.getDecoder().decode(secret);
+		} catch (IllegalArgumentException e) {
+			return "api.token.secret is not valid Base64 (" + e.getMessage() + ")";
+		}
+		if (b.length < MIN_SECRET_BYTES) {
+			return "api.token.secret is only " + (b.length * 8) + " bits long; at least " + (MIN_SECRET_BYTES * 8) + " are needed";
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if session tokens are signed JWTs, false if they are kept in the DB
+	 */
+	public boolean isSigned() {
+		return signed;
+	}
+
+	/**
+	 * Issue a signed token for a User.
+	 * @param u the User
+	 * @param expires the time (in ms) when the token expires
+	 * @return the token
+	 */
+	public String issue(final User u, final long expires) {
+		List<Map<String, Object>> roles = new ArrayList<>();
+		for (Role r : u.getRoles()) {
+			Map<String, Object> m = new HashMap<>();
+			m.put(BaseBean.UUID_TAG, r.getUuid());
+			m.put(BaseBean.NAME_TAG, r.getName());
+			m.put("attributes", new ArrayList<>(r.getAttributes()));
+			roles.add(m);
+		}
+		long now = System.currentTimeMillis();
+		return Jwts.builder()
+			.setIssuer(ISSUER)
+			.setId(UUID.randomUUID().toString())
+			.setSubject(u.getUuid())
+			.setIssuedAt(new Date(now))
+			.setExpiration(new Date(expires))
+			.claim(IAT_CLAIM, now)
+			.claim(NAME_CLAIM, u.getName())
+			.claim(ROLE_CLAIM, roles)
+			.signWith(key, SignatureAlgorithm.HS256)
+			.compact();
+	}
+
+	/**
+	 * Verify a signed token, and rebuild the UserSession it describes.  An expired token yields a
+	 * UserSession whose isValid() method returns false.
+	 * @param token the token
+	 * @return the UserSession, or null if the token is not genuine, or has been revoked
+	 */
+	public UserSession verify(final String token) {
+		Claims claims;
+		try {
+			claims = Jwts.parser()
+				.requireIssuer(ISSUER)
+				.setSigningKey(key)
+				.parseClaimsJws(token)
+				.getBody();
+		} catch (ExpiredJwtException e) {
+			claims = e.getClaims();
+		} catch (JwtException | IllegalArgumentException e) {
+			logger.debug("Invalid token: {}", e.getMessage());
+			return null;
+		}
+		refresh();
+		if (claims.getId() != null && revoked.containsKey(claims.getId())) {
+			return null;
+		}
+		String uuid = claims.getSubject();
+		Long revoked_at = (uuid == null) ? null : revoked.get(uuid);
+		if (revoked_at != null && issuedAt(claims) <= revoked_at) {
+			return null;
+		}
+		User u = new User(uuid, claims.get(NAME_CLAIM, String.class), "", "");
+		u.setRoles(buildRoles(claims.get(ROLE_CLAIM, List.class)));
+		return new UserSession(u, token, claims.getExpiration().getTime());
+	}
+
+	/**
+	 * Revoke one token (e.g. on logout).
+	 * @param us the UserSession built from the token
+	 */
+	public void revoke(final UserSession us) {
+		try {
+			Claims claims = Jwts.parser()
+				.setSigningKey(key)
+				.parseClaimsJws(us.getToken())
+				.getBody();
+			record(claims.getId());
+		} catch (JwtException | IllegalArgumentException e) {
+			// expired or bogus tokens need not be revoked
+		}
+	}
+
+	/**
+	 * Revoke every token issued to a User up to now (e.g. when the User is modified or deleted).
+	 * @param uuid the User's UUID
+	 */
+	public void revokeUser(final String uuid) {
+		if (signed) {
+			record(uuid);
+		}
+	}
+
+	/**
+	 * Record a revocation, both here (so that it takes effect at once) and in the DB (for the other API
+	 * servers).  A revocation only matters for tokens issued before it, which live at most api.maxage.
+	 */
+	private void record(final String id) {
+		long now = System.currentTimeMillis();
+		revoked.merge(id, now, Math::max);
+		DBFactory.getDB().createRevocation(id, now, now + max_age);
+		purge();
+	}
+
+	/**
+	 * Pick up the revocations made by other API servers, if they have not been read for
+	 * api.token.revocation_refresh seconds.  Only one thread re-reads them; the others carry on with
+	 * the revocations already known.
+	 */
+	private void refresh() {
+		long now = System.currentTimeMillis();
+		if (now >= next_refresh && refreshing.compareAndSet(false, true)) {
+			try {
+				for (Map.Entry<String, Long> e : DBFactory.getDB().getRevocations().entrySet()) {
+					revoked.merge(e.getKey(), e.getValue(), Math::max);
+				}
+				purge();
+				next_refresh = now + refresh_interval;
+			} finally {
+				refreshing.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Get the time (in ms) a token was issued.  The standard "iat" claim is truncated to the second,
+	 * which would make a token issued by a re-login in the same second as a revocation look older
+	 * than the revocation, so the time is taken from the millisecond claim when there is one.
+	 */
+	private long issuedAt(final Claims claims) {
+		Object ms = claims.get(IAT_CLAIM);
+		if (ms instanceof Number) {
+			return ((Number) ms).longValue();
+		}
+		Date iat = claims.getIssuedAt();
+		return (iat == null) ? Long.MAX_VALUE : iat.getTime();
+	}
+
+	private Set<Role> buildRoles(final List<?> list) {
+		Set<Role> roles = new TreeSet<>();
+		if (list != null) {
+			for (Object o : list) {
+				if (o instanceof Map) {
+					Map<?, ?> m = (Map<?, ?>) o;
+					List<?> attrs = (List<?>) m.get("attributes");
+					String[] attributes = new String[(attrs == null) ? 0 : attrs.size()];
+					for (int i = 0; i < attributes.length; i++) {
+						attributes[i] = String.valueOf(attrs.get(i));
+					}
+					roles.add(new Role(String.valueOf(m.get(BaseBean.UUID_TAG)), String.valueOf(m.get(BaseBean.NAME_TAG)), "", attributes));
+				}
+			}
+		}
+		return roles;
+	}
+
+	/**
+	 * Forget revocations for tokens that would have expired by now anyway.
+	 */
+	private void purge() {
+		long now = System.currentTimeMillis();
+		revoked.values().removeIf(t -> t < now - max_age);
+	}
+}
@@ -34,6 +34,8 @@ import javax.ws.rs.WebApplicationException;
 
 import org.akraino.regional_controller.db.DB;
 import org.akraino.regional_controller.db.DBFactory;
+import org.akraino.regional_controller.db.ListQuery;
+import org.akraino.regional_controller.db.RequestContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
@@ -47,6 +49,9 @@ public class User extends BaseBean {
 	// https://en.wikipedia.org/wiki/Password_strength
 	public static final String HI_STRENGTH_RE = "[a-zA-Z0-9 -]{22,}";
 
+	// Never a valid mask, since the unused object bits are never set
+	private static final long UNCOMPILED = -1L;
+
 	public static String createUser(JSONObject json, User creating_user) throws WebApplicationException {
 		Logger logger = LogManager.getLogger();
 		String n = json.optString(NAME_TAG);
@@ -127,16 +132,29 @@ public class User extends BaseBean {
 		return map.values();
 	}
 
+	/**
+	 * Get one page of the Users that match a query.
+	 * @param q the query
+	 * @return the Users, in UUID order
+	 */
+	public static List<User> getUsers(final ListQuery q) {
+		DB db = DBFactory.getDB();
+		return db.getUsers(q);
+	}
+
 	public static User getUserByUUID(final String uuid) {
-		Map<String, User> map = pullFromDB();
-		return map.get(uuid);
+		DB db = DBFactory.getDB();
+		return RequestContext.lookup(User.class, uuid, db::getUserByUuid);
 	}
 
 	public void updateUser() throws WebApplicationException {
 		try {
 			DB db = DBFactory.getDB();
 			db.updateUser(this);
+			RequestContext.replace(User.class, this);
+			SessionTokens.getInstance().revokeUser(getUuid());
 		} catch (SQLException e1) {
+			RequestContext.forget(User.class, getUuid());
 			throw new InternalServerErrorException("ARC-4003: "+e1.getMessage());
 		}
 	}
@@ -181,11 +199,13 @@ public class User extends BaseBean {
 
 	private String pwhash;
 	private Set<Role> roles;
+	private volatile long permissions;	// union of the roles' masks, or UNCOMPILED
 
 	public User(String uuid, String name, String pwhash, String description) {
 		super(uuid, name, description);
 		this.pwhash = pwhash;
 		this.roles = new TreeSet<>();
+		this.permissions = UNCOMPILED;
 	}
 
 	public String getPasswordHash() {
@@ -202,6 +222,25 @@ public class User extends BaseBean {
 
 	public void setRoles(Set<Role> r) {
 		roles = r;
+		permissions = UNCOMPILED;
+	}
+
+	/**
+	 * @return the union of the permission masks of all of this User's Roles; this is computed on first
+	 * use and cached until the roles are replaced
+	 */
+	public long getPermissions() {
+		long p = permissions;
+		if (p == UNCOMPILED) {
+			p = Permissions.NONE;
+			if (roles != null) {
+				for (Role r : roles) {
+					p |= r.getPermissions();
+				}
+			}
+			permissions = p;
+		}
+		return p;
 	}
 
 	@Override
@@ -30,11 +30,24 @@ public class UserSession {
 	private       long expires;
 
 	public static UserSession getSession(String token) {
-		DB db = DBFactory.getDB();
-		UserSession us = db.getSession(token);
+		UserSession us = findSession(token);
 		return (us != null && us.isValid()) ? us : null;
 	}
 
+	/**
+	 * Find the UserSession for a token, whether or not it has expired.
+	 * @param token the session token
+	 * @return the UserSession, or null if the token is unknown (or, for signed tokens, not genuine)
+	 */
+	public static UserSession findSession(String token) {
+		SessionTokens st = SessionTokens.getInstance();
+		if (st.isSigned()) {
+			return st.verify(token);
+		}
+		DB db = DBFactory.getDB();
+		return db.getSession(token);
+	}
+
 	/**
 	 * This form of the constructor is used to build UserSession beans from the database.
 	 * @param user the User this session refers to
@@ -56,12 +69,17 @@ public class UserSession {
 	public UserSession(User user, long age, String realIp) {
 		if (realIp == null)
 			realIp = "0.0.0.0";
+		SessionTokens st = SessionTokens.getInstance();
 		this.user    = user;
-		this.token   = generateToken(user.getName(), realIp);
 		this.expires = System.currentTimeMillis() + (age * 1000L);
-
-		DB db = DBFactory.getDB();
-		db.createSession(this);
+		if (st.isSigned()) {
+			// Signed tokens are self-contained; nothing is stored in the DB
+			this.token = st.issue(user, expires);
+		} else {
+			this.token = generateToken(user.getName(), realIp);
+			DB db = DBFactory.getDB();
+			db.createSession(this);
+		}
 	}
 
 	// <12 bytes user name><14 bytes session time><8 bytes IP addr>
@@ -95,8 +113,13 @@ public class UserSession {
 	}
 
 	public void invalidate() {
-		DB db = DBFactory.getDB();
-		db.invalidateSession(this);
+		SessionTokens st = SessionTokens.getInstance();
+		if (st.isSigned()) {
+			st.revoke(this);
+		} else {
+			DB db = DBFactory.getDB();
+			db.invalidateSession(this);
+		}
 		expires = 0;
 	}
 
@@ -0,0 +1,705 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.akraino.regional_controller.beans.Blueprint;
+import org.akraino.regional_controller.beans.Edgesite;
+import org.akraino.regional_controller.beans.Hardware;
+import org.akraino.regional_controller.beans.Node;
+import org.akraino.regional_controller.beans.POD;
+import org.akraino.regional_controller.beans.PODEvent;
+import org.akraino.regional_controller.beans.PODWorkflow;
+import org.akraino.regional_controller.beans.Region;
+import org.akraino.regional_controller.beans.User;
+import org.akraino.regional_controller.beans.UserSession;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The CachingDB wraps another DB, and keeps the blueprints, edgesites, hardware, nodes, PODs, regions
+ * and users in memory.  Reads are served from the cache; writes go to the wrapped DB first, and then
+ * update (or invalidate) the cache.  It is enabled by setting db.cache.enabled = true.
+ * Only this API server's own writes update the cache, so it should only be enabled when there is a
+ * single API server; otherwise other servers' writes are not seen until entries expire.
+ * Lists restricted by a {@link ListQuery} (a page, or a filter) are passed to the wrapped DB, which can
+ * answer them with a single query rather than by filtering the whole table in memory; the result (and
+ * the revisions used for its ETag) is then cached, keyed by the query, until the next write of that type
+ * of object.  Login sessions are cached separately, by the {@link SessionCachingDB}.
+ */
+public class CachingDB implements DB {
+	public static final String DEFAULT_TTL         = "60";		// seconds
+	public static final String DEFAULT_MAX_ENTRIES = "50000";
+
+	private final DB db;
+	private final EntityCache<Blueprint> blueprints;
+	private final EntityCache<Edgesite>  edgesites;
+	private final EntityCache<Hardware>  hardware;
+	private final EntityCache<Node>      nodes;
+	private final EntityCache<POD>       pods;
+	private final EntityCache<Region>    regions;
+	private final EntityCache<User>      users;
+	private final ThreadLocal<PendingWrites> pending;
+
+	public CachingDB(DB db, Properties api_props) {
+		long ttl = Long.parseLong(api_props.getProperty("db.cache.ttl", DEFAULT_TTL).trim()) * 1000L;
+		int max  = Integer.parseInt(api_props.getProperty("db.cache.max_entries", DEFAULT_MAX_ENTRIES).trim());
+		this.db         = db;
+		this.blueprints = new EntityCache<>("blueprint", ttl, max,
+			b -> withRevision(b, new Blueprint(b.getUuid(), b.getName(), b.getDescription(), b.getVersion(), b.getYaml())));
+		this.edgesites  = new EntityCache<>("edgesite",  ttl, max,
+			e -> withRevision(e, new Edgesite(e.getUuid(), e.getName(), e.getDescription(), e.getRegions(), e.getNodes())));
+		this.hardware   = new EntityCache<>("hardware",  ttl, max,
+			h -> withRevision(h, new Hardware(h.getUuid(), h.getName(), h.getDescription(), h.getYaml())));
+		this.nodes      = new EntityCache<>("node",      ttl, max,
+			n -> withRevision(n, new Node(n.getUuid(), n.getName(), n.getDescription(), n.getHardware(), n.getYaml())));
+		this.pods       = new EntityCache<>("pod",       ttl, max,
+			p -> withRevision(p, new POD(p.getUuid(), p.getName(), p.getDescription(), p.getState(), p.getBlueprint(), p.getEdgesite(), p.getYaml())));
+		this.regions    = new EntityCache<>("region",    ttl, max,
+			r -> withRevision(r, new Region(r.getUuid(), r.getName(), r.getDescription(), r.getParent())));
+		this.users      = new EntityCache<>("user",      ttl, max, CachingDB::copyUser);
+		this.pending    = new ThreadLocal<>();
+	}
+
+	private static <T extends BaseBean> T withRevision(final T from, final T copy) {
+		copy.setRevision(from.getRevision());
+		return copy;
+	}
+
+	static User copyUser(final User u) {
+		User copy = new User(u.getUuid(), u.getName(), u.getPasswordHash(), u.getDescription());
+		if (u.getRoles() != null) {
+			copy.setRoles(new TreeSet<>(u.getRoles()));
+		}
+		return copy;
+	}
+
+	/**
+	 * @return the DB wrapped by this cache
+	 */
+	public DB getDelegate() {
+		return db;
+	}
+
+	/**
+	 * @return the statistics of the wrapped DB, plus the hit/miss/eviction counters for each cache
+	 */
+	@Override
+	public JSONObject getStatistics() {
+		JSONArray ja = new JSONArray();
+		for (EntityCache<?> c : new EntityCache<?>[] { blueprints, edgesites, hardware, nodes, pods, regions, users }) {
+			ja.put(c.getStatistics());
+		}
+		JSONObject jo = db.getStatistics();
+		jo.put("caches", ja);
+		return jo;
+	}
+
+	// TRANSACTIONS ---------------------------------------------------------------------------------------------------------
+	/**
+	 * Writes made inside a Transaction are not cached until it commits, so that no other thread can
+	 * see a write that is later rolled back.  Objects written are removed from the cache at once, and
+	 * their new values are cached when (and only if) the outermost Transaction commits.  While a
+	 * Transaction is open, the thread that opened it reads past the cache, so that it sees its own
+	 * writes, and does not cache anything it has not committed.
+	 */
+	@Override
+	public Transaction beginTransaction() throws SQLException {
+		final Transaction tx = db.beginTransaction();
+		PendingWrites pw = pending.get();
+		if (pw == null) {
+			pw = new PendingWrites();
+			pending.set(pw);
+		}
+		pw.depth++;
+		final PendingWrites mine = pw;
+		final boolean outermost = (pw.depth == 1);
+		return new Transaction() {
+			private boolean closed = false;
+
+			@Override
+			public void commit() throws SQLException {
+				tx.commit();
+				if (outermost) {
+					mine.apply();
+				}
+			}
+			@Override
+			public void rollback() {
+				tx.rollback();
+			}
+			@Override
+			public void close() {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				try {
+					tx.close();
+				} finally {
+					if (--mine.depth == 0) {
+						pending.remove();
+						// Nothing more will be applied; anything not applied was not committed
+						mine.writes.clear();
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * The cache updates made by the Transactions open on one thread, held until the outermost one commits.
+	 */
+	private static class PendingWrites {
+		private final List<Runnable> writes = new ArrayList<>();
+		private int depth = 0;
+
+		private void apply() {
+			for (Runnable r : writes) {
+				r.run();
+			}
+			writes.clear();
+		}
+	}
+
+	private boolean inTransaction() {
+		return pending.get() != null;
+	}
+
+	/**
+	 * Cache a bean that has just been written, or (inside a Transaction) once the Transaction commits.
+	 */
+	private <T extends BaseBean> void cache(final EntityCache<T> c, final T bean) {
+		PendingWrites pw = pending.get();
+		if (pw == null) {
+			c.put(bean);
+		} else {
+			c.remove(bean.getUuid());
+			pw.writes.add(c.putLater(bean));
+		}
+	}
+
+	/**
+	 * Forget a bean that has just been written or deleted (or could not be), and (inside a Transaction)
+	 * forget it again when the Transaction commits, in case another thread cached the old value meanwhile.
+	 */
+	private void forget(final EntityCache<?> c, final String uuid) {
+		c.remove(uuid);
+		PendingWrites pw = pending.get();
+		if (pw != null) {
+			pw.writes.add(() -> c.remove(uuid));
+		}
+	}
+
+	// REVISIONS ---------------------------------------------------------------------------------------------------------
+	/**
+	 * The revision of a cached object is answered from the cache; otherwise the wrapped DB is asked
+	 * (which is cheaper than loading the object, so the object is not cached).
+	 */
+	@Override
+	public Revision getRevision(final Class<? extends BaseBean> type, final String uuid) {
+		EntityCache<?> cache = null;
+		if (type == Blueprint.class) {
+			cache = blueprints;
+		} else if (type == Edgesite.class) {
+			cache = edgesites;
+		} else if (type == Hardware.class) {
+			cache = hardware;
+		} else if (type == Node.class) {
+			cache = nodes;
+		} else if (type == POD.class) {
+			cache = pods;
+		} else if (type == Region.class) {
+			cache = regions;
+		}
+		Revision rev = (cache == null || inTransaction()) ? null : cache.getRevision(uuid);
+		return (rev != null) ? rev : db.getRevision(type, uuid);
+	}
+
+	/**
+	 * The revisions of a list are cached like the list itself, keyed by the ListQuery, until the next write
+	 * of that type of object.
+	 */
+	@Override
+	public Map<String, Revision> getRevisions(final Class<? extends BaseBean> type, final ListQuery q) {
+		EntityCache<?> cache = null;
+		if (type == Blueprint.class) {
+			cache = blueprints;
+		} else if (type == Edgesite.class) {
+			cache = edgesites;
+		} else if (type == Hardware.class) {
+			cache = hardware;
+		} else if (type == Node.class) {
+			cache = nodes;
+		} else if (type == POD.class) {
+			cache = pods;
+		} else if (type == Region.class) {
+			cache = regions;
+		} else if (type == User.class) {
+			cache = users;
+		}
+		if (cache == null || inTransaction()) {
+			return db.getRevisions(type, q);
+		}
+		return cache.getRevisions(q, query -> db.getRevisions(type, query));
+	}
+
+	// BLUEPRINTS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createBlueprint(final Blueprint b) throws SQLException {
+		try {
+			db.createBlueprint(b);
+			cache(blueprints, b);
+		} catch (SQLException e) {
+			forget(blueprints, b.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints() {
+		return inTransaction() ? db.getBlueprints() : blueprints.getAll(db::getBlueprints);
+	}
+
+	@Override
+	public Blueprint getBlueprint(final String uuid) {
+		return inTransaction() ? db.getBlueprint(uuid) : blueprints.get(uuid, db::getBlueprint);
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final Collection<String> uuids) {
+		return inTransaction() ? db.getBlueprints(uuids) : blueprints.getMany(uuids, db::getBlueprints);
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final ListQuery q) {
+		return inTransaction() ? db.getBlueprints(q) : blueprints.getPage(q, db::getBlueprints);
+	}
+
+	@Override
+	public void updateBlueprint(final Blueprint b) throws SQLException {
+		try {
+			db.updateBlueprint(b);
+		} finally {
+			// Only some columns are updated, so reload the Blueprint on the next read
+			forget(blueprints, b.getUuid());
+		}
+	}
+
+	@Override
+	public void deleteBlueprint(final Blueprint b) throws SQLException {
+		try {
+			db.deleteBlueprint(b);
+		} finally {
+			forget(blueprints, b.getUuid());
+		}
+	}
+
+	// EDGESITES ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createEdgesite(final Edgesite e) throws SQLException {
+		try {
+			db.createEdgesite(e);
+			cache(edgesites, e);
+		} catch (SQLException ex) {
+			forget(edgesites, e.getUuid());
+			throw ex;
+		}
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites() {
+		return inTransaction() ? db.getEdgesites() : edgesites.getAll(db::getEdgesites);
+	}
+
+	@Override
+	public Edgesite getEdgesite(final String uuid) {
+		return inTransaction() ? db.getEdgesite(uuid) : edgesites.get(uuid, db::getEdgesite);
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final Collection<String> uuids) {
+		return inTransaction() ? db.getEdgesites(uuids) : edgesites.getMany(uuids, db::getEdgesites);
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final ListQuery q) {
+		return inTransaction() ? db.getEdgesites(q) : edgesites.getPage(q, db::getEdgesites);
+	}
+
+	@Override
+	public void updateEdgesite(final Edgesite e) throws SQLException {
+		try {
+			db.updateEdgesite(e);
+			cache(edgesites, e);
+		} catch (SQLException ex) {
+			forget(edgesites, e.getUuid());
+			throw ex;
+		}
+	}
+
+	@Override
+	public void deleteEdgesite(final Edgesite e) throws SQLException {
+		try {
+			db.deleteEdgesite(e);
+		} finally {
+			forget(edgesites, e.getUuid());
+		}
+	}
+
+	// HARDWARE ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createHardware(final Hardware h) throws SQLException {
+		try {
+			db.createHardware(h);
+			cache(hardware, h);
+		} catch (SQLException e) {
+			forget(hardware, h.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Hardware> getHardware() {
+		return inTransaction() ? db.getHardware() : hardware.getAll(db::getHardware);
+	}
+
+	@Override
+	public Hardware getHardware(final String uuid) {
+		return inTransaction() ? db.getHardware(uuid) : hardware.get(uuid, db::getHardware);
+	}
+
+	@Override
+	public List<Hardware> getHardware(final Collection<String> uuids) {
+		return inTransaction() ? db.getHardware(uuids) : hardware.getMany(uuids, db::getHardware);
+	}
+
+	@Override
+	public List<Hardware> getHardware(final ListQuery q) {
+		return inTransaction() ? db.getHardware(q) : hardware.getPage(q, db::getHardware);
+	}
+
+	@Override
+	public void updateHardware(final Hardware h) throws SQLException {
+		try {
+			db.updateHardware(h);
+			cache(hardware, h);
+		} catch (SQLException e) {
+			forget(hardware, h.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteHardware(final Hardware h) throws SQLException {
+		try {
+			db.deleteHardware(h);
+		} finally {
+			forget(hardware, h.getUuid());
+		}
+	}
+
+	// NODES ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createNode(final Node n) throws SQLException {
+		try {
+			db.createNode(n);
+			cache(nodes, n);
+		} catch (SQLException e) {
+			forget(nodes, n.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Node> getNodes() {
+		return inTransaction() ? db.getNodes() : nodes.getAll(db::getNodes);
+	}
+
+	@Override
+	public Node getNode(final String uuid) {
+		return inTransaction() ? db.getNode(uuid) : nodes.get(uuid, db::getNode);
+	}
+
+	@Override
+	public List<Node> getNodes(final Collection<String> uuids) {
+		return inTransaction() ? db.getNodes(uuids) : nodes.getMany(uuids, db::getNodes);
+	}
+
+	@Override
+	public List<Node> getNodes(final ListQuery q) {
+		return inTransaction() ? db.getNodes(q) : nodes.getPage(q, db::getNodes);
+	}
+
+	@Override
+	public void updateNode(final Node n) throws SQLException {
+		try {
+			db.updateNode(n);
+		} finally {
+			// The hardware column is not updated, so reload the Node on the next read
+			forget(nodes, n.getUuid());
+		}
+	}
+
+	@Override
+	public void deleteNode(final Node n) throws SQLException {
+		try {
+			db.deleteNode(n);
+		} finally {
+			forget(nodes, n.getUuid());
+		}
+	}
+
+	// PODS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createPod(final POD p) throws SQLException {
+		try {
+			db.createPod(p);
+			cache(pods, p);
+		} catch (SQLException e) {
+			forget(pods, p.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public List<POD> getPods() {
+		return inTransaction() ? db.getPods() : pods.getAll(db::getPods);
+	}
+
+	@Override
+	public POD getPod(final String uuid) {
+		return inTransaction() ? db.getPod(uuid) : pods.get(uuid, db::getPod);
+	}
+
+	@Override
+	public List<POD> getPods(final Collection<String> uuids) {
+		return inTransaction() ? db.getPods(uuids) : pods.getMany(uuids, db::getPods);
+	}
+
+	@Override
+	public List<POD> getPods(final ListQuery q) {
+		return inTransaction() ? db.getPods(q) : pods.getPage(q, db::getPods);
+	}
+
+	@Override
+	public void updatePod(final POD p) throws SQLException {
+		try {
+			db.updatePod(p);
+		} finally {
+			// Name and description are not updated, so reload the POD on the next read
+			forget(pods, p.getUuid());
+		}
+	}
+
+	@Override
+	public boolean updatePodState(final POD p, final POD.State from, final POD.State to, final String edgesite) throws SQLException {
+		try {
+			return db.updatePodState(p, from, to, edgesite);
+		} finally {
+			// Either the state has changed, or the cached copy was out of date; reload the POD on the next read
+			forget(pods, p.getUuid());
+		}
+	}
+
+	@Override
+	public void deletePod(final POD p) throws SQLException {
+		try {
+			db.deletePod(p);
+		} finally {
+			forget(pods, p.getUuid());
+		}
+	}
+
+	// PODS_EVENTS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createPodEvent(final PODEvent pe) throws SQLException {
+		try {
+			db.createPodEvent(pe);
+		} finally {
+			// The POD's modification time has changed
+			forget(pods, pe.getUuid());
+		}
+	}
+
+	@Override
+	public List<PODEvent> getPODEvents(final String uuid) {
+		return db.getPODEvents(uuid);
+	}
+
+	// PODS_WORKFLOWS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createPodWorkflow(final PODWorkflow pw) throws SQLException {
+		try {
+			db.createPodWorkflow(pw);
+		} finally {
+			// The POD's modification time has changed
+			forget(pods, pw.getUuid());
+		}
+	}
+
+	@Override
+	public List<PODWorkflow> getPODWorkflows(final String uuid) {
+		return db.getPODWorkflows(uuid);
+	}
+
+	@Override
+	public void updatePodWorkflow(final PODWorkflow pw) throws SQLException {
+		db.updatePodWorkflow(pw);
+	}
+
+	// REGIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createRegion(final Region r) throws SQLException {
+		try {
+			db.createRegion(r);
+			cache(regions, r);
+		} catch (SQLException e) {
+			forget(regions, r.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Region> getRegions() {
+		return inTransaction() ? db.getRegions() : regions.getAll(db::getRegions);
+	}
+
+	@Override
+	public Region getRegion(final String uuid) {
+		return inTransaction() ? db.getRegion(uuid) : regions.get(uuid, db::getRegion);
+	}
+
+	@Override
+	public List<Region> getRegions(final Collection<String> uuids) {
+		return inTransaction() ? db.getRegions(uuids) : regions.getMany(uuids, db::getRegions);
+	}
+
+	@Override
+	public List<Region> getRegions(final ListQuery q) {
+		return inTransaction() ? db.getRegions(q) : regions.getPage(q, db::getRegions);
+	}
+
+	@Override
+	public List<Region> getDescendantRegions(final String uuid) {
+		return db.getDescendantRegions(uuid);
+	}
+
+	@Override
+	public void updateRegion(final Region r) throws SQLException {
+		try {
+			db.updateRegion(r);
+			cache(regions, r);
+		} catch (SQLException e) {
+			forget(regions, r.getUuid());
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteRegion(final Region r) throws SQLException {
+		try {
+			db.deleteRegion(r);
+		} finally {
+			forget(regions, r.getUuid());
+		}
+	}
+
+	// SESSIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createSession(final UserSession us) {
+		db.createSession(us);
+	}
+
+	@Override
+	public UserSession getSession(final String token) {
+		return db.getSession(token);
+	}
+
+	@Override
+	public void invalidateSession(final UserSession us) {
+		db.invalidateSession(us);
+	}
+
+	// REVOKED_TOKENS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createRevocation(final String uuid, final long revoked, final long expires) {
+		db.createRevocation(uuid, revoked, expires);
+	}
+
+	@Override
+	public Map<String, Long> getRevocations() {
+		return db.getRevocations();
+	}
+
+	// USERS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createUser(final User u) throws SQLException {
+		try {
+			db.createUser(u);
+		} finally {
+			forget(users, u.getUuid());
+		}
+	}
+
+	@Override
+	public User getUser(final String name) {
+		return db.getUser(name);
+	}
+
+	@Override
+	public User getUserByUuid(final String uuid) {
+		return inTransaction() ? db.getUserByUuid(uuid) : users.get(uuid, db::getUserByUuid);
+	}
+
+	@Override
+	public List<User> getUsers() {
+		return inTransaction() ? db.getUsers() : users.getAll(db::getUsers);
+	}
+
+	@Override
+	public List<User> getUsers(final ListQuery q) {
+		return inTransaction() ? db.getUsers(q) : users.getPage(q, db::getUsers);
+	}
+
+	@Override
+	public void updateUser(final User u) throws SQLException {
+		try {
+			db.updateUser(u);
+		} finally {
+			// Users may be stored outside of the DB (e.g. LDAP), so always reload on the next read
+			forget(users, u.getUuid());
+		}
+	}
+
+	@Override
+	public void deleteUser(final User u) throws SQLException {
+		try {
+			db.deleteUser(u);
+		} finally {
+			forget(users, u.getUuid());
+		}
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+/**
+ * A bounded JDBC Connection pool used by the StandardDB.  At most db.pool.max_size Connections may be
+ * checked out at any one time; callers wait up to db.pool.acquire_timeout ms for one to become free.
+ * Idle Connections are validated by a background task (rather than on every checkout), Connections
+ * older than db.pool.max_lifetime are retired, and Connections held longer than db.pool.leak_threshold
+ * are reported as possible leaks (with the stack trace of the checkout, if debug logging is enabled).
+ */
+public class ConnectionPool {
+	public static final String DEFAULT_MAX_SIZE            = "20";
+	public static final String DEFAULT_MIN_IDLE            = "2";
+	public static final String DEFAULT_ACQUIRE_TIMEOUT     = "5000";	// milliseconds
+	public static final String DEFAULT_VALIDATION_INTERVAL = "30";		// seconds
+	public static final String DEFAULT_LEAK_THRESHOLD      = "60";		// seconds, 0 disables
+	public static final String DEFAULT_MAX_LIFETIME        = "1800";	// seconds, 0 disables
+
+	private static final Logger logger = LogManager.getLogger();
+
+	private final String db_url;
+	private final String db_login;
+	private final String db_password;
+	private final int    max_size;
+	private final int    min_idle;
+	private final long   acquire_timeout;
+	private final long   leak_threshold;
+	private final long   max_lifetime;
+
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<PooledConnection> idle;
+	private final Map<Connection, PooledConnection> active;
+	private final Timer rolex;
+
+	// Statistics
+	private final AtomicInteger waiters;
+	private final AtomicInteger total;
+	private final AtomicLong acquire_count;
+	private final AtomicLong acquire_nanos;
+	private final AtomicLong acquire_max_nanos;
+	private final AtomicLong timeouts;
+	private final AtomicLong leaks;
+
+	public ConnectionPool(String url, String login, String password, Properties api_props) {
+		this.db_url          = url;
+		this.db_login        = login;
+		this.db_password     = password;
+		this.max_size        = Integer.parseInt(api_props.getProperty("db.pool.max_size", DEFAULT_MAX_SIZE).trim());
+		this.min_idle        = Math.min(max_size, Integer.parseInt(api_props.getProperty("db.pool.min_idle", DEFAULT_MIN_IDLE).trim()));
+		this.acquire_timeout = Long.parseLong(api_props.getProperty("db.pool.acquire_timeout", DEFAULT_ACQUIRE_TIMEOUT).trim());
+		this.leak_threshold  = Long.parseLong(api_props.getProperty("db.pool.leak_threshold", DEFAULT_LEAK_THRESHOLD).trim()) * 1000L;
+		this.max_lifetime    = Long.parseLong(api_props.getProperty("db.pool.max_lifetime", DEFAULT_MAX_LIFETIME).trim()) * 1000L;
+		long interval        = Long.parseLong(api_props.getProperty("db.pool.validation_interval", DEFAULT_VALIDATION_INTERVAL).trim()) * 1000L;
+
+		this.permits           = new Semaphore(max_size, true);
+		this.idle              = new LinkedBlockingDeque<>();
+		this.active            = new ConcurrentHashMap<>();
+		this.waiters           = new AtomicInteger();
+		this.total             = new AtomicInteger();
+		this.acquire_count     = new AtomicLong();
+		this.acquire_nanos     = new AtomicLong();
+		this.acquire_max_nanos = new AtomicLong();
+		this.timeouts          = new AtomicLong();
+		this.leaks             = new AtomicLong();
+
+		this.rolex = new Timer("ConnectionPool Timer", true);
+		if (interval > 0) {
+			this.rolex.schedule(new Maintenance(), interval, interval);
+		} else {
+			logger.warn("db.pool.validation_interval is not positive; idle Connections will not be validated, and leaks not detected");
+		}
+		logger.info(String.format("Started ConnectionPool: max_size=%d, min_idle=%d, acquire_timeout=%dms",
+			max_size, min_idle, acquire_timeout));
+	}
+
+	/**
+	 * Check out a Connection from the pool, opening a new one if no idle Connection is available.
+	 * @return the Connection, which must be returned via {@link #release(Connection)}
+	 * @throws SQLException if no Connection became available within db.pool.acquire_timeout ms
+	 */
+	public Connection acquire() throws SQLException {
+		long start = System.nanoTime();
+		waiters.incrementAndGet();
+		try {
+			if (!permits.tryAcquire(acquire_timeout, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLException("Timed out after "+acquire_timeout+"ms waiting for a database connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection");
+		} finally {
+			waiters.decrementAndGet();
+		}
+		try {
+			PooledConnection pc = idle.pollFirst();
+			while (pc != null && pc.isExpired()) {
+				retire(pc);
+				pc = idle.pollFirst();
+			}
+			if (pc == null) {
+				pc = open();
+			}
+			pc.checkout();
+			active.put(pc.conn, pc);
+			recordAcquire(System.nanoTime() - start);
+			return pc.conn;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return a Connection to the pool.  Connections that are closed, or past their lifetime, are discarded.
+	 * @param conn the Connection (may be null)
+	 */
+	public void release(Connection conn) {
+		if (conn == null) {
+			return;
+		}
+		PooledConnection pc = active.remove(conn);
+		if (pc == null) {
+			logger.warn("Attempt to release a Connection not checked out from this pool");
+			return;
+		}
+		try {
+			if (conn.isClosed() || pc.isExpired()) {
+				retire(pc);
+			} else {
+				if (!conn.getAutoCommit()) {
+					conn.rollback();
+					conn.setAutoCommit(true);
+				}
+				idle.offerFirst(pc);
+			}
+		} catch (SQLException e) {
+			logger.warn(e);
+			retire(pc);
+		} finally {
+			permits.release();
+		}
+	}
+
+	public int getActiveCount() {
+		return active.size();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getWaiterCount() {
+		return waiters.get();
+	}
+
+	/**
+	 * @return a snapshot of the pool statistics, suitable for sizing the pool
+	 */
+	public JSONObject getStatistics() {
+		long n = acquire_count.get();
+		JSONObject jo = new JSONObject();
+		jo.put("max_size", max_size);
+		jo.put("min_idle", min_idle);
+		jo.put("total", total.get());
+		jo.put("active", getActiveCount());
+		jo.put("idle", getIdleCount());
+		jo.put("waiters", getWaiterCount());
+		jo.put("acquired", n);
+		jo.put("acquire_avg_us", (n == 0) ? 0L : (acquire_nanos.get() / n) / 1000L);
+		jo.put("acquire_max_us", acquire_max_nanos.get() / 1000L);
+		jo.put("timeouts", timeouts.get());
+		jo.put("leaks", leaks.get());
+		return jo;
+	}
+
+	/**
+	 * Run the maintenance task (see {@link Maintenance}) once, now, rather than waiting for the timer.
+	 */
+	void runMaintenance() {
+		new Maintenance().run();
+	}
+
+	private void recordAcquire(long nanos) {
+		acquire_count.incrementAndGet();
+		acquire_nanos.addAndGet(nanos);
+		long max = acquire_max_nanos.get();
+		while (nanos > max && !acquire_max_nanos.compareAndSet(max, nanos)) {
+			max = acquire_max_nanos.get();
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection conn = DriverManager.getConnection(db_url, db_login, db_password);
+		total.incrementAndGet();
+		return new PooledConnection(conn);
+	}
+
+	private void retire(PooledConnection pc) {
+		total.decrementAndGet();
+		try {
+			pc.conn.close();
+		} catch (Exception e) {
+			// ignore this
+		}
+	}
+
+	/**
+	 * Periodic task that validates idle Connections, retires expired ones, tops the pool up to
+	 * db.pool.min_idle, and reports Connections that appear to have leaked.
+	 */
+	private class Maintenance extends TimerTask {
+		@Override
+		public void run() {
+			try {
+				validateIdle();
+				fillIdle();
+				detectLeaks();
+				logger.debug("ConnectionPool: "+getStatistics());
+			} catch (RuntimeException e) {
+				logger.warn(e);
+			}
+		}
+		private void validateIdle() {
+			// Take out one Connection at a time, so that acquire() still finds the others.  A permit is held
+			// while a Connection is out of the idle list, as if it were checked out; otherwise acquire() could
+			// find the list empty, open another Connection, and take the pool past db.pool.max_size.
+			for (PooledConnection pc : idle.toArray(new PooledConnection[0])) {
+				if (!permits.tryAcquire()) {
+					return;		// every Connection is in use; there is nothing idle to validate
+				}
+				try {
+					if (!idle.remove(pc)) {
+						continue;	// checked out in the meantime
+					}
+					boolean ok = false;
+					try {
+						ok = !pc.isExpired() && pc.conn.isValid(1);
+					} catch (SQLException e) {
+						// treat as invalid
+					}
+					if (ok) {
+						idle.offerLast(pc);
+					} else {
+						retire(pc);
+					}
+				} finally {
+					permits.release();
+				}
+			}
+		}
+		private void fillIdle() {
+			// Hold a permit while opening, so that the pool cannot grow past db.pool.max_size
+			while (idle.size() < min_idle && total.get() < max_size && permits.tryAcquire()) {
+				try {
+					idle.offerLast(open());
+				} catch (SQLException e) {
+					logger.warn(e);
+					return;
+				} finally {
+					permits.release();
+				}
+			}
+		}
+		private void detectLeaks() {
+			if (leak_threshold > 0) {
+				long now = System.currentTimeMillis();
+				for (PooledConnection pc : active.values()) {
+					if (!pc.leak_reported && (now - pc.checkout_time) > leak_threshold) {
+						pc.leak_reported = true;
+						leaks.incrementAndGet();
+						String msg = "Possible Connection leak: held for "+(now - pc.checkout_time)+"ms by "+pc.checkout_thread;
+						if (pc.checkout_trace != null) {
+							logger.warn(msg, pc.checkout_trace);
+						} else {
+							logger.warn(msg+" (enable debug logging for the stack trace of the checkout)");
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private class PooledConnection {
+		private final Connection conn;
+		private final long created;
+		private volatile long checkout_time;
+		private volatile String checkout_thread;
+		private volatile Throwable checkout_trace;
+		private volatile boolean leak_reported;
+
+		private PooledConnection(Connection conn) {
+			this.conn    = conn;
+			this.created = System.currentTimeMillis();
+		}
+		private void checkout() {
+			checkout_time   = System.currentTimeMillis();
+			checkout_thread = Thread.currentThread().getName();
+			// Building a stack trace on every checkout is costly, so it is only done when debugging
+			checkout_trace  = (leak_threshold > 0 && logger.isDebugEnabled()) ? new Exception("Connection checked out here") : null;
+			leak_reported   = false;
+		}
+		private boolean isExpired() {
+			return max_lifetime > 0 && (System.currentTimeMillis() - created) > max_lifetime;
+		}
+	}
+}
@@ -17,8 +17,19 @@
 package org.akraino.regional_controller.db;
 
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Blueprint;
 import org.akraino.regional_controller.beans.Edgesite;
 import org.akraino.regional_controller.beans.Hardware;
@@ -29,36 +40,154 @@ import org.akraino.regional_controller.beans.PODWorkflow;
 import org.akraino.regional_controller.beans.Region;
 import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.beans.UserSession;
+import org.json.JSONObject;
 
+/**
+ * The methods used to store and fetch the objects kept by the regional controller.  The list methods
+ * that take a {@link ListQuery} apply the query to the whole list by default; a DB that can do better
+ * (such as the {@link StandardDB}) should override them.
+ */
 public interface DB {
+	// TRANSACTIONS
+	public Transaction beginTransaction() throws SQLException;
+
+	// STATISTICS
+	/**
+	 * @return statistics about the DB (such as its Connection pool or caches), for use in sizing it; by
+	 * default there are none
+	 */
+	public default JSONObject getStatistics() {
+		return new JSONObject();
+	}
+
+	// REVISIONS
+	/**
+	 * Get the current revision of a Blueprint, Edgesite, Hardware, Node, POD or Region.  This is used to
+	 * answer conditional requests, so a DB should fetch as little as it can (by default, the whole
+	 * object is fetched).
+	 * @param type the class of the object
+	 * @param uuid the UUID of the object
+	 * @return the revision, or null if there is no such object
+	 */
+	public default Revision getRevision(final Class<? extends BaseBean> type, final String uuid) {
+		BaseBean bean = null;
+		if (type == Blueprint.class) {
+			bean = getBlueprint(uuid);
+		} else if (type == Edgesite.class) {
+			bean = getEdgesite(uuid);
+		} else if (type == Hardware.class) {
+			bean = getHardware(uuid);
+		} else if (type == Node.class) {
+			bean = getNode(uuid);
+		} else if (type == POD.class) {
+			bean = getPod(uuid);
+		} else if (type == Region.class) {
+			bean = getRegion(uuid);
+		}
+		return (bean == null) ? null : bean.getRevision();
+	}
+
+	/**
+	 * Get the UUIDs and current revisions of the objects that match a ListQuery, without reading the
+	 * objects themselves.  This is used to tag a list, so a DB should fetch as little as it can (by
+	 * default, the objects are fetched).
+	 * @param type the class of the objects (Blueprint, Edgesite, Hardware, Node, POD, Region or User)
+	 * @param q the query
+	 * @return a map from UUID to revision, in UUID order
+	 */
+	public default Map<String, Revision> getRevisions(final Class<? extends BaseBean> type, final ListQuery q) {
+		List<? extends BaseBean> list;
+		if (type == Blueprint.class) {
+			list = getBlueprints(q);
+		} else if (type == Edgesite.class) {
+			list = getEdgesites(q);
+		} else if (type == Hardware.class) {
+			list = getHardware(q);
+		} else if (type == Node.class) {
+			list = getNodes(q);
+		} else if (type == POD.class) {
+			list = getPods(q);
+		} else if (type == Region.class) {
+			list = getRegions(q);
+		} else if (type == User.class) {
+			list = getUsers(q);
+		} else {
+			throw new IllegalArgumentException("No revisions are kept for "+type.getSimpleName());
+		}
+		Map<String, Revision> map = new LinkedHashMap<>();
+		for (BaseBean b : list) {
+			map.put(b.getUuid(), b.getRevision());
+		}
+		return map;
+	}
+
+	// The update methods of the Blueprints, Edgesites, Hardware, Nodes, PODs and Regions only write an
+	// object if it is still at the revision it was read at, and throw a StaleRevisionException otherwise.
+
 	// BLUEPRINTS
 	public void createBlueprint(final Blueprint b) throws SQLException;
 	public List<Blueprint> getBlueprints();
+	public Blueprint getBlueprint(final String uuid);
+	public List<Blueprint> getBlueprints(final Collection<String> uuids);
+	public default List<Blueprint> getBlueprints(final ListQuery q) {
+		return q.apply(getBlueprints());
+	}
 	public void updateBlueprint(final Blueprint b) throws SQLException;
 	public void deleteBlueprint(final Blueprint b) throws SQLException;
 
 	// EDGESITES
 	public void createEdgesite(final Edgesite e) throws SQLException;
 	public List<Edgesite> getEdgesites();
+	public Edgesite getEdgesite(final String uuid);
+	public List<Edgesite> getEdgesites(final Collection<String> uuids);
+	public default List<Edgesite> getEdgesites(final ListQuery q) {
+		return q.apply(getEdgesites());
+	}
 	public void updateEdgesite(final Edgesite e) throws SQLException;
 	public void deleteEdgesite(final Edgesite e) throws SQLException;
 
 	// HARDWARE
 	public void createHardware(final Hardware h) throws SQLException;
 	public List<Hardware> getHardware();
+	public Hardware getHardware(final String uuid);
+	public List<Hardware> getHardware(final Collection<String> uuids);
+	public default List<Hardware> getHardware(final ListQuery q) {
+		return q.apply(getHardware());
+	}
 	public void updateHardware(final Hardware h) throws SQLException;
 	public void deleteHardware(final Hardware h) throws SQLException;
 
 	// NODES
 	public void createNode(final Node n) throws SQLException;
 	public List<Node> getNodes();
+	public Node getNode(final String uuid);
+	public List<Node> getNodes(final Collection<String> uuids);
+	public default List<Node> getNodes(final ListQuery q) {
+		return q.apply(getNodes());
+	}
 	public void updateNode(final Node n) throws SQLException;
 	public void deleteNode(final Node n) throws SQLException;
 
 	// PODS
 	public void createPod(final POD p) throws SQLException;
 	public List<POD> getPods();
+	public POD getPod(final String uuid);
+	public List<POD> getPods(final Collection<String> uuids);
+	public default List<POD> getPods(final ListQuery q) {
+		return q.apply(getPods());
+	}
 	public void updatePod(final POD p) throws SQLException;
+	/**
+	 * Move a POD from one state to another, if (and only if) it is still in the first state.  When the
+	 * POD leaves the WORKFLOW state, the end time of its running workflow instance is set in the same
+	 * transaction.  If the state is changed, the POD's revision is updated to match the DB.
+	 * @param p the POD (its state and Edgesite fields are left for the caller to set)
+	 * @param from the state the POD is expected to be in
+	 * @param to the new state
+	 * @param edgesite the POD's new Edgesite, or null to leave it as it is
+	 * @return true if the state was changed, false if the POD is no longer in state <i>from</i>
+	 */
+	public boolean updatePodState(final POD p, final POD.State from, final POD.State to, final String edgesite) throws SQLException;
 	public void deletePod(final POD p) throws SQLException;
 
 	// PODS_EVENTS
@@ -73,6 +202,41 @@ public interface DB {
 	// REGIONS
 	public void createRegion(final Region r) throws SQLException;
 	public List<Region> getRegions();
+	public Region getRegion(final String uuid);
+	public List<Region> getRegions(final Collection<String> uuids);
+	public default List<Region> getRegions(final ListQuery q) {
+		return q.apply(getRegions());
+	}
+	/**
+	 * Get every Region below a Region in the Region tree (its children, their children, and so on).  By
+	 * default the whole Region table is read and walked in memory; a DB that can do better (such as the
+	 * {@link StandardDB}) should override this.  Loops in the tree are tolerated.
+	 * @param uuid the UUID of the Region
+	 * @return the Regions below it (not including the Region itself), in UUID order
+	 */
+	public default List<Region> getDescendantRegions(final String uuid) {
+		Map<String, List<Region>> children = new HashMap<>();
+		for (Region r : getRegions()) {
+			if (r.getParent() != null) {
+				children.computeIfAbsent(r.getParent().toLowerCase(), k -> new ArrayList<>()).add(r);
+			}
+		}
+		Set<String> seen = new HashSet<>();
+		seen.add(uuid.toLowerCase());
+		List<Region> list = new ArrayList<>();
+		Deque<String> todo = new ArrayDeque<>();
+		todo.add(uuid);
+		while (!todo.isEmpty()) {
+			for (Region r : children.getOrDefault(todo.remove().toLowerCase(), Collections.emptyList())) {
+				if (seen.add(r.getUuid().toLowerCase())) {
+					list.add(r);
+					todo.add(r.getUuid());
+				}
+			}
+		}
+		list.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.getUuid(), b.getUuid()));
+		return list;
+	}
 	public void updateRegion(final Region r) throws SQLException;
 	public void deleteRegion(final Region r) throws SQLException;
 
@@ -81,10 +245,29 @@ public interface DB {
 	public UserSession getSession(final String token);
 	public void invalidateSession(final UserSession us);
 
+	// REVOKED_TOKENS
+	/**
+	 * Record the revocation of a signed session token, or of every token issued to a User up to now,
+	 * so that every API server can refuse it.
+	 * @param uuid the token's ID, or the User's UUID
+	 * @param revoked the time (in ms) of the revocation
+	 * @param expires the time (in ms) after which the revocation no longer matters
+	 */
+	public void createRevocation(final String uuid, final long revoked, final long expires);
+	/**
+	 * @return the revocations that have not yet expired, as a map from token ID or User UUID to the
+	 * (latest) time of revocation
+	 */
+	public Map<String, Long> getRevocations();
+
 	// USERS
 	public void createUser(final User u) throws SQLException;
 	public User getUser(final String name);
+	public User getUserByUuid(final String uuid);
 	public List<User> getUsers();
+	public default List<User> getUsers(final ListQuery q) {
+		return q.apply(getUsers());
+	}
 	public void updateUser(final User u) throws SQLException;
 	public void deleteUser(final User u) throws SQLException;
 }
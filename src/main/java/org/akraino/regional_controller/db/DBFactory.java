@@ -42,6 +42,18 @@ public class DBFactory {
 		}
 		return singleton;
 	}
+	/**
+	 * @return the DB without the caches in front of it (if caching is enabled), for reads that must see
+	 *   the latest committed rows, such as the read of a read-modify-write
+	 */
+	public static DB getUncachedDB() {
+		DB db = getDB();
+		if (db instanceof SessionCachingDB) {
+			db = ((SessionCachingDB) db).getDelegate();
+		}
+		return (db instanceof CachingDB) ? ((CachingDB) db).getDelegate() : db;
+	}
+
 	private static DB getDBinternal() {
 		Properties props = new Properties();
 		InputStream is = null;
@@ -49,20 +61,33 @@ public class DBFactory {
 			is = DBFactory.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE);
 			props.load(is);
 			String flav = props.getProperty("db.flavor", "StandardDB");
+			DB db;
 			switch (flav) {
 			case "StandardDB":
 			case "org.akraino.regional_controller.db.StandardDB":
-				return new StandardDB(props);
+				db = new StandardDB(props);
+				break;
 
 			case "StandardDBWithLDAP":
 			case "org.akraino.regional_controller.db.StandardDBWithLDAP":
-				return new StandardDBWithLDAP(props);
+				db = new StandardDBWithLDAP(props);
+				break;
 
 			case "PropertiesDB":
 			case "org.akraino.regional_controller.db.PropertiesDB":
 			default:
-				return new PropertiesDB(props);
+				db = new PropertiesDB(props);
+				break;
+			}
+			if (Boolean.parseBoolean(props.getProperty("db.cache.enabled", "false").trim())) {
+				logger.info("Caching enabled for "+flav);
+				db = new CachingDB(db, props);
+			}
+			if (Boolean.parseBoolean(props.getProperty("db.session_cache.enabled", "false").trim())) {
+				logger.info("Session caching enabled for "+flav);
+				db = new SessionCachingDB(db, props);
 			}
+			return db;
 		} catch (IOException e) {
 			logger.error(e);
 			return null;
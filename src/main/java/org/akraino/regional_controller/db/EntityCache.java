@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.json.JSONObject;
+
+/**
+ * A cache of one type of bean, used by the {@link CachingDB}.  Beans are kept by UUID, as a snapshot
+ * of the entire table, and as the results of list queries (pages, and their revisions), keyed by the
+ * query.  Entries expire after a TTL, and the cache never holds more than max_entries beans by UUID
+ * (nor more than max_entries in pages).  Any write drops the snapshot and every page.  Since beans are
+ * mutable, callers are always handed a copy.
+ */
+class EntityCache<T extends BaseBean> {
+	private final String name;
+	private final long ttl;
+	private final int max_entries;
+	private final UnaryOperator<T> copier;
+	private final Map<String, Entry<T>> map;
+	private final AtomicLong generation;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong evictions;
+	private volatile Snapshot<T> snapshot;
+	private final Map<String, Page<List<T>>> pages;
+	private final Map<String, Page<Map<String, Revision>>> revisions;
+	private int page_entries;				// the number of beans (or revisions) held in pages
+
+	EntityCache(String name, long ttl, int max_entries, UnaryOperator<T> copier) {
+		this.name        = name;
+		this.ttl         = ttl;
+		this.max_entries = max_entries;
+		this.copier      = copier;
+		this.map         = new ConcurrentHashMap<>();
+		this.generation  = new AtomicLong();
+		this.hits        = new AtomicLong();
+		this.misses      = new AtomicLong();
+		this.evictions   = new AtomicLong();
+		this.snapshot    = null;
+		this.pages       = new ConcurrentHashMap<>();
+		this.revisions   = new ConcurrentHashMap<>();
+		this.page_entries = 0;
+	}
+
+	/**
+	 * Get one bean by UUID, loading it with loader on a miss.  Misses for unknown UUIDs are not cached.
+	 */
+	T get(final String uuid, final Function<String, T> loader) {
+		if (uuid == null) {
+			return null;
+		}
+		String key = uuid.toLowerCase();
+		Entry<T> e = map.get(key);
+		if (e != null && !e.isExpired()) {
+			hits.incrementAndGet();
+			return copier.apply(e.bean);
+		}
+		misses.incrementAndGet();
+		long gen = generation.get();
+		T bean = loader.apply(uuid);
+		if (bean != null) {
+			store(bean, gen);
+			return copier.apply(bean);
+		}
+		return null;
+	}
+
+	/**
+	 * Get the revision of a cached bean, without copying it or going to the DB.
+	 * @return the revision, or null if the bean is not in the cache
+	 */
+	Revision getRevision(final String uuid) {
+		Entry<T> e = (uuid == null) ? null : map.get(uuid.toLowerCase());
+		if (e != null && !e.isExpired()) {
+			hits.incrementAndGet();
+			return e.bean.getRevision();
+		}
+		return null;
+	}
+
+	/**
+	 * Get several beans by UUID.  The UUIDs that miss are loaded together, with a single call to loader.
+	 */
+	List<T> getMany(final Collection<String> uuids, final Function<Collection<String>, List<T>> loader) {
+		List<T> list = new ArrayList<>(uuids.size());
+		List<String> missing = new ArrayList<>();
+		for (String uuid : uuids) {
+			Entry<T> e = (uuid == null) ? null : map.get(uuid.toLowerCase());
+			if (e != null && !e.isExpired()) {
+				hits.incrementAndGet();
+				list.add(copier.apply(e.bean));
+			} else if (uuid != null) {
+				misses.incrementAndGet();
+				missing.add(uuid);
+			}
+		}
+		if (!missing.isEmpty()) {
+			long gen = generation.get();
+			for (T bean : loader.apply(missing)) {
+				store(bean, gen);
+				list.add(copier.apply(bean));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Get all beans, loading the entire table with loader if there is no current snapshot.
+	 */
+	List<T> getAll(final Supplier<List<T>> loader) {
+		Snapshot<T> s = snapshot;
+		List<T> source;
+		if (s != null && !s.isExpired()) {
+			hits.incrementAndGet();
+			source = s.list;
+		} else {
+			misses.incrementAndGet();
+			long gen = generation.get();
+			source = loader.get();
+			if (source.size() <= max_entries) {
+				List<T> cached = new ArrayList<>(source.size());
+				for (T bean : source) {
+					cached.add(copier.apply(bean));
+					store(bean, gen);
+				}
+				synchronized (this) {
+					if (generation.get() == gen) {
+						snapshot = new Snapshot<>(cached, System.currentTimeMillis() + ttl);
+					}
+				}
+			}
+		}
+		List<T> list = new ArrayList<>(source.size());
+		for (T bean : source) {
+			list.add(copier.apply(bean));
+		}
+		return list;
+	}
+
+	/**
+	 * Get the beans that match a ListQuery, loading them with loader if the same query has not been
+	 * answered since the last write.
+	 */
+	List<T> getPage(final ListQuery q, final Function<ListQuery, List<T>> loader) {
+		String key = q.getCacheKey();
+		Page<List<T>> p = pages.get(key);
+		List<T> source;
+		if (p != null && !p.isExpired()) {
+			hits.incrementAndGet();
+			source = p.value;
+		} else {
+			misses.incrementAndGet();
+			long gen = generation.get();
+			source = loader.apply(q);
+			List<T> cached = new ArrayList<>(source.size());
+			for (T bean : source) {
+				cached.add(copier.apply(bean));
+			}
+			synchronized (this) {
+				if (generation.get() == gen && reservePage(cached.size())) {
+					pages.put(key, new Page<>(cached, cached.size(), System.currentTimeMillis() + ttl));
+				}
+			}
+		}
+		List<T> list = new ArrayList<>(source.size());
+		for (T bean : source) {
+			list.add(copier.apply(bean));
+		}
+		return list;
+	}
+
+	/**
+	 * Get the revisions of the beans that match a ListQuery, loading them with loader if the same query
+	 * has not been answered since the last write.
+	 */
+	Map<String, Revision> getRevisions(final ListQuery q, final Function<ListQuery, Map<String, Revision>> loader) {
+		String key = q.getCacheKey();
+		Page<Map<String, Revision>> p = revisions.get(key);
+		if (p != null && !p.isExpired()) {
+			hits.incrementAndGet();
+			return new LinkedHashMap<>(p.value);
+		}
+		misses.incrementAndGet();
+		long gen = generation.get();
+		Map<String, Revision> revs = loader.apply(q);
+		// Revisions are immutable, so the map only needs copying
+		Map<String, Revision> cached = new LinkedHashMap<>(revs);
+		synchronized (this) {
+			if (generation.get() == gen && reservePage(cached.size())) {
+				revisions.put(key, new Page<>(cached, cached.size(), System.currentTimeMillis() + ttl));
+			}
+		}
+		return revs;
+	}
+
+	/**
+	 * Make room for a page of n entries, dropping the expired pages, or else all of them, if the pages
+	 * would hold more than max_entries.  Called with the lock held.
+	 * @return true if the page may be cached
+	 */
+	private boolean reservePage(final int n) {
+		if (n > max_entries) {
+			return false;
+		}
+		if (page_entries + n > max_entries) {
+			pages.values().removeIf(Page::isExpired);
+			revisions.values().removeIf(Page::isExpired);
+			page_entries = 0;
+			for (Page<?> p : pages.values()) {
+				page_entries += p.size;
+			}
+			for (Page<?> p : revisions.values()) {
+				page_entries += p.size;
+			}
+			if (page_entries + n > max_entries) {
+				evictions.addAndGet(pages.size() + revisions.size());
+				clearPages();
+			}
+		}
+		page_entries += n;
+		return true;
+	}
+
+	/**
+	 * Drop every page.  Called with the lock held.
+	 */
+	private void clearPages() {
+		pages.clear();
+		revisions.clear();
+		page_entries = 0;
+	}
+
+	/**
+	 * Record a bean that has just been written to the DB.
+	 */
+	void put(final T bean) {
+		long gen;
+		synchronized (this) {
+			gen = generation.incrementAndGet();
+			snapshot = null;
+			clearPages();
+		}
+		store(bean, gen);
+	}
+
+	/**
+	 * Take a copy of a bean that has just been written to the DB, to be recorded later (when the
+	 * Transaction it was written in commits).
+	 * @return a Runnable that records the copy
+	 */
+	Runnable putLater(final T bean) {
+		final T copy = copier.apply(bean);
+		return () -> put(copy);
+	}
+
+	/**
+	 * Forget a bean that has just been removed from (or could not be written to) the DB.
+	 */
+	void remove(final String uuid) {
+		synchronized (this) {
+			generation.incrementAndGet();
+			snapshot = null;
+			clearPages();
+			if (uuid != null) {
+				map.remove(uuid.toLowerCase());
+			}
+		}
+	}
+
+	void clear() {
+		synchronized (this) {
+			generation.incrementAndGet();
+			snapshot = null;
+			clearPages();
+			map.clear();
+		}
+	}
+
+	JSONObject getStatistics() {
+		JSONObject jo = new JSONObject();
+		jo.put("name", name);
+		jo.put("size", map.size());
+		jo.put("pages", pages.size() + revisions.size());
+		jo.put("hits", hits.get());
+		jo.put("misses", misses.get());
+		jo.put("evictions", evictions.get());
+		return jo;
+	}
+
+	private void store(final T bean, final long gen) {
+		Entry<T> e = new Entry<>(copier.apply(bean), System.currentTimeMillis() + ttl);
+		synchronized (this) {
+			// Don't let a read that raced with a write put stale data back into the cache
+			if (generation.get() != gen) {
+				return;
+			}
+			// Keyed the same way as the lookups, whatever the case of the UUID
+			map.put(bean.getUuid().toLowerCase(), e);
+		}
+		if (map.size() > max_entries) {
+			evict();
+		}
+	}
+
+	/**
+	 * Evict expired entries, then (if still too large) the oldest tenth of the cache.
+	 */
+	private void evict() {
+		map.values().removeIf(Entry::isExpired);
+		int excess = map.size() - max_entries;
+		if (excess > 0) {
+			List<Map.Entry<String, Entry<T>>> list = new ArrayList<>(map.entrySet());
+			list.sort((a, b) -> Long.compare(a.getValue().expires, b.getValue().expires));
+			int n = Math.min(list.size(), Math.max(excess, max_entries / 10));
+			for (int i = 0; i < n; i++) {
+				map.remove(list.get(i).getKey());
+				evictions.incrementAndGet();
+			}
+		}
+	}
+
+	private static class Entry<T> {
+		private final T bean;
+		private final long expires;
+
+		private Entry(T bean, long expires) {
+			this.bean    = bean;
+			this.expires = expires;
+		}
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+	}
+
+	private static class Snapshot<T> {
+		private final List<T> list;
+		private final long expires;
+
+		private Snapshot(List<T> list, long expires) {
+			this.list    = list;
+			this.expires = expires;
+		}
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+	}
+
+	private static class Page<V> {
+		private final V value;
+		private final int size;
+		private final long expires;
+
+		private Page(V value, int size, long expires) {
+			this.value   = value;
+			this.size    = size;
+			this.expires = expires;
+		}
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The restrictions placed upon a list request: which objects to return (by UUID, by name, or by the
+ * value of some other field), how many of them (the limit), where to start (the cursor), and which
+ * fields of each object are wanted.  Objects are always returned in UUID order.  The cursor for the
+ * next page is the UUID of the last object of a full page, so paging is stable while objects are
+ * added or removed.  Names and filter values are compared without regard to case.
+ *
+ * The StandardDB turns a ListQuery into SQL; the other DBs apply it, in memory, to the whole list.
+ */
+public class ListQuery {
+	public static final int MAX_LIMIT = 1000;
+	public static final int MAX_UUIDS = 500;
+
+	private int limit;						// 0 means no limit
+	private String cursor;
+	private List<String> uuids;
+	private String name;
+	private String name_contains;
+	private final Map<String, List<String>> filters;
+	private Set<String> fields;				// null means all fields
+
+	public ListQuery() {
+		this.limit         = 0;
+		this.cursor        = null;
+		this.uuids         = null;
+		this.name          = null;
+		this.name_contains = null;
+		this.filters       = new LinkedHashMap<>();
+		this.fields        = null;
+	}
+
+	/**
+	 * Build a query for every object with a particular value for a field; e.g. all of the objects
+	 * that refer to another object.
+	 * @param filter the name of the field
+	 * @param value the value
+	 * @return the query
+	 */
+	public static ListQuery where(final String filter, final String value) {
+		ListQuery q = new ListQuery();
+		q.addFilter(filter, value);
+		return q;
+	}
+
+	/**
+	 * Make a copy of this query for one page of its results.
+	 * @param cursor the UUID to start after, or null
+	 * @param limit the size of the page
+	 * @return the copy
+	 */
+	public ListQuery page(final String cursor, final int limit) {
+		ListQuery q = new ListQuery();
+		q.limit         = limit;
+		q.cursor        = cursor;
+		q.uuids         = uuids;
+		q.name          = name;
+		q.name_contains = name_contains;
+		q.filters.putAll(filters);
+		q.fields        = fields;
+		return q;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	/**
+	 * @return the UUIDs of the only objects wanted, or null for any object
+	 */
+	public List<String> getUuids() {
+		return uuids;
+	}
+
+	public void setUuids(List<String> uuids) {
+		this.uuids = uuids;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return a string which the name of every object wanted must contain, or null
+	 */
+	public String getNameContains() {
+		return name_contains;
+	}
+
+	public void setNameContains(String name_contains) {
+		this.name_contains = name_contains;
+	}
+
+	/**
+	 * Only return objects with a particular value for a field (see {@link BaseBean#getFilterValue(String)}).
+	 * @param filter the name of the field
+	 * @param value the value; if null or empty, there is no restriction
+	 */
+	public void addFilter(final String filter, final String value) {
+		if (value != null && !value.isEmpty()) {
+			filters.put(filter, Collections.singletonList(value));
+		}
+	}
+
+	/**
+	 * Only return objects with any of a number of values for a field; e.g. the objects in any of a set of
+	 * Regions.
+	 * @param filter the name of the field
+	 * @param values the values; if empty, no object matches
+	 */
+	public void addFilter(final String filter, final Collection<String> values) {
+		filters.put(filter, new ArrayList<>(values));
+	}
+
+	/**
+	 * @return the filters, as a map from the name of each field to the values it may have
+	 */
+	public Map<String, List<String>> getFilters() {
+		return Collections.unmodifiableMap(filters);
+	}
+
+	/**
+	 * @return the fields wanted for each object, or null for all fields
+	 */
+	public Set<String> getFields() {
+		return fields;
+	}
+
+	public void setFields(Set<String> fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * @return true if the field is wanted in the response, so that a DB need not read fields that are not
+	 */
+	public boolean wantsField(final String field) {
+		return fields == null || fields.contains(field);
+	}
+
+	/**
+	 * Apply this query to a complete list of objects.
+	 * @param beans the objects
+	 * @return the objects that match, in UUID order, and no more than the limit
+	 */
+	public <T extends BaseBean> List<T> apply(final Collection<T> beans) {
+		Set<String> keys = null;
+		if (uuids != null) {
+			keys = new HashSet<>();
+			for (String u : uuids) {
+				keys.add(u.toLowerCase());
+			}
+		}
+		String contains = (name_contains == null) ? null : name_contains.toLowerCase();
+		List<T> list = new ArrayList<>();
+		for (T b : beans) {
+			if (cursor != null && String.CASE_INSENSITIVE_ORDER.compare(b.getUuid(), cursor) <= 0)
+				continue;
+			if (keys != null && !keys.contains(b.getUuid().toLowerCase()))
+				continue;
+			if (name != null && !name.equalsIgnoreCase(b.getName()))
+				continue;
+			if (contains != null && (b.getName() == null || !b.getName().toLowerCase().contains(contains)))
+				continue;
+			if (matchesFilters(b)) {
+				list.add(b);
+			}
+		}
+		list.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.getUuid(), b.getUuid()));
+		if (limit > 0 && list.size() > limit) {
+			list = new ArrayList<>(list.subList(0, limit));
+		}
+		return list;
+	}
+
+	private boolean matchesFilters(final BaseBean b) {
+		for (Map.Entry<String, List<String>> f : filters.entrySet()) {
+			Object v = b.getFilterValue(f.getKey());
+			boolean match = false;
+			if (v instanceof Collection) {
+				for (Object o : (Collection<?>) v) {
+					match |= matchesAny(f.getValue(), String.valueOf(o));
+				}
+			} else if (v != null) {
+				match = matchesAny(f.getValue(), v.toString());
+			}
+			if (!match) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matchesAny(final List<String> values, final String v) {
+		for (String s : values) {
+			if (s.equalsIgnoreCase(v)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remove the fields that are not wanted from the JSON form of an object.  The uuid and url fields
+	 * are always kept.
+	 * @param jo the JSON for one object
+	 * @return the projected JSON
+	 */
+	public JSONObject project(final JSONObject jo) {
+		if (fields == null) {
+			return jo;
+		}
+		JSONObject p = new JSONObject();
+		for (String key : jo.keySet()) {
+			if (fields.contains(key) || BaseBean.UUID_TAG.equals(key) || "url".equals(key)) {
+				p.put(key, jo.get(key));
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * @return the cursor to use to get the page after this one, or null if this is the last page
+	 */
+	public String getNextCursor(final List<? extends BaseBean> page) {
+		if (limit > 0 && page.size() >= limit) {
+			return page.get(page.size() - 1).getUuid();
+		}
+		return null;
+	}
+
+	/**
+	 * Build a key for this query, for the {@link EntityCache}.  Queries that differ only in case, or in the
+	 * order of their UUIDs, filters or fields, return the same objects, and so have the same key.
+	 * @return the key
+	 */
+	String getCacheKey() {
+		JSONArray ja = new JSONArray();
+		ja.put(limit);
+		ja.put(lower(cursor));
+		ja.put(sorted(uuids));
+		ja.put(lower(name));
+		ja.put(lower(name_contains));
+		JSONArray jf = new JSONArray();
+		for (String f : new TreeSet<>(filters.keySet())) {
+			jf.put(f).put(sorted(filters.get(f)));
+		}
+		ja.put(jf);
+		ja.put((fields == null) ? JSONObject.NULL : new JSONArray(new TreeSet<>(fields)));
+		return ja.toString();
+	}
+
+	private static Object lower(final String s) {
+		return (s == null) ? JSONObject.NULL : s.toLowerCase();
+	}
+
+	private static Object sorted(final Collection<String> values) {
+		if (values == null) {
+			return JSONObject.NULL;
+		}
+		Set<String> set = new TreeSet<>();
+		for (String v : values) {
+			set.add(v.toLowerCase());
+		}
+		return new JSONArray(set);
+	}
+}
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -29,7 +30,9 @@ import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Blueprint;
 import org.akraino.regional_controller.beans.Edgesite;
 import org.akraino.regional_controller.beans.Hardware;
@@ -52,12 +55,19 @@ import org.apache.logging.log4j.Logger;
 public class PropertiesDB implements DB {
 	private static final String DEFAULT_PROPERTIES_FILE = "testing_db.properties";
 	private static final Map<String, UserSession> sessions = new HashMap<>();
+	private static final Map<String, long[]> revocations = new ConcurrentHashMap<>();	// revoked, expires
 	private static final Logger logger = LogManager.getLogger();
 
 	private final Properties props;
+	private final Map<String, Revision> revisions;	// by UUID; the properties file does not hold revisions
+	private final Map<String, POD.State> pod_states;	// by lower case UUID; nor does it hold the states of PODs,
+	private final Map<String, String> pod_edgesites;	// nor the Edgesites of PODs whose state has changed
 
 	public PropertiesDB(Properties api_props) {
 		props = new Properties();
+		revisions = new ConcurrentHashMap<>();
+		pod_states = new ConcurrentHashMap<>();
+		pod_edgesites = new ConcurrentHashMap<>();
 		InputStream is = null;
 		try {
 			String path = api_props.getProperty("db.path", DEFAULT_PROPERTIES_FILE);
@@ -76,6 +86,28 @@ public class PropertiesDB implements DB {
 		}
 	}
 
+	// TRANSACTIONS ---------------------------------------------------------------------------------------------------------
+	/**
+	 * The PropertiesDB does not support transactions; every write takes effect immediately.
+	 */
+	@Override
+	public Transaction beginTransaction() {
+		return new Transaction() {
+			@Override
+			public void commit() {
+				// nothing to do
+			}
+			@Override
+			public void rollback() {
+				// nothing to do
+			}
+			@Override
+			public void close() {
+				// nothing to do
+			}
+		};
+	}
+
 	// BLUEPRINTS ---------------------------------------------------------------------------------------------------------
 	static final String BLUEPRINT_PROPERTY = "blueprint";
 
@@ -85,28 +117,56 @@ public class PropertiesDB implements DB {
 		String json = new YAMLtoJSON(b.getYaml()).toJSON().toString();
 		String value = b.getUuid() + "," + b.getName() + "," + b.getDescription() + "," + b.getVersion() + "," + json;
 		props.setProperty(key, value);
+		created(b);
 	}
 
 	@Override
 	public List<Blueprint> getBlueprints() {
 		List<Blueprint> list = new ArrayList<>();
 		for (String[] row : rowIterable(BLUEPRINT_PROPERTY)) {
-			if (row.length > 5) {
-				for (int i = 5; i < row.length; i++) {
-					row[4] = row[4] + ", " + row[i];
-				}
+			list.add(revisionOf(blueprintFromRow(row)));
+		}
+		return list;
+	}
+
+	@Override
+	public Blueprint getBlueprint(final String uuid) {
+		for (String[] row : rowIterable(BLUEPRINT_PROPERTY)) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return revisionOf(blueprintFromRow(row));
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final Collection<String> uuids) {
+		Set<String> keys = lowerCase(uuids);
+		List<Blueprint> list = new ArrayList<>();
+		for (String[] row : rowIterable(BLUEPRINT_PROPERTY)) {
+			if (keys.contains(row[0].toLowerCase())) {
+				list.add(revisionOf(blueprintFromRow(row)));
 			}
-			String yaml = new JSONtoYAML(row[4]).toString();
-			Blueprint bp = new Blueprint(row[0], row[1], row[2], row[3], yaml);
-			list.add(bp);
 		}
 		return list;
 	}
 
+	private Blueprint blueprintFromRow(final String[] row) {
+		if (row.length > 5) {
+			for (int i = 5; i < row.length; i++) {
+				row[4] = row[4] + ", " + row[i];
+			}
+		}
+		String yaml = new JSONtoYAML(row[4]).toString();
+		return new Blueprint(row[0], row[1], row[2], row[3], yaml);
+	}
+
 	@Override
 	public void updateBlueprint(final Blueprint b) throws SQLException {
+		checkRevision("Blueprint", b);
 		deleteBlueprint(b);
 		createBlueprint(b);
+		updated(b);
 	}
 
 	@Override
@@ -123,22 +183,47 @@ public class PropertiesDB implements DB {
 		String[] region1 = e.getRegions().toArray(new String[0]);
 		String value = e.getUuid() + "," + e.getName() + "," + e.getDescription() + "," + region1[0];
 		props.setProperty(key, value);
+		created(e);
 	}
 
 	@Override
 	public List<Edgesite> getEdgesites() {
 		List<Edgesite> list = new ArrayList<>();
 		for (String[] row : rowIterable(EDGESITE_PROPERTY)) {
-			Edgesite es = new Edgesite(row[0], row[1], row[2], Arrays.asList(row[3]));
+			Edgesite es = revisionOf(new Edgesite(row[0], row[1], row[2], Arrays.asList(row[3])));
 			list.add(es);
 		}
 		return list;
 	}
 
+	@Override
+	public Edgesite getEdgesite(final String uuid) {
+		for (String[] row : rowIterable(EDGESITE_PROPERTY)) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return revisionOf(new Edgesite(row[0], row[1], row[2], Arrays.asList(row[3])));
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final Collection<String> uuids) {
+		Set<String> keys = lowerCase(uuids);
+		List<Edgesite> list = new ArrayList<>();
+		for (String[] row : rowIterable(EDGESITE_PROPERTY)) {
+			if (keys.contains(row[0].toLowerCase())) {
+				list.add(revisionOf(new Edgesite(row[0], row[1], row[2], Arrays.asList(row[3]))));
+			}
+		}
+		return list;
+	}
+
 	@Override
 	public void updateEdgesite(final Edgesite e) throws SQLException {
+		checkRevision("Edgesite", e);
 		deleteEdgesite(e);
 		createEdgesite(e);
+		updated(e);
 	}
 
 	@Override
@@ -152,22 +237,47 @@ public class PropertiesDB implements DB {
 		String key = nextKey("hardware");
 		String value = h.getUuid() + "," + h.getName() + "," + h.getDescription() + "," + h.getYaml();
 		props.setProperty(key, value);
+		created(h);
 	}
 
 	@Override
 	public List<Hardware> getHardware() {
 		List<Hardware> list = new ArrayList<>();
 		for (String[] row : rowIterable("hardware")) {
-			Hardware h = new Hardware(row[0], row[1], row[2], row[3]);
+			Hardware h = revisionOf(new Hardware(row[0], row[1], row[2], row[3]));
 			list.add(h);
 		}
 		return list;
 	}
 
+	@Override
+	public Hardware getHardware(final String uuid) {
+		for (String[] row : rowIterable("hardware")) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return revisionOf(new Hardware(row[0], row[1], row[2], row[3]));
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Hardware> getHardware(final Collection<String> uuids) {
+		Set<String> keys = lowerCase(uuids);
+		List<Hardware> list = new ArrayList<>();
+		for (String[] row : rowIterable("hardware")) {
+			if (keys.contains(row[0].toLowerCase())) {
+				list.add(revisionOf(new Hardware(row[0], row[1], row[2], row[3])));
+			}
+		}
+		return list;
+	}
+
 	@Override
 	public void updateHardware(final Hardware h) throws SQLException {
+		checkRevision("Hardware", h);
 		deleteHardware(h);
 		createHardware(h);
+		updated(h);
 	}
 
 	@Override
@@ -181,22 +291,47 @@ public class PropertiesDB implements DB {
 		String key = nextKey("node");
 		String value = n.getUuid() + "," + n.getName() + "," + n.getDescription() + "," + n.getHardware() + "," + n.getYaml();
 		props.setProperty(key, value);
+		created(n);
 	}
 
 	@Override
 	public List<Node> getNodes() {
 		List<Node> list = new ArrayList<>();
 		for (String[] row : rowIterable("node")) {
-			Node n = new Node(row[0], row[1], row[2], row[3], row[4]);
+			Node n = revisionOf(new Node(row[0], row[1], row[2], row[3], row[4]));
 			list.add(n);
 		}
 		return list;
 	}
 
+	@Override
+	public Node getNode(final String uuid) {
+		for (String[] row : rowIterable("node")) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return revisionOf(new Node(row[0], row[1], row[2], row[3], row[4]));
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Node> getNodes(final Collection<String> uuids) {
+		Set<String> keys = lowerCase(uuids);
+		List<Node> list = new ArrayList<>();
+		for (String[] row : rowIterable("node")) {
+			if (keys.contains(row[0].toLowerCase())) {
+				list.add(revisionOf(new Node(row[0], row[1], row[2], row[3], row[4])));
+			}
+		}
+		return list;
+	}
+
 	@Override
 	public void updateNode(final Node n) throws SQLException {
+		checkRevision("Node", n);
 		deleteNode(n);
 		createNode(n);
+		updated(n);
 	}
 
 	@Override
@@ -210,21 +345,73 @@ public class PropertiesDB implements DB {
 		String key = nextKey("pod");
 		String value = p.getUuid() + "," + p.getName() + "," + p.getDescription() + "," + p.getBlueprint() + "," + p.getEdgesite() + "," + p.getYaml();
 		props.setProperty(key, value);
+		created(p);
 	}
 
 	@Override
 	public List<POD> getPods() {
 		List<POD> list = new ArrayList<>();
 		for (String[] row : rowIterable("pod")) {
-			POD p = new POD(row[0], row[1], row[2], row[3], row[4], row[5]);
+			POD p = podOf(row);
 			list.add(p);
 		}
 		return list;
 	}
 
 	@Override
-	public void updatePod(final POD p) {
+	public POD getPod(final String uuid) {
+		for (String[] row : rowIterable("pod")) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return podOf(row);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<POD> getPods(final Collection<String> uuids) {
+		Set<String> keys = lowerCase(uuids);
+		List<POD> list = new ArrayList<>();
+		for (String[] row : rowIterable("pod")) {
+			if (keys.contains(row[0].toLowerCase())) {
+				list.add(podOf(row));
+			}
+		}
+		return list;
+	}
+
+	@Override
+	public void updatePod(final POD p) throws SQLException {
+		checkRevision("POD", p);
 		createPod(p);
+		updated(p);
+	}
+
+	@Override
+	public boolean updatePodState(final POD p, final POD.State from, final POD.State to, final String edgesite) {
+		boolean[] changed = { false };
+		String key = p.getUuid().toLowerCase();
+		pod_states.compute(key, (k, state) -> {
+			if ((state == null ? POD.State.NEW : state) != from) {
+				return state;
+			}
+			changed[0] = true;
+			if (edgesite != null) {
+				pod_edgesites.put(k, edgesite);
+			}
+			return to;
+		});
+		if (changed[0]) {
+			updated(p);
+		}
+		return changed[0];
+	}
+
+	private POD podOf(final String[] row) {
+		String key = row[0].toLowerCase();
+		POD.State state = pod_states.getOrDefault(key, POD.State.NEW);
+		String edgesite = pod_edgesites.getOrDefault(key, row[4]);
+		return revisionOf(new POD(row[0], row[1], row[2], state, row[3], edgesite, row[5]));
 	}
 
 	@Override
@@ -266,22 +453,47 @@ public class PropertiesDB implements DB {
 		String key = nextKey("region");
 		String value = r.getUuid() + "," + r.getName() + "," + r.getDescription();
 		props.setProperty(key, value);
+		created(r);
 	}
 
 	@Override
 	public List<Region> getRegions() {
 		List<Region> list = new ArrayList<>();
 		for (String[] row : rowIterable("region")) {
-			Region r = new Region(row[0], row[1], row[2]);
+			Region r = revisionOf(new Region(row[0], row[1], row[2]));
 			list.add(r);
 		}
 		return list;
 	}
 
+	@Override
+	public Region getRegion(final String uuid) {
+		for (String[] row : rowIterable("region")) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return revisionOf(new Region(row[0], row[1], row[2]));
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Region> getRegions(final Collection<String> uuids) {
+		Set<String> keys = lowerCase(uuids);
+		List<Region> list = new ArrayList<>();
+		for (String[] row : rowIterable("region")) {
+			if (keys.contains(row[0].toLowerCase())) {
+				list.add(revisionOf(new Region(row[0], row[1], row[2])));
+			}
+		}
+		return list;
+	}
+
 	@Override
 	public void updateRegion(final Region r) throws SQLException {
+		checkRevision("Region", r);
 		deleteRegion(r);
 		createRegion(r);
+		updated(r);
 	}
 
 	@Override
@@ -313,6 +525,24 @@ public class PropertiesDB implements DB {
 		}
 	}
 
+	// REVOKED_TOKENS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createRevocation(final String uuid, final long revoked, final long expires) {
+		revocations.merge(uuid, new long[] { revoked, expires },
+			(a, b) -> new long[] { Math.max(a[0], b[0]), Math.max(a[1], b[1]) });
+	}
+
+	@Override
+	public Map<String, Long> getRevocations() {
+		long now = System.currentTimeMillis();
+		revocations.values().removeIf(a -> a[1] < now);
+		Map<String, Long> map = new HashMap<>();
+		for (Map.Entry<String, long[]> e : revocations.entrySet()) {
+			map.put(e.getKey(), e.getValue()[0]);
+		}
+		return map;
+	}
+
 	// USERS ---------------------------------------------------------------------------------------------------------
 	static final String USER_PROPERTY = "user";
 
@@ -352,20 +582,34 @@ public class PropertiesDB implements DB {
 	@Override
 	public User getUser(final String name) {
 		for (String[] row : rowIterable(USER_PROPERTY)) {
-			User u = new User(row[0], row[1], row[2], row[3]);
-			if (name.equals(u.getName())) {
-				if (row.length > 4) {
-					// Assign any roles - the PropertiesDB only supports one role per user
-					Set<Role> roles = new TreeSet<>();
-					roles.add(getRole(row[4]));
-					u.setRoles(roles);
-				}
-				return u;
+			if (name.equals(row[1])) {
+				return userFromRow(row);
 			}
 		}
 		return null;
 	}
 
+	@Override
+	public User getUserByUuid(final String uuid) {
+		for (String[] row : rowIterable(USER_PROPERTY)) {
+			if (row[0].equalsIgnoreCase(uuid)) {
+				return userFromRow(row);
+			}
+		}
+		return null;
+	}
+
+	private User userFromRow(final String[] row) {
+		User u = new User(row[0], row[1], row[2], row[3]);
+		if (row.length > 4) {
+			// Assign any roles - the PropertiesDB only supports one role per user
+			Set<Role> roles = new TreeSet<>();
+			roles.add(getRole(row[4]));
+			u.setRoles(roles);
+		}
+		return u;
+	}
+
 	private Role getRole(final String name) {
 		for (String[] row : rowIterable("role")) {
 			String[] attributes = new String[0];
@@ -381,6 +625,39 @@ public class PropertiesDB implements DB {
 		return null;
 	}
 
+	/**
+	 * Record the revision of a newly created bean.  Since an update is done as a delete and a create,
+	 * the revision of a bean that is already known is kept.
+	 */
+	private void created(final BaseBean bean) {
+		bean.setRevision(revisions.computeIfAbsent(bean.getUuid(), k -> Revision.initial(System.currentTimeMillis())));
+	}
+
+	private void updated(final BaseBean bean) {
+		bean.setRevision(revisions.compute(bean.getUuid(), (k, rev) -> (rev == null)
+			? Revision.initial(System.currentTimeMillis())
+			: rev.next(System.currentTimeMillis())));
+	}
+
+	/**
+	 * Check that a bean about to be updated is still at the revision it was read at.
+	 */
+	private void checkRevision(final String type, final BaseBean bean) throws StaleRevisionException {
+		Revision rev = revisions.get(bean.getUuid());
+		if (rev != null && rev.getNumber() != bean.getRevision().getNumber()) {
+			throw new StaleRevisionException(type, bean.getUuid(), bean.getRevision());
+		}
+	}
+
+	/**
+	 * Set the revision of a bean read from the properties; beans that were never written are at their
+	 * first revision, as of the first time they are read.
+	 */
+	private <T extends BaseBean> T revisionOf(final T bean) {
+		created(bean);
+		return bean;
+	}
+
 	private Iterable<String[]> rowIterable(final String type) {
 		return new Iterable<String[]>() {
 
@@ -414,6 +691,13 @@ public class PropertiesDB implements DB {
 
 		};
 	}
+	private static Set<String> lowerCase(final Collection<String> uuids) {
+		Set<String> set = new TreeSet<>();
+		for (String uuid : uuids) {
+			set.add(uuid.toLowerCase());
+		}
+		return set;
+	}
 	private String nextKey(final String base) {
 		for (int n = 1; ; n++) {
 			String key = base + "." + n;
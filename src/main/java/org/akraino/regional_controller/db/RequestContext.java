@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The persistence context for one API request.  While a RequestContext is bound to a thread (see
+ * {@link #begin()} and {@link #end()}), the StandardDB uses a single Connection for all of the thread's
+ * DB calls, and the beans' lookup-by-UUID methods keep an identity map so that the same object is
+ * returned (and only loaded once) for a given UUID.  The Connection is only checked out of the pool
+ * on first use, and may be given back before the request ends (see {@link #releaseConnection()}).
+ */
+public class RequestContext {
+	private static final Logger logger = LogManager.getLogger();
+	private static final ThreadLocal<RequestContext> current = new ThreadLocal<>();
+
+	/**
+	 * Bind a new RequestContext to the current thread, discarding any left over from a previous request.
+	 * @return the new RequestContext
+	 */
+	public static RequestContext begin() {
+		RequestContext rc = current.get();
+		if (rc != null) {
+			logger.warn("RequestContext was not ended by the previous request on this thread");
+			rc.close();
+		}
+		rc = new RequestContext();
+		current.set(rc);
+		return rc;
+	}
+
+	/**
+	 * Unbind the RequestContext (if any) from the current thread, and release its Connection.
+	 */
+	public static void end() {
+		RequestContext rc = current.get();
+		if (rc != null) {
+			current.remove();
+			rc.close();
+		}
+	}
+
+	/**
+	 * Release the Connection (if any) of the RequestContext bound to the current thread back to the pool,
+	 * while keeping its identity map; e.g. once a response has been built, so that the Connection is not
+	 * held while the response is written to a slow client.  Any DB call made later in the request uses
+	 * a Connection of its own, as if there were no RequestContext.
+	 */
+	public static void releaseConnection() {
+		RequestContext rc = current.get();
+		if (rc != null) {
+			rc.release();
+			rc.released = true;
+		}
+	}
+
+	/**
+	 * @return the RequestContext bound to the current thread, or null if there is none
+	 */
+	public static RequestContext current() {
+		return current.get();
+	}
+
+	/**
+	 * Look up a bean by UUID, using the identity map of the current RequestContext if there is one.
+	 * Beans that are not found are not remembered.
+	 * @param type the type of the bean
+	 * @param uuid the UUID
+	 * @param loader used to load the bean if it has not already been loaded during this request
+	 * @return the bean, or null
+	 */
+	public static <T extends BaseBean> T lookup(final Class<T> type, final String uuid, final Function<String, T> loader) {
+		RequestContext rc = current.get();
+		if (rc == null || uuid == null) {
+			return loader.apply(uuid);
+		}
+		String key = key(type, uuid);
+		T bean = type.cast(rc.beans.get(key));
+		if (bean == null) {
+			bean = loader.apply(uuid);
+			if (bean != null) {
+				rc.beans.put(key, bean);
+			}
+		}
+		return bean;
+	}
+
+	/**
+	 * Load a bean that is about to be modified, always calling loader (which should bypass any cache),
+	 * so that an If-Match check against the bean, and the revision that the update of the bean is made
+	 * conditional upon, are both current.  The bean replaces any copy already in the identity map of
+	 * the current RequestContext.
+	 * @param type the type of the bean
+	 * @param uuid the UUID
+	 * @param loader used to load the bean
+	 * @return the bean, or null
+	 */
+	public static <T extends BaseBean> T reload(final Class<T> type, final String uuid, final Function<String, T> loader) {
+		T bean = loader.apply(uuid);
+		if (bean != null) {
+			replace(type, bean);
+		} else {
+			forget(type, uuid);
+		}
+		return bean;
+	}
+
+	/**
+	 * Look up many beans of one type by UUID, as {@link #lookup} does for one.  All of the beans that
+	 * have not already been loaded during this request are loaded with one call of loader, so that
+	 * the objects referred to by a whole list of objects can be fetched with a single query.
+	 * @param type the type of the beans
+	 * @param uuids the UUIDs
+	 * @param loader used to load the beans that have not already been loaded during this request
+	 * @return the beans found, in the order of uuids (each bean only once)
+	 */
+	public static <T extends BaseBean> List<T> lookupAll(final Class<T> type, final Collection<String> uuids, final Function<Collection<String>, List<T>> loader) {
+		RequestContext rc = current.get();
+		Map<String, T> found = new HashMap<>();
+		Map<String, String> missing = new LinkedHashMap<>();	// lower case UUID -> UUID
+		for (String uuid : uuids) {
+			if (uuid != null) {
+				BaseBean bean = (rc == null) ? null : rc.beans.get(key(type, uuid));
+				if (bean != null) {
+					found.put(uuid.toLowerCase(), type.cast(bean));
+				} else {
+					missing.put(uuid.toLowerCase(), uuid);
+				}
+			}
+		}
+		if (!missing.isEmpty()) {
+			for (T bean : loader.apply(missing.values())) {
+				if (rc != null) {
+					rc.beans.putIfAbsent(key(type, bean.getUuid()), bean);
+				}
+				found.put(bean.getUuid().toLowerCase(), bean);
+			}
+		}
+		List<T> list = new ArrayList<>(found.size());
+		for (String uuid : uuids) {
+			T bean = (uuid == null) ? null : found.remove(uuid.toLowerCase());
+			if (bean != null) {
+				list.add(bean);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Add beans that have already been loaded (e.g. by reading an entire table) to the identity map of
+	 * the current RequestContext, if there is one, so that looking them up later in the request does
+	 * not go to the DB.  Beans that are already in the identity map are not replaced.
+	 */
+	public static <T extends BaseBean> void remember(final Class<T> type, final Collection<T> beans) {
+		RequestContext rc = current.get();
+		if (rc != null) {
+			for (T bean : beans) {
+				rc.beans.putIfAbsent(key(type, bean.getUuid()), bean);
+			}
+		}
+	}
+
+	/**
+	 * Replace a bean in the identity map of the current RequestContext, if there is one, with a copy
+	 * that has just been written to the DB, so that looking it up later in the request returns what
+	 * was written rather than an object loaded before the write.
+	 */
+	public static <T extends BaseBean> void replace(final Class<T> type, final T bean) {
+		RequestContext rc = current.get();
+		if (rc != null) {
+			rc.beans.put(key(type, bean.getUuid()), bean);
+		}
+	}
+
+	/**
+	 * Remove a bean from the identity map of the current RequestContext, if there is one; e.g. when it
+	 * has been deleted, or when a write of it has failed and the in-memory copy no longer matches the
+	 * DB.  Looking it up later in the request goes back to the DB.
+	 */
+	public static void forget(final Class<? extends BaseBean> type, final String uuid) {
+		RequestContext rc = current.get();
+		if (rc != null && uuid != null) {
+			rc.beans.remove(key(type, uuid));
+		}
+	}
+
+	private static String key(final Class<?> type, final String uuid) {
+		return type.getName() + ":" + uuid.toLowerCase();
+	}
+
+	private final Map<String, BaseBean> beans;
+	private ConnectionPool pool;
+	private Connection conn;
+	private boolean released;
+
+	private RequestContext() {
+		this.beans    = new HashMap<>();
+		this.pool     = null;
+		this.conn     = null;
+		this.released = false;
+	}
+
+	/**
+	 * Get this request's Connection, checking it out of the pool on first use.  Once the request's
+	 * Connection has been released, each call checks out a Connection that the caller must release.
+	 */
+	Connection getConnection(final ConnectionPool p) throws SQLException {
+		if (released) {
+			return p.acquire();
+		}
+		if (conn == null) {
+			conn = p.acquire();
+			pool = p;
+		}
+		return conn;
+	}
+
+	boolean holds(final Connection c) {
+		return c != null && c == conn;
+	}
+
+	private void close() {
+		beans.clear();
+		release();
+	}
+
+	private void release() {
+		if (conn != null) {
+			pool.release(conn);
+			conn = null;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+/**
+ * The revision of one stored object: a counter that goes up by one every time the object's row is
+ * updated, and the time (in ms) that the object, or anything shown as part of it (such as the events
+ * of a POD), last changed.  Revisions are immutable.
+ */
+public final class Revision {
+	/** The revision of an object that has not been stored yet */
+	public static final Revision NONE = new Revision(0, 0);
+
+	private final long number;
+	private final long modified;
+
+	public Revision(long number, long modified) {
+		this.number   = number;
+		this.modified = modified;
+	}
+
+	/**
+	 * @return the revision of a newly created object
+	 */
+	public static Revision initial(final long now) {
+		return new Revision(1, now);
+	}
+
+	public long getNumber() {
+		return number;
+	}
+
+	public long getModified() {
+		return modified;
+	}
+
+	/**
+	 * @return the revision following this one, after an update to the object's row
+	 */
+	public Revision next(final long now) {
+		return new Revision(number + 1, now);
+	}
+
+	/**
+	 * @return this revision, marked as modified at a later time; used when something shown as part of
+	 * the object changes, but its own row does not
+	 */
+	public Revision touch(final long now) {
+		return new Revision(number, now);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Revision)) {
+			return false;
+		}
+		Revision r = (Revision) o;
+		return number == r.number && modified == r.modified;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(number) * 31 + Long.hashCode(modified);
+	}
+
+	@Override
+	public String toString() {
+		return number + "@" + modified;
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.akraino.regional_controller.beans.User;
+import org.akraino.regional_controller.beans.UserSession;
+import org.json.JSONObject;
+
+/**
+ * A cache of session token to {@link UserSession}, used by the {@link SessionCachingDB} so that checking a token
+ * does not require a trip to the DB.  A session is never cached past its own expiry time, nor for longer
+ * than the TTL (so that a logout on another API server is noticed).
+ */
+class SessionCache {
+	private final long ttl;
+	private final int max_entries;
+	private final UnaryOperator<User> copier;
+	private final Map<String, Entry> map;
+	private final AtomicLong generation;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+
+	SessionCache(long ttl, int max_entries, UnaryOperator<User> copier) {
+		this.ttl         = ttl;
+		this.max_entries = max_entries;
+		this.copier      = copier;
+		this.map         = new ConcurrentHashMap<>();
+		this.generation  = new AtomicLong();
+		this.hits        = new AtomicLong();
+		this.misses      = new AtomicLong();
+	}
+
+	UserSession get(final String token, final Function<String, UserSession> loader) {
+		if (token == null) {
+			return null;
+		}
+		Entry e = map.get(token);
+		if (e != null) {
+			if (!e.isExpired()) {
+				hits.incrementAndGet();
+				return copy(e.session);
+			}
+			map.remove(token, e);
+		}
+		misses.incrementAndGet();
+		long gen = generation.get();
+		UserSession us = loader.apply(token);
+		if (us != null && us.isValid()) {
+			store(us, gen);
+		}
+		return us;
+	}
+
+	void put(final UserSession us) {
+		if (us != null && us.isValid()) {
+			store(us, generation.get());
+		}
+	}
+
+	void remove(final String token) {
+		synchronized (this) {
+			generation.incrementAndGet();
+			if (token != null) {
+				map.remove(token);
+			}
+		}
+	}
+
+	/**
+	 * Remove every session belonging to a User (e.g. when the User is modified or deleted).
+	 */
+	void removeUser(final String uuid) {
+		synchronized (this) {
+			generation.incrementAndGet();
+			map.values().removeIf(e -> e.session.getUser() == null || e.session.getUser().getUuid().equals(uuid));
+		}
+	}
+
+	JSONObject getStatistics() {
+		JSONObject jo = new JSONObject();
+		jo.put("name", "session");
+		jo.put("size", map.size());
+		jo.put("hits", hits.get());
+		jo.put("misses", misses.get());
+		return jo;
+	}
+
+	private UserSession copy(final UserSession us) {
+		User u = (us.getUser() == null) ? null : copier.apply(us.getUser());
+		return new UserSession(u, us.getToken(), us.getExpires());
+	}
+
+	private void store(final UserSession us, final long gen) {
+		long until = Math.min(us.getExpires(), System.currentTimeMillis() + ttl);
+		Entry e = new Entry(copy(us), until);
+		synchronized (this) {
+			// Don't let a lookup that raced with a logout put the session back
+			if (generation.get() != gen) {
+				return;
+			}
+			map.put(us.getToken(), e);
+		}
+		if (map.size() > max_entries) {
+			evict();
+		}
+	}
+
+	private void evict() {
+		map.values().removeIf(Entry::isExpired);
+		int excess = map.size() - max_entries;
+		if (excess > 0) {
+			List<Map.Entry<String, Entry>> list = new ArrayList<>(map.entrySet());
+			list.sort((a, b) -> Long.compare(a.getValue().until, b.getValue().until));
+			for (int i = 0; i < excess && i < list.size(); i++) {
+				map.remove(list.get(i).getKey());
+			}
+		}
+	}
+
+	private static class Entry {
+		private final UserSession session;
+		private final long until;
+
+		private Entry(UserSession session, long until) {
+			this.session = session;
+			this.until   = until;
+		}
+		private boolean isExpired() {
+			return System.currentTimeMillis() >= until;
+		}
+	}
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.akraino.regional_controller.beans.Blueprint;
+import org.akraino.regional_controller.beans.Edgesite;
+import org.akraino.regional_controller.beans.Hardware;
+import org.akraino.regional_controller.beans.Node;
+import org.akraino.regional_controller.beans.POD;
+import org.akraino.regional_controller.beans.PODEvent;
+import org.akraino.regional_controller.beans.PODWorkflow;
+import org.akraino.regional_controller.beans.Region;
+import org.akraino.regional_controller.beans.User;
+import org.akraino.regional_controller.beans.UserSession;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * The SessionCachingDB wraps another DB, and keeps login sessions in memory, so that checking the token
+ * of a request is a hash lookup rather than a trip to the DB.  Everything else is passed to the wrapped DB.
+ * It is enabled by setting db.session_cache.enabled = true, whether or not the {@link CachingDB} is
+ * enabled.  A session is only trusted for a few seconds (db.session_cache.ttl) before it is re-read, so
+ * a logout on another API server takes at most that long to be noticed.
+ */
+public class SessionCachingDB implements DB {
+	public static final String DEFAULT_TTL         = "5";		// seconds
+	public static final String DEFAULT_MAX_ENTRIES = "50000";
+
+	private final DB db;
+	private final SessionCache sessions;
+
+	public SessionCachingDB(DB db, Properties api_props) {
+		long ttl = Long.parseLong(api_props.getProperty("db.session_cache.ttl", DEFAULT_TTL).trim()) * 1000L;
+		int max  = Integer.parseInt(api_props.getProperty("db.session_cache.max_entries", DEFAULT_MAX_ENTRIES).trim());
+		this.db       = db;
+		this.sessions = new SessionCache(ttl, max, CachingDB::copyUser);
+	}
+
+	/**
+	 * @return the DB wrapped by this cache
+	 */
+	public DB getDelegate() {
+		return db;
+	}
+
+	/**
+	 * @return the statistics of the wrapped DB, plus the hit/miss counters of the session cache
+	 */
+	@Override
+	public JSONObject getStatistics() {
+		JSONObject jo = db.getStatistics();
+		JSONArray ja = jo.optJSONArray("caches");
+		if (ja == null) {
+			ja = new JSONArray();
+			jo.put("caches", ja);
+		}
+		ja.put(sessions.getStatistics());
+		return jo;
+	}
+
+	// TRANSACTIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public Transaction beginTransaction() throws SQLException {
+		return db.beginTransaction();
+	}
+
+	// REVISIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public Revision getRevision(final Class<? extends BaseBean> type, final String uuid) {
+		return db.getRevision(type, uuid);
+	}
+
+	@Override
+	public Map<String, Revision> getRevisions(final Class<? extends BaseBean> type, final ListQuery q) {
+		return db.getRevisions(type, q);
+	}
+
+	// BLUEPRINTS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createBlueprint(final Blueprint b) throws SQLException {
+		db.createBlueprint(b);
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints() {
+		return db.getBlueprints();
+	}
+
+	@Override
+	public Blueprint getBlueprint(final String uuid) {
+		return db.getBlueprint(uuid);
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final Collection<String> uuids) {
+		return db.getBlueprints(uuids);
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final ListQuery q) {
+		return db.getBlueprints(q);
+	}
+
+	@Override
+	public void updateBlueprint(final Blueprint b) throws SQLException {
+		db.updateBlueprint(b);
+	}
+
+	@Override
+	public void deleteBlueprint(final Blueprint b) throws SQLException {
+		db.deleteBlueprint(b);
+	}
+
+	// EDGESITES ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createEdgesite(final Edgesite e) throws SQLException {
+		db.createEdgesite(e);
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites() {
+		return db.getEdgesites();
+	}
+
+	@Override
+	public Edgesite getEdgesite(final String uuid) {
+		return db.getEdgesite(uuid);
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final Collection<String> uuids) {
+		return db.getEdgesites(uuids);
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final ListQuery q) {
+		return db.getEdgesites(q);
+	}
+
+	@Override
+	public void updateEdgesite(final Edgesite e) throws SQLException {
+		db.updateEdgesite(e);
+	}
+
+	@Override
+	public void deleteEdgesite(final Edgesite e) throws SQLException {
+		db.deleteEdgesite(e);
+	}
+
+	// HARDWARE ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createHardware(final Hardware h) throws SQLException {
+		db.createHardware(h);
+	}
+
+	@Override
+	public List<Hardware> getHardware() {
+		return db.getHardware();
+	}
+
+	@Override
+	public Hardware getHardware(final String uuid) {
+		return db.getHardware(uuid);
+	}
+
+	@Override
+	public List<Hardware> getHardware(final Collection<String> uuids) {
+		return db.getHardware(uuids);
+	}
+
+	@Override
+	public List<Hardware> getHardware(final ListQuery q) {
+		return db.getHardware(q);
+	}
+
+	@Override
+	public void updateHardware(final Hardware h) throws SQLException {
+		db.updateHardware(h);
+	}
+
+	@Override
+	public void deleteHardware(final Hardware h) throws SQLException {
+		db.deleteHardware(h);
+	}
+
+	// NODES ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createNode(final Node n) throws SQLException {
+		db.createNode(n);
+	}
+
+	@Override
+	public List<Node> getNodes() {
+		return db.getNodes();
+	}
+
+	@Override
+	public Node getNode(final String uuid) {
+		return db.getNode(uuid);
+	}
+
+	@Override
+	public List<Node> getNodes(final Collection<String> uuids) {
+		return db.getNodes(uuids);
+	}
+
+	@Override
+	public List<Node> getNodes(final ListQuery q) {
+		return db.getNodes(q);
+	}
+
+	@Override
+	public void updateNode(final Node n) throws SQLException {
+		db.updateNode(n);
+	}
+
+	@Override
+	public void deleteNode(final Node n) throws SQLException {
+		db.deleteNode(n);
+	}
+
+	// PODS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createPod(final POD p) throws SQLException {
+		db.createPod(p);
+	}
+
+	@Override
+	public List<POD> getPods() {
+		return db.getPods();
+	}
+
+	@Override
+	public POD getPod(final String uuid) {
+		return db.getPod(uuid);
+	}
+
+	@Override
+	public List<POD> getPods(final Collection<String> uuids) {
+		return db.getPods(uuids);
+	}
+
+	@Override
+	public List<POD> getPods(final ListQuery q) {
+		return db.getPods(q);
+	}
+
+	@Override
+	public void updatePod(final POD p) throws SQLException {
+		db.updatePod(p);
+	}
+
+	@Override
+	public boolean updatePodState(final POD p, final POD.State from, final POD.State to, final String edgesite) throws SQLException {
+		return db.updatePodState(p, from, to, edgesite);
+	}
+
+	@Override
+	public void deletePod(final POD p) throws SQLException {
+		db.deletePod(p);
+	}
+
+	// PODS_EVENTS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createPodEvent(final PODEvent pe) throws SQLException {
+		db.createPodEvent(pe);
+	}
+
+	@Override
+	public List<PODEvent> getPODEvents(final String uuid) {
+		return db.getPODEvents(uuid);
+	}
+
+	// PODS_WORKFLOWS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createPodWorkflow(final PODWorkflow pw) throws SQLException {
+		db.createPodWorkflow(pw);
+	}
+
+	@Override
+	public List<PODWorkflow> getPODWorkflows(final String uuid) {
+		return db.getPODWorkflows(uuid);
+	}
+
+	@Override
+	public void updatePodWorkflow(final PODWorkflow pw) throws SQLException {
+		db.updatePodWorkflow(pw);
+	}
+
+	// REGIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createRegion(final Region r) throws SQLException {
+		db.createRegion(r);
+	}
+
+	@Override
+	public List<Region> getRegions() {
+		return db.getRegions();
+	}
+
+	@Override
+	public Region getRegion(final String uuid) {
+		return db.getRegion(uuid);
+	}
+
+	@Override
+	public List<Region> getRegions(final Collection<String> uuids) {
+		return db.getRegions(uuids);
+	}
+
+	@Override
+	public List<Region> getRegions(final ListQuery q) {
+		return db.getRegions(q);
+	}
+
+	@Override
+	public List<Region> getDescendantRegions(final String uuid) {
+		return db.getDescendantRegions(uuid);
+	}
+
+	@Override
+	public void updateRegion(final Region r) throws SQLException {
+		db.updateRegion(r);
+	}
+
+	@Override
+	public void deleteRegion(final Region r) throws SQLException {
+		db.deleteRegion(r);
+	}
+
+	// SESSIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createSession(final UserSession us) {
+		db.createSession(us);
+		sessions.put(us);
+	}
+
+	@Override
+	public UserSession getSession(final String token) {
+		return sessions.get(token, db::getSession);
+	}
+
+	@Override
+	public void invalidateSession(final UserSession us) {
+		try {
+			db.invalidateSession(us);
+		} finally {
+			sessions.remove(us.getToken());
+		}
+	}
+
+	// REVOKED_TOKENS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createRevocation(final String uuid, final long revoked, final long expires) {
+		db.createRevocation(uuid, revoked, expires);
+	}
+
+	@Override
+	public Map<String, Long> getRevocations() {
+		return db.getRevocations();
+	}
+
+	// USERS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createUser(final User u) throws SQLException {
+		db.createUser(u);
+	}
+
+	@Override
+	public User getUser(final String name) {
+		return db.getUser(name);
+	}
+
+	@Override
+	public User getUserByUuid(final String uuid) {
+		return db.getUserByUuid(uuid);
+	}
+
+	@Override
+	public List<User> getUsers() {
+		return db.getUsers();
+	}
+
+	@Override
+	public List<User> getUsers(final ListQuery q) {
+		return db.getUsers(q);
+	}
+
+	@Override
+	public void updateUser(final User u) throws SQLException {
+		try {
+			db.updateUser(u);
+		} finally {
+			// The cached sessions hold a copy of the User (and its roles)
+			sessions.removeUser(u.getUuid());
+		}
+	}
+
+	@Override
+	public void deleteUser(final User u) throws SQLException {
+		try {
+			db.deleteUser(u);
+		} finally {
+			sessions.removeUser(u.getUuid());
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown by the update methods of a {@link DB} when the object being updated is no longer at the
+ * revision it was read at; i.e. it has been updated (or deleted) by another request, possibly on
+ * another API server, since it was read.  Nothing is written.
+ */
+public class StaleRevisionException extends SQLException {
+	private static final long serialVersionUID = 1L;
+
+	public StaleRevisionException(final String type, final String uuid, final Revision rev) {
+		super(type+" "+uuid+" is no longer at revision "+rev.getNumber());
+	}
+}
@@ -17,22 +17,25 @@
 package org.akraino.regional_controller.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.akraino.regional_controller.beans.BaseBean;
 import org.akraino.regional_controller.beans.Blueprint;
 import org.akraino.regional_controller.beans.Edgesite;
 import org.akraino.regional_controller.beans.Hardware;
@@ -46,51 +49,459 @@ import org.akraino.regional_controller.beans.User;
 import org.akraino.regional_controller.beans.UserSession;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
 
 /**
  * The StandardDB uses an SQL database (normally MariaDB) for all items required.
  */
 public class StandardDB implements DB {
+	public static final String DEFAULT_ROLE_TTL = "300";			// seconds
+	private static final long ROLE_RELOAD_MIN   = 5000L;			// ms
+	private static final int  MAX_IN_LIST       = 500;			// max. UUIDs in one "WHERE uuid IN (...)"
 	protected static final Logger logger = LogManager.getLogger();
 
 	public final String db_url;
 	public final String db_login;
 	public final String db_password;
-	public final Queue<Connection> connqueue;
+	public final ConnectionPool pool;
+	private final long role_ttl;
+	private final ThreadLocal<UnitOfWork> unit_of_work = new ThreadLocal<>();
 
 	public StandardDB(Properties api_props) throws ClassNotFoundException {
 		this.db_url      = api_props.getProperty("db.jdbc.url");
 		this.db_login    = api_props.getProperty("db.jdbc.user");
 		this.db_password = api_props.getProperty("db.jdbc.password");
 		Class.forName(     api_props.getProperty("db.driver"));
-		this.connqueue   = new LinkedList<>();
+		this.pool        = new ConnectionPool(db_url, db_login, db_password, api_props);
+		this.role_ttl    = Long.parseLong(api_props.getProperty("db.role_ttl", DEFAULT_ROLE_TTL).trim()) * 1000L;
 	}
 
+	/**
+	 * Get a Connection for one DB call; this is the Transaction's Connection if one is open on this thread,
+	 * else the request's Connection if a {@link RequestContext} is bound to this thread.
+	 */
 	private Connection getConnection() throws SQLException {
-		// getConnection() and releaseConnection() implement a very simple Connection pool.
-		// This should probably be upgraded later.
-		synchronized (connqueue) {
-			while (connqueue.size() > 0) {
-				Connection c = connqueue.remove();
-				if (!c.isClosed()) {
-					if (c.isValid(1)) {
-						return c;
+		UnitOfWork uw = unit_of_work.get();
+		if (uw != null) {
+			return uw.conn;
+		}
+		RequestContext rc = RequestContext.current();
+		return (rc != null) ? rc.getConnection(pool) : pool.acquire();
+	}
+
+	private void releaseConnection(Connection conn) {
+		if (!inTransaction(conn) && !inRequest(conn)) {
+			pool.release(conn);
+		}
+	}
+
+	private boolean inRequest(Connection conn) {
+		RequestContext rc = RequestContext.current();
+		return rc != null && rc.holds(conn);
+	}
+
+	private boolean inTransaction(Connection conn) {
+		UnitOfWork uw = unit_of_work.get();
+		return uw != null && uw.conn == conn;
+	}
+
+	/**
+	 * Start a transaction on a Connection, for a DB call that makes several writes.  If the call is part of
+	 * a larger {@link Transaction}, the writes simply join it.  A Connection released back to the pool
+	 * without a commit is rolled back by the pool, but callers should still call {@link #rollback(Connection)}
+	 * on failure.
+	 */
+	private void begin(Connection conn) throws SQLException {
+		if (!inTransaction(conn)) {
+			conn.setAutoCommit(false);
+		}
+	}
+
+	private void commit(Connection conn) throws SQLException {
+		if (!inTransaction(conn)) {
+			conn.commit();
+			conn.setAutoCommit(true);
+		}
+	}
+
+	private void rollback(Connection conn) {
+		if (conn != null) {
+			if (inTransaction(conn)) {
+				unit_of_work.get().rollback_only = true;
+				return;
+			}
+			try {
+				if (!conn.getAutoCommit()) {
+					conn.rollback();
+					conn.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				logger.warn(e);
+			}
+		}
+	}
+
+	/**
+	 * Reads one bean from the current row of a ResultSet.
+	 */
+	private interface RowReader<T> {
+		T read(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * Read the rows of a table with any of a collection of UUIDs, using as few queries as possible.
+	 * UUIDs that are not found are ignored.
+	 */
+	private <T> List<T> getByUUIDs(final String table, final Collection<String> uuids, final RowReader<T> reader) {
+		List<T> list = new ArrayList<>(uuids.size());
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			selectByUUIDs(conn, table, uuids, rs -> list.add(reader.read(rs)));
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return list;
+	}
+
+	/**
+	 * Select the rows of a table whose uuid column holds any of a collection of UUIDs, in chunks of
+	 * at most MAX_IN_LIST UUIDs, passing each row to reader (whose result is ignored).
+	 */
+	private void selectByUUIDs(final Connection conn, final String table, final Collection<String> uuids, final RowReader<?> reader) throws SQLException {
+		List<String> all = new ArrayList<>(uuids);
+		for (int start = 0; start < all.size(); start += MAX_IN_LIST) {
+			List<String> chunk = all.subList(start, Math.min(start + MAX_IN_LIST, all.size()));
+			StringBuilder sb = new StringBuilder("SELECT * FROM AKRAINO.").append(table).append(" WHERE uuid IN (?");
+			for (int i = 1; i < chunk.size(); i++) {
+				sb.append(", ?");
+			}
+			sb.append(")");
+			try (PreparedStatement stmt = conn.prepareStatement(sb.toString())) {
+				for (int i = 0; i < chunk.size(); i++) {
+					stmt.setString(i+1, chunk.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						reader.read(rs);
 					}
-					try {
-						c.close();
-					} catch (Exception e) {
-						// ignore this
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read one page of the rows of a table that match a ListQuery, with a single query.
+	 * @param table the table
+	 * @param light the columns to select when the yaml field is not wanted (with a NULL yaml column),
+	 *   or null to always select every column
+	 * @param conditions the SQL condition to use for each filter the table supports, containing one
+	 *   "IN (?)", which is widened to hold all of the filter's values
+	 * @param q the query
+	 * @param reader reads one row
+	 * @return the beans, in UUID order
+	 * @throws IllegalArgumentException if the query uses a filter that is not supported (the API checks
+	 *   the filters of a request before building the query, so this is a bug)
+	 */
+	private <T> List<T> getByQuery(final String table, final String light, final Map<String, String> conditions,
+		final ListQuery q, final RowReader<T> reader) {
+		String columns = (light != null && !q.wantsField(BaseBean.YAML_TAG)) ? light : "*";
+		List<T> list = new ArrayList<>();
+		selectByQuery(table, columns, conditions, q, rs -> list.add(reader.read(rs)));
+		return list;
+	}
+
+	/**
+	 * Select the given columns of one page of the rows of a table that match a ListQuery, in UUID order,
+	 * passing each row to reader (whose result is ignored).  See {@link #getByQuery}.
+	 */
+	private void selectByQuery(final String table, final String columns, final Map<String, String> conditions,
+		final ListQuery q, final RowReader<?> reader) {
+		List<String> where = new ArrayList<>();
+		List<Object> params = new ArrayList<>();
+		if (q.getCursor() != null) {
+			where.add("uuid > ?");
+			params.add(q.getCursor().toLowerCase());
+		}
+		if (q.getUuids() != null) {
+			if (q.getUuids().isEmpty()) {
+				return;
+			}
+			StringBuilder sb = new StringBuilder("uuid IN (?");
+			for (int i = 1; i < q.getUuids().size(); i++) {
+				sb.append(", ?");
+			}
+			where.add(sb.append(")").toString());
+			for (String u : q.getUuids()) {
+				params.add(u.toLowerCase());
+			}
+		}
+		if (q.getName() != null) {
+			where.add("LOWER(name) = ?");
+			params.add(q.getName().toLowerCase());
+		}
+		if (q.getNameContains() != null) {
+			String pattern = q.getNameContains().toLowerCase().replace("!", "!!").replace("%", "!%").replace("_", "!_");
+			where.add("LOWER(name) LIKE ? ESCAPE '!'");
+			params.add("%"+pattern+"%");
+		}
+		for (Map.Entry<String, List<String>> f : q.getFilters().entrySet()) {
+			String cond = conditions.get(f.getKey());
+			if (cond == null) {
+				throw new IllegalArgumentException("Unsupported filter "+f.getKey()+" on table "+table);
+			}
+			if (f.getValue().isEmpty()) {
+				return;
+			}
+			StringBuilder sb = new StringBuilder("IN (?");
+			for (int i = 1; i < f.getValue().size(); i++) {
+				sb.append(", ?");
+			}
+			where.add(cond.replace("IN (?)", sb.append(")").toString()));
+			params.addAll(f.getValue());
+		}
+		StringBuilder sql = new StringBuilder("SELECT ");
+		sql.append(columns);
+		sql.append(" FROM AKRAINO.").append(table);
+		for (int i = 0; i < where.size(); i++) {
+			sql.append((i == 0) ? " WHERE " : " AND ").append(where.get(i));
+		}
+		sql.append(" ORDER BY uuid");
+		if (q.getLimit() > 0) {
+			sql.append(" LIMIT ?");
+			params.add(q.getLimit());
+		}
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+				for (int i = 0; i < params.size(); i++) {
+					stmt.setObject(i+1, params.get(i));
+				}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						reader.read(rs);
 					}
 				}
 			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
 		}
-		return DriverManager.getConnection(db_url, db_login, db_password);
 	}
 
-	private void releaseConnection(Connection conn) {
-		if (conn != null) {
-			synchronized (connqueue) {
-				connqueue.add(conn);
+	private static Map<String, String> conditions(final String... pairs) {
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			map.put(pairs[i], pairs[i+1]);
+		}
+		return map;
+	}
+
+	/**
+	 * Read the revision and modified columns of the current row of a ResultSet.
+	 */
+	private static Revision readRevision(final ResultSet rs) throws SQLException {
+		Timestamp modified = rs.getTimestamp("modified");
+		return new Revision(rs.getLong("revision"), (modified == null) ? 0L : modified.getTime());
+	}
+
+	/**
+	 * Run an UPDATE whose WHERE clause includes the revision the bean was read at, and check that a row
+	 * was updated; if not, the row has been updated or deleted since the bean was read.
+	 */
+	private static void checkUpdated(final PreparedStatement stmt, final String type, final BaseBean bean) throws SQLException {
+		if (stmt.executeUpdate() == 0) {
+			throw new StaleRevisionException(type, bean.getUuid(), bean.getRevision());
+		}
+	}
+
+	// REVISIONS ---------------------------------------------------------------------------------------------------------
+	private static final Map<Class<? extends BaseBean>, String> REVISION_TABLES = new HashMap<>();
+	static {
+		REVISION_TABLES.put(Blueprint.class, "BLUEPRINT");
+		REVISION_TABLES.put(Edgesite.class,  "EDGESITE");
+		REVISION_TABLES.put(Hardware.class,  "HARDWARE");
+		REVISION_TABLES.put(Node.class,      "NODE");
+		REVISION_TABLES.put(POD.class,       "POD");
+		REVISION_TABLES.put(Region.class,    "REGION");
+	}
+
+	// The SQL conditions for the filters that each table supports (see getByQuery)
+	private static final Map<String, String> BLUEPRINT_FILTERS = conditions(BaseBean.VERSION_TAG, "version IN (?)");
+	private static final Map<String, String> EDGESITE_FILTERS  = conditions(
+		Edgesite.REGION_FILTER, "uuid IN (SELECT uuid FROM AKRAINO.EDGESITE_ARRAYS WHERE type = 'R' AND fkey IN (?))",
+		Edgesite.NODE_FILTER,   "uuid IN (SELECT uuid FROM AKRAINO.EDGESITE_ARRAYS WHERE type = 'N' AND fkey IN (?))");
+	private static final Map<String, String> HARDWARE_FILTERS  = conditions();
+	private static final Map<String, String> NODE_FILTERS      = conditions(Node.HARDWARE_TAG, "hardware IN (?)");
+	private static final Map<String, String> POD_FILTERS       = conditions(
+		POD.STATE_TAG, "state IN (?)", POD.BLUEPRINT_TAG, "bp_uuid IN (?)", POD.EDGESITE_TAG, "es_uuid IN (?)");
+	private static final Map<String, String> REGION_FILTERS    = conditions(Region.PARENT_TAG, "parent IN (?)");
+	private static final Map<Class<? extends BaseBean>, Map<String, String>> FILTERS = new HashMap<>();
+	static {
+		FILTERS.put(Blueprint.class, BLUEPRINT_FILTERS);
+		FILTERS.put(Edgesite.class,  EDGESITE_FILTERS);
+		FILTERS.put(Hardware.class,  HARDWARE_FILTERS);
+		FILTERS.put(Node.class,      NODE_FILTERS);
+		FILTERS.put(POD.class,       POD_FILTERS);
+		FILTERS.put(Region.class,    REGION_FILTERS);
+	}
+
+	@Override
+	public Revision getRevision(final Class<? extends BaseBean> type, final String uuid) {
+		String table = REVISION_TABLES.get(type);
+		if (table == null) {
+			return DB.super.getRevision(type, uuid);
+		}
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT revision, modified FROM AKRAINO."+table+" WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						return readRevision(rs);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads only the uuid, revision and modified columns of the rows that match the query.
+	 */
+	@Override
+	public Map<String, Revision> getRevisions(final Class<? extends BaseBean> type, final ListQuery q) {
+		String table = REVISION_TABLES.get(type);
+		if (table == null) {
+			return DB.super.getRevisions(type, q);
+		}
+		Map<String, Revision> map = new LinkedHashMap<>();
+		selectByQuery(table, "uuid, revision, modified", FILTERS.get(type), q,
+			rs -> map.put(rs.getString("uuid"), readRevision(rs)));
+		return map;
+	}
+
+	// STATISTICS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public JSONObject getStatistics() {
+		JSONObject jo = new JSONObject();
+		jo.put("pool", pool.getStatistics());
+		return jo;
+	}
+
+	// TRANSACTIONS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public Transaction beginTransaction() throws SQLException {
+		UnitOfWork uw = unit_of_work.get();
+		if (uw == null) {
+			// Use the request's Connection, if there is one, rather than tying up a second Connection
+			RequestContext rc = RequestContext.current();
+			Connection conn = (rc != null) ? rc.getConnection(pool) : pool.acquire();
+			try {
+				conn.setAutoCommit(false);
+			} catch (SQLException e) {
+				releaseConnection(conn);
+				throw e;
+			}
+			uw = new UnitOfWork(conn);
+			unit_of_work.set(uw);
+		}
+		uw.depth++;
+		return new TransactionHandle(uw);
+	}
+
+	/**
+	 * The Connection (and state) shared by all the nested Transactions open on one thread.
+	 */
+	private static class UnitOfWork {
+		private final Connection conn;
+		private int depth;
+		private boolean rollback_only;
+
+		private UnitOfWork(Connection conn) {
+			this.conn          = conn;
+			this.depth         = 0;
+			this.rollback_only = false;
+		}
+	}
+
+	/**
+	 * One (possibly nested) Transaction.  Only the outermost handle actually commits or rolls back.
+	 */
+	private class TransactionHandle implements Transaction {
+		private final UnitOfWork uw;
+		private final boolean outermost;
+		private boolean done;
+		private boolean closed;
+
+		private TransactionHandle(UnitOfWork uw) {
+			this.uw        = uw;
+			this.outermost = (uw.depth == 1);
+			this.done      = false;
+			this.closed    = false;
+		}
+
+		@Override
+		public void commit() throws SQLException {
+			if (done) {
+				return;
+			}
+			if (!outermost) {
+				done = true;
+				return;
+			}
+			if (uw.rollback_only) {
+				rollback();
+				throw new SQLException("Transaction rolled back, as part of it failed");
+			}
+			uw.conn.commit();
+			done = true;
+		}
+
+		@Override
+		public void rollback() {
+			if (done) {
+				return;
+			}
+			done = true;
+			uw.rollback_only = true;
+			if (outermost) {
+				try {
+					uw.conn.rollback();
+				} catch (SQLException e) {
+					logger.warn(e);
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			rollback();
+			if (--uw.depth == 0) {
+				unit_of_work.remove();
+				if (inRequest(uw.conn)) {
+					try {
+						uw.conn.setAutoCommit(true);
+					} catch (SQLException e) {
+						logger.warn(e);
+					}
+				} else {
+					pool.release(uw.conn);	// restores autocommit
+				}
 			}
 		}
 	}
@@ -101,15 +512,19 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "INSERT INTO AKRAINO.BLUEPRINT (uuid, name, description, version, yaml) VALUES(?, ?, ?, ?, ?)";
+			Revision rev = Revision.initial(System.currentTimeMillis());
+			String sql = "INSERT INTO AKRAINO.BLUEPRINT (uuid, name, description, version, yaml, revision, modified) VALUES(?, ?, ?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, b.getUuid());
 				stmt.setString(2, b.getName());
 				stmt.setString(3, b.getDescription());
 				stmt.setString(4, b.getVersion());
 				stmt.setString(5, b.getYaml());
+				stmt.setLong(6, rev.getNumber());
+				stmt.setTimestamp(7, new Timestamp(rev.getModified()));
 				stmt.execute();
 			}
+			b.setRevision(rev);
 		} catch (SQLException ex) {
 			logger.error(ex);
 			throw ex;
@@ -129,17 +544,7 @@ public class StandardDB implements DB {
 				do {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
-							String version     = rs.getString("version");
-							String description = rs.getString("description");
-							String yaml        = rs.getString("yaml");
-							Blueprint bp = new Blueprint(
-								rs.getString("uuid"),
-								rs.getString("name"),
-								(description == null) ? "" : description,
-								(version == null) ? "" : version,
-								(yaml == null) ? "" : yaml
-							);
-							list.add(bp);
+							list.add(readBlueprint(rs));
 						}
 					}
 				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
@@ -152,17 +557,69 @@ public class StandardDB implements DB {
 		return list;
 	}
 
+	@Override
+	public Blueprint getBlueprint(final String uuid) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT * FROM AKRAINO.BLUEPRINT WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						return readBlueprint(rs);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return null;
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final Collection<String> uuids) {
+		return getByUUIDs("BLUEPRINT", uuids, this::readBlueprint);
+	}
+
+	@Override
+	public List<Blueprint> getBlueprints(final ListQuery q) {
+		return getByQuery("BLUEPRINT", "uuid, name, description, version, revision, modified, NULL AS yaml",
+			BLUEPRINT_FILTERS, q, this::readBlueprint);
+	}
+
+	private Blueprint readBlueprint(final ResultSet rs) throws SQLException {
+		String version     = rs.getString("version");
+		String description = rs.getString("description");
+		String yaml        = rs.getString("yaml");
+		Blueprint b = new Blueprint(
+			rs.getString("uuid"),
+			rs.getString("name"),
+			(description == null) ? "" : description,
+			(version == null) ? "" : version,
+			(yaml == null) ? "" : yaml
+		);
+		b.setRevision(readRevision(rs));
+		return b;
+	}
+
 	@Override
 	public void updateBlueprint(final Blueprint b) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "UPDATE AKRAINO.BLUEPRINT SET description = ? WHERE uuid = ?";
+			Revision rev = b.getRevision().next(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.BLUEPRINT SET description = ?, revision = revision + 1, modified = ? WHERE uuid = ? AND revision = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, b.getDescription());
-				stmt.setString(2, b.getUuid());
-				stmt.execute();
+				stmt.setTimestamp(2, new Timestamp(rev.getModified()));
+				stmt.setString(3, b.getUuid());
+				stmt.setLong(4, b.getRevision().getNumber());
+				checkUpdated(stmt, "Blueprint", b);
 			}
+			b.setRevision(rev);
 		} catch (SQLException e) {
 			logger.error(e);
 			throw e;
@@ -195,30 +652,22 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "INSERT INTO AKRAINO.EDGESITE (uuid, name, description) VALUES(?, ?, ?)";
+			begin(conn);
+			Revision rev = Revision.initial(System.currentTimeMillis());
+			String sql = "INSERT INTO AKRAINO.EDGESITE (uuid, name, description, revision, modified) VALUES(?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, e.getUuid());
 				stmt.setString(2, e.getName());
 				stmt.setString(3, e.getDescription());
+				stmt.setLong(4, rev.getNumber());
+				stmt.setTimestamp(5, new Timestamp(rev.getModified()));
 				stmt.execute();
 			}
-
-			sql = "INSERT INTO AKRAINO.EDGESITE_ARRAYS (uuid, fkey, type) VALUES(?, ?, ?)";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				for (String s : e.getNodes()) {
-					stmt.setString(1, e.getUuid());
-					stmt.setString(2, s);
-					stmt.setString(3, "N");
-					stmt.execute();
-				}
-				for (String s : e.getRegions()) {
-					stmt.setString(1, e.getUuid());
-					stmt.setString(2, s);
-					stmt.setString(3, "R");
-					stmt.execute();
-				}
-			}
+			writeEdgesiteArrays(conn, e, new HashMap<>());
+			commit(conn);
+			e.setRevision(rev);
 		} catch (SQLException ex) {
+			rollback(conn);
 			logger.error(ex);
 			throw ex;
 		} finally {
@@ -237,12 +686,7 @@ public class StandardDB implements DB {
 				do {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
-							String description = rs.getString("description");
-							Edgesite es = new Edgesite(
-								rs.getString("uuid"),
-								rs.getString("name"),
-								(description == null) ? "" : description
-							);
+							Edgesite es = readEdgesite(rs);
 							map.put(es.getUuid(), es);
 						}
 					}
@@ -253,16 +697,9 @@ public class StandardDB implements DB {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
 							String uuid = rs.getString("uuid");
-							Edgesite es = map.get(uuid);
-							if (uuid != null && es != null) {
-								String fkey = rs.getString("fkey");
-								String type = rs.getString("type");
-								if (type.equals("N")) {
-									es.getNodes().add(fkey);
-								}
-								if (type.equals("R")) {
-									es.getRegions().add(fkey);
-								}
+							Edgesite es = (uuid == null) ? null : map.get(uuid.toLowerCase());
+							if (es != null) {
+								readEdgesiteArray(rs, es);
 							}
 						}
 					}
@@ -278,39 +715,152 @@ public class StandardDB implements DB {
 		return list;
 	}
 
+	@Override
+	public Edgesite getEdgesite(final String uuid) {
+		Edgesite es = null;
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT * FROM AKRAINO.EDGESITE WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						es = readEdgesite(rs);
+					}
+				}
+			}
+			if (es != null) {
+				sql = "SELECT * FROM AKRAINO.EDGESITE_ARRAYS WHERE uuid = ?";
+				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+					stmt.setString(1, uuid);
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next() ) {
+							readEdgesiteArray(rs, es);
+						}
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+			es = null;
+		} finally {
+			releaseConnection(conn);
+		}
+		return es;
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final Collection<String> uuids) {
+		Map<String, Edgesite> map = new HashMap<>();
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			selectByUUIDs(conn, "EDGESITE", uuids, rs -> {
+				Edgesite es = readEdgesite(rs);
+				return map.put(es.getUuid(), es);
+			});
+			if (!map.isEmpty()) {
+				selectByUUIDs(conn, "EDGESITE_ARRAYS", map.keySet(), rs -> {
+					// The map is keyed by the bean's (lower case) UUID
+					Edgesite es = map.get(rs.getString("uuid").toLowerCase());
+					if (es != null) {
+						readEdgesiteArray(rs, es);
+					}
+					return es;
+				});
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return new ArrayList<>(map.values());
+	}
+
+	@Override
+	public List<Edgesite> getEdgesites(final ListQuery q) {
+		List<Edgesite> list = getByQuery("EDGESITE", null, EDGESITE_FILTERS, q, this::readEdgesite);
+		if (!list.isEmpty()) {
+			Map<String, Edgesite> map = new HashMap<>();
+			for (Edgesite es : list) {
+				map.put(es.getUuid(), es);
+			}
+			Connection conn = null;
+			try {
+				conn = getConnection();
+				selectByUUIDs(conn, "EDGESITE_ARRAYS", map.keySet(), rs -> {
+					// The map is keyed by the bean's (lower case) UUID
+					Edgesite es = map.get(rs.getString("uuid").toLowerCase());
+					if (es != null) {
+						readEdgesiteArray(rs, es);
+					}
+					return es;
+				});
+			} catch (SQLException e) {
+				logger.error(e);
+			} finally {
+				releaseConnection(conn);
+			}
+		}
+		return list;
+	}
+
+	private Edgesite readEdgesite(final ResultSet rs) throws SQLException {
+		String description = rs.getString("description");
+		Edgesite es = new Edgesite(
+			rs.getString("uuid"),
+			rs.getString("name"),
+			(description == null) ? "" : description
+		);
+		es.setRevision(readRevision(rs));
+		return es;
+	}
+
+	private void readEdgesiteArray(final ResultSet rs, final Edgesite es) throws SQLException {
+		String fkey = rs.getString("fkey");
+		String type = rs.getString("type");
+		if (type.equals("N")) {
+			es.getNodes().add(fkey);
+		}
+		if (type.equals("R")) {
+			es.getRegions().add(fkey);
+		}
+	}
+
 	@Override
 	public void updateEdgesite(final Edgesite e) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "UPDATE AKRAINO.EDGESITE SET name = ?, description = ? WHERE uuid = ?";
+			begin(conn);
+			// The revision covers the arrays too, so it is bumped even if only they change
+			Revision rev = e.getRevision().next(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.EDGESITE SET name = ?, description = ?, revision = revision + 1, modified = ? WHERE uuid = ? AND revision = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, e.getName());
 				stmt.setString(2, e.getDescription());
-				stmt.setString(3, e.getUuid());
-				stmt.execute();
+				stmt.setTimestamp(3, new Timestamp(rev.getModified()));
+				stmt.setString(4, e.getUuid());
+				stmt.setLong(5, e.getRevision().getNumber());
+				checkUpdated(stmt, "Edgesite", e);
 			}
-			sql = "DELETE FROM AKRAINO.EDGESITE_ARRAYS WHERE uuid = ?";
+			// Only touch the array rows that have changed
+			Map<String, String> current = new HashMap<>();
+			sql = "SELECT fkey, type FROM AKRAINO.EDGESITE_ARRAYS WHERE uuid = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, e.getUuid());
-				stmt.execute();
-			}
-			sql = "INSERT INTO AKRAINO.EDGESITE_ARRAYS (uuid, fkey, type) VALUES(?, ?, ?)";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				for (String s : e.getNodes()) {
-					stmt.setString(1, e.getUuid());
-					stmt.setString(2, s);
-					stmt.setString(3, "N");
-					stmt.execute();
-				}
-				for (String s : e.getRegions()) {
-					stmt.setString(1, e.getUuid());
-					stmt.setString(2, s);
-					stmt.setString(3, "R");
-					stmt.execute();
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						current.put(rs.getString("fkey"), rs.getString("type"));
+					}
 				}
 			}
+			writeEdgesiteArrays(conn, e, current);
+			commit(conn);
+			e.setRevision(rev);
 		} catch (SQLException ex) {
+			rollback(conn);
 			logger.error(ex);
 			throw ex;
 		} finally {
@@ -318,11 +868,58 @@ public class StandardDB implements DB {
 		}
 	}
 
+	/**
+	 * Bring the EDGESITE_ARRAYS rows for an Edgesite in line with its nodes and regions, using one
+	 * batched DELETE and one batched INSERT for the rows that differ.
+	 * @param current the existing rows (fkey -> type); this map is modified
+	 */
+	private void writeEdgesiteArrays(final Connection conn, final Edgesite e, final Map<String, String> current) throws SQLException {
+		Map<String, String> wanted = new HashMap<>();
+		for (String s : e.getNodes()) {
+			wanted.put(s, "N");
+		}
+		for (String s : e.getRegions()) {
+			wanted.put(s, "R");
+		}
+		List<String> deletes = new ArrayList<>();
+		for (Map.Entry<String, String> me : current.entrySet()) {
+			if (!me.getValue().equals(wanted.get(me.getKey()))) {
+				deletes.add(me.getKey());
+			}
+		}
+		current.keySet().removeAll(deletes);
+		wanted.keySet().removeAll(current.keySet());
+		if (!deletes.isEmpty()) {
+			String sql = "DELETE FROM AKRAINO.EDGESITE_ARRAYS WHERE uuid = ? AND fkey = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (String fkey : deletes) {
+					stmt.setString(1, e.getUuid());
+					stmt.setString(2, fkey);
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+			}
+		}
+		if (!wanted.isEmpty()) {
+			String sql = "INSERT INTO AKRAINO.EDGESITE_ARRAYS (uuid, fkey, type) VALUES(?, ?, ?)";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (Map.Entry<String, String> me : wanted.entrySet()) {
+					stmt.setString(1, e.getUuid());
+					stmt.setString(2, me.getKey());
+					stmt.setString(3, me.getValue());
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+			}
+		}
+	}
+
 	@Override
 	public void deleteEdgesite(final Edgesite e) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "DELETE FROM AKRAINO.EDGESITE WHERE uuid = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, e.getUuid());
@@ -334,7 +931,9 @@ public class StandardDB implements DB {
 				stmt.setString(1, e.getUuid());
 				stmt.execute();
 			}
+			commit(conn);
 		} catch (SQLException ex) {
+			rollback(conn);
 			logger.error(ex);
 			throw ex;
 		} finally {
@@ -348,14 +947,18 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "INSERT INTO AKRAINO.HARDWARE (uuid, name, description, yaml) VALUES(?, ?, ?, ?)";
+			Revision rev = Revision.initial(System.currentTimeMillis());
+			String sql = "INSERT INTO AKRAINO.HARDWARE (uuid, name, description, yaml, revision, modified) VALUES(?, ?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, h.getUuid());
 				stmt.setString(2, h.getName());
 				stmt.setString(3, h.getDescription());
 				stmt.setString(4, h.getYaml());
+				stmt.setLong(5, rev.getNumber());
+				stmt.setTimestamp(6, new Timestamp(rev.getModified()));
 				stmt.execute();
 			}
+			h.setRevision(rev);
 		} catch (SQLException e) {
 			logger.error(e);
 			throw e;
@@ -375,12 +978,7 @@ public class StandardDB implements DB {
 				do {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
-							String uuid = rs.getString("uuid");
-							String name = rs.getString("name");
-							String description = rs.getString("description");
-							String yaml = rs.getString("yaml");
-							Hardware h = new Hardware(uuid, name, description, yaml);
-							list.add(h);
+							list.add(readHardware(rs));
 						}
 					}
 				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
@@ -393,19 +991,66 @@ public class StandardDB implements DB {
 		return list;
 	}
 
+	@Override
+	public Hardware getHardware(final String uuid) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT * FROM AKRAINO.HARDWARE WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						return readHardware(rs);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return null;
+	}
+
+	@Override
+	public List<Hardware> getHardware(final Collection<String> uuids) {
+		return getByUUIDs("HARDWARE", uuids, this::readHardware);
+	}
+
+	@Override
+	public List<Hardware> getHardware(final ListQuery q) {
+		return getByQuery("HARDWARE", "uuid, name, description, revision, modified, NULL AS yaml",
+			HARDWARE_FILTERS, q, this::readHardware);
+	}
+
+	private Hardware readHardware(final ResultSet rs) throws SQLException {
+		String uuid = rs.getString("uuid");
+		String name = rs.getString("name");
+		String description = rs.getString("description");
+		String yaml = rs.getString("yaml");
+		Hardware h = new Hardware(uuid, name, description, yaml);
+		h.setRevision(readRevision(rs));
+		return h;
+	}
+
 	@Override
 	public void updateHardware(final Hardware h) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "UPDATE AKRAINO.HARDWARE SET name = ?, description = ?, yaml = ? WHERE uuid = ?";
+			Revision rev = h.getRevision().next(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.HARDWARE SET name = ?, description = ?, yaml = ?, revision = revision + 1, modified = ? WHERE uuid = ? AND revision = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, h.getName());
 				stmt.setString(2, h.getDescription());
 				stmt.setString(3, h.getYaml());
-				stmt.setString(4, h.getUuid());
-				stmt.execute();
+				stmt.setTimestamp(4, new Timestamp(rev.getModified()));
+				stmt.setString(5, h.getUuid());
+				stmt.setLong(6, h.getRevision().getNumber());
+				checkUpdated(stmt, "Hardware", h);
 			}
+			h.setRevision(rev);
 		} catch (SQLException ex) {
 			logger.error(ex);
 			throw ex;
@@ -438,15 +1083,19 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "INSERT INTO AKRAINO.NODE (uuid, name, description, hardware, yaml) VALUES(?, ?, ?, ?, ?)";
+			Revision rev = Revision.initial(System.currentTimeMillis());
+			String sql = "INSERT INTO AKRAINO.NODE (uuid, name, description, hardware, yaml, revision, modified) VALUES(?, ?, ?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, n.getUuid());
 				stmt.setString(2, n.getName());
 				stmt.setString(3, n.getDescription());
 				stmt.setString(4, n.getHardware());
 				stmt.setString(5, n.getYaml());
+				stmt.setLong(6, rev.getNumber());
+				stmt.setTimestamp(7, new Timestamp(rev.getModified()));
 				stmt.execute();
 			}
+			n.setRevision(rev);
 		} catch (SQLException e) {
 			logger.error(e);
 			throw e;
@@ -466,13 +1115,7 @@ public class StandardDB implements DB {
 				do {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
-							String uuid = rs.getString("uuid");
-							String name = rs.getString("name");
-							String description = rs.getString("description");
-							String hw   = rs.getString("hardware");
-							String yaml = rs.getString("yaml");
-							Node n = new Node(uuid, name, description, hw, yaml);
-							list.add(n);
+							list.add(readNode(rs));
 						}
 					}
 				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
@@ -485,19 +1128,67 @@ public class StandardDB implements DB {
 		return list;
 	}
 
+	@Override
+	public Node getNode(final String uuid) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT * FROM AKRAINO.NODE WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						return readNode(rs);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return null;
+	}
+
+	@Override
+	public List<Node> getNodes(final Collection<String> uuids) {
+		return getByUUIDs("NODE", uuids, this::readNode);
+	}
+
+	@Override
+	public List<Node> getNodes(final ListQuery q) {
+		return getByQuery("NODE", "uuid, name, description, hardware, revision, modified, NULL AS yaml",
+			NODE_FILTERS, q, this::readNode);
+	}
+
+	private Node readNode(final ResultSet rs) throws SQLException {
+		String uuid = rs.getString("uuid");
+		String name = rs.getString("name");
+		String description = rs.getString("description");
+		String hw   = rs.getString("hardware");
+		String yaml = rs.getString("yaml");
+		Node n = new Node(uuid, name, description, hw, yaml);
+		n.setRevision(readRevision(rs));
+		return n;
+	}
+
 	@Override
 	public void updateNode(final Node n) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "UPDATE AKRAINO.NODE SET name = ?, description = ?, yaml = ? WHERE uuid = ?";
+			Revision rev = n.getRevision().next(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.NODE SET name = ?, description = ?, yaml = ?, revision = revision + 1, modified = ? WHERE uuid = ? AND revision = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, n.getName());
 				stmt.setString(2, n.getDescription());
 				stmt.setString(3, n.getYaml());
-				stmt.setString(4, n.getUuid());
-				stmt.execute();
+				stmt.setTimestamp(4, new Timestamp(rev.getModified()));
+				stmt.setString(5, n.getUuid());
+				stmt.setLong(6, n.getRevision().getNumber());
+				checkUpdated(stmt, "Node", n);
 			}
+			n.setRevision(rev);
 		} catch (SQLException ex) {
 			logger.error(ex);
 			throw ex;
@@ -530,7 +1221,8 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "INSERT INTO AKRAINO.POD (uuid, name, description, state, bp_uuid, es_uuid, yaml) VALUES(?, ?, ?, ?, ?, ?, ?)";
+			Revision rev = Revision.initial(System.currentTimeMillis());
+			String sql = "INSERT INTO AKRAINO.POD (uuid, name, description, state, bp_uuid, es_uuid, yaml, revision, modified) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, p.getUuid());
 				stmt.setString(2, p.getName());
@@ -539,8 +1231,11 @@ public class StandardDB implements DB {
 				stmt.setString(5, p.getBlueprint());
 				stmt.setString(6, p.getEdgesite());
 				stmt.setString(7, p.getYaml());
+				stmt.setLong(8, rev.getNumber());
+				stmt.setTimestamp(9, new Timestamp(rev.getModified()));
 				stmt.execute();
 			}
+			p.setRevision(rev);
 		} catch (SQLException e) {
 			logger.error(e);
 			throw e;
@@ -560,15 +1255,7 @@ public class StandardDB implements DB {
 				do {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
-							String uuid        = rs.getString("uuid");
-							String name        = rs.getString("name");
-							String description = rs.getString("description");
-							String state       = rs.getString("state");
-							String blueprint   = rs.getString("bp_uuid");
-							String edgesite    = rs.getString("es_uuid");
-							String yaml        = rs.getString("yaml");
-							POD p = new POD(uuid, name, description, state, blueprint, edgesite, yaml);
-							list.add(p);
+							list.add(readPod(rs));
 						}
 					}
 				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
@@ -581,21 +1268,126 @@ public class StandardDB implements DB {
 		return list;
 	}
 
+	@Override
+	public POD getPod(final String uuid) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT * FROM AKRAINO.POD WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						return readPod(rs);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return null;
+	}
+
+	@Override
+	public List<POD> getPods(final Collection<String> uuids) {
+		return getByUUIDs("POD", uuids, this::readPod);
+	}
+
+	@Override
+	public List<POD> getPods(final ListQuery q) {
+		return getByQuery("POD", "uuid, name, description, state, bp_uuid, es_uuid, revision, modified, NULL AS yaml",
+			POD_FILTERS, q, this::readPod);
+	}
+
+	private POD readPod(final ResultSet rs) throws SQLException {
+		String uuid        = rs.getString("uuid");
+		String name        = rs.getString("name");
+		String description = rs.getString("description");
+		String state       = rs.getString("state");
+		String blueprint   = rs.getString("bp_uuid");
+		String edgesite    = rs.getString("es_uuid");
+		String yaml        = rs.getString("yaml");
+		POD p = new POD(uuid, name, description, state, blueprint, edgesite, yaml);
+		p.setRevision(readRevision(rs));
+		return p;
+	}
+
 	@Override
 	public void updatePod(final POD p) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "UPDATE AKRAINO.POD SET state = ?, yaml = ?, bp_uuid = ?, es_uuid = ? WHERE uuid = ?";
+			Revision rev = p.getRevision().next(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.POD SET state = ?, yaml = ?, bp_uuid = ?, es_uuid = ?, revision = revision + 1, modified = ? WHERE uuid = ? AND revision = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, p.getState().toString());
 				stmt.setString(2, p.getYaml());
 				stmt.setString(3, p.getBlueprint());
 				stmt.setString(4, p.getEdgesite());
-				stmt.setString(5, p.getUuid());
-				stmt.execute();
+				stmt.setTimestamp(5, new Timestamp(rev.getModified()));
+				stmt.setString(6, p.getUuid());
+				stmt.setLong(7, p.getRevision().getNumber());
+				checkUpdated(stmt, "POD", p);
+			}
+			p.setRevision(rev);
+		} catch (SQLException e) {
+			logger.error(e);
+			throw e;
+		} finally {
+			releaseConnection(conn);
+		}
+	}
+
+	@Override
+	public boolean updatePodState(final POD p, final POD.State from, final POD.State to, final String edgesite) throws SQLException {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			begin(conn);
+			Timestamp now = new Timestamp(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.POD SET state = ?, es_uuid = COALESCE(?, es_uuid), revision = revision + 1, modified = ? WHERE uuid = ? AND state = ?";
+			int n;
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, to.toString());
+				stmt.setString(2, edgesite);
+				stmt.setTimestamp(3, now);
+				stmt.setString(4, p.getUuid());
+				stmt.setString(5, from.toString());
+				n = stmt.executeUpdate();
+			}
+			if (n == 0) {
+				// Nothing has been written, so there is nothing to roll back
+				commit(conn);
+				return false;
+			}
+			if (from == POD.State.WORKFLOW) {
+				// Mark the end time of the workflow instance that was running
+				sql = "UPDATE AKRAINO.POD_WORKFLOWS SET endtime = ? WHERE uuid = ? AND endtime IS NULL";
+				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+					stmt.setTimestamp(1, now);
+					stmt.setString(2, p.getUuid());
+					stmt.execute();
+				}
+			}
+			Revision rev = null;
+			sql = "SELECT revision, modified FROM AKRAINO.POD WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, p.getUuid());
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next()) {
+						rev = readRevision(rs);
+					}
+				}
 			}
+			commit(conn);
+			if (rev != null) {
+				p.setRevision(rev);
+			}
+			return true;
 		} catch (SQLException e) {
+			rollback(conn);
 			logger.error(e);
 			throw e;
 		} finally {
@@ -608,6 +1400,7 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "DELETE FROM AKRAINO.POD WHERE uuid = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, p.getUuid());
@@ -618,7 +1411,9 @@ public class StandardDB implements DB {
 				stmt.setString(1, p.getUuid());
 				stmt.execute();
 			}
+			commit(conn);
 		} catch (SQLException ex) {
+			rollback(conn);
 			logger.error(ex);
 			throw ex;
 		} finally {
@@ -631,6 +1426,7 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "INSERT INTO AKRAINO.POD_EVENTS (uuid, eventtime, level, eventmsg) VALUES (?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, pe.getUuid());
@@ -639,7 +1435,10 @@ public class StandardDB implements DB {
 				stmt.setString(4, pe.getMessage());
 				stmt.execute();
 			}
+			touchPod(conn, pe.getUuid());
+			commit(conn);
 		} catch (SQLException e) {
+			rollback(conn);
 			logger.error(e);
 			throw e;
 		} finally {
@@ -680,6 +1479,7 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "INSERT INTO AKRAINO.POD_WORKFLOWS (uuid, name, runindex, starttime, yaml) VALUES (?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, pw.getUuid());
@@ -689,7 +1489,10 @@ public class StandardDB implements DB {
 				stmt.setString(5, pw.getYaml());
 				stmt.execute();
 			}
+			touchPod(conn, pw.getUuid());
+			commit(conn);
 		} catch (SQLException e) {
+			rollback(conn);
 			logger.error(e);
 			throw e;
 		} finally {
@@ -697,6 +1500,19 @@ public class StandardDB implements DB {
 		}
 	}
 
+	/**
+	 * Mark a POD as modified without changing its revision; used when its events or workflow
+	 * instances (which are shown as part of the POD) change.
+	 */
+	private void touchPod(final Connection conn, final String uuid) throws SQLException {
+		String sql = "UPDATE AKRAINO.POD SET modified = ? WHERE uuid = ?";
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+			stmt.setString(2, uuid);
+			stmt.execute();
+		}
+	}
+
 	public List<PODWorkflow> getPODWorkflows(final String uuid) {
 		List<PODWorkflow> list = new ArrayList<>();
 		Connection conn = null;
@@ -754,14 +1570,18 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "INSERT INTO AKRAINO.REGION (uuid, name, description, parent) VALUES(?, ?, ?, ?)";
+			Revision rev = Revision.initial(System.currentTimeMillis());
+			String sql = "INSERT INTO AKRAINO.REGION (uuid, name, description, parent, revision, modified) VALUES(?, ?, ?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, r.getUuid());
 				stmt.setString(2, r.getName());
 				stmt.setString(3, r.getDescription());
 				stmt.setString(4, r.getParent());
+				stmt.setLong(5, rev.getNumber());
+				stmt.setTimestamp(6, new Timestamp(rev.getModified()));
 				stmt.execute();
 			}
+			r.setRevision(rev);
 		} catch (SQLException e) {
 			logger.error(e);
 			throw e;
@@ -781,15 +1601,7 @@ public class StandardDB implements DB {
 				do {
 					try (ResultSet rs = stmt.executeQuery(sql)) {
 						while (rs.next() ) {
-							String description = rs.getString("description");
-							String parent      = rs.getString("parent");
-							Region r = new Region(
-								rs.getString("uuid"),
-								rs.getString("name"),
-								(description == null) ? "" : description,
-								(parent == null) ? Region.UNIVERSAL_REGION : parent
-							);
-							list.add(r);
+							list.add(readRegion(rs));
 						}
 					}
 				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
@@ -802,19 +1614,96 @@ public class StandardDB implements DB {
 		return list;
 	}
 
+	@Override
+	public Region getRegion(final String uuid) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT * FROM AKRAINO.REGION WHERE uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (rs.next() ) {
+						return readRegion(rs);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return null;
+	}
+
+	@Override
+	public List<Region> getRegions(final Collection<String> uuids) {
+		return getByUUIDs("REGION", uuids, this::readRegion);
+	}
+
+	@Override
+	public List<Region> getRegions(final ListQuery q) {
+		return getByQuery("REGION", null, REGION_FILTERS, q, this::readRegion);
+	}
+
+	@Override
+	public List<Region> getDescendantRegions(final String uuid) {
+		List<Region> list = new ArrayList<>();
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			// UNION (rather than UNION ALL) stops the recursion if the tree has a loop in it
+			String sql = "WITH RECURSIVE SUBTREE (uuid) AS ("
+				+ " SELECT uuid FROM AKRAINO.REGION WHERE parent = ?"
+				+ " UNION SELECT r.uuid FROM AKRAINO.REGION r JOIN SUBTREE s ON r.parent = s.uuid)"
+				+ " SELECT * FROM AKRAINO.REGION WHERE uuid IN (SELECT uuid FROM SUBTREE) AND uuid <> ? ORDER BY uuid";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				stmt.setString(2, uuid);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						list.add(readRegion(rs));
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return list;
+	}
+
+	private Region readRegion(final ResultSet rs) throws SQLException {
+		String description = rs.getString("description");
+		String parent      = rs.getString("parent");
+		Region r = new Region(
+			rs.getString("uuid"),
+			rs.getString("name"),
+			(description == null) ? "" : description,
+			(parent == null) ? Region.UNIVERSAL_REGION : parent
+		);
+		r.setRevision(readRevision(rs));
+		return r;
+	}
+
 	@Override
 	public void updateRegion(final Region r) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "UPDATE AKRAINO.REGION SET name = ?, description = ?, parent = ? WHERE uuid = ?";
+			Revision rev = r.getRevision().next(System.currentTimeMillis());
+			String sql = "UPDATE AKRAINO.REGION SET name = ?, description = ?, parent = ?, revision = revision + 1, modified = ? WHERE uuid = ? AND revision = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, r.getName());
 				stmt.setString(2, r.getDescription());
 				stmt.setString(3, r.getParent());
-				stmt.setString(4, r.getUuid());
-				stmt.execute();
+				stmt.setTimestamp(4, new Timestamp(rev.getModified()));
+				stmt.setString(5, r.getUuid());
+				stmt.setLong(6, r.getRevision().getNumber());
+				checkUpdated(stmt, "Region", r);
 			}
+			r.setRevision(rev);
 		} catch (SQLException ex) {
 			logger.error(ex);
 			throw ex;
@@ -869,6 +1758,8 @@ public class StandardDB implements DB {
 
 	@Override
 	public UserSession getSession(final String token) {
+		String userid = null;
+		long expires = 0;
 		Connection conn = null;
 		try {
 			conn = getConnection();
@@ -877,19 +1768,21 @@ public class StandardDB implements DB {
 				stmt.setString(1, token);
 				try (ResultSet rs = stmt.executeQuery()) {
 					if (rs.next() ) {
-						long expires = rs.getLong("expires");
-						User u = getUserByUuid(rs.getString("userid"));
-						UserSession us = new UserSession(u, token, expires);
-						return us;
+						expires = rs.getLong("expires");
+						userid  = rs.getString("userid");
 					}
 				}
-				stmt.close();
 			}
 		} catch (SQLException e) {
 			logger.error(e);
 		} finally {
 			releaseConnection(conn);
 		}
+		// The Connection is released before looking up the user, so a request never holds two at once
+		if (userid != null) {
+			User u = getUserByUuid(userid);
+			return new UserSession(u, token, expires);
+		}
 		return null;
 	}
 
@@ -910,12 +1803,62 @@ public class StandardDB implements DB {
 		}
 	}
 
+	// REVOKED_TOKENS ---------------------------------------------------------------------------------------------------------
+	@Override
+	public void createRevocation(final String uuid, final long revoked, final long expires) {
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "INSERT INTO AKRAINO.REVOKED_TOKENS (uuid, revoked, expires) VALUES (?, ?, ?)";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setString(1, uuid);
+				stmt.setLong(2, revoked);
+				stmt.setLong(3, expires);
+				stmt.execute();
+			}
+			// Remove revocations of tokens that have expired anyway
+			sql = "DELETE FROM AKRAINO.REVOKED_TOKENS WHERE expires < ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setLong(1, System.currentTimeMillis());
+				stmt.execute();
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+	}
+
+	@Override
+	public Map<String, Long> getRevocations() {
+		Map<String, Long> map = new HashMap<>();
+		Connection conn = null;
+		try {
+			conn = getConnection();
+			String sql = "SELECT uuid, MAX(revoked) AS revoked FROM AKRAINO.REVOKED_TOKENS WHERE expires >= ? GROUP BY uuid";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				stmt.setLong(1, System.currentTimeMillis());
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						map.put(rs.getString("uuid"), rs.getLong("revoked"));
+					}
+				}
+			}
+		} catch (SQLException e) {
+			logger.error(e);
+		} finally {
+			releaseConnection(conn);
+		}
+		return map;
+	}
+
 	// USERS ---------------------------------------------------------------------------------------------------------
 	@Override
 	public void createUser(final User u) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "INSERT INTO AKRAINO.USERS (uuid, name, description, pwhash) VALUES(?, ?, ?, ?)";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, u.getUuid());
@@ -924,15 +1867,10 @@ public class StandardDB implements DB {
 				stmt.setString(4, u.getPasswordHash());
 				stmt.execute();
 			}
-			sql = "INSERT INTO AKRAINO.USER_ROLES (user_uuid, role_uuid) VALUES(?, ?)";
-			for (Role r : u.getRoles()) {
-				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-					stmt.setString(1, u.getUuid());
-					stmt.setString(2, r.getUuid());
-					stmt.execute();
-				}
-			}
+			writeUserRoles(conn, u, new TreeSet<>());
+			commit(conn);
 		} catch (SQLException e) {
+			rollback(conn);
 			logger.error(e);
 			throw e;
 		} finally {
@@ -946,6 +1884,7 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			Map<String, Set<Role>> rolemap = getRolesForUsers(conn);
 			try (Statement stmt = conn.createStatement()) {
 				String sql = "SELECT * FROM AKRAINO.USERS";
 				do {
@@ -959,7 +1898,8 @@ public class StandardDB implements DB {
 								rs.getString("pwhash"),
 								(description == null) ? "" : description
 							);
-							user.setRoles(getRolesForUser(uuid));
+							Set<Role> roles = rolemap.get(uuid);
+							user.setRoles((roles == null) ? new TreeSet<>() : roles);
 							list.add(user);
 						}
 					}
@@ -978,6 +1918,7 @@ public class StandardDB implements DB {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "UPDATE AKRAINO.USERS SET description = ?, pwhash = ? WHERE uuid = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, u.getDescription());
@@ -985,20 +1926,21 @@ public class StandardDB implements DB {
 				stmt.setString(3, u.getUuid());
 				stmt.execute();
 			}
-			sql = "DELETE FROM AKRAINO.USER_ROLES WHERE user_uuid = ?";
+			// Only touch the role rows that have changed
+			Set<String> current = new TreeSet<>();
+			sql = "SELECT role_uuid FROM AKRAINO.USER_ROLES WHERE user_uuid = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, u.getUuid());
-				stmt.execute();
-			}
-			sql = "INSERT INTO AKRAINO.USER_ROLES (user_uuid, role_uuid) VALUES(?, ?)";
-			for (Role r : u.getRoles()) {
-				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-					stmt.setString(1, u.getUuid());
-					stmt.setString(2, r.getUuid());
-					stmt.execute();
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						current.add(rs.getString("role_uuid"));
+					}
 				}
 			}
+			writeUserRoles(conn, u, current);
+			commit(conn);
 		} catch (SQLException ex) {
+			rollback(conn);
 			logger.error(ex);
 			throw ex;
 		} finally {
@@ -1006,11 +1948,49 @@ public class StandardDB implements DB {
 		}
 	}
 
+	/**
+	 * Bring the USER_ROLES rows for a User in line with its roles, using one batched DELETE and one
+	 * batched INSERT for the rows that differ.
+	 * @param current the role UUIDs currently recorded for the User; this set is modified
+	 */
+	private void writeUserRoles(final Connection conn, final User u, final Set<String> current) throws SQLException {
+		Set<String> wanted = new TreeSet<>();
+		for (Role r : u.getRoles()) {
+			wanted.add(r.getUuid());
+		}
+		Set<String> deletes = new TreeSet<>(current);
+		deletes.removeAll(wanted);
+		wanted.removeAll(current);
+		if (!deletes.isEmpty()) {
+			String sql = "DELETE FROM AKRAINO.USER_ROLES WHERE user_uuid = ? AND role_uuid = ?";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (String role_uuid : deletes) {
+					stmt.setString(1, u.getUuid());
+					stmt.setString(2, role_uuid);
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+			}
+		}
+		if (!wanted.isEmpty()) {
+			String sql = "INSERT INTO AKRAINO.USER_ROLES (user_uuid, role_uuid) VALUES(?, ?)";
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (String role_uuid : wanted) {
+					stmt.setString(1, u.getUuid());
+					stmt.setString(2, role_uuid);
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+			}
+		}
+	}
+
 	@Override
 	public void deleteUser(final User u) throws SQLException {
 		Connection conn = null;
 		try {
 			conn = getConnection();
+			begin(conn);
 			String sql = "DELETE FROM AKRAINO.USERS WHERE uuid = ?";
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, u.getUuid());
@@ -1021,7 +2001,9 @@ public class StandardDB implements DB {
 				stmt.setString(1, u.getUuid());
 				stmt.execute();
 			}
+			commit(conn);
 		} catch (SQLException ex) {
+			rollback(conn);
 			logger.error(ex);
 			throw ex;
 		} finally {
@@ -1031,29 +2013,62 @@ public class StandardDB implements DB {
 
 	@Override
 	public User getUser(final String name) {
-		return getUserCommon("SELECT * FROM AKRAINO.USERS WHERE name = ?", name);
+		return getUserCommon("u.name = ?", name);
 	}
 
-	protected User getUserByUuid(final String uuid) {
-		return getUserCommon("SELECT * FROM AKRAINO.USERS WHERE uuid = ?", uuid);
+	@Override
+	public User getUserByUuid(final String uuid) {
+		return getUserCommon("u.uuid = ?", uuid);
 	}
 
-	private User getUserCommon(String sql, String value) {
+	/**
+	 * Fetch a User, together with all of its Roles and their attributes, in one query.
+	 */
+	private User getUserCommon(String where, String value) {
+		String sql = "SELECT u.uuid, u.name, u.description, u.pwhash,"
+			+ " r.uuid AS role_uuid, r.name AS role_name, r.description AS role_description, a.attribute"
+			+ " FROM AKRAINO.USERS u"
+			+ " LEFT JOIN AKRAINO.USER_ROLES ur ON ur.user_uuid = u.uuid"
+			+ " LEFT JOIN AKRAINO.ROLES r ON r.uuid = ur.role_uuid"
+			+ " LEFT JOIN AKRAINO.ROLE_ATTRIBUTES a ON a.role_uuid = r.uuid"
+			+ " WHERE " + where;
 		Connection conn = null;
 		try {
 			conn = getConnection();
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, value);
 				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next() ) {
-						String description = rs.getString("description");
-						String uuid   = rs.getString("uuid");
-						String name   = rs.getString("name");
-						String pwhash = rs.getString("pwhash");
-						User u = new User(uuid, name, pwhash, (description == null) ? "" : description);
-						u.setRoles(getRolesForUser(uuid));
-						return u;
+					User u = null;
+					Map<String, RoleBuilder> roles = new HashMap<>();
+					while (rs.next() ) {
+						if (u == null) {
+							String description = rs.getString("description");
+							String uuid   = rs.getString("uuid");
+							String name   = rs.getString("name");
+							String pwhash = rs.getString("pwhash");
+							u = new User(uuid, name, pwhash, (description == null) ? "" : description);
+						} else if (!u.getUuid().equalsIgnoreCase(rs.getString("uuid"))) {
+							// Only the first matching user is returned
+							continue;
+						}
+						String role_uuid = rs.getString("role_uuid");
+						if (role_uuid != null) {
+							RoleBuilder rb = roles.get(role_uuid);
+							if (rb == null) {
+								rb = new RoleBuilder(role_uuid, rs.getString("role_name"), rs.getString("role_description"));
+								roles.put(role_uuid, rb);
+							}
+							rb.add(rs.getString("attribute"));
+						}
 					}
+					if (u != null) {
+						Set<Role> set = new TreeSet<>();
+						for (RoleBuilder rb : roles.values()) {
+							set.add(rb.build());
+						}
+						u.setRoles(set);
+					}
+					return u;
 				}
 			}
 		} catch (SQLException e) {
@@ -1064,27 +2079,31 @@ public class StandardDB implements DB {
 		return null;
 	}
 
+	/**
+	 * Get the Roles of one user.  The Roles themselves come from the role cache.
+	 */
 	protected Set<Role> getRolesForUser(final String uuid) {
 		Set<Role> set = new TreeSet<>();
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "SELECT * FROM AKRAINO.USER_ROLES WHERE USER_UUID = ?";
+			String sql = "SELECT role_uuid FROM AKRAINO.USER_ROLES WHERE user_uuid = ?";
+			List<String> role_uuids = new ArrayList<>();
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 				stmt.setString(1, uuid);
-				do {
-					try (ResultSet rs = stmt.executeQuery()) {
-						while (rs.next() ) {
-							String role_uuid = rs.getString("role_uuid");
-							Role r = getRoleByUuid(role_uuid);
-							if (r != null) {
-								set.add(r);
-							} else {
-								logger.warn("Invalid role uuid = "+role_uuid);
-							}
-						}
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next() ) {
+						role_uuids.add(rs.getString("role_uuid"));
 					}
-				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
+				}
+			}
+			for (String role_uuid : role_uuids) {
+				Role r = getRoleByUuid(conn, role_uuid);
+				if (r != null) {
+					set.add(r);
+				} else {
+					logger.warn("Invalid role uuid = "+role_uuid);
+				}
 			}
 		} catch (SQLException e) {
 			logger.error(e);
@@ -1093,56 +2112,159 @@ public class StandardDB implements DB {
 		}
 		return set;
 	}
-	private Role getRoleByUuid(String role_uuid) {
+
+	/**
+	 * Get the Roles of every user, with one query.
+	 * @return a map from user UUID to the set of Roles for that user
+	 */
+	protected Map<String, Set<Role>> getRolesForUsers() {
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			String sql = "SELECT * FROM AKRAINO.ROLES WHERE UUID = ?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setString(1, role_uuid);
-				do {
-					try (ResultSet rs = stmt.executeQuery()) {
-						if (rs.next() ) {
-							String description = rs.getString("description");
-							description = (description == null) ? "" : description;
-							String uuid = rs.getString("uuid");
-							String name = rs.getString("name");
-							Set<String> attr = getRoleAttributes(uuid);
-							Role r = new Role(uuid, name, description, attr.toArray(new String[0]));
-							return r;
-						}
-					}
-				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
-			}
+			return getRolesForUsers(conn);
 		} catch (SQLException e) {
 			logger.error(e);
 		} finally {
 			releaseConnection(conn);
 		}
-		return null;
+		return new HashMap<>();
 	}
-	private Set<String> getRoleAttributes(String uuid) {
-		Set<String> set = new TreeSet<>();
-		Connection conn = null;
-		try {
-			conn = getConnection();
-			String sql = "SELECT * FROM AKRAINO.ROLE_ATTRIBUTES WHERE ROLE_UUID = ?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setString(1, uuid);
-				do {
-					try (ResultSet rs = stmt.executeQuery()) {
-						while (rs.next() ) {
-							String attr = rs.getString("attribute");
-							set.add(attr);
-						}
+
+	private Map<String, Set<Role>> getRolesForUsers(final Connection conn) throws SQLException {
+		List<String[]> rows = new ArrayList<>();
+		try (Statement stmt = conn.createStatement()) {
+			String sql = "SELECT user_uuid, role_uuid FROM AKRAINO.USER_ROLES";
+			try (ResultSet rs = stmt.executeQuery(sql)) {
+				while (rs.next() ) {
+					rows.add(new String[] { rs.getString("user_uuid"), rs.getString("role_uuid") });
+				}
+			}
+		}
+		Map<String, Set<Role>> map = new HashMap<>();
+		for (String[] row : rows) {
+			Role r = getRoleByUuid(conn, row[1]);
+			if (r != null) {
+				Set<Role> set = map.get(row[0]);
+				if (set == null) {
+					set = new TreeSet<>();
+					map.put(row[0], set);
+				}
+				set.add(r);
+			} else {
+				logger.warn("Invalid role uuid = "+row[1]);
+			}
+		}
+		return map;
+	}
+
+	// ROLE CACHE ---------------------------------------------------------------------------------------------------------
+	// Roles are only ever changed by hand in the DB, so all of them are kept in memory, and re-read every role_ttl ms.
+	// Readers use an immutable snapshot without locking; only the thread doing a reload takes role_lock.
+	private static class RoleSnapshot {
+		private final Map<String, Role> roles;
+		private final long loaded;
+		private final Set<String> unknown = ConcurrentHashMap.newKeySet();	// UUIDs not found in this snapshot
+
+		private RoleSnapshot(Map<String, Role> roles, long loaded) {
+			this.roles  = Collections.unmodifiableMap(roles);
+			this.loaded = loaded;
+		}
+		private long age() {
+			return System.currentTimeMillis() - loaded;
+		}
+	}
+	private volatile RoleSnapshot role_cache = new RoleSnapshot(new HashMap<>(), 0L);
+	private final ReentrantLock role_lock = new ReentrantLock();
+
+	private Role getRoleByUuid(final Connection conn, final String role_uuid) throws SQLException {
+		RoleSnapshot snap = role_cache;
+		if (snap.age() > role_ttl && role_lock.tryLock()) {
+			// Stale: one thread reloads, while the others carry on with the old snapshot
+			try {
+				snap = reloadRoles(conn);
+			} finally {
+				role_lock.unlock();
+			}
+		}
+		Role r = snap.roles.get(role_uuid);
+		if (r == null && !snap.unknown.contains(role_uuid)) {
+			// The Role may have been added since the last load; re-read once, unless that was very recent,
+			// and then remember the UUID as unknown until the next reload
+			role_lock.lock();
+			try {
+				snap = role_cache;
+				r = snap.roles.get(role_uuid);
+				if (r == null && !snap.unknown.contains(role_uuid) && snap.age() > ROLE_RELOAD_MIN) {
+					snap = reloadRoles(conn);
+					r = snap.roles.get(role_uuid);
+				}
+				if (r == null) {
+					snap.unknown.add(role_uuid);
+				}
+			} finally {
+				role_lock.unlock();
+			}
+		}
+		return r;
+	}
+
+	private RoleSnapshot reloadRoles(final Connection conn) throws SQLException {
+		RoleSnapshot snap = new RoleSnapshot(loadRoles(conn), System.currentTimeMillis());
+		role_cache = snap;
+		return snap;
+	}
+
+	/**
+	 * Load every Role, with its attributes, in one query.
+	 */
+	private Map<String, Role> loadRoles(final Connection conn) throws SQLException {
+		Map<String, RoleBuilder> builders = new HashMap<>();
+		String sql = "SELECT r.uuid, r.name, r.description, a.attribute"
+			+ " FROM AKRAINO.ROLES r"
+			+ " LEFT JOIN AKRAINO.ROLE_ATTRIBUTES a ON a.role_uuid = r.uuid";
+		try (Statement stmt = conn.createStatement()) {
+			try (ResultSet rs = stmt.executeQuery(sql)) {
+				while (rs.next() ) {
+					String uuid = rs.getString("uuid");
+					RoleBuilder rb = builders.get(uuid);
+					if (rb == null) {
+						rb = new RoleBuilder(uuid, rs.getString("name"), rs.getString("description"));
+						builders.put(uuid, rb);
 					}
-				} while (stmt.getMoreResults() || stmt.getUpdateCount() != -1);
+					rb.add(rs.getString("attribute"));
+				}
 			}
-		} catch (SQLException e) {
-			logger.error(e);
-		} finally {
-			releaseConnection(conn);
 		}
-		return set;
+		Map<String, Role> map = new HashMap<>();
+		for (RoleBuilder rb : builders.values()) {
+			Role r = rb.build();
+			map.put(rb.uuid, r);
+		}
+		return map;
+	}
+
+	/**
+	 * Accumulates the rows of a ROLES/ROLE_ATTRIBUTES join into a Role.
+	 */
+	private static class RoleBuilder {
+		private final String uuid;
+		private final String name;
+		private final String description;
+		private final Set<String> attributes;
+
+		private RoleBuilder(String uuid, String name, String description) {
+			this.uuid        = uuid;
+			this.name        = name;
+			this.description = (description == null) ? "" : description;
+			this.attributes  = new TreeSet<>();
+		}
+		private void add(String attribute) {
+			if (attribute != null) {
+				attributes.add(attribute);
+			}
+		}
+		private Role build() {
+			return new Role(uuid, name, description, attributes.toArray(new String[0]));
+		}
 	}
 }
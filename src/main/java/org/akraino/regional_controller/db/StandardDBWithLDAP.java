@@ -20,7 +20,10 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.naming.Context;
 import javax.naming.NamingEnumeration;
@@ -35,6 +38,7 @@ import javax.naming.directory.SearchResult;
 import javax.naming.ldap.InitialLdapContext;
 import javax.naming.ldap.LdapContext;
 
+import org.akraino.regional_controller.beans.Role;
 import org.akraino.regional_controller.beans.User;
 
 /**
@@ -133,7 +137,7 @@ public class StandardDBWithLDAP extends StandardDB {
 	}
 
 	@Override
-	protected User getUserByUuid(String uuid) {
+	public User getUserByUuid(String uuid) {
 		return getUserByFilter("(uid="+uuid+")");
 	}
 
@@ -179,9 +183,10 @@ public class StandardDBWithLDAP extends StandardDB {
 		try {
 			ctx = new InitialLdapContext(env, null);
 			NamingEnumeration<?> results = ctx.search(search_base, "(uid=*)", sc);
+			Map<String, Set<Role>> rolemap = getRolesForUsers();
 			while (results.hasMore()) {
 				SearchResult sr = (SearchResult) results.next();
-				User u = buildUserFromSearchResult(sr);
+				User u = buildUserFromSearchResult(sr, rolemap);
 				users.add(u);
 			}
 			results.close();
@@ -247,6 +252,14 @@ public class StandardDBWithLDAP extends StandardDB {
 	}
 
 	private User buildUserFromSearchResult(SearchResult sr) {
+		return buildUserFromSearchResult(sr, null);
+	}
+
+	/**
+	 * Build a User from an LDAP search result.  Roles are taken from rolemap if it is provided,
+	 * otherwise they are looked up for this one user.
+	 */
+	private User buildUserFromSearchResult(SearchResult sr, Map<String, Set<Role>> rolemap) {
 		Attributes attrs   = sr.getAttributes();
 		String uuid        = safeget(attrs, LDAP_USERID);
 		String name        = safeget(attrs, LDAP_COMMONNAME);
@@ -255,7 +268,12 @@ public class StandardDBWithLDAP extends StandardDB {
 
 		User u = new User(uuid, name, "", (description == null) ? "" : description);
 		u.setPassword(pswd);
-		u.setRoles(getRolesForUser(uuid));
+		if (rolemap != null) {
+			Set<Role> roles = rolemap.get(uuid);
+			u.setRoles((roles == null) ? new TreeSet<>() : roles);
+		} else {
+			u.setRoles(getRolesForUser(uuid));
+		}
 		return u;
 	}
 
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import java.sql.SQLException;
+
+/**
+ * A unit of work, as returned by {@link DB#beginTransaction()}.  Every DB call made by the thread that
+ * began the Transaction, until it is closed, shares one connection and is committed or rolled back as
+ * a whole.  A Transaction begun while another is open on the same thread joins the outer one; it is
+ * then only committed when the outer Transaction commits, and closing it without a commit causes the
+ * outer Transaction to roll back.  Intended to be used in a try-with-resources block:
+ * <pre>
+ *   try (Transaction tx = db.beginTransaction()) {
+ *       db.createPod(p);
+ *       db.createPodEvent(pe);
+ *       tx.commit();
+ *   }
+ * </pre>
+ */
+public interface Transaction extends AutoCloseable {
+	/**
+	 * Commit the work done in this Transaction.
+	 * @throws SQLException if the commit fails, or a joined Transaction was closed without committing
+	 */
+	public void commit() throws SQLException;
+
+	/**
+	 * Roll back the work done in this Transaction (if it has not already been committed).
+	 */
+	public void rollback();
+
+	/**
+	 * End the Transaction, rolling back if it has not been committed.
+	 */
+	@Override
+	public void close();
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.utils;
+
+/**
+ * Syntax checks for textual IP addresses and CIDRs.  These scan the String in place, so that they
+ * neither split it, nor use regular expressions, nor allocate anything.  IPv4 octets and CIDR prefix
+ * lengths are decimal, of at most 3 digits (leading zeros are allowed, as they always have been).
+ * IPv6 zone IDs (e.g. fe80::1%eth0) are not accepted, since they have no meaning off the host.
+ */
+public final class IPAddresses {
+	private IPAddresses() {
+		// utility class
+	}
+
+	/**
+	 * @return true if s is an IPv4 or IPv6 address
+	 */
+	public static boolean isIPAddress(final String s) {
+		return isIPv4(s) || isIPv6(s);
+	}
+
+	/**
+	 * @return true if s is a dotted quad IPv4 address (e.g. 10.1.2.3)
+	 */
+	public static boolean isIPv4(final String s) {
+		return s != null && isIPv4(s, 0, s.length());
+	}
+
+	/**
+	 * @return true if s is an IPv6 address (e.g. fe80::1, or ::ffff:10.1.2.3)
+	 */
+	public static boolean isIPv6(final String s) {
+		return s != null && isIPv6(s, 0, s.length());
+	}
+
+	/**
+	 * @return true if s is an IPv4 or IPv6 CIDR
+	 */
+	public static boolean isCIDR(final String s) {
+		return isV4CIDR(s) || isV6CIDR(s);
+	}
+
+	/**
+	 * @return true if s is an IPv4 CIDR (e.g. 10.1.0.0/16)
+	 */
+	public static boolean isV4CIDR(final String s) {
+		if (s == null)
+			return false;
+		int slash = s.indexOf('/');
+		return slash > 0 && isPrefix(s, slash+1, s.length(), 32) && isIPv4(s, 0, slash);
+	}
+
+	/**
+	 * @return true if s is an IPv6 CIDR (e.g. fd00::/8)
+	 */
+	public static boolean isV6CIDR(final String s) {
+		if (s == null)
+			return false;
+		int slash = s.indexOf('/');
+		return slash > 0 && isPrefix(s, slash+1, s.length(), 128) && isIPv6(s, 0, slash);
+	}
+
+	private static boolean isPrefix(final String s, final int from, final int to, final int max) {
+		int n = to - from;
+		if (n < 1 || n > 3)
+			return false;
+		int v = 0;
+		for (int i = from; i < to; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+			v = v * 10 + (c - '0');
+		}
+		return v <= max;
+	}
+
+	private static boolean isIPv4(final String s, final int from, final int to) {
+		int octets = 0;
+		int i = from;
+		while (true) {
+			int start = i;
+			int v = 0;
+			while (i < to && i - start < 3) {
+				char c = s.charAt(i);
+				if (c < '0' || c > '9')
+					break;
+				v = v * 10 + (c - '0');
+				i++;
+			}
+			if (i == start || v > 255)
+				return false;
+			octets++;
+			if (i == to)
+				return octets == 4;
+			if (s.charAt(i) != '.' || octets == 4)
+				return false;
+			i++;
+		}
+	}
+
+	private static boolean isIPv6(final String s, final int from, final int to) {
+		if (to - from < 2)
+			return false;
+		int groups = 0;
+		boolean compressed = false;
+		int i = from;
+		if (s.charAt(i) == ':') {
+			// A leading colon must be the start of "::"
+			if (s.charAt(i+1) != ':')
+				return false;
+			compressed = true;
+			i += 2;
+		}
+		while (i < to) {
+			int start = i;
+			while (i < to && isHex(s.charAt(i)))
+				i++;
+			if (i < to && s.charAt(i) == '.') {
+				// Trailing embedded IPv4 address, which counts as two groups
+				if (!isIPv4(s, start, to))
+					return false;
+				groups += 2;
+				break;
+			}
+			if (i == start || i - start > 4)
+				return false;
+			groups++;
+			if (i == to)
+				break;
+			if (s.charAt(i) != ':')
+				return false;
+			i++;
+			if (i < to && s.charAt(i) == ':') {
+				if (compressed)
+					return false;	// only one "::" is allowed
+				compressed = true;
+				i++;
+			} else if (i == to) {
+				return false;		// trailing single colon
+			}
+		}
+		return compressed ? (groups < 8) : (groups == 8);
+	}
+
+	private static boolean isHex(final char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+}
@@ -16,16 +16,13 @@
 
 package org.akraino.regional_controller.utils;
 
-import java.io.StringWriter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.Writer;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
-import org.yaml.snakeyaml.Yaml;
 
+/**
+ * Converts a JSONObject to a YAML document; see {@link YAMLConverter}.
+ */
 public class JSONtoYAML {
 	private final JSONObject jo;
 
@@ -39,39 +36,24 @@ public class JSONtoYAML {
 
 	@Override
 	public String toString() {
-		Map<String, Object> map = convertObject(jo);
-		StringWriter writer = new StringWriter();
-		Yaml yaml = new Yaml();
-		yaml.dump(map, writer);
-		return writer.toString();
+		return YAMLConverter.toYAML(jo);
 	}
 
-	private Map<String, Object> convertObject(JSONObject jo) {
-		Map<String, Object> map = new HashMap<>();
-		for (String key : jo.keySet()) {
-			Object val = jo.get(key);
-			map.put(key, convert(val));
-		}
-		return map;
+	/**
+	 * Write the YAML form of the JSONObject to a Writer.
+	 */
+	public void write(Writer writer) {
+		YAMLConverter.write(jo, writer);
 	}
 
-	private List<Object> convertArray(JSONArray ja) {
-		List<Object> list = new ArrayList<>();
-		for (int i = 0; i < ja.length(); i++) {
-			Object val = ja.get(i);
-			list.add(convert(val));
-		}
-		return list;
-	}
-
-	private Object convert(Object val) {
-		if (val instanceof JSONArray) {
-			return convertArray((JSONArray) val);
-		}
-		if (val instanceof JSONObject) {
-			return convertObject((JSONObject) val);
-		}
-		return val;
+	/**
+	 * Write one JSONObject as an item of a YAML block sequence (e.g. one object in the list returned
+	 * by a list API), so that a long list can be written an item at a time.
+	 * @param jo the item
+	 * @param writer the Writer
+	 */
+	public static void writeListItem(JSONObject jo, Writer writer) {
+		YAMLConverter.writeListItem(jo, writer);
 	}
 
 	public static void main(String[] a) {
@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ImplicitTuple;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.events.StreamStartEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Converts between YAML text and JSONObjects in a single pass, using SnakeYAML's event API.  YAML is
+ * parsed into a stream of events which are turned directly into JSONObjects and JSONArrays, and a
+ * JSONObject is walked and written as a stream of events to an Emitter; in neither direction is the
+ * intermediate tree of Maps and Lists (nor, on output, the tree of YAML Nodes) ever built.
+ *
+ * Scalars are typed, and represented, exactly as the default <code>new Yaml()</code> load and dump would
+ * do it, so the output is the same as that of converting via Maps.  The Resolver and DumperOptions are
+ * never modified after they are created and so are shared; a Yaml instance is not thread-safe, so each
+ * thread keeps its own.
+ *
+ * Two things are lost, as they always were when converting via Maps: the order of the keys of a mapping
+ * (a JSONObject is unordered, so YAML is written in the JSONObject's own key order), and keys whose value
+ * is null (which <code>JSONObject.put()</code> removes).  Nulls in sequences are kept.
+ */
+public final class YAMLConverter {
+	private static final Resolver      RESOLVER = new Resolver();
+	private static final DumperOptions OPTIONS  = new DumperOptions();
+	private static final ThreadLocal<Yaml> YAML = ThreadLocal.withInitial(Yaml::new);
+
+	private static final String NULL_TAG      = Tag.NULL.getValue();
+	private static final String BOOL_TAG      = Tag.BOOL.getValue();
+	private static final String INT_TAG       = Tag.INT.getValue();
+	private static final String FLOAT_TAG     = Tag.FLOAT.getValue();
+	private static final String STR_TAG       = Tag.STR.getValue();
+	private static final String TIMESTAMP_TAG = Tag.TIMESTAMP.getValue();
+	private static final String SEQ_TAG       = Tag.SEQ.getValue();
+	private static final String MAP_TAG       = Tag.MAP.getValue();
+
+	private static final Map<String, Boolean> BOOLS = new HashMap<>();
+	static {
+		BOOLS.put("yes",   Boolean.TRUE);
+		BOOLS.put("no",    Boolean.FALSE);
+		BOOLS.put("true",  Boolean.TRUE);
+		BOOLS.put("false", Boolean.FALSE);
+		BOOLS.put("on",    Boolean.TRUE);
+		BOOLS.put("off",   Boolean.FALSE);
+	}
+
+	private YAMLConverter() {
+		// static methods only
+	}
+
+	/**
+	 * Load a YAML document into Maps, Lists and scalars, using this thread's Yaml instance.
+	 * @param yaml the YAML text
+	 * @return the document
+	 */
+	public static Object load(final String yaml) {
+		return YAML.get().load(yaml);
+	}
+
+	/**
+	 * Convert a YAML document, which must be a mapping, to a JSONObject.
+	 * @param yaml the YAML text
+	 * @return the JSONObject, or null if the document is empty
+	 * @throws JSONException if the document is not a mapping
+	 */
+	public static JSONObject toJSON(final String yaml) throws JSONException {
+		return toJSON(new StringReader(yaml));
+	}
+
+	/**
+	 * Convert a YAML document, which must be a mapping, to a JSONObject.
+	 * @param reader the YAML text
+	 * @return the JSONObject, or null if the document is empty
+	 * @throws JSONException if the document is not a mapping
+	 */
+	public static JSONObject toJSON(final Reader reader) throws JSONException {
+		Iterator<Event> events = YAML.get().parse(reader).iterator();
+		Object root = null;
+		Event ev = events.next();					// StreamStart
+		ev = events.next();
+		if (ev instanceof DocumentStartEvent) {
+			root = readNode(events.next(), events, new HashMap<>());
+			events.next();							// DocumentEnd
+			ev = events.next();
+		}
+		if (!(ev instanceof StreamEndEvent)) {
+			throw new YAMLException("expected a single document in the stream");
+		}
+		if (root != null && !(root instanceof JSONObject)) {
+			throw new JSONException("The YAML document is not a mapping");
+		}
+		return (JSONObject) root;
+	}
+
+	private static Object readNode(final Event ev, final Iterator<Event> events, final Map<String, Object> anchors) {
+		if (ev instanceof AliasEvent) {
+			String anchor = ((AliasEvent) ev).getAnchor();
+			if (!anchors.containsKey(anchor)) {
+				throw new YAMLException("found undefined alias "+anchor);
+			}
+			return copy(anchors.get(anchor));
+		}
+		Object value;
+		if (ev instanceof ScalarEvent) {
+			value = readScalar((ScalarEvent) ev);
+		} else if (ev instanceof SequenceStartEvent) {
+			JSONArray ja = new JSONArray();
+			for (Event e = events.next(); !(e instanceof SequenceEndEvent); e = events.next()) {
+				Object v = readNode(e, events, anchors);
+				ja.put((v == null) ? JSONObject.NULL : v);
+			}
+			value = ja;
+		} else if (ev instanceof MappingStartEvent) {
+			value = readMapping(events, anchors);
+		} else {
+			throw new YAMLException("unexpected event "+ev);
+		}
+		String anchor = ((NodeEvent) ev).getAnchor();
+		if (anchor != null) {
+			anchors.put(anchor, value);
+		}
+		return value;
+	}
+
+	private static JSONObject readMapping(final Iterator<Event> events, final Map<String, Object> anchors) {
+		JSONObject jo = new JSONObject();
+		List<Object> merges = null;
+		for (Event e = events.next(); !(e instanceof MappingEndEvent); e = events.next()) {
+			boolean merge = isMergeKey(e);
+			Object key = readNode(e, events, anchors);
+			Object value = readNode(events.next(), events, anchors);
+			if (merge) {
+				if (merges == null) {
+					merges = new ArrayList<>();
+				}
+				merges.add(value);
+			} else {
+				jo.put(String.valueOf(key), value);
+			}
+		}
+		if (merges != null) {
+			// Keys given explicitly override merged keys; earlier merged mappings override later ones
+			for (Object m : merges) {
+				if (m instanceof JSONArray) {
+					for (Object o : (JSONArray) m) {
+						merge(jo, o);
+					}
+				} else {
+					merge(jo, m);
+				}
+			}
+		}
+		return jo;
+	}
+
+	private static boolean isMergeKey(final Event e) {
+		if (e instanceof ScalarEvent) {
+			ScalarEvent se = (ScalarEvent) e;
+			return se.getTag() == null && se.getImplicit().canOmitTagInPlainScalar()
+				&& Tag.MERGE.equals(RESOLVER.resolve(NodeId.scalar, se.getValue(), true));
+		}
+		return false;
+	}
+
+	private static void merge(final JSONObject jo, final Object m) {
+		if (!(m instanceof JSONObject)) {
+			throw new YAMLException("expected a mapping for merging, but found "+m);
+		}
+		JSONObject from = (JSONObject) m;
+		for (String key : from.keySet()) {
+			if (!jo.has(key)) {
+				jo.put(key, from.get(key));
+			}
+		}
+	}
+
+	private static Object copy(final Object value) {
+		if (value instanceof JSONObject) {
+			JSONObject from = (JSONObject) value;
+			JSONObject jo = new JSONObject();
+			for (String key : from.keySet()) {
+				jo.put(key, copy(from.get(key)));
+			}
+			return jo;
+		}
+		if (value instanceof JSONArray) {
+			JSONArray ja = new JSONArray();
+			for (Object o : (JSONArray) value) {
+				ja.put(copy(o));
+			}
+			return ja;
+		}
+		return value;
+	}
+
+	/**
+	 * Type a scalar as SafeConstructor would.
+	 */
+	private static Object readScalar(final ScalarEvent se) {
+		String value = se.getValue();
+		String tag = se.getTag();
+		if (tag == null || "!".equals(tag)) {
+			tag = RESOLVER.resolve(NodeId.scalar, value, se.getImplicit().canOmitTagInPlainScalar()).getValue();
+		}
+		if (STR_TAG.equals(tag)) {
+			return value;
+		}
+		if (NULL_TAG.equals(tag)) {
+			return null;
+		}
+		if (BOOL_TAG.equals(tag)) {
+			return BOOLS.get(value.toLowerCase());
+		}
+		if (INT_TAG.equals(tag)) {
+			return toInteger(value);
+		}
+		if (FLOAT_TAG.equals(tag)) {
+			return toDouble(value);
+		}
+		if (TIMESTAMP_TAG.equals(tag)) {
+			return YAML.get().load(value);
+		}
+		return value;
+	}
+
+	private static Number toInteger(final String s) {
+		String value = s.replace("_", "");
+		int sign = 1;
+		char first = value.charAt(0);
+		if (first == '-') {
+			sign = -1;
+			value = value.substring(1);
+		} else if (first == '+') {
+			value = value.substring(1);
+		}
+		if ("0".equals(value)) {
+			return Integer.valueOf(0);
+		}
+		if (value.startsWith("0b")) {
+			return toNumber(sign, value.substring(2), 2);
+		}
+		if (value.startsWith("0x")) {
+			return toNumber(sign, value.substring(2), 16);
+		}
+		if (value.startsWith("0")) {
+			return toNumber(sign, value.substring(1), 8);
+		}
+		if (value.indexOf(':') >= 0) {
+			// base 60
+			long n = 0;
+			for (String digits : value.split(":")) {
+				n = n * 60 + Long.parseLong(digits);
+			}
+			return toNumber(sign, String.valueOf(n), 10);
+		}
+		return toNumber(sign, value, 10);
+	}
+
+	private static Number toNumber(final int sign, final String digits, final int radix) {
+		String number = (sign < 0) ? "-" + digits : digits;
+		try {
+			return Integer.valueOf(number, radix);
+		} catch (NumberFormatException e) {
+			try {
+				return Long.valueOf(number, radix);
+			} catch (NumberFormatException e2) {
+				return new BigInteger(number, radix);
+			}
+		}
+	}
+
+	private static Double toDouble(final String s) {
+		String value = s.replace("_", "").toLowerCase();
+		int sign = 1;
+		char first = value.charAt(0);
+		if (first == '-') {
+			sign = -1;
+			value = value.substring(1);
+		} else if (first == '+') {
+			value = value.substring(1);
+		}
+		if (".inf".equals(value)) {
+			return (sign < 0) ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		if (".nan".equals(value)) {
+			return Double.NaN;
+		}
+		if (value.indexOf(':') >= 0) {
+			// base 60
+			double d = 0.0;
+			for (String digits : value.split(":")) {
+				d = d * 60 + Double.parseDouble(digits);
+			}
+			return sign * d;
+		}
+		return sign * Double.parseDouble(value);
+	}
+
+	/**
+	 * Convert a JSONObject to YAML text.
+	 * @param jo the JSONObject
+	 * @return the YAML
+	 */
+	public static String toYAML(final JSONObject jo) {
+		StringWriter writer = new StringWriter();
+		write(jo, writer);
+		return writer.toString();
+	}
+
+	/**
+	 * Write a JSONObject, as a YAML document, to a Writer.
+	 * @param jo the JSONObject
+	 * @param writer the Writer
+	 */
+	public static void write(final JSONObject jo, final Writer writer) {
+		emitDocument(jo, writer, false);
+	}
+
+	/**
+	 * Write one JSONObject as an item of a YAML block sequence (e.g. one object in the list returned
+	 * by a list API), so that a long list can be written an item at a time.
+	 * @param jo the item
+	 * @param writer the Writer
+	 */
+	public static void writeListItem(final JSONObject jo, final Writer writer) {
+		emitDocument(jo, writer, true);
+	}
+
+	/**
+	 * Write a single scalar (a String, number, boolean, or null) as a YAML document.
+	 * @param value the value
+	 * @param writer the Writer
+	 */
+	public static void writeScalar(final Object value, final Writer writer) {
+		emitDocument(value, writer, false);
+	}
+
+	private static void emitDocument(final Object value, final Writer writer, final boolean item) {
+		Emitter emitter = new Emitter(writer, OPTIONS);
+		try {
+			emitter.emit(new StreamStartEvent(null, null));
+			emitter.emit(new DocumentStartEvent(null, null, false, null, null));
+			if (item) {
+				emitter.emit(new SequenceStartEvent(null, SEQ_TAG, true, null, null, DumperOptions.FlowStyle.BLOCK));
+				emitValue(emitter, value);
+				emitter.emit(new SequenceEndEvent(null, null));
+			} else {
+				emitValue(emitter, value);
+			}
+			emitter.emit(new DocumentEndEvent(null, null, false));
+			emitter.emit(new StreamEndEvent(null, null));
+		} catch (IOException e) {
+			throw new YAMLException(e);
+		}
+	}
+
+	private static void emitValue(final Emitter emitter, final Object value) throws IOException {
+		if (value instanceof JSONObject) {
+			JSONObject jo = (JSONObject) value;
+			boolean flow = true;
+			for (String key : jo.keySet()) {
+				flow = flow && isPlain(key) && isPlain(jo.get(key));
+			}
+			emitter.emit(new MappingStartEvent(null, MAP_TAG, true, null, null, flowStyle(flow)));
+			for (String key : jo.keySet()) {
+				emitScalar(emitter, key);
+				emitValue(emitter, jo.get(key));
+			}
+			emitter.emit(new MappingEndEvent(null, null));
+		} else if (value instanceof JSONArray) {
+			JSONArray ja = (JSONArray) value;
+			boolean flow = true;
+			for (Object o : ja) {
+				flow = flow && isPlain(o);
+			}
+			emitter.emit(new SequenceStartEvent(null, SEQ_TAG, true, null, null, flowStyle(flow)));
+			for (Object o : ja) {
+				emitValue(emitter, o);
+			}
+			emitter.emit(new SequenceEndEvent(null, null));
+		} else {
+			emitScalar(emitter, value);
+		}
+	}
+
+	private static DumperOptions.FlowStyle flowStyle(final boolean flow) {
+		// A collection of plain scalars only is written in flow style, as the default Representer does
+		return flow ? DumperOptions.FlowStyle.FLOW : DumperOptions.FlowStyle.BLOCK;
+	}
+
+	/**
+	 * @return true if the value is a scalar which the Representer would ask to be written plain
+	 */
+	private static boolean isPlain(final Object value) {
+		if (value instanceof JSONObject || value instanceof JSONArray) {
+			return false;
+		}
+		return !(value instanceof String) || !isMultiline((String) value);
+	}
+
+	private static boolean isMultiline(final String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '\n' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void emitScalar(final Emitter emitter, final Object value) throws IOException {
+		String tag;
+		String text;
+		DumperOptions.ScalarStyle style = DumperOptions.ScalarStyle.PLAIN;
+		if (value == null || value == JSONObject.NULL) {
+			tag  = NULL_TAG;
+			text = "null";
+		} else if (value instanceof String) {
+			tag  = STR_TAG;
+			text = (String) value;
+			if (isMultiline(text)) {
+				style = DumperOptions.ScalarStyle.LITERAL;
+			}
+		} else if (value instanceof Boolean) {
+			tag  = BOOL_TAG;
+			text = value.toString();
+		} else if (value instanceof Integer || value instanceof Long || value instanceof BigInteger
+			|| value instanceof Short || value instanceof Byte) {
+			tag  = INT_TAG;
+			text = value.toString();
+		} else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+			tag  = FLOAT_TAG;
+			text = floatText((Number) value);
+		} else if (value instanceof Date) {
+			tag  = TIMESTAMP_TAG;
+			text = timestampText((Date) value);
+		} else {
+			tag  = STR_TAG;
+			text = value.toString();
+		}
+		ImplicitTuple implicit = new ImplicitTuple(
+			tag.equals(RESOLVER.resolve(NodeId.scalar, text, true).getValue()),
+			tag.equals(RESOLVER.resolve(NodeId.scalar, text, false).getValue()));
+		emitter.emit(new ScalarEvent(null, tag, implicit, text, null, null, style));
+	}
+
+	private static String floatText(final Number n) {
+		double d = n.doubleValue();
+		if (n instanceof BigDecimal) {
+			return n.toString();
+		}
+		if (Double.isNaN(d)) {
+			return ".NaN";
+		}
+		if (Double.isInfinite(d)) {
+			return (d > 0) ? ".inf" : "-.inf";
+		}
+		return n.toString();
+	}
+
+	private static String timestampText(final Date date) {
+		Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		c.setTime(date);
+		StringBuilder sb = new StringBuilder(String.format("%04d-%02d-%02dT%02d:%02d:%02d",
+			c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DAY_OF_MONTH),
+			c.get(Calendar.HOUR_OF_DAY), c.get(Calendar.MINUTE), c.get(Calendar.SECOND)));
+		int millis = c.get(Calendar.MILLISECOND);
+		if (millis > 0) {
+			sb.append(String.format(".%03d", millis));
+		}
+		return sb.append('Z').toString();
+	}
+}
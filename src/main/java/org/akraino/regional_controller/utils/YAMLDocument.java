@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * An immutable, parsed form of the YAML attached to a bean.  Documents are cached by key (the bean type
+ * and UUID) and content, so that all copies of a bean share one parse, and a lookup into the document is
+ * a walk of an in-memory tree rather than a reparse of the YAML.  JSON returned from a document is
+ * always a fresh copy, which callers may modify.
+ */
+public final class YAMLDocument {
+	private static final int MAX_ENTRIES = 10000;
+	private static final Logger logger = LogManager.getLogger();
+	private static final Map<String, YAMLDocument> cache = new LinkedHashMap<String, YAMLDocument>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, YAMLDocument> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Get the parsed document for some YAML, reusing the cached parse if the YAML has not changed.
+	 * @param key the cache key (e.g. the bean type and UUID)
+	 * @param yaml the YAML text (may be null)
+	 * @return the document
+	 */
+	public static YAMLDocument parse(final String key, final String yaml) {
+		synchronized (cache) {
+			YAMLDocument doc = cache.get(key);
+			if (doc != null && doc.isParsedFrom(yaml)) {
+				return doc;
+			}
+		}
+		YAMLDocument doc = new YAMLDocument(yaml);
+		synchronized (cache) {
+			cache.put(key, doc);
+		}
+		return doc;
+	}
+
+	private final String source;
+	private final int hash;
+	private final Map<String, Object> root;
+
+	private YAMLDocument(final String yaml) {
+		this.source = yaml;
+		this.hash   = (yaml == null) ? 0 : yaml.hashCode();
+		this.root   = load(yaml);
+	}
+
+	/**
+	 * @return true if this document was parsed from exactly this YAML text
+	 */
+	public boolean isParsedFrom(final String yaml) {
+		if (source == yaml) {
+			return true;
+		}
+		return yaml != null && source != null && hash == yaml.hashCode() && source.equals(yaml);
+	}
+
+	/**
+	 * @return true if the document has no top level keys
+	 */
+	public boolean isEmpty() {
+		return root.isEmpty();
+	}
+
+	/**
+	 * Walk the document tree.
+	 * @param path the keys to follow from the root
+	 * @return the node at the end of the path (an unmodifiable Map, List, or scalar), or null if there is none
+	 */
+	public Object get(final String... path) {
+		Object node = root;
+		for (String key : path) {
+			if (!(node instanceof Map)) {
+				return null;
+			}
+			node = ((Map<?, ?>) node).get(key);
+		}
+		return node;
+	}
+
+	/**
+	 * @return the mapping at the end of path (unmodifiable), or null if there is no mapping there
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> getMap(final String... path) {
+		Object node = get(path);
+		return (node instanceof Map) ? (Map<String, Object>) node : null;
+	}
+
+	/**
+	 * @return the scalar at the end of path as a String, or null if there is none
+	 */
+	public String getString(final String... path) {
+		Object node = get(path);
+		return (node == null || node instanceof Map || node instanceof List) ? null : node.toString();
+	}
+
+	/**
+	 * @return a copy of the mapping at the end of path as a JSONObject, or null if there is no mapping there
+	 */
+	public JSONObject getJSONObject(final String... path) {
+		Map<String, Object> map = getMap(path);
+		return (map == null) ? null : YAMLtoJSON.convertMap(map);
+	}
+
+	/**
+	 * @return a copy of the sequence at the end of path as a JSONArray, or null if there is no sequence there
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONArray getJSONArray(final String... path) {
+		Object node = get(path);
+		return (node instanceof List) ? YAMLtoJSON.convertList((List<Object>) node) : null;
+	}
+
+	/**
+	 * @return a copy of the whole document as a JSONObject
+	 */
+	public JSONObject toJSON() {
+		return YAMLtoJSON.convertMap(root);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> load(final String yaml) {
+		if (yaml == null || yaml.trim().isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Object obj = YAMLConverter.load(yaml);
+		if (!(obj instanceof Map)) {
+			logger.warn("Map is null for content "+yaml);
+			return Collections.emptyMap();
+		}
+		return (Map<String, Object>) freeze(obj);
+	}
+
+	/**
+	 * Make a deep, unmodifiable copy of a parsed YAML tree.
+	 */
+	private static Object freeze(final Object obj) {
+		if (obj instanceof Map) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) obj).entrySet()) {
+				map.put(String.valueOf(e.getKey()), freeze(e.getValue()));
+			}
+			return Collections.unmodifiableMap(map);
+		}
+		if (obj instanceof List) {
+			List<Object> list = new ArrayList<>();
+			for (Object o : (List<?>) obj) {
+				list.add(freeze(o));
+			}
+			return Collections.unmodifiableList(list);
+		}
+		return obj;
+	}
+}
@@ -22,9 +22,12 @@ import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
-import org.yaml.snakeyaml.Yaml;
 
+/**
+ * Converts a YAML document (a mapping) to a JSONObject; see {@link YAMLConverter}.
+ */
 public class YAMLtoJSON {
 	private String yaml;
 
@@ -32,18 +35,20 @@ public class YAMLtoJSON {
 		this.yaml = yaml;
 	}
 
-	public JSONObject toJSON() {
-		Yaml yaml = new Yaml();
-		@SuppressWarnings("unchecked")
-		Map<String, Object> map = (Map<String, Object>) yaml.load(this.yaml);
-		if (map == null) {
+	public JSONObject toJSON() throws JSONException {
+		JSONObject jo = YAMLConverter.toJSON(yaml);
+		if (jo == null) {
 			Logger logger = LogManager.getLogger();
 			logger.warn("Map is null for content "+yaml);
+			jo = new JSONObject();
 		}
-		return convertMap(map);
+		return jo;
 	}
 
-	private JSONObject convertMap(Map<String, Object> map) {
+	/**
+	 * Convert an already loaded YAML mapping (see {@link YAMLDocument}) to a JSONObject.
+	 */
+	static JSONObject convertMap(Map<String, Object> map) {
 		JSONObject jo = new JSONObject();
 		if (map != null) {
 			for (String key : map.keySet()) {
@@ -54,7 +59,7 @@ public class YAMLtoJSON {
 		return jo;
 	}
 
-	private JSONArray convertList(List<Object> list) {
+	static JSONArray convertList(List<Object> list) {
 		JSONArray ja = new JSONArray();
 		for (Object val : list) {
 			ja.put(convertVal(val));
@@ -63,7 +68,7 @@ public class YAMLtoJSON {
 	}
 
 	@SuppressWarnings("unchecked")
-	private Object convertVal(Object obj) {
+	static Object convertVal(Object obj) {
 		if (obj != null) {
 			if (obj instanceof List) {
 				return convertList( (List<Object>) obj);
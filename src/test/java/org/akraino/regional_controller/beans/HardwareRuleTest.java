@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.akraino.regional_controller.beans.HardwareRule.Inventory;
+import org.akraino.regional_controller.db.DB;
+import org.akraino.regional_controller.db.DBFactory;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class HardwareRuleTest {
+	private static final String DELL_UUID = "c8fb8d80-4e4f-11e9-a9a2-7f7e4f2b5b3c";
+	private static final String HPE_UUID  = "d2a2b2e4-4e4f-11e9-8a1b-9f8e1c3c7d2e";
+
+	private static final Hardware DELL = new Hardware(DELL_UUID, "Dell_PowerEdge_R740", "", "");
+	private static final Hardware HPE  = new Hardware(HPE_UUID,  "HPE_DL380_Gen10",     "", "");
+
+	/** An Edgesite with three Dell Nodes and one HPE Node. */
+	private static final Inventory INV = new Inventory(Arrays.asList(DELL, HPE, DELL, DELL));
+
+	@Test
+	public void testUUIDRule() {
+		assertMatches("{ uuid: '"+DELL_UUID+"' }");
+		assertMatches("{ uuid: '"+DELL_UUID.toUpperCase()+"' }");
+		assertMatches("{ uuid: '"+DELL_UUID+"', min: 3, max: 3 }");
+		assertFails("{ uuid: '"+DELL_UUID+"', min: 4 }", "less than the minimum of 4");
+		assertFails("{ uuid: '"+DELL_UUID+"', max: 2 }", "greater than the maximum of 2");
+		assertFails("{ uuid: '00000000-0000-0000-0000-000000000000' }", "less than the minimum of 1");
+	}
+
+	@Test
+	public void testNameRule() {
+		assertMatches("{ name: 'Dell_.*', min: 3 }");
+		// Counts are summed over every Hardware type whose name matches
+		assertMatches("{ name: '.*', min: 4, max: 4 }");
+		assertFails("{ name: '.*', max: 3 }", "greater than the maximum of 3");
+		// The whole name must match
+		assertFails("{ name: 'Dell' }", "hardware name RE of Dell");
+	}
+
+	@Test
+	public void testAndRule() {
+		assertMatches("{ and: [ { uuid: '"+DELL_UUID+"', min: 3 }, { name: 'HPE_.*', max: 1 } ] }");
+		assertMatches("{ and: [ ] }");
+		// Every failing rule is reported
+		List<String> errors = match("{ and: [ { uuid: '"+DELL_UUID+"', min: 5 }, { name: 'HPE_.*', min: 2 }, { name: 'Dell_.*' } ] }");
+		assertEquals(2, errors.size());
+	}
+
+	@Test
+	public void testOrRule() {
+		assertMatches("{ or: [ { name: 'Cisco_.*' }, { uuid: '"+HPE_UUID+"' } ] }");
+		assertMatches("{ or: [ ] }");
+		// Only reported if no rule matches, and then every failure is reported
+		List<String> errors = match("{ or: [ { name: 'Cisco_.*' }, { uuid: '"+HPE_UUID+"', min: 2 } ] }");
+		assertEquals(2, errors.size());
+	}
+
+	@Test
+	public void testNestedRules() {
+		assertMatches("{ and: [ { or: [ { name: 'Cisco_.*' }, { name: 'Dell_.*' } ] }, { uuid: '"+HPE_UUID+"' } ] }");
+		assertFails("{ or: [ { and: [ { name: 'Dell_.*' }, { name: 'Cisco_.*' } ] }, { and: [ { name: 'Cisco_.*' } ] } ] }", "Cisco_");
+	}
+
+	@Test
+	public void testBadRules() {
+		assertFails("{ uuid: '"+DELL_UUID+"', name: 'Dell_.*' }", "uuid and name cannot be used together");
+		assertFails("{ }", "no and, or, uuid, or name");
+		assertFails("{ min: 1 }", "no and, or, uuid, or name");
+		assertFails("{ name: 'Dell_(' }", "invalid hardware name RE");
+		// A bad rule never matches, so only an "or" can get past one
+		assertFails("{ and: [ { name: 'Dell_.*' }, { } ] }", "no and, or, uuid, or name");
+		assertMatches("{ or: [ { }, { name: 'Dell_.*' } ] }");
+	}
+
+	@Test
+	public void testEmptyInventory() {
+		Inventory empty = new Inventory(new ArrayList<>());
+		assertTrue(HardwareRule.compile(new JSONObject("{ or: [ ] }")).match(empty).isEmpty());
+		assertEquals(1, HardwareRule.compile(new JSONObject("{ name: '.*' }")).match(empty).size());
+	}
+
+	@Test
+	public void testInventoryForEdgesite() throws Exception {
+		DB db = DBFactory.getDB();
+		String hw = "e1c6f1a8-4e4f-11e9-b1c2-5b1f0e6e2a11";
+		db.createHardware(new Hardware(hw, "HardwareRuleTest_HW", "", "x"));
+		List<String> nodes = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			String uuid = String.format("f0a0b0c0-4e4f-11e9-9d3c-%012d", i);
+			// Node references to Hardware are not case sensitive
+			db.createNode(new Node(uuid, "HardwareRuleTest_"+i, "", (i == 0) ? hw.toUpperCase() : hw, "x"));
+			nodes.add(uuid);
+		}
+		// Nodes that no longer exist are not counted
+		nodes.add("f0a0b0c0-4e4f-11e9-9d3c-ffffffffffff");
+		Edgesite es = new Edgesite("a9b8c7d6-4e4f-11e9-8c1d-3e2f1a0b9c8d", "HardwareRuleTest_ES", "", new ArrayList<>(), nodes);
+		Inventory inv = Inventory.forEdgesite(es);
+		assertTrue(HardwareRule.compile(new JSONObject("{ uuid: '"+hw+"', min: 3, max: 3 }")).match(inv).isEmpty());
+	}
+
+	private static List<String> match(final String rule) {
+		return HardwareRule.compile(new JSONObject(rule)).match(INV);
+	}
+
+	private static void assertMatches(final String rule) {
+		List<String> errors = match(rule);
+		assertTrue(rule+" => "+errors, errors.isEmpty());
+	}
+
+	private static void assertFails(final String rule, final String reason) {
+		List<String> errors = match(rule);
+		assertTrue(rule+" => "+errors, !errors.isEmpty() && errors.toString().contains(reason));
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class InputSchemaTest {
+	private static final InputSchema SCHEMA = InputSchema.compile(new JSONObject(
+		"{ name: { type: string }, count: { type: integer }, vip: { type: ipaddress }, oam: { type: ipv4 },"
+		+ " storage: { type: ipv6 }, subnet: { type: cidr }, pods: { type: cidrv4 }, svc: { type: cidrv6 },"
+		+ " hosts: { type: array, items: { type: object, properties: { name: { type: string }, ip: { type: ipv4 } } } },"
+		+ " dns: { type: array, items: { type: ipaddress } },"
+		+ " bgp: { type: object, properties: { asn: { type: integer }, peer: { type: ipaddress } } } }"));
+
+	@Test
+	public void testValidInput() {
+		assertValid(SCHEMA, "{ name: site1, count: 3, vip: 'fe80::1', oam: 10.1.2.3, storage: '::ffff:10.1.2.3',"
+			+ " subnet: 10.0.0.0/8, pods: 192.168.0.0/16, svc: 'fd00::/8',"
+			+ " hosts: [ { name: h1, ip: 10.0.0.1 }, { name: h2, ip: 10.0.0.2 } ], dns: [ 8.8.8.8, '2001:4860:4860::8888' ],"
+			+ " bgp: { asn: '64512', peer: 10.0.0.254 } }");
+	}
+
+	@Test
+	public void testInvalidAddresses() {
+		List<String> errors = validate(SCHEMA, "{ name: site1, count: 3, vip: 'fe80::1%eth0', oam: 10.1.2.256,"
+			+ " storage: 10.1.2.3, subnet: 10.0.0.0/33, pods: 'fd00::/8', svc: 'fd00::/129',"
+			+ " hosts: [ { name: h1, ip: 10.0.0.1 }, { name: h2, ip: '::1' } ], dns: [ 8.8.8.8, 8.8.4 ],"
+			+ " bgp: { asn: 64512, peer: '1::2::3' } }");
+		assertEquals(Arrays.asList(
+			"The value \"fe80::1%eth0\" for key vip is not a valid IP address.",
+			"The value \"10.1.2.256\" for key oam is not a valid IPV4 address.",
+			"The value \"10.1.2.3\" for key storage is not a valid IPV6 address.",
+			"The value \"10.0.0.0/33\" for key subnet is not a valid CIDR.",
+			"The value \"fd00::/8\" for key pods is not a valid IPV4 CIDR.",
+			"The value \"fd00::/129\" for key svc is not a valid IPV6 CIDR.",
+			"The value \"::1\" for key hosts[1].ip is not a valid IPV4 address.",
+			"The value \"8.8.4\" for key dns[1] is not a valid IP address.",
+			"The value \"1::2::3\" for key bgp.peer is not a valid IP address."
+		), sorted(errors, "vip", "oam", "storage", "subnet", "pods", "svc", "hosts", "dns", "bgp"));
+	}
+
+	@Test
+	public void testMissingValues() {
+		InputSchema s = InputSchema.compile(new JSONObject("{ name: { type: string }, oam: { type: ipv4 }, count: { type: integer },"
+			+ " hosts: { type: array, items: { type: string } }, bgp: { type: object, properties: { asn: { type: integer } } } }"));
+		List<String> errors = validate(s, "{ oam: 10, count: ten }");
+		assertTrue(errors.contains("Missing required value of type string: name"));
+		assertTrue(errors.contains("Missing required value of type ipv4: oam"));
+		assertTrue(errors.contains("Missing or invalid required value of type integer: count"));
+		assertTrue(errors.contains("Missing required list: hosts"));
+		assertTrue(errors.contains("Missing required object: bgp"));
+		assertEquals(5, errors.size());
+		assertEquals(5, s.validate(null).size());
+	}
+
+	@Test
+	public void testBadSchemas() {
+		assertEquals(Arrays.asList("Bad input_schema; missing type for key: a"), validate("{ a: { } }", "{ a: 1 }"));
+		assertEquals(Arrays.asList("Bad input_schema; missing type for key: a"), validate("{ a: 1 }", "{ a: 1 }"));
+		assertEquals(Arrays.asList("Unknown schema type : float"), validate("{ a: { type: float } }", "{ a: 1 }"));
+		assertEquals(Arrays.asList("Bad input_schema; missing items for key: a"), validate("{ a: { type: array } }", "{ a: [] }"));
+		assertEquals(Arrays.asList("Bad input_schema; missing type for key: a.items"), validate("{ a: { type: array, items: { } } }", "{ a: [] }"));
+		assertEquals(Arrays.asList("Bad input_schema; missing properties for key: a"), validate("{ a: { type: object } }", "{ a: { } }"));
+		assertEquals(Arrays.asList("Arrays of arrays not allowed for key: a"),
+			validate("{ a: { type: array, items: { type: array, items: { type: string } } } }", "{ a: [ [ x ] ] }"));
+		// Items of an unknown type are not checked
+		assertTrue(validate("{ a: { type: array, items: { type: float } } }", "{ a: [ x, 1 ] }").isEmpty());
+	}
+
+	@Test
+	public void testEmptySchema() {
+		assertValid(InputSchema.compile(null), "{ a: 1 }");
+		assertValid(InputSchema.compile(new JSONObject()), "{ a: 1 }");
+	}
+
+	private static List<String> validate(final InputSchema s, final String input) {
+		return s.validate(new JSONObject(input));
+	}
+
+	private static List<String> validate(final String schema, final String input) {
+		return validate(InputSchema.compile(new JSONObject(schema)), input);
+	}
+
+	private static void assertValid(final InputSchema s, final String input) {
+		List<String> errors = validate(s, input);
+		assertTrue(errors.toString(), errors.isEmpty());
+	}
+
+	/**
+	 * The schema keys are not validated in any particular order, so put errors into the order of keys.
+	 */
+	private static List<String> sorted(final List<String> errors, final String... keys) {
+		errors.sort((a, b) -> Integer.compare(keyIndex(a, keys), keyIndex(b, keys)));
+		return errors;
+	}
+
+	private static int keyIndex(final String error, final String[] keys) {
+		for (int i = 0; i < keys.length; i++) {
+			if (error.contains(" for key "+keys[i]+" ") || error.contains(" for key "+keys[i]+"[") || error.contains(" for key "+keys[i]+"."))
+				return i;
+		}
+		return keys.length;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.akraino.regional_controller.beans.POD.State;
+import org.akraino.regional_controller.db.DB;
+import org.akraino.regional_controller.db.DBFactory;
+import org.junit.Test;
+
+/**
+ * Tests the POD state machine, and the conditional updates used to move a POD between states, using
+ * two copies of a POD to stand in for two requests (or API servers) racing to change its state.
+ */
+public class PODStateTest {
+	@Test
+	public void testValidTransitions() {
+		String[] allowed = {
+			"NEW -> WORKFLOW", "NEW -> DEAD",
+			"WORKFLOW -> ACTIVE", "WORKFLOW -> FAILED", "WORKFLOW -> DEAD",
+			"ACTIVE -> WORKFLOW", "ACTIVE -> DEAD",
+			"FAILED -> WORKFLOW", "FAILED -> DEAD",
+			"DEAD -> ZOMBIE",
+		};
+		int n = 0;
+		for (State from : State.values()) {
+			for (State to : State.values()) {
+				boolean expected = false;
+				for (String a : allowed) {
+					expected |= a.equals(from+" -> "+to);
+				}
+				assertEquals(from+" -> "+to, expected, POD.isValidTransition(from, to));
+				n += expected ? 1 : 0;
+			}
+		}
+		assertEquals(allowed.length, n);
+	}
+
+	@Test
+	public void testSetState() throws Exception {
+		POD p = createPod();
+		assertTrue(p.setState(State.WORKFLOW));
+		assertEquals(State.WORKFLOW, DBFactory.getDB().getPod(p.getUuid()).getState());
+		// Already there
+		assertFalse(p.setState(State.WORKFLOW));
+		// Not allowed
+		assertFalse(p.setState(State.NEW));
+		assertEquals(State.WORKFLOW, p.getState());
+	}
+
+	@Test
+	public void testLostRaceRetries() throws Exception {
+		POD p = createPod();
+		POD stale = copy(p);
+		assertTrue(p.setState(State.WORKFLOW));
+
+		// The stale copy still thinks the POD is NEW, so its first update fails; it rereads the POD, and
+		// retries from WORKFLOW, from which DEAD is allowed
+		assertTrue(stale.setState(State.DEAD));
+		assertEquals(State.DEAD, stale.getState());
+		assertEquals(State.DEAD, DBFactory.getDB().getPod(p.getUuid()).getState());
+	}
+
+	@Test
+	public void testLostRaceNotRetried() throws Exception {
+		POD p = createPod();
+		POD stale = copy(p);
+		assertTrue(p.setState(State.DEAD));
+
+		// After rereading, the POD is DEAD, and WORKFLOW is not allowed from DEAD
+		assertFalse(stale.setState(State.WORKFLOW));
+		assertEquals(State.DEAD, stale.getState());
+		assertEquals(State.DEAD, DBFactory.getDB().getPod(p.getUuid()).getState());
+	}
+
+	@Test
+	public void testSecondWorkflowRefused() throws Exception {
+		POD p = createPod();
+		POD stale = copy(p);
+		// Another request claims the POD for its workflow
+		assertTrue(p.setState(State.WORKFLOW));
+
+		// The stale copy still thinks the POD is NEW, but cannot claim it, and so never gets as far as
+		// initializing a workflow (which is why no PODWorkflow is needed)
+		assertFalse(stale.startWorkFlow(null));
+		assertEquals(State.WORKFLOW, stale.getState());
+		assertEquals(State.WORKFLOW, DBFactory.getDB().getPod(p.getUuid()).getState());
+	}
+
+	@Test(expected = javax.ws.rs.ClientErrorException.class)
+	public void testChangeStateConflict() throws Exception {
+		POD p = createPod();
+		POD stale = copy(p);
+		assertTrue(p.setState(State.DEAD));
+		assertTrue(p.setState(State.ZOMBIE));
+		stale.changeState(State.DEAD);
+	}
+
+	@Test
+	public void testChangeStateRepeated() throws Exception {
+		POD p = createPod();
+		POD stale = copy(p);
+		p.changeState(State.DEAD);
+		// e.g. a repeated DELETE; the POD is already DEAD
+		stale.changeState(State.DEAD);
+		assertEquals(State.DEAD, stale.getState());
+	}
+
+	@Test
+	public void testUpdateEdgesite() throws Exception {
+		POD p = createPod();
+		String es = UUID.randomUUID().toString();
+		assertTrue(DBFactory.getDB().updatePodState(p, State.NEW, State.WORKFLOW, es));
+		POD p2 = DBFactory.getDB().getPod(p.getUuid());
+		assertEquals(State.WORKFLOW, p2.getState());
+		assertEquals(es, p2.getEdgesite());
+		// The update is conditional on the current state
+		assertFalse(DBFactory.getDB().updatePodState(p, State.NEW, State.DEAD, null));
+	}
+
+	private static POD createPod() throws Exception {
+		DB db = DBFactory.getDB();
+		POD p = new POD(UUID.randomUUID().toString(), "state_pod", "testing only", State.NEW,
+			UUID.randomUUID().toString(), UUID.randomUUID().toString(), "x");
+		db.createPod(p);
+		return p;
+	}
+
+	private static POD copy(final POD p) {
+		POD copy = new POD(p.getUuid(), p.getName(), p.getDescription(), p.getState(), p.getBlueprint(), p.getEdgesite(), p.getYaml());
+		copy.setRevision(p.getRevision());
+		return copy;
+	}
+}
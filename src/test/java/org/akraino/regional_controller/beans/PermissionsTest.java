@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks the compiled permission masks against the original RBAC check, in which a Role was allowed
+ * an operation only if one of its attributes was literally one of the operation's acceptable
+ * attributes (e.g. "read-*" or "read-region").
+ */
+public class PermissionsTest {
+	private static final String[] VERBS   = { "create", "read", "update", "delete" };
+	private static final String[] OBJECTS = {
+		"blueprint", "edgesite", "hardware", "node", "pod", "podevent", "region", "user", "version"
+	};
+
+	@Test
+	public void testObjectWildcardMatchesOldCheck() {
+		for (String verb : VERBS) {
+			assertEquivalent(Collections.singletonList(verb + "-*"));
+		}
+	}
+
+	@Test
+	public void testExactAttributeMatchesOldCheck() {
+		for (String verb : VERBS) {
+			for (String object : OBJECTS) {
+				assertEquivalent(Collections.singletonList(verb + "-" + object));
+			}
+		}
+	}
+
+	@Test
+	public void testMixedAttributesMatchOldCheck() {
+		assertEquivalent(Arrays.asList("read-*", "create-podevent"));
+		assertEquivalent(Arrays.asList("create-*", "read-*", "update-*", "delete-*"));
+		assertEquivalent(Arrays.asList("create-edgesite", "read-edgesite", "update-edgesite", "delete-edgesite"));
+	}
+
+	@Test
+	public void testUnknownAttributesGrantNothing() {
+		for (String s : new String[] { "", "-", "read", "read-", "-region", "read-nothing", "fly-region", "read_region", "READ-region" }) {
+			assertEquals(s, Permissions.NONE, Permissions.compile(s));
+			assertEquivalent(Collections.singletonList(s));
+		}
+		assertEquals(Permissions.NONE, Permissions.compile((String) null));
+	}
+
+	@Test
+	public void testBareWildcardIsEveryVerbWildcard() {
+		// "*" grants exactly what the four "{verb}-*" attributes grant under the old check
+		List<String> all = Arrays.asList("create-*", "read-*", "update-*", "delete-*");
+		assertEquals(Permissions.compile(all), Permissions.compile("*"));
+		assertEquals(Permissions.compile(all), Permissions.compile(" * "));
+		for (String verb : VERBS) {
+			for (String object : OBJECTS) {
+				assertTrue(Permissions.allows(Permissions.compile("*"), required(verb, object)));
+			}
+		}
+	}
+
+	@Test
+	public void testVerbWildcardIsEveryExactVerb() {
+		// "*-region" grants exactly what the four "{verb}-region" attributes grant under the old check
+		for (String object : OBJECTS) {
+			long expected = Permissions.NONE;
+			for (String verb : VERBS) {
+				expected |= Permissions.compile(verb + "-" + object);
+			}
+			assertEquals(object, expected, Permissions.compile("*-" + object));
+		}
+	}
+
+	/**
+	 * Assert that, for every operation, the mask compiled from the attributes allows exactly what the
+	 * old check allowed.
+	 */
+	private static void assertEquivalent(final List<String> attributes) {
+		long granted = Permissions.compile(attributes);
+		for (String verb : VERBS) {
+			for (String object : OBJECTS) {
+				String[] acceptable = { verb + "-*", verb + "-" + object };
+				boolean old = false;
+				for (String rr : acceptable) {
+					old |= attributes.contains(rr);
+				}
+				assertEquals(attributes + " / " + verb + "-" + object, old, Permissions.allows(granted, required(verb, object)));
+			}
+		}
+	}
+
+	private static long required(final String verb, final String object) {
+		return Permissions.required(verb + "-*", verb + "-" + object);
+	}
+}
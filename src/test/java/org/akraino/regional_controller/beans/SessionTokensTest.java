@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.beans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import org.akraino.regional_controller.db.DBFactory;
+import org.junit.Test;
+
+/**
+ * Tests the issuing, verification and revocation of signed (JWT) session tokens.  Revocations are
+ * recorded in the test DB (a PropertiesDB), so each test uses a User of its own.
+ */
+public class SessionTokensTest {
+	private static final String SECRET  = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+	private static final String SECRET2 = Base64.getEncoder().encodeToString("fedcba9876543210fedcba9876543210".getBytes());
+	private static final long   HOUR    = 3600000L;
+
+	@Test
+	public void testRoundTrip() {
+		SessionTokens st = newTokens(SECRET);
+		User u = newUser();
+		long expires = System.currentTimeMillis() + HOUR;
+		String token = st.issue(u, expires);
+
+		UserSession us = st.verify(token);
+		assertNotNull(us);
+		assertTrue(us.isValid());
+		assertEquals(token, us.getToken());
+		assertEquals(expires / 1000L, us.getExpires() / 1000L);		// JWT times are in seconds
+		assertEquals(u.getUuid(), us.getUser().getUuid());
+		assertEquals(u.getName(), us.getUser().getName());
+		assertEquals(1, us.getUser().getRoles().size());
+		Role r = us.getUser().getRoles().iterator().next();
+		assertEquals("role-ro", r.getName());
+		assertEquals(Collections.singleton("read-*"), r.getAttributes());
+	}
+
+	@Test
+	public void testOtherKeyRejected() {
+		String token = newTokens(SECRET2).issue(newUser(), System.currentTimeMillis() + HOUR);
+		assertNull(newTokens(SECRET).verify(token));
+		assertNull(newTokens(SECRET).verify("not.a.token"));
+	}
+
+	@Test
+	public void testExpiredTokenInvalid() {
+		SessionTokens st = newTokens(SECRET);
+		String token = st.issue(newUser(), System.currentTimeMillis() - 5000L);
+		UserSession us = st.verify(token);
+		assertNotNull(us);
+		assertFalse(us.isValid());
+	}
+
+	@Test
+	public void testLogoutRevokesToken() {
+		SessionTokens st = newTokens(SECRET);
+		User u = newUser();
+		String token1 = st.issue(u, System.currentTimeMillis() + HOUR);
+		String token2 = st.issue(u, System.currentTimeMillis() + HOUR);
+		st.revoke(st.verify(token1));
+		assertNull(st.verify(token1));
+		// Only the token that was logged out is revoked
+		assertNotNull(st.verify(token2));
+	}
+
+	@Test
+	public void testRevokeUser() throws Exception {
+		SessionTokens st = newTokens(SECRET);
+		User u = newUser();
+		String before = st.issue(u, System.currentTimeMillis() + HOUR);
+		Thread.sleep(2L);
+		st.revokeUser(u.getUuid());
+		Thread.sleep(2L);
+		String after = st.issue(u, System.currentTimeMillis() + HOUR);
+		// iat_ms tells a token issued after the revocation from one issued before it
+		assertNull(st.verify(before));
+		assertNotNull(st.verify(after));
+	}
+
+	@Test
+	public void testRevocationsRefreshedFromDB() throws Exception {
+		SessionTokens st = newTokens(SECRET);
+		User u = newUser();
+		String token = st.issue(u, System.currentTimeMillis() + HOUR);
+		assertNotNull(st.verify(token));
+		Thread.sleep(2L);
+		// As another API server would
+		long now = System.currentTimeMillis();
+		DBFactory.getDB().createRevocation(u.getUuid(), now, now + HOUR);
+		assertNull(st.verify(token));
+	}
+
+	@Test
+	public void testCheckSecret() {
+		assertNull(SessionTokens.checkSecret(""));
+		assertNull(SessionTokens.checkSecret(SECRET));
+		assertNotNull(SessionTokens.checkSecret("not base64!"));
+		assertNotNull(SessionTokens.checkSecret(Base64.getEncoder().encodeToString("too short".getBytes())));
+	}
+
+	@Test
+	public void testBadSecretDoesNotBreakTokens() {
+		for (String secret : new String[] { "not base64!", Base64.getEncoder().encodeToString("too short".getBytes()) }) {
+			SessionTokens st = newTokens(secret);
+			assertTrue(st.isSigned());
+			String token = st.issue(newUser(), System.currentTimeMillis() + HOUR);
+			assertNotNull(st.verify(token));
+		}
+	}
+
+	private static SessionTokens newTokens(String secret) {
+		Properties props = new Properties();
+		props.setProperty("api.token.mode", SessionTokens.MODE_JWT);
+		props.setProperty("api.token.secret", secret);
+		props.setProperty("api.token.revocation_refresh", "0");
+		return new SessionTokens(props);
+	}
+
+	private static User newUser() {
+		User u = new User(UUID.randomUUID().toString(), "SessionTokensTest", "", "testing only");
+		u.setRoles(new TreeSet<>(Collections.singleton(
+			new Role(UUID.randomUUID().toString(), "role-ro", "", new String[] { "read-*" }))));
+		return u;
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.akraino.regional_controller.beans.Hardware;
+import org.akraino.regional_controller.beans.HardwareRule;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures matching a compiled hardware_profile rule against a 100 Node Edgesite, compared with the
+ * original per-Node interpretation of the rule (with the Node and Hardware lookups already done).
+ * Run with:
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.akraino.regional_controller.benchmarks.HardwareRuleBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HardwareRuleBenchmark {
+	private static final String PROFILE =
+		"{ \"and\": [ { \"name\": \"Dell.*\", \"min\": 3 }, "
+		+ "{ \"or\": [ { \"uuid\": \"c3b2b5a6-4e44-11e9-9ab6-4b3c7ae7e1a4\", \"max\": 10 }, { \"name\": \"HPE.*\" } ] } ] }";
+
+	private JSONObject profile;
+	private HardwareRule rule;
+	private HardwareRule.Inventory inventory;
+	private List<Hardware> nodes;
+
+	@Setup
+	public void setup() {
+		Hardware[] types = {
+			new Hardware("c3b2b5a6-4e44-11e9-9ab6-4b3c7ae7e1a4", "Dell PowerEdge R740", "", ""),
+			new Hardware("d4c3c6b7-4e44-11e9-9ab6-4b3c7ae7e1a4", "Dell PowerEdge R640", "", ""),
+			new Hardware("e5d4d7c8-4e44-11e9-9ab6-4b3c7ae7e1a4", "HPE ProLiant DL380", "", ""),
+		};
+		nodes = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			nodes.add(types[i % types.length]);
+		}
+		profile   = new JSONObject(PROFILE);
+		rule      = HardwareRule.compile(profile);
+		inventory = new HardwareRule.Inventory(nodes);
+	}
+
+	@Benchmark
+	public List<String> compiled() {
+		return rule.match(inventory);
+	}
+
+	@Benchmark
+	public List<String> compiledWithInventory() {
+		return rule.match(new HardwareRule.Inventory(nodes));
+	}
+
+	@Benchmark
+	public List<String> interpreted() {
+		return interpret(profile);
+	}
+
+	/**
+	 * The rule evaluation as it was done before hardware_profile rules were compiled.
+	 */
+	private List<String> interpret(JSONObject rule) {
+		List<String> errors = new ArrayList<>();
+		JSONArray ja = rule.optJSONArray("and");
+		if (ja != null) {
+			for (int i = 0; i < ja.length(); i++)
+				errors.addAll(interpret(ja.getJSONObject(i)));
+			return errors;
+		}
+		ja = rule.optJSONArray("or");
+		if (ja != null) {
+			for (int i = 0; i < ja.length(); i++) {
+				List<String> z = interpret(ja.getJSONObject(i));
+				if (z.isEmpty())
+					return z;
+				errors.addAll(z);
+			}
+			return errors;
+		}
+		String uuid = rule.optString("uuid");
+		String name = rule.optString("name");
+		int    min  = rule.optInt("min");
+		int    max  = rule.optInt("max");
+		if (min == 0)
+			min = 1;
+		if (max == 0)
+			max = 1000000;
+		int matches = 0;
+		for (Hardware h : nodes) {
+			if (!"".equals(uuid) ? h.getUuid().equalsIgnoreCase(uuid) : h.getName().matches(name))
+				matches++;
+		}
+		if (matches < min || matches > max)
+			errors.add("mismatch");
+		return errors;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(HardwareRuleBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.akraino.regional_controller.beans.InputSchema;
+import org.akraino.regional_controller.utils.IPAddresses;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures validation of POD input against a compiled {@link InputSchema}, using an input shaped like
+ * that of an Airship based blueprint (site networks, plus a list of hosts with several addresses each),
+ * and compares the IPv6 syntax check with the original split/regex based check.  Run with:
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.akraino.regional_controller.benchmarks.InputSchemaBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputSchemaBenchmark {
+	private static final String[] NETWORKS = { "oob", "host", "storage", "pxe", "ksn", "neutron" };
+	private static final String   IPV6     = "2001:db8:85a3:0:0:8a2e:370:7334";
+
+	@Param({ "10", "50" })
+	public int hosts;
+
+	private JSONObject schema;
+	private JSONObject input;
+	private InputSchema compiled;
+
+	@Setup
+	public void setup() {
+		schema = new JSONObject();
+		schema.put("site_name", type("string"));
+		schema.put("dns",       items("ipaddress"));
+		schema.put("ntp",       items("ipv4"));
+		JSONObject net = new JSONObject();
+		net.put("vlan",    type("integer"));
+		net.put("cidr",    type("cidrv4"));
+		net.put("gateway", type("ipv4"));
+		net.put("v6cidr",  type("cidrv6"));
+		JSONObject nets = new JSONObject();
+		for (String n : NETWORKS) {
+			nets.put(n, object(net));
+		}
+		schema.put("networks", object(nets));
+		JSONObject host = new JSONObject();
+		host.put("name",     type("string"));
+		host.put("rack",     type("string"));
+		host.put("oob_ip",   type("ipv4"));
+		host.put("host_ip",  type("ipv4"));
+		host.put("pxe_ip",   type("ipaddress"));
+		host.put("ipv6",     type("ipv6"));
+		host.put("bond_mtu", type("integer"));
+		JSONObject items = type("object");
+		items.put("properties", host);
+		JSONObject hostlist = type("array");
+		hostlist.put("items", items);
+		schema.put("hosts", hostlist);
+
+		input = new JSONObject();
+		input.put("site_name", "airship-seaworthy");
+		input.put("dns", new JSONArray().put("10.0.0.2").put("2001:4860:4860::8888"));
+		input.put("ntp", new JSONArray().put("10.0.0.3").put("10.0.0.4"));
+		JSONObject ninput = new JSONObject();
+		int i = 0;
+		for (String n : NETWORKS) {
+			JSONObject jo = new JSONObject();
+			jo.put("vlan",    100 + i);
+			jo.put("cidr",    "10.23."+i+".0/24");
+			jo.put("gateway", "10.23."+i+".1");
+			jo.put("v6cidr",  "fd00:23:"+i+"::/64");
+			ninput.put(n, jo);
+			i++;
+		}
+		input.put("networks", ninput);
+		JSONArray hl = new JSONArray();
+		for (int h = 0; h < hosts; h++) {
+			JSONObject jo = new JSONObject();
+			jo.put("name",     "cab23-r720-"+h);
+			jo.put("rack",     "rack"+(h / 16));
+			jo.put("oob_ip",   "10.23.104."+(h + 10));
+			jo.put("host_ip",  "10.23.21."+(h + 10));
+			jo.put("pxe_ip",   "10.23.20."+(h + 10));
+			jo.put("ipv6",     "fd00:23:1::"+Integer.toHexString(h + 10));
+			jo.put("bond_mtu", 9100);
+			hl.put(jo);
+		}
+		input.put("hosts", hl);
+		compiled = InputSchema.compile(schema);
+	}
+
+	private static JSONObject type(String t) {
+		JSONObject jo = new JSONObject();
+		jo.put("type", t);
+		return jo;
+	}
+
+	private static JSONObject items(String t) {
+		JSONObject jo = type("array");
+		jo.put("items", type(t));
+		return jo;
+	}
+
+	private static JSONObject object(JSONObject props) {
+		JSONObject jo = type("object");
+		jo.put("properties", props);
+		return jo;
+	}
+
+	@Benchmark
+	public List<String> validateCompiled() {
+		return compiled.validate(input);
+	}
+
+	@Benchmark
+	public List<String> compileAndValidate() {
+		return InputSchema.compile(schema).validate(input);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean ipv6Scan() {
+		return IPAddresses.isIPv6(IPV6);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean ipv6SplitRegex() {
+		return legacyIPv6(IPV6);
+	}
+
+	/**
+	 * The IPv6 check as it was done before input schemas were compiled.
+	 */
+	private static boolean legacyIPv6(final String ip) {
+		if (!ip.equals("::1")) {
+			String[] hextets = ip.split(":");
+			if (hextets.length > 8)
+				return false;
+			boolean expect_empty = hextets.length != 8;
+			for (String hextet : hextets) {
+				if (hextet.length() == 0) {
+					if (expect_empty) {
+						expect_empty = false;
+					} else {
+						return false;
+					}
+				} else if (!hextet.matches("[0-9a-fA-F]{1,4}")) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(InputSchemaBenchmark.class.getSimpleName()).build()).run();
+	}
+}
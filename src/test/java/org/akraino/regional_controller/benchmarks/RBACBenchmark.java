@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.benchmarks;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.akraino.regional_controller.beans.Permissions;
+import org.akraino.regional_controller.beans.Role;
+import org.akraino.regional_controller.beans.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the original RBAC check (a loop over every Role and every acceptable attribute) against the
+ * compiled {@link Permissions} mask check.  Run with:
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.akraino.regional_controller.benchmarks.RBACBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RBACBenchmark {
+	private static final String[] POD_UPDATE_ATTRS    = { "update-*", "update-pod" };
+	private static final String[] REGION_DELETE_ATTRS = { "delete-*", "delete-region" };
+	private static final long     POD_UPDATE_MASK     = Permissions.required(POD_UPDATE_ATTRS);
+	private static final long     REGION_DELETE_MASK  = Permissions.required(REGION_DELETE_ATTRS);
+
+	private User user;
+
+	@Setup
+	public void setup() {
+		// A user holding several narrow roles, as in testing_db.properties
+		Set<Role> roles = new TreeSet<>();
+		roles.add(new Role("0a77bf16-445b-11e9-81f0-b703010027a6", "readonly",       "", new String[] { "read-*" }));
+		roles.add(new Role("48a56766-4e42-11e9-9b45-4328023945cb", "edgesite_admin", "", new String[] { "create-edgesite", "read-edgesite", "update-edgesite", "delete-edgesite" }));
+		roles.add(new Role("5dd4251e-4e42-11e9-88f3-430d902d43d8", "node_admin",     "", new String[] { "create-node", "read-node", "update-node", "delete-node" }));
+		roles.add(new Role("69c0efd8-4e42-11e9-bc02-df6f2b70054e", "pod_admin",      "", new String[] { "create-pod", "read-pod", "update-pod", "delete-pod" }));
+		user = new User("8a7ab6fa-445b-11e9-8dd1-b3a6ee66a2e5", "bench", "", "");
+		user.setRoles(roles);
+	}
+
+	@Benchmark
+	public boolean loopAllowed() {
+		return loop(user, POD_UPDATE_ATTRS);
+	}
+
+	@Benchmark
+	public boolean loopDenied() {
+		return loop(user, REGION_DELETE_ATTRS);
+	}
+
+	@Benchmark
+	public boolean maskAllowed() {
+		return Permissions.allows(user.getPermissions(), POD_UPDATE_MASK);
+	}
+
+	@Benchmark
+	public boolean maskDenied() {
+		return Permissions.allows(user.getPermissions(), REGION_DELETE_MASK);
+	}
+
+	/**
+	 * The check as it was done before role attributes were compiled.
+	 */
+	private static boolean loop(final User u, final String[] requiredRoles) {
+		for (Role ur : u.getRoles()) {
+			for (String rr : requiredRoles) {
+				if (ur.getAttributes().contains(rr)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RBACBenchmark.class.getSimpleName()).build()).run();
+	}
+}
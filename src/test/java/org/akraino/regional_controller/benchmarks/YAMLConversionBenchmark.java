@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.akraino.regional_controller.utils.YAMLConverter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Measures conversion of a large Blueprint between YAML and JSON with the event based
+ * {@link YAMLConverter}, and compares it with the original conversion (load or dump via a tree of
+ * Maps and Lists, with a new Yaml instance each time).  The Blueprint is generated: a number of
+ * workflows, each with an input_schema, plus a long list of hardware profile rules, grown until
+ * the YAML is about <i>kbytes</i> long.  Run with:
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.akraino.regional_controller.benchmarks.YAMLConversionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YAMLConversionBenchmark {
+	@Param({ "1024" })
+	public int kbytes;
+
+	private String yaml;
+	private JSONObject json;
+
+	@Setup
+	public void setup() {
+		JSONObject workflows = new JSONObject();
+		JSONArray rules = new JSONArray();
+		JSONObject bp = new JSONObject();
+		bp.put("blueprint", "1.0.0");
+		bp.put("name", "Benchmark");
+		bp.put("version", "1.0.0");
+		bp.put("description", "A generated Blueprint for benchmarking YAML conversion");
+		bp.put("yaml", new JSONObject().put("workflow", workflows).put("hardware_profile", new JSONObject().put("or", rules)));
+		int n = 0;
+		do {
+			// Add workflows in batches, since every dump to measure the size is of the whole Blueprint
+			for (int batch = 0; batch < 16; batch++, n++) {
+				JSONObject schema = new JSONObject();
+				for (int i = 0; i < 20; i++) {
+					JSONObject field = new JSONObject();
+					field.put("type", (i % 3 == 0) ? "ipv4" : (i % 3 == 1) ? "integer" : "string");
+					field.put("description", "Field "+i+" of the input to workflow "+n);
+					schema.put("field_"+i, field);
+				}
+				JSONObject wf = new JSONObject();
+				wf.put("url", "http://example.com/workflows/create_"+n+".py");
+				wf.put("components", new JSONArray().put("http://example.com/components/c"+n+".tar.gz").put("http://example.com/components/d"+n+".tar.gz"));
+				wf.put("input_schema", schema);
+				wf.put("script", "#!/bin/sh\necho workflow "+n+"\nexit 0\n");
+				workflows.put("create_"+n, wf);
+				for (int i = 0; i < 10; i++) {
+					JSONObject rule = new JSONObject();
+					rule.put("uuid", String.format("%08x-2e28-11e9-a0e0-0017f20dbff8", n * 10 + i));
+					rule.put("min", i);
+					rule.put("max", 10 * i + 1);
+					rule.put("enabled", (i % 2) == 0);
+					rules.put(rule);
+				}
+			}
+			yaml = legacyToYAML(bp);
+		} while (yaml.length() < kbytes * 1024);
+		json = bp;
+	}
+
+	@Benchmark
+	public JSONObject yamlToJSONEvents() {
+		return YAMLConverter.toJSON(yaml);
+	}
+
+	@Benchmark
+	public JSONObject yamlToJSONLegacy() {
+		return legacyToJSON(yaml);
+	}
+
+	@Benchmark
+	public String jsonToYAMLEvents() {
+		return YAMLConverter.toYAML(json);
+	}
+
+	@Benchmark
+	public String jsonToYAMLLegacy() {
+		return legacyToYAML(json);
+	}
+
+	/**
+	 * YAML to JSON as it was done before the conversion was event based.
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONObject legacyToJSON(final String yaml) {
+		return legacyConvertMap((Map<String, Object>) new Yaml().load(yaml));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject legacyConvertMap(final Map<String, Object> map) {
+		JSONObject jo = new JSONObject();
+		for (String key : map.keySet()) {
+			Object val = map.get(key);
+			if (val instanceof Map) {
+				val = legacyConvertMap((Map<String, Object>) val);
+			} else if (val instanceof List) {
+				val = legacyConvertList((List<Object>) val);
+			}
+			jo.put(key, val);
+		}
+		return jo;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONArray legacyConvertList(final List<Object> list) {
+		JSONArray ja = new JSONArray();
+		for (Object val : list) {
+			if (val instanceof Map) {
+				val = legacyConvertMap((Map<String, Object>) val);
+			} else if (val instanceof List) {
+				val = legacyConvertList((List<Object>) val);
+			}
+			ja.put(val);
+		}
+		return ja;
+	}
+
+	/**
+	 * JSON to YAML as it was done before the conversion was event based.
+	 */
+	private static String legacyToYAML(final JSONObject jo) {
+		return new Yaml().dump(legacyConvert(jo));
+	}
+
+	private static Object legacyConvert(final Object val) {
+		if (val instanceof JSONObject) {
+			JSONObject jo = (JSONObject) val;
+			Map<String, Object> map = new HashMap<>();
+			for (String key : jo.keySet()) {
+				map.put(key, legacyConvert(jo.get(key)));
+			}
+			return map;
+		}
+		if (val instanceof JSONArray) {
+			JSONArray ja = (JSONArray) val;
+			List<Object> list = new ArrayList<>();
+			for (int i = 0; i < ja.length(); i++) {
+				list.add(legacyConvert(ja.get(i)));
+			}
+			return list;
+		}
+		return val;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(YAMLConversionBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.akraino.regional_controller.beans.Blueprint;
+import org.akraino.regional_controller.beans.Edgesite;
+import org.akraino.regional_controller.beans.Hardware;
+import org.akraino.regional_controller.beans.Node;
+import org.akraino.regional_controller.beans.POD;
+import org.akraino.regional_controller.beans.Region;
+import org.akraino.regional_controller.beans.User;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a CachingDB passes list queries through to the wrapped DB, rather than filtering its
+ * (possibly stale) copy of the whole table, caches the result until the next write, and that it does
+ * not cache writes that are not committed.
+ */
+public class CachingDBTest {
+	private RecordingDB wrapped;
+	private CachingDB db;
+
+	@Before
+	public void setUp() {
+		Properties props = new Properties();
+		props.setProperty("db.cache.enabled", "true");
+		wrapped = new RecordingDB(props);
+		db = new CachingDB(wrapped, props);
+	}
+
+	@Test
+	public void testListQueriesPassedThrough() {
+		ListQuery q = new ListQuery();
+		db.getBlueprints(q);
+		db.getEdgesites(q);
+		db.getHardware(q);
+		db.getNodes(q);
+		db.getPods(q);
+		db.getRegions(q);
+		db.getUsers(q);
+		assertEquals(7, wrapped.queries.size());
+		for (ListQuery q2 : wrapped.queries) {
+			assertSame(q, q2);
+		}
+	}
+
+	@Test
+	public void testListQueryCached() {
+		ListQuery q1 = new ListQuery();
+		q1.setName("US West");
+		q1.setUuids(Arrays.asList("A", "b"));
+		ListQuery q2 = new ListQuery();
+		q2.setName("us west");
+		q2.setUuids(Arrays.asList("B", "a"));
+		// These differ only in case and order, so the second of each is a hit
+		db.getRegions(q1);
+		db.getRegions(q2);
+		assertEquals(1, wrapped.queries.size());
+		db.getRevisions(Region.class, q1);
+		db.getRevisions(Region.class, q2);
+		assertEquals(1, wrapped.revisions);
+		// ... but a different page is not
+		int n = wrapped.queries.size();
+		db.getRegions(q1.page(null, 1));
+		assertEquals(n + 1, wrapped.queries.size());
+	}
+
+	@Test
+	public void testWriteInvalidatesListQuery() throws Exception {
+		ListQuery q = new ListQuery();
+		q.setName("CachingDBTest");
+		assertEquals(0, db.getRegions(q).size());
+		assertEquals(0, db.getRevisions(Region.class, q).size());
+		db.createRegion(new Region("7f3e2d1c-5b4a-11e9-8e7d-6c5b4a392817", "CachingDBTest", "testing only"));
+		assertEquals(1, db.getRegions(q).size());
+		assertEquals(1, db.getRevisions(Region.class, q).size());
+		assertEquals(2, wrapped.revisions);
+	}
+
+	@Test
+	public void testListQueryNotCachedInTransaction() throws Exception {
+		ListQuery q = new ListQuery();
+		try (Transaction tx = db.beginTransaction()) {
+			db.getRegions(q);
+			db.getRegions(q);
+		}
+		assertEquals(2, wrapped.queries.size());
+	}
+
+	@Test
+	public void testListQueryPage() {
+		ListQuery q = new ListQuery();
+		q.setLimit(1);
+		List<Region> page = db.getRegions(q);
+		assertEquals(1, page.size());
+		assertTrue(db.getRegions().size() > 1);
+	}
+
+	@Test
+	public void testUncommittedWritesNotCached() throws Exception {
+		String uuid = "0c1d2e3f-5b4a-11e9-8e7d-6c5b4a392817";
+		Region r = new Region(uuid, "CachingDBTest_tx", "testing only");
+		try (Transaction tx = db.beginTransaction()) {
+			db.createRegion(r);
+			// The PropertiesDB has no rollback, so remove the Region behind the cache's back instead
+			wrapped.deleteRegion(r);
+			assertNull(onAnotherThread(() -> db.getRegion(uuid)));
+		}
+		assertNull(db.getRegion(uuid));
+	}
+
+	@Test
+	public void testCommittedWritesCached() throws Exception {
+		String uuid = "1d2e3f40-5b4a-11e9-8e7d-6c5b4a392817";
+		Region r = new Region(uuid, "CachingDBTest_commit", "testing only");
+		try (Transaction tx = db.beginTransaction()) {
+			db.createRegion(r);
+			tx.commit();
+		}
+		// Once committed, the Region is served from the cache
+		wrapped.deleteRegion(r);
+		assertNotNull(onAnotherThread(() -> db.getRegion(uuid)));
+	}
+
+	private static <T> T onAnotherThread(final Supplier<T> s) throws Exception {
+		ExecutorService ex = Executors.newSingleThreadExecutor();
+		try {
+			return ex.submit(s::get).get();
+		} finally {
+			ex.shutdown();
+		}
+	}
+
+	/**
+	 * A PropertiesDB that records the list queries it is asked, and counts the requests for revisions.
+	 */
+	private static class RecordingDB extends PropertiesDB {
+		private final List<ListQuery> queries = new ArrayList<>();
+		private int revisions = 0;
+
+		private RecordingDB(Properties props) {
+			super(props);
+		}
+		@Override
+		public Map<String, Revision> getRevisions(final Class<? extends BaseBean> type, final ListQuery q) {
+			revisions++;
+			return super.getRevisions(type, q);
+		}
+		@Override
+		public List<Blueprint> getBlueprints(final ListQuery q) {
+			queries.add(q);
+			return super.getBlueprints(q);
+		}
+		@Override
+		public List<Edgesite> getEdgesites(final ListQuery q) {
+			queries.add(q);
+			return super.getEdgesites(q);
+		}
+		@Override
+		public List<Hardware> getHardware(final ListQuery q) {
+			queries.add(q);
+			return super.getHardware(q);
+		}
+		@Override
+		public List<Node> getNodes(final ListQuery q) {
+			queries.add(q);
+			return super.getNodes(q);
+		}
+		@Override
+		public List<POD> getPods(final ListQuery q) {
+			queries.add(q);
+			return super.getPods(q);
+		}
+		@Override
+		public List<Region> getRegions(final ListQuery q) {
+			queries.add(q);
+			return super.getRegions(q);
+		}
+		@Override
+		public List<User> getUsers(final ListQuery q) {
+			queries.add(q);
+			return super.getUsers(q);
+		}
+	}
+}
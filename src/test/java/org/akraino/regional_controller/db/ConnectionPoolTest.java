@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the ConnectionPool, using a fake JDBC driver which counts the Connections opened and closed,
+ * and whose Connections can be made to fail (or to stall) validation.  The maintenance task is run
+ * by hand (the validation interval is 0), so that the tests do not depend on the timer.
+ */
+public class ConnectionPoolTest {
+	@Before
+	public void setUp() {
+		FakeDriver.opened.set(0);
+		FakeDriver.closed.set(0);
+		FakeDriver.valid = true;
+		FakeDriver.validating = null;
+		FakeDriver.stall = null;
+	}
+
+	@Test
+	public void testReuse() throws Exception {
+		ConnectionPool pool = newPool(props());
+		Connection c1 = pool.acquire();
+		pool.release(c1);
+		Connection c2 = pool.acquire();
+		assertSame(c1, c2);
+		pool.release(c2);
+		assertEquals(1, FakeDriver.opened.get());
+	}
+
+	@Test
+	public void testAcquireTimeout() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.max_size", "1");
+		props.setProperty("db.pool.acquire_timeout", "50");
+		ConnectionPool pool = newPool(props);
+		Connection c = pool.acquire();
+		long start = System.currentTimeMillis();
+		try {
+			pool.acquire();
+			fail("acquire() did not time out");
+		} catch (SQLException e) {
+			assertTrue(System.currentTimeMillis() - start >= 40);
+		}
+		assertEquals(1, pool.getStatistics().getLong("timeouts"));
+		assertEquals(0, pool.getWaiterCount());
+		pool.release(c);
+		pool.release(pool.acquire());
+		assertEquals(1, pool.getStatistics().getLong("timeouts"));
+	}
+
+	@Test
+	public void testMaxSize() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.max_size", "3");
+		props.setProperty("db.pool.acquire_timeout", "20");
+		ConnectionPool pool = newPool(props);
+		Connection[] c = { pool.acquire(), pool.acquire(), pool.acquire() };
+		try {
+			pool.acquire();
+			fail("acquire() went past max_size");
+		} catch (SQLException e) {
+			// expected
+		}
+		assertEquals(3, pool.getActiveCount());
+		assertEquals(3, FakeDriver.opened.get());
+		pool.release(c[1]);
+		assertSame(c[1], pool.acquire());
+		assertEquals(3, FakeDriver.opened.get());
+	}
+
+	@Test
+	public void testMaxLifetimeRetiredOnRelease() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.max_lifetime", "1");
+		ConnectionPool pool = newPool(props);
+		Connection c1 = pool.acquire();
+		Thread.sleep(1100L);
+		pool.release(c1);
+		assertEquals(1, FakeDriver.closed.get());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getStatistics().getInt("total"));
+		Connection c2 = pool.acquire();
+		assertNotSame(c1, c2);
+		pool.release(c2);
+	}
+
+	@Test
+	public void testLeakDetection() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.leak_threshold", "1");
+		ConnectionPool pool = newPool(props);
+		Connection c = pool.acquire();
+		pool.runMaintenance();
+		assertEquals(0, pool.getStatistics().getLong("leaks"));
+		Thread.sleep(1100L);
+		pool.runMaintenance();
+		pool.runMaintenance();
+		// Each leak is only reported once
+		assertEquals(1, pool.getStatistics().getLong("leaks"));
+		pool.release(c);
+	}
+
+	@Test
+	public void testNoValidationInterval() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.min_idle", "2");
+		ConnectionPool pool = newPool(props);
+		// With no maintenance task, nothing is opened until it is needed
+		Thread.sleep(100L);
+		assertEquals(0, FakeDriver.opened.get());
+		FakeDriver.valid = false;
+		pool.release(pool.acquire());
+		assertEquals(1, pool.getIdleCount());
+		// ... and idle Connections are not validated, until the task is run
+		pool.runMaintenance();
+		assertEquals(1, FakeDriver.closed.get());
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test
+	public void testValidateIdle() throws Exception {
+		ConnectionPool pool = newPool(props());
+		Connection c1 = pool.acquire();
+		Connection c2 = pool.acquire();
+		pool.release(c1);
+		pool.release(c2);
+		pool.runMaintenance();
+		assertEquals(0, FakeDriver.closed.get());
+		assertEquals(2, pool.getIdleCount());
+		FakeDriver.valid = false;
+		pool.runMaintenance();
+		assertEquals(2, FakeDriver.closed.get());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getStatistics().getInt("total"));
+	}
+
+	@Test
+	public void testValidationDoesNotExceedMaxSize() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.max_size", "1");
+		props.setProperty("db.pool.acquire_timeout", "100");
+		ConnectionPool pool = newPool(props);
+		pool.release(pool.acquire());
+
+		// Stall the validation of the idle Connection, and try to check one out meanwhile
+		FakeDriver.validating = new CountDownLatch(1);
+		FakeDriver.stall = new CountDownLatch(1);
+		Thread t = new Thread(pool::runMaintenance);
+		t.start();
+		assertTrue(FakeDriver.validating.await(5, TimeUnit.SECONDS));
+		try {
+			pool.release(pool.acquire());
+			fail("acquire() opened a Connection past max_size while one was being validated");
+		} catch (SQLException e) {
+			// expected
+		} finally {
+			FakeDriver.stall.countDown();
+			t.join();
+		}
+		assertEquals(1, FakeDriver.opened.get());
+		assertEquals(1, pool.getStatistics().getInt("total"));
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void testStatistics() throws Exception {
+		Properties props = props();
+		props.setProperty("db.pool.max_size", "5");
+		props.setProperty("db.pool.min_idle", "1");
+		ConnectionPool pool = newPool(props);
+		Connection c1 = pool.acquire();
+		Connection c2 = pool.acquire();
+		pool.release(c2);
+		JSONObject jo = pool.getStatistics();
+		assertEquals(5, jo.getInt("max_size"));
+		assertEquals(1, jo.getInt("min_idle"));
+		assertEquals(2, jo.getInt("total"));
+		assertEquals(1, jo.getInt("active"));
+		assertEquals(1, jo.getInt("idle"));
+		assertEquals(0, jo.getInt("waiters"));
+		assertEquals(2, jo.getLong("acquired"));
+		assertTrue(jo.getLong("acquire_max_us") >= jo.getLong("acquire_avg_us"));
+		assertEquals(0, jo.getLong("timeouts"));
+		assertEquals(0, jo.getLong("leaks"));
+		pool.release(c1);
+	}
+
+	private static Properties props() {
+		Properties props = new Properties();
+		props.setProperty("db.pool.min_idle", "0");
+		props.setProperty("db.pool.validation_interval", "0");
+		return props;
+	}
+
+	private static ConnectionPool newPool(Properties props) {
+		return new ConnectionPool(FakeDriver.URL, "akraino", "abc123", props);
+	}
+
+	public static class FakeDriver implements Driver {
+		static final String URL = "jdbc:fakepool:akraino";
+		static final AtomicInteger opened = new AtomicInteger();
+		static final AtomicInteger closed = new AtomicInteger();
+		static volatile boolean valid = true;
+		static volatile CountDownLatch validating;		// counted down when isValid() is called
+		static volatile CountDownLatch stall;			// isValid() waits for this
+
+		static {
+			try {
+				DriverManager.registerDriver(new FakeDriver());
+			} catch (SQLException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		@Override
+		public Connection connect(String url, Properties info) {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			opened.incrementAndGet();
+			boolean[] isClosed = { false };
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, (p, m, args) -> {
+				switch (m.getName()) {
+				case "isValid":
+					if (validating != null) {
+						validating.countDown();
+					}
+					if (stall != null) {
+						stall.await(5, TimeUnit.SECONDS);
+					}
+					return valid;
+				case "isClosed":
+					return isClosed[0];
+				case "getAutoCommit":
+					return true;
+				case "close":
+					if (!isClosed[0]) {
+						isClosed[0] = true;
+						closed.incrementAndGet();
+					}
+					return null;
+				case "hashCode":
+					return System.identityHashCode(p);
+				case "equals":
+					return p == args[0];
+				default:
+					return null;
+				}
+			});
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith(URL);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.Properties;
+
+import org.akraino.regional_controller.beans.Region;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestContextTest {
+	private static final String UUID = "6DB2A5B4-5AC3-11E9-A7E2-B31F6E9A1B2C";
+
+	@Before
+	public void setUp() {
+		RequestContext.begin();
+	}
+
+	@After
+	public void tearDown() {
+		RequestContext.end();
+	}
+
+	@Test
+	public void testLookupIsRemembered() {
+		Region r = new Region(UUID, "r1", "");
+		assertSame(r, RequestContext.lookup(Region.class, UUID, u -> r));
+		assertSame(r, RequestContext.lookup(Region.class, UUID.toLowerCase(), u -> null));
+	}
+
+	@Test
+	public void testReplace() {
+		Region r1 = new Region(UUID, "r1", "");
+		Region r2 = new Region(UUID, "r2", "");
+		RequestContext.lookup(Region.class, UUID, u -> r1);
+		RequestContext.replace(Region.class, r2);
+		assertSame(r2, RequestContext.lookup(Region.class, UUID, u -> r1));
+	}
+
+	@Test
+	public void testForget() {
+		Region r = new Region(UUID, "r1", "");
+		RequestContext.lookup(Region.class, UUID, u -> r);
+		RequestContext.forget(Region.class, UUID.toLowerCase());
+		// e.g. deleted earlier in the request
+		assertNull(RequestContext.lookup(Region.class, UUID, u -> null));
+	}
+
+	@Test
+	public void testReload() {
+		Region stale = new Region(UUID, "r1", "");
+		Region fresh = new Region(UUID, "r1", "changed");
+		RequestContext.lookup(Region.class, UUID, u -> stale);
+		// The loader is always called, and what it returns is remembered
+		assertSame(fresh, RequestContext.reload(Region.class, UUID, u -> fresh));
+		assertSame(fresh, RequestContext.lookup(Region.class, UUID, u -> stale));
+
+		// e.g. deleted by another API server
+		assertNull(RequestContext.reload(Region.class, UUID, u -> null));
+		assertSame(stale, RequestContext.lookup(Region.class, UUID, u -> stale));
+	}
+
+	@Test
+	public void testReleaseConnection() throws Exception {
+		Class.forName(StandardDBTest.FakeDriver.class.getName());	// registers the driver
+		Properties props = new Properties();
+		props.setProperty("db.pool.min_idle", "0");
+		props.setProperty("db.pool.validation_interval", "0");
+		ConnectionPool pool = new ConnectionPool(StandardDBTest.FakeDriver.URL, "", "", props);
+		RequestContext rc = RequestContext.current();
+		Region r = new Region(UUID, "r1", "");
+		RequestContext.lookup(Region.class, UUID, u -> r);
+
+		Connection c = rc.getConnection(pool);
+		assertSame(c, rc.getConnection(pool));
+		assertEquals(1, pool.getActiveCount());
+
+		// e.g. before the response is written; the identity map is kept
+		RequestContext.releaseConnection();
+		assertEquals(0, pool.getActiveCount());
+		assertFalse(rc.holds(c));
+		assertSame(r, RequestContext.lookup(Region.class, UUID, u -> null));
+
+		// Later DB calls get a Connection of their own, which the caller releases
+		Connection c2 = rc.getConnection(pool);
+		assertFalse(rc.holds(c2));
+		pool.release(c2);
+		assertEquals(0, pool.getActiveCount());
+		assertTrue(RequestContext.current() == rc);
+	}
+
+	@Test
+	public void testNoContext() {
+		RequestContext.end();
+		Region r = new Region(UUID, "r1", "");
+		RequestContext.replace(Region.class, r);
+		RequestContext.forget(Region.class, UUID);
+		assertNull(RequestContext.lookup(Region.class, UUID, u -> null));
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Properties;
+
+import org.akraino.regional_controller.beans.User;
+import org.akraino.regional_controller.beans.UserSession;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that a SessionCachingDB answers repeated token checks from memory, and forgets a session when
+ * it is logged out, or when its User is changed.
+ */
+public class SessionCachingDBTest {
+	private CountingDB wrapped;
+	private SessionCachingDB db;
+	private User user;
+
+	@Before
+	public void setUp() {
+		Properties props = new Properties();
+		props.setProperty("db.session_cache.enabled", "true");
+		wrapped = new CountingDB(props);
+		db = new SessionCachingDB(wrapped, props);
+		user = new User("2e3f4051-5b4a-11e9-8e7d-6c5b4a392817", "SessionCachingDBTest", "", "testing only");
+	}
+
+	@Test
+	public void testSessionCached() {
+		UserSession us = new UserSession(user, "token-cached", System.currentTimeMillis() + 60000L);
+		db.createSession(us);
+		assertNotNull(db.getSession("token-cached"));
+		assertNotNull(db.getSession("token-cached"));
+		assertEquals(0, wrapped.lookups);
+	}
+
+	@Test
+	public void testSessionLoadedOnce() {
+		wrapped.createSession(new UserSession(user, "token-loaded", System.currentTimeMillis() + 60000L));
+		assertNotNull(db.getSession("token-loaded"));
+		assertNotNull(db.getSession("token-loaded"));
+		assertEquals(1, wrapped.lookups);
+	}
+
+	@Test
+	public void testInvalidateForgetsSession() {
+		UserSession us = new UserSession(user, "token-logout", System.currentTimeMillis() + 60000L);
+		db.createSession(us);
+		db.invalidateSession(us);
+		assertNull(db.getSession("token-logout"));
+	}
+
+	@Test
+	public void testUpdateUserForgetsSessions() throws Exception {
+		UserSession us = new UserSession(user, "token-update", System.currentTimeMillis() + 60000L);
+		db.createSession(us);
+		db.updateUser(user);
+		assertNotNull(db.getSession("token-update"));
+		assertEquals(1, wrapped.lookups);
+	}
+
+	@Test
+	public void testExpiredSessionNotCached() {
+		wrapped.createSession(new UserSession(user, "token-expired", System.currentTimeMillis() - 1000L));
+		db.getSession("token-expired");
+		db.getSession("token-expired");
+		assertEquals(2, wrapped.lookups);
+	}
+
+	@Test
+	public void testStatistics() {
+		db.getSession("token-unknown");
+		JSONObject jo = db.getStatistics().getJSONArray("caches").getJSONObject(0);
+		assertEquals("session", jo.getString("name"));
+		assertEquals(1, jo.getLong("misses"));
+	}
+
+	/**
+	 * A PropertiesDB that counts session lookups, and does not store Users.
+	 */
+	private static class CountingDB extends PropertiesDB {
+		private int lookups = 0;
+
+		private CountingDB(Properties props) {
+			super(props);
+		}
+		@Override
+		public UserSession getSession(final String token) {
+			lookups++;
+			return super.getSession(token);
+		}
+		@Override
+		public void updateUser(final User u) {
+			// nothing to update
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.akraino.regional_controller.beans.BaseBean;
+import org.akraino.regional_controller.beans.Edgesite;
+import org.akraino.regional_controller.beans.Hardware;
+import org.akraino.regional_controller.beans.Node;
+import org.akraino.regional_controller.beans.POD;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the SQL issued by the StandardDB, using a fake JDBC driver which records every statement,
+ * and answers a "WHERE uuid IN (...)" query with one row for each UUID asked for.
+ */
+public class StandardDBTest {
+	private static StandardDB db;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		Properties props = new Properties();
+		props.setProperty("db.driver", FakeDriver.class.getName());
+		props.setProperty("db.jdbc.url", FakeDriver.URL);
+		props.setProperty("db.pool.min_idle", "0");
+		props.setProperty("db.pool.validation_interval", "0");
+		db = new StandardDB(props);
+	}
+
+	@Before
+	public void setUp() {
+		FakeDriver.statements.clear();
+		FakeDriver.upper_case_arrays = false;
+	}
+
+	@Test
+	public void testGetNodesInBatches() {
+		List<Node> list = db.getNodes(uuids(1201));
+		assertEquals(1201, list.size());
+		assertEquals(Arrays.asList(500, 500, 201), batches("NODE"));
+	}
+
+	@Test
+	public void testGetHardwareInBatches() {
+		assertEquals(500, db.getHardware(uuids(500)).size());
+		assertEquals(Collections.singletonList(500), batches("HARDWARE"));
+
+		FakeDriver.statements.clear();
+		List<Hardware> list = db.getHardware(uuids(501));
+		assertEquals(501, list.size());
+		assertEquals(Arrays.asList(500, 1), batches("HARDWARE"));
+	}
+
+	@Test
+	public void testGetEdgesitesInBatches() {
+		List<Edgesite> list = db.getEdgesites(uuids(750));
+		assertEquals(750, list.size());
+		assertEquals(Arrays.asList(500, 250), batches("EDGESITE"));
+		assertEquals(Arrays.asList(500, 250), batches("EDGESITE_ARRAYS"));
+		for (Edgesite es : list) {
+			assertEquals(Collections.singleton(es.getUuid()), new HashSet<>(es.getRegions()));
+		}
+	}
+
+	@Test
+	public void testGetEdgesitesUpperCaseArrays() {
+		// The DB may hand back the EDGESITE_ARRAYS UUIDs in a different case to the bean's
+		FakeDriver.upper_case_arrays = true;
+		List<Edgesite> list = db.getEdgesites(uuids(3));
+		assertEquals(3, list.size());
+		for (Edgesite es : list) {
+			assertEquals(1, es.getRegions().size());
+		}
+	}
+
+	@Test
+	public void testGetNoUUIDs() {
+		assertEquals(0, db.getNodes(new ArrayList<>()).size());
+		assertEquals(0, FakeDriver.statements.size());
+	}
+
+	@Test
+	public void testNameContainsEscaped() {
+		ListQuery q = new ListQuery();
+		q.setNameContains("50%_Off!");
+		db.getRegions(q);
+		FakeStatement s = statement("SELECT * FROM AKRAINO.REGION");
+		assertTrue(s.sql.contains("LOWER(name) LIKE ? ESCAPE '!'"));
+		assertEquals(Collections.singletonList("%50!%!_off!!%"), s.params);
+	}
+
+	@Test
+	public void testCursorAndLimit() {
+		ListQuery q = new ListQuery();
+		q.setCursor("ABCDEF00-0000-0000-0000-000000000009");
+		q.setLimit(25);
+		db.getRegions(q);
+		FakeStatement s = statement("SELECT * FROM AKRAINO.REGION");
+		assertEquals("SELECT * FROM AKRAINO.REGION WHERE uuid > ? ORDER BY uuid LIMIT ?", s.sql);
+		assertEquals(Arrays.asList("abcdef00-0000-0000-0000-000000000009", 25), s.params);
+	}
+
+	@Test
+	public void testFieldsSkipYaml() {
+		ListQuery q = new ListQuery();
+		q.setFields(new HashSet<>(Arrays.asList("name", "hardware")));
+		db.getNodes(q);
+		statement("SELECT uuid, name, description, hardware, revision, modified, NULL AS yaml FROM AKRAINO.NODE");
+
+		FakeDriver.statements.clear();
+		q.setFields(new HashSet<>(Arrays.asList("name", BaseBean.YAML_TAG)));
+		db.getNodes(q);
+		statement("SELECT * FROM AKRAINO.NODE");
+	}
+
+	@Test
+	public void testFiltersUseInLists() {
+		ListQuery q = new ListQuery();
+		q.addFilter(POD.STATE_TAG, "ACTIVE");
+		q.addFilter(POD.EDGESITE_TAG, Arrays.asList("e1", "e2", "e3"));
+		db.getPods(q);
+		FakeStatement s = statement("SELECT * FROM AKRAINO.POD");
+		assertTrue(s.sql.contains("state IN (?)"));
+		assertTrue(s.sql.contains("es_uuid IN (?, ?, ?)"));
+		assertEquals(Arrays.asList("ACTIVE", "e1", "e2", "e3"), s.params);
+
+		FakeDriver.statements.clear();
+		q = new ListQuery();
+		q.setCursor("0");		// so that the fake driver returns no rows
+		q.addFilter(Edgesite.REGION_FILTER, Arrays.asList("r1", "r2"));
+		db.getEdgesites(q);
+		s = statement("SELECT * FROM AKRAINO.EDGESITE ");
+		assertTrue(s.sql.contains("uuid IN (SELECT uuid FROM AKRAINO.EDGESITE_ARRAYS WHERE type = 'R' AND fkey IN (?, ?))"));
+		assertEquals(Arrays.asList("0", "r1", "r2"), s.params);
+	}
+
+	@Test
+	public void testEmptyFilterQueriesNothing() {
+		ListQuery q = new ListQuery();
+		q.addFilter(POD.EDGESITE_TAG, new ArrayList<>());
+		assertEquals(0, db.getPods(q).size());
+		assertEquals(0, FakeDriver.statements.size());
+	}
+
+	private static List<String> uuids(final int n) {
+		List<String> list = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			list.add(String.format("abcdef00-0000-0000-0000-%012d", i));
+		}
+		return list;
+	}
+
+	/**
+	 * @return the first statement issued whose SQL starts with prefix
+	 */
+	private static FakeStatement statement(final String prefix) {
+		for (FakeStatement s : FakeDriver.statements) {
+			if (s.sql.startsWith(prefix)) {
+				return s;
+			}
+		}
+		throw new AssertionError("No statement starting "+prefix+" in "+FakeDriver.statements.size());
+	}
+
+	/**
+	 * @return the number of UUIDs in each "SELECT * FROM table WHERE uuid IN (...)" issued
+	 */
+	private static List<Integer> batches(final String table) {
+		String prefix = "SELECT * FROM AKRAINO."+table+" WHERE uuid IN (";
+		List<Integer> list = new ArrayList<>();
+		for (FakeStatement s : FakeDriver.statements) {
+			if (s.sql.startsWith(prefix)) {
+				list.add(s.params.size());
+			}
+		}
+		return list;
+	}
+
+	private static class FakeStatement {
+		private final String sql;
+		private final List<Object> params = new ArrayList<>();
+
+		private FakeStatement(String sql) {
+			this.sql = sql;
+		}
+	}
+
+	public static class FakeDriver implements Driver {
+		static final String URL = "jdbc:fake:akraino";
+		static final List<FakeStatement> statements = Collections.synchronizedList(new ArrayList<>());
+		static volatile boolean upper_case_arrays = false;
+
+		static {
+			try {
+				DriverManager.registerDriver(new FakeDriver());
+			} catch (SQLException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		@Override
+		public Connection connect(String url, Properties info) {
+			if (!acceptsURL(url)) {
+				return null;
+			}
+			return proxy(Connection.class, (p, m, args) -> {
+				if ("prepareStatement".equals(m.getName())) {
+					FakeStatement s = new FakeStatement((String) args[0]);
+					statements.add(s);
+					return statement(s);
+				}
+				return defaultValue(m.getReturnType(), m.getName());
+			});
+		}
+
+		private static PreparedStatement statement(final FakeStatement s) {
+			return proxy(PreparedStatement.class, (p, m, args) -> {
+				switch (m.getName()) {
+				case "setString":
+				case "setObject":
+					s.params.add(args[1]);
+					return null;
+				case "executeQuery":
+					return resultSet(s);
+				default:
+					return defaultValue(m.getReturnType(), m.getName());
+				}
+			});
+		}
+
+		private static ResultSet resultSet(final FakeStatement s) {
+			int[] row = { -1 };
+			boolean uuids = s.sql.contains("WHERE uuid IN (");
+			return proxy(ResultSet.class, (p, m, args) -> {
+				switch (m.getName()) {
+				case "next":
+					return uuids && ++row[0] < s.params.size();
+				case "getString":
+					return column(s, (String) args[0], (String) s.params.get(row[0]));
+				default:
+					return defaultValue(m.getReturnType(), m.getName());
+				}
+			});
+		}
+
+		/**
+		 * Every EDGESITE_ARRAYS row links the Edgesite to a Region with the same UUID.
+		 */
+		private static String column(final FakeStatement s, final String column, final String uuid) {
+			switch (column) {
+			case "uuid":
+				if (upper_case_arrays && s.sql.contains("EDGESITE_ARRAYS")) {
+					return uuid.toUpperCase();
+				}
+				return uuid;
+			case "fkey":
+				return uuid;
+			case "type":
+				return "R";
+			default:
+				return null;
+			}
+		}
+
+		private static Object defaultValue(final Class<?> type, final String name) {
+			if (type == boolean.class) {
+				return "getAutoCommit".equals(name) || "isValid".equals(name);
+			}
+			if (type == int.class || type == long.class) {
+				return (type == int.class) ? (Object) 0 : (Object) 0L;
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> T proxy(final Class<T> type, final InvocationHandler h) {
+			return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, h);
+		}
+
+		@Override
+		public boolean acceptsURL(String url) {
+			return url != null && url.startsWith(URL);
+		}
+
+		@Override
+		public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+			return new DriverPropertyInfo[0];
+		}
+
+		@Override
+		public int getMajorVersion() {
+			return 1;
+		}
+
+		@Override
+		public int getMinorVersion() {
+			return 0;
+		}
+
+		@Override
+		public boolean jdbcCompliant() {
+			return false;
+		}
+
+		@Override
+		public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IPAddressesTest {
+	@Test
+	public void testIPv4() {
+		valid4("10.1.2.3", "0.0.0.0", "255.255.255.255", "192.168.0.1");
+		invalid4(null, "", "10.1.2", "10.1.2.3.4", "10.1.2.", ".10.1.2", "10..1.2", "10.1.2.3.", " 10.1.2.3", "10.1.2.3 ",
+			"a.b.c.d", "10.1.2.x", "10,1,2,3", "-1.2.3.4", "+1.2.3.4");
+	}
+
+	@Test
+	public void testIPv4Octets() {
+		// Leading zeros are allowed within the 3 digits of an octet
+		valid4("010.001.000.00", "000.000.000.000");
+		invalid4("0010.1.2.3", "10.1.2.0000");
+		// Octets that overflow, or are too long to be numbers at all
+		invalid4("256.1.2.3", "10.1.2.256", "10.999.2.3", "4294967296.1.2.3", "99999999999999999999.1.2.3");
+	}
+
+	@Test
+	public void testIPv6() {
+		valid6("2001:db8:0:0:0:0:0:1", "2001:DB8::1", "fe80::1", "::1", "1::", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8",
+			"ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", "0000:0000:0000:0000:0000:0000:0000:0001");
+		invalid6(null, "", ":", "1", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::", "::1:2:3:4:5:6:7:8",
+			"12345::", "g::1", "1:::2", "1::2::3", ":1::", "1::2:", ":1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7:8:",
+			"10.1.2.3", " ::1", "::1 ");
+	}
+
+	@Test
+	public void testIPv6Unspecified() {
+		valid6("::");
+		invalid6(":::", "::::");
+	}
+
+	@Test
+	public void testIPv6EmbeddedIPv4() {
+		valid6("::ffff:10.1.2.3", "::10.1.2.3", "64:ff9b::192.0.2.33", "1:2:3:4:5:6:10.1.2.3", "::ffff:0:255.255.255.255");
+		// The IPv4 address counts as two groups, and must be last and valid
+		invalid6("1:2:3:4:5:6:7:10.1.2.3", "1:2:3:4:5:6:7:8:10.1.2.3", "::10.1.2.3:1", "::ffff:256.1.2.3",
+			"::ffff:10.1.2", "::ffff:10.1.2.3.4", "::ab.1.2.3", "::1234.1.2.3");
+	}
+
+	@Test
+	public void testIPv6ZoneIDs() {
+		invalid6("fe80::1%eth0", "fe80::1%1", "fe80::1%", "::ffff:10.1.2.3%eth0");
+	}
+
+	@Test
+	public void testIPAddress() {
+		assertTrue(IPAddresses.isIPAddress("10.1.2.3"));
+		assertTrue(IPAddresses.isIPAddress("fe80::1"));
+		assertFalse(IPAddresses.isIPAddress("10.1.2.3/8"));
+		assertFalse(IPAddresses.isIPAddress(null));
+	}
+
+	@Test
+	public void testV4CIDR() {
+		valid4CIDR("10.0.0.0/8", "0.0.0.0/0", "10.1.2.3/32", "10.1.2.0/024", "10.1.2.0/000");
+		invalid4CIDR(null, "10.0.0.0", "10.0.0.0/", "/8", "10.0.0.0/33", "10.0.0.0/100", "10.0.0.0/0008",
+			"10.0.0.0/-1", "10.0.0.0/+8", "10.0.0.0/8/8", "10.0.0.0/ 8", "10.0.0/8", "256.0.0.0/8", "fd00::/8");
+	}
+
+	@Test
+	public void testV6CIDR() {
+		valid6CIDR("fd00::/8", "::/0", "::1/128", "2001:db8::/32", "::ffff:10.0.0.0/104");
+		invalid6CIDR(null, "fd00::", "fd00::/", "/64", "fd00::/129", "fd00::/1000", "fd00::/-1", "fd00::/64/64",
+			"fe80::%eth0/64", "10.0.0.0/8");
+	}
+
+	@Test
+	public void testCIDR() {
+		assertTrue(IPAddresses.isCIDR("10.0.0.0/8"));
+		assertTrue(IPAddresses.isCIDR("fd00::/8"));
+		// 33 to 128 is only a valid prefix length for IPv6
+		assertFalse(IPAddresses.isCIDR("10.0.0.0/64"));
+		assertTrue(IPAddresses.isCIDR("::/64"));
+		assertFalse(IPAddresses.isCIDR("10.0.0.0"));
+	}
+
+	private static void valid4(final String... list) {
+		for (String s : list)
+			assertTrue(s, IPAddresses.isIPv4(s));
+	}
+
+	private static void invalid4(final String... list) {
+		for (String s : list)
+			assertFalse(s, IPAddresses.isIPv4(s));
+	}
+
+	private static void valid6(final String... list) {
+		for (String s : list)
+			assertTrue(s, IPAddresses.isIPv6(s));
+	}
+
+	private static void invalid6(final String... list) {
+		for (String s : list)
+			assertFalse(s, IPAddresses.isIPv6(s));
+	}
+
+	private static void valid4CIDR(final String... list) {
+		for (String s : list)
+			assertTrue(s, IPAddresses.isV4CIDR(s));
+	}
+
+	private static void invalid4CIDR(final String... list) {
+		for (String s : list)
+			assertFalse(s, IPAddresses.isV4CIDR(s));
+	}
+
+	private static void valid6CIDR(final String... list) {
+		for (String s : list)
+			assertTrue(s, IPAddresses.isV6CIDR(s));
+	}
+
+	private static void invalid6CIDR(final String... list) {
+		for (String s : list)
+			assertFalse(s, IPAddresses.isV6CIDR(s));
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.regional_controller.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * Checks that the YAMLConverter reads and writes YAML as the default <code>new Yaml()</code> load and
+ * dump (via Maps and Lists) do.
+ */
+public class YAMLConverterTest {
+	@Test
+	public void testIntegers() {
+		JSONObject jo = assertLoadsAsYaml(
+			"dec: 12\nplus: +12\nneg: -12\nunderscore: 1_000\nbin: 0b1010\nhex: 0x1F\nneghex: -0x1F\n"
+			+ "oct: 017\nzero: 0\nlong: 12345678901\nbig: 123456789012345678901234567890\n");
+		assertEquals(10, jo.get("bin"));
+		assertEquals(31, jo.get("hex"));
+		assertEquals(-31, jo.get("neghex"));
+		assertEquals(15, jo.get("oct"));
+		assertEquals(12345678901L, jo.get("long"));
+		assertEquals(new BigInteger("123456789012345678901234567890"), jo.get("big"));
+	}
+
+	@Test
+	public void testBase60() {
+		JSONObject jo = assertLoadsAsYaml("int: 190:20:30\nneg: -1:30\nfloat: 1:30.5\n");
+		assertEquals(685230, jo.get("int"));
+		assertEquals(-90, jo.get("neg"));
+		assertEquals(90.5, jo.get("float"));
+	}
+
+	@Test
+	public void testFloats() {
+		assertLoadsAsYaml("a: 1.5\nb: -2.5e+3\nc: .inf\nd: -.Inf\ne: 6.8523015e+5\nf: 1_000.5\n");
+		JSONObject jo = YAMLConverter.toJSON("nan: .NaN\n");
+		assertTrue(Double.isNaN((Double) jo.get("nan")));
+	}
+
+	@Test
+	public void testImplicitTags() {
+		JSONObject jo = assertLoadsAsYaml(
+			"y: yes\nn: NO\nonn: on\noff: Off\nt: true\ntilde: ~\nnul: null\nempty:\n"
+			+ "quoted: '123'\ndquoted: \"true\"\nstr: !!str 123\nint: !!int '42'\nfloat: !!float 1\n"
+			+ "plain: hello world\nversion: 1.0.0\n");
+		assertEquals(Boolean.TRUE, jo.get("y"));
+		// The key is resolved too
+		assertEquals(Boolean.FALSE, jo.get("false"));
+		assertEquals("123", jo.get("quoted"));
+		assertEquals("123", jo.get("str"));
+		assertEquals(42, jo.get("int"));
+		assertEquals(1.0, jo.get("float"));
+		assertEquals("1.0.0", jo.get("version"));
+	}
+
+	@Test
+	public void testNulls() {
+		JSONObject jo = assertLoadsAsYaml("a: ~\nb: null\nc:\nlist: [ 1, ~, null, 2 ]\n");
+		// As with JSONObject.put(key, null), a key with a null value is left out
+		assertEquals(1, jo.length());
+		JSONArray ja = jo.getJSONArray("list");
+		assertEquals(4, ja.length());
+		assertEquals(JSONObject.NULL, ja.get(1));
+
+		jo = new JSONObject().put("a", JSONObject.NULL);
+		assertEquals(dump(jo), YAMLConverter.toYAML(jo));
+		jo = new JSONObject().put("list", new JSONArray().put(JSONObject.NULL));
+		assertEquals(dump(jo), YAMLConverter.toYAML(jo));
+		assertRoundTrip(jo);
+	}
+
+	@Test
+	public void testTimestamps() {
+		JSONObject jo = assertLoadsAsYaml(
+			"date: 2002-12-14\ncanonical: 2001-12-15T02:59:43.1Z\niso: 2001-12-14t21:59:43.10-05:00\n"
+			+ "spaced: 2001-12-14 21:59:43.10 -5\n");
+		assertTrue(jo.get("date") instanceof Date);
+		assertEquals(jo.get("canonical"), jo.get("iso"));
+		assertEquals(jo.get("canonical"), jo.get("spaced"));
+	}
+
+	@Test
+	public void testAliases() {
+		JSONObject jo = assertLoadsAsYaml(
+			"list: &l [ 1, 2, 3 ]\nmap: &m { a: 1, b: [ x, y ] }\ncopy: *l\nmapcopy: *m\nscalar: &s hello\nagain: *s\n");
+		assertTrue(similar(jo.getJSONArray("list"), jo.getJSONArray("copy")));
+		assertEquals("hello", jo.get("again"));
+		// Each alias is a copy, so changing one does not change the other
+		jo.getJSONObject("mapcopy").put("a", 2);
+		assertEquals(1, jo.getJSONObject("map").get("a"));
+	}
+
+	@Test
+	public void testMergeKeys() {
+		JSONObject jo = assertLoadsAsYaml(
+			"base: &base { a: 1, b: 2 }\nover: &over { b: 3, c: 4 }\n"
+			+ "one:\n  <<: *base\n  b: 9\n"
+			+ "many:\n  <<: [ *over, *base ]\n  d: 5\n");
+		JSONObject one = jo.getJSONObject("one");
+		assertEquals(1, one.get("a"));
+		assertEquals(9, one.get("b"));
+		assertTrue(!one.has("<<"));
+		// Earlier mappings in the list take precedence
+		JSONObject many = jo.getJSONObject("many");
+		assertEquals(3, many.get("b"));
+		assertEquals(1, many.get("a"));
+		assertEquals(5, many.get("d"));
+	}
+
+	@Test
+	public void testFlowAndBlockStyles() {
+		assertLoadsAsYaml(
+			"flow: { a: 1, b: [ 1, 2, { c: 3 } ], d: \"x y\" }\n"
+			+ "block:\n  - a\n  - b: 1\n    c:\n      - 2\n      - 3\n"
+			+ "literal: |\n  line 1\n  line 2\nfolded: >\n  folded\n  text\n");
+	}
+
+	@Test
+	public void testDumpIsSameAsYaml() {
+		// One key per mapping, so that the key order of the HashMaps does not matter
+		String[] docs = {
+			"{ a: 1 }",
+			"{ a: [ 1, 2.5, true, null, x, '123', 'yes', '', ' padded ' ] }",
+			"{ a: { b: { c: [ 1, 2 ] } } }",
+			"{ a: [ { b: 1 }, { c: [ x, y ] }, [ 1, 2 ] ] }",
+			"{ a: \"line 1\\nline 2\\n\" }",
+			"{ a: [ \"multi\\nline\", plain ] }",
+			"{ a: 12345678901, b2: 123456789012345678901234567890 }",
+			"{ a: .inf }",
+			"{ a: 2001-12-15T02:59:43.1Z }",
+			"{ a: 2002-12-14 }",
+			"{ 'key with: colon': 'value with # hash' }",
+		};
+		for (String doc : docs) {
+			JSONObject jo = YAMLConverter.toJSON(doc);
+			if (jo.length() == 1) {
+				assertEquals(doc, dump(jo), YAMLConverter.toYAML(jo));
+			}
+			assertRoundTrip(jo);
+		}
+	}
+
+	@Test
+	public void testRoundTrip() {
+		JSONObject jo = new JSONObject()
+			.put("name", "Rover")
+			.put("version", "1.0.0")
+			.put("count", 3)
+			.put("ratio", 0.25)
+			.put("enabled", false)
+			.put("numeric_string", "42")
+			.put("bool_string", "on")
+			.put("null_string", "~")
+			.put("multiline", "a\nb\n")
+			.put("list", new JSONArray().put(1).put("two").put(new JSONObject().put("three", 3)))
+			.put("nested", new JSONObject().put("empty_list", new JSONArray()).put("empty_map", new JSONObject()));
+		assertRoundTrip(jo);
+		assertRoundTrip(new JSONObject());
+	}
+
+	@Test
+	public void testListItem() {
+		JSONObject jo = new JSONObject().put("a", 1).put("b", new JSONArray().put("x"));
+		StringWriter sw = new StringWriter();
+		sw.write("items:\n");
+		YAMLConverter.writeListItem(jo, sw);
+		YAMLConverter.writeListItem(jo, sw);
+		JSONObject loaded = YAMLConverter.toJSON(sw.toString());
+		assertEquals(2, loaded.getJSONArray("items").length());
+		assertTrue(similar(jo, loaded.getJSONArray("items").getJSONObject(1)));
+	}
+
+	/**
+	 * Check that the YAMLConverter reads a document as SnakeYAML does.
+	 */
+	private static JSONObject assertLoadsAsYaml(final String yaml) {
+		JSONObject expected = (JSONObject) fromMaps(new Yaml().load(yaml), false);
+		JSONObject actual = YAMLConverter.toJSON(yaml);
+		assertTrue(yaml+"\nexpected: "+expected+"\nactual: "+actual, similar(expected, actual));
+		return actual;
+	}
+
+	/**
+	 * Check that what the YAMLConverter writes, SnakeYAML reads back as the same document, and that the
+	 * YAMLConverter reads it back as SnakeYAML does.
+	 */
+	private static void assertRoundTrip(final JSONObject jo) {
+		String yaml = YAMLConverter.toYAML(jo);
+		assertTrue(jo+"\nwritten as:\n"+yaml, similar(jo, fromMaps(new Yaml().load(yaml), true)));
+		assertLoadsAsYaml(yaml);
+	}
+
+	/**
+	 * Convert what SnakeYAML loads to JSON.  Nulls in sequences become JSONObject.NULL; keys with a
+	 * null value are kept (as JSONObject.NULL) or left out.
+	 */
+	private static Object fromMaps(final Object value, final boolean null_keys) {
+		if (value instanceof Map) {
+			JSONObject jo = new JSONObject();
+			for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+				if (e.getValue() != null || null_keys) {
+					jo.put(String.valueOf(e.getKey()), fromMaps(e.getValue(), null_keys));
+				}
+			}
+			return jo;
+		}
+		if (value instanceof List) {
+			JSONArray ja = new JSONArray();
+			for (Object o : (List<?>) value) {
+				ja.put(fromMaps(o, null_keys));
+			}
+			return ja;
+		}
+		return (value == null) ? JSONObject.NULL : value;
+	}
+
+	private static String dump(final JSONObject jo) {
+		return new Yaml().dump(jo.toMap());
+	}
+
+	/**
+	 * JSONObject.similar(), except that null (from a Map) and JSONObject.NULL are the same.
+	 */
+	private static boolean similar(final Object a, final Object b) {
+		if (a instanceof JSONObject && b instanceof JSONObject) {
+			JSONObject ja = (JSONObject) a;
+			JSONObject jb = (JSONObject) b;
+			if (!ja.keySet().equals(jb.keySet())) {
+				return false;
+			}
+			for (String key : ja.keySet()) {
+				if (!similar(ja.get(key), jb.get(key))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (a instanceof JSONArray && b instanceof JSONArray) {
+			JSONArray ja = (JSONArray) a;
+			JSONArray jb = (JSONArray) b;
+			if (ja.length() != jb.length()) {
+				return false;
+			}
+			for (int i = 0; i < ja.length(); i++) {
+				if (!similar(ja.get(i), jb.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return a.equals(b);
+	}
+}
@@ -23,13 +23,18 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	BlueprintAPITest.class,
+	CompressionTest.class,
+	ConditionalGetTest.class,
+	ConditionalPutTest.class,
 	EdgesiteAPITest.class,
 	HardwareAPITest.class,
+	ListParamsAPITest.class,
 	LoginAPITest.class,
 	NodeAPITest.class,
 	PODAPITest.class,
 	PODEventAPI.class,
 	RegionAPITest.class,
+	UncaughtExceptionMapperTest.class,
 	UserAPITest.class,
 	VersionAPITest.class
 })
@@ -19,6 +19,8 @@ package org.akraino.xportal.api.v1;
 import static org.junit.Assert.assertTrue;
 
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.ClientBuilder;
@@ -30,6 +32,7 @@ import javax.ws.rs.core.Response;
 
 import org.akraino.regional_controller.api.v1.APIBase;
 import org.akraino.regional_controller.api.v1.BlueprintAPI;
+import org.akraino.regional_controller.api.v1.CompressionInterceptor;
 import org.akraino.regional_controller.api.v1.EdgesiteAPI;
 import org.akraino.regional_controller.api.v1.HardwareAPI;
 import org.akraino.regional_controller.api.v1.LoginAPI;
@@ -37,6 +40,8 @@ import org.akraino.regional_controller.api.v1.NodeAPI;
 import org.akraino.regional_controller.api.v1.PODAPI;
 import org.akraino.regional_controller.api.v1.PODEventAPI;
 import org.akraino.regional_controller.api.v1.RegionAPI;
+import org.akraino.regional_controller.api.v1.RequestContextFilter;
+import org.akraino.regional_controller.api.v1.UncaughtExceptionMapper;
 import org.akraino.regional_controller.api.v1.UserAPI;
 import org.akraino.regional_controller.api.v1.VersionAPI;
 import org.glassfish.grizzly.http.server.HttpServer;
@@ -64,7 +69,10 @@ public class BaseAPITest {
 			PODEventAPI.class,
 			RegionAPI.class,
 			UserAPI.class,
-			VersionAPI.class
+			VersionAPI.class,
+			RequestContextFilter.class,
+			CompressionInterceptor.class,
+			UncaughtExceptionMapper.class
 		);
 		server = GrizzlyHttpServerFactory.createHttpServer(URI.create(TEST_URI), rc);
 	}
@@ -124,7 +132,39 @@ public class BaseAPITest {
 	 * @return the content returned from the request
 	 */
 	protected String testGet(String path, String token, String accept, int rcode) {
+		return testGet(path, null, null, token, accept, rcode);
+	}
+
+	/**
+	 * Test a GET request, with a query parameter, against the API.
+	 * @param path the path to append to the API base path
+	 * @param qname the name of the query parameter. If null, no query parameter is used.
+	 * @param qvalue the value of the query parameter
+	 * @param token the login token to use. If null, no token header is used.
+	 * @param accept the value to use for the "Accept" header. If null, no Accept; header is used.
+	 * @param rcode the expected response code
+	 * @return the content returned from the request
+	 */
+	protected String testGet(String path, String qname, String qvalue, String token, String accept, int rcode) {
+		Map<String, String> query = new LinkedHashMap<>();
+		if (qname != null)
+			query.put(qname, qvalue);
+		return testGet(path, query, token, accept, rcode);
+	}
+
+	/**
+	 * Test a GET request, with several query parameters, against the API.
+	 * @param path the path to append to the API base path
+	 * @param query the query parameters, as a map from name to value
+	 * @param token the login token to use. If null, no token header is used.
+	 * @param accept the value to use for the "Accept" header. If null, no Accept; header is used.
+	 * @param rcode the expected response code
+	 * @return the content returned from the request
+	 */
+	protected String testGet(String path, Map<String, String> query, String token, String accept, int rcode) {
 	    WebTarget target = ClientBuilder.newClient().target(TEST_URI).path(path);
+	    for (Map.Entry<String, String> e : query.entrySet())
+	    	target = target.queryParam(e.getKey(), e.getValue());
 	    Builder b = (accept == null) ? target.request() : target.request(accept);
 	    b = b.header(APIBase.REAL_IP_HDR, "69.69.1.2");
 	    if (token != null)
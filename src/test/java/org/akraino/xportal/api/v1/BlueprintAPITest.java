@@ -16,6 +16,10 @@
 
 package org.akraino.xportal.api.v1;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.MediaType;
 
@@ -61,6 +65,25 @@ public class BlueprintAPITest extends BaseAPITest {
         testGet(BlueprintAPI.BLUEPRINT_PATH + "/" + bp_id, getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
     }
 
+    @Test
+    public void testValidateBlueprints() {
+        String json = "{ \"blueprints\": ["
+            + "{ \"blueprint\": \"1.0.0\", \"name\": \"Good\", \"version\": \"1.0.0\", \"yaml\": { \"workflow\": { \"create\": { \"url\": \"http://example.com/create.py\" } } } },"
+            + "{ \"blueprint\": \"1.0.0\", \"version\": \"1.0.0\", \"yaml\": { } }"
+            + "] }";
+        String msg = testPost(BlueprintAPI.BLUEPRINT_PATH + "/validate", getLoginCookie(), MediaType.APPLICATION_JSON, json, MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+        log(msg);
+        JSONArray results = new JSONObject(new JSONTokener(msg)).getJSONArray("results");
+        assertEquals(2, results.length());
+        assertTrue(results.getJSONObject(0).getBoolean("valid"));
+        assertFalse(results.getJSONObject(1).getBoolean("valid"));
+    }
+
+    @Test
+    public void testValidateBlueprintsNoList() {
+        testPost(BlueprintAPI.BLUEPRINT_PATH + "/validate", getLoginCookie(), MediaType.APPLICATION_JSON, "{ }", MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+    }
+
     @Test
     public void testGetBadBlueprint() {
     	testGet(BlueprintAPI.BLUEPRINT_PATH + "/BADBADBAD", getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_NOT_FOUND);
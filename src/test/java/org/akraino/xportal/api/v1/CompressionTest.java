@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.xportal.api.v1;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.akraino.regional_controller.api.v1.APIBase;
+import org.akraino.regional_controller.api.v1.EdgesiteAPI;
+import org.akraino.regional_controller.api.v1.RegionAPI;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CompressionTest extends BaseAPITest {
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		startServer();
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		stopServer();
+	}
+
+	@Test
+	public void testGetGzip() throws IOException {
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(EdgesiteAPI.EDGESITE_PATH)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+			.get();
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		assertTrue("gzip".equals(r.getHeaderString(HttpHeaders.CONTENT_ENCODING)));
+		byte[] body = r.readEntity(byte[].class);
+		JSONObject jo = new JSONObject(gunzip(body));
+		assertTrue(jo.has("edgesites"));
+	}
+
+	@Test
+	public void testGetUncompressed() {
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(EdgesiteAPI.EDGESITE_PATH)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.get();
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		assertTrue(r.getHeaderString(HttpHeaders.CONTENT_ENCODING) == null);
+		assertTrue(new JSONObject(r.readEntity(String.class)).has("edgesites"));
+	}
+
+	@Test
+	public void testPostGzip() throws IOException {
+		String json = "{ \"name\": \"gzip_region\", \"description\": \"testing only\" }";
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(RegionAPI.REGION_PATH)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+			.post(Entity.entity(gzip(json), MediaType.APPLICATION_JSON));
+		assertTrue(r.getStatus() == HttpServletResponse.SC_CREATED);
+	}
+
+	@Test
+	public void testPostBadGzip() {
+		String json = "{ \"name\": \"bad_gzip_region\", \"description\": \"testing only\" }";
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(RegionAPI.REGION_PATH)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+			.post(Entity.entity(json, MediaType.APPLICATION_JSON));
+		assertTrue(r.getStatus() == HttpServletResponse.SC_BAD_REQUEST);
+	}
+
+	private static byte[] gzip(String s) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (GZIPOutputStream gz = new GZIPOutputStream(bos)) {
+			gz.write(s.getBytes(StandardCharsets.UTF_8));
+		}
+		return bos.toByteArray();
+	}
+
+	private static String gunzip(byte[] b) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(b))) {
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = gz.read(buf)) > 0) {
+				bos.write(buf, 0, n);
+			}
+		}
+		return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.xportal.api.v1;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation.Builder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.akraino.regional_controller.api.v1.APIBase;
+import org.akraino.regional_controller.api.v1.EdgesiteAPI;
+import org.akraino.regional_controller.api.v1.RegionAPI;
+import org.akraino.regional_controller.beans.Region;
+import org.akraino.regional_controller.db.DBFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ConditionalGetTest extends BaseAPITest {
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		startServer();
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		stopServer();
+	}
+
+	@Test
+	public void testListNotModified() {
+		Response r = get(EdgesiteAPI.EDGESITE_PATH, MediaType.APPLICATION_JSON, null);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		String etag = r.getHeaderString(HttpHeaders.ETAG);
+		assertTrue(etag != null);
+
+		r = get(EdgesiteAPI.EDGESITE_PATH, MediaType.APPLICATION_JSON, etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_NOT_MODIFIED);
+		assertTrue(etag.equals(r.getHeaderString(HttpHeaders.ETAG)));
+
+		// The YAML form shares the tag
+		r = get(EdgesiteAPI.EDGESITE_PATH, APIBase.APPLICATION_YAML, etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_NOT_MODIFIED);
+	}
+
+	@Test
+	public void testDetailsNotModified() {
+		String path = createRegion("etag_region");
+		Response r = get(path, MediaType.APPLICATION_JSON, null);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		String etag = r.getHeaderString(HttpHeaders.ETAG);
+		assertTrue(etag != null && etag.startsWith("W/"));
+
+		r = get(path, MediaType.APPLICATION_JSON, etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_NOT_MODIFIED);
+
+		r = get(path, MediaType.APPLICATION_JSON, "W/\"no-such-tag\"");
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+	}
+
+	@Test
+	public void testModifiedAfterUpdate() {
+		String path = createRegion("etag_update_region");
+		Response r = get(path, MediaType.APPLICATION_JSON, null);
+		String etag = r.getHeaderString(HttpHeaders.ETAG);
+
+		String json = "{ \"description\": \"changed\" }";
+		testPut(path, getLoginCookie(), MediaType.APPLICATION_JSON, json, MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+
+		r = get(path, MediaType.APPLICATION_JSON, etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		assertTrue(!etag.equals(r.getHeaderString(HttpHeaders.ETAG)));
+	}
+
+	@Test
+	public void testModifiedByAnotherServer() throws Exception {
+		String path = createRegion("etag_parent_region");
+		Response r = get(path, MediaType.APPLICATION_JSON, null);
+		String etag = r.getHeaderString(HttpHeaders.ETAG);
+
+		// Add a child Region straight to the DB, as another API server would, so this server's index does not know of it
+		String parent = path.substring(path.lastIndexOf('/') + 1);
+		DBFactory.getDB().createRegion(new Region(UUID.randomUUID().toString(), "etag_child_region", "testing only", parent));
+
+		r = get(path, MediaType.APPLICATION_JSON, etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		assertTrue(!etag.equals(r.getHeaderString(HttpHeaders.ETAG)));
+	}
+
+	private String createRegion(String name) {
+		String json = "{ \"name\": \""+name+"\", \"description\": \"testing only\" }";
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(RegionAPI.REGION_PATH)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.post(Entity.entity(json, MediaType.APPLICATION_JSON));
+		assertTrue(r.getStatus() == HttpServletResponse.SC_CREATED);
+		String location = r.getHeaderString(HttpHeaders.LOCATION);
+		return RegionAPI.REGION_PATH + location.substring(location.lastIndexOf('/'));
+	}
+
+	private Response get(String path, String accept, String ifNoneMatch) {
+		Builder b = ClientBuilder.newClient().target(TEST_URI).path(path)
+			.request(accept)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie());
+		if (ifNoneMatch != null) {
+			b = b.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		Response r = b.get();
+		log(r);
+		return r;
+	}
+}
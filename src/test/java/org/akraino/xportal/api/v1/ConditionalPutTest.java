@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.xportal.api.v1;
+
+import static org.junit.Assert.assertTrue;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation.Builder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.akraino.regional_controller.api.v1.APIBase;
+import org.akraino.regional_controller.api.v1.RegionAPI;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ConditionalPutTest extends BaseAPITest {
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		startServer();
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		stopServer();
+	}
+
+	@Test
+	public void testPutIfMatch() {
+		String path = createRegion("if_match_region");
+		String etag = getETag(path);
+
+		Response r = put(path, "{ \"description\": \"first\" }", etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+
+		// The tag is now out of date
+		r = put(path, "{ \"description\": \"second\" }", etag);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_PRECONDITION_FAILED);
+
+		r = put(path, "{ \"description\": \"second\" }", getETag(path));
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+	}
+
+	@Test
+	public void testPutIfMatchAny() {
+		String path = createRegion("if_match_any_region");
+		Response r = put(path, "{ \"description\": \"any\" }", "*");
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+
+		r = put(path, "{ \"description\": \"unconditional\" }", null);
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+	}
+
+	private String createRegion(String name) {
+		String json = "{ \"name\": \""+name+"\", \"description\": \"testing only\" }";
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(RegionAPI.REGION_PATH)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.post(Entity.entity(json, MediaType.APPLICATION_JSON));
+		assertTrue(r.getStatus() == HttpServletResponse.SC_CREATED);
+		String location = r.getHeaderString(HttpHeaders.LOCATION);
+		return RegionAPI.REGION_PATH + location.substring(location.lastIndexOf('/'));
+	}
+
+	private String getETag(String path) {
+		Response r = ClientBuilder.newClient().target(TEST_URI).path(path)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.get();
+		assertTrue(r.getStatus() == HttpServletResponse.SC_OK);
+		return r.getHeaderString(HttpHeaders.ETAG);
+	}
+
+	private Response put(String path, String json, String ifMatch) {
+		Builder b = ClientBuilder.newClient().target(TEST_URI).path(path)
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie());
+		if (ifMatch != null) {
+			b = b.header(HttpHeaders.IF_MATCH, ifMatch);
+		}
+		Response r = b.put(Entity.entity(json, MediaType.APPLICATION_JSON));
+		log(r);
+		return r;
+	}
+}
@@ -133,6 +133,39 @@ public class EdgesiteAPITest extends BaseAPITest {
         assertTrue(r.getStatus() == HttpServletResponse.SC_BAD_REQUEST);
 	}
 
+	@Test
+	public void testCreateEdgesiteBadNodes() {
+		// A Node that does not exist
+		String json = "{ \"name\": \"badnodes@@\", \"description\": \"testing only\", \"regions\": [ \"5c1e6560-2e33-11e9-821c-0017f20dbff8\" ], \"nodes\": [ \"ec399b9a-47fd-11e9-9f20-af67efa1a3dd\", \"00000000-0000-0000-0000-00000000abcd\" ] }";
+		assertTrue(postEdgesite(json.replaceAll("@@", ""+System.currentTimeMillis())) == HttpServletResponse.SC_BAD_REQUEST);
+
+		// A Node that is already a member of another Edgesite
+		String msg = testGet(EdgesiteAPI.EDGESITE_PATH, getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+		JSONArray edgesites = new JSONObject(new JSONTokener(msg)).getJSONArray("edgesites");
+		String node = null;
+		for (int i = 0; i < edgesites.length() && node == null; i++) {
+			JSONArray nodes = edgesites.getJSONObject(i).getJSONArray("nodes");
+			if (nodes.length() > 0)
+				node = nodes.getString(0);
+		}
+		assertTrue(node != null);
+		json = "{ \"name\": \"badnodes@@\", \"description\": \"testing only\", \"regions\": [ \"5c1e6560-2e33-11e9-821c-0017f20dbff8\" ], \"nodes\": [ \"" + node + "\" ] }";
+		assertTrue(postEdgesite(json.replaceAll("@@", ""+System.currentTimeMillis())) == HttpServletResponse.SC_BAD_REQUEST);
+	}
+
+	private int postEdgesite(String json) {
+		WebTarget target = ClientBuilder.newClient().target(TEST_URI).path(EdgesiteAPI.EDGESITE_PATH);
+		Entity<?> entity = Entity.entity(json, MediaType.APPLICATION_JSON);
+		Response r = target
+			.request(MediaType.APPLICATION_JSON)
+			.header(APIBase.SESSION_TOKEN_HDR, getLoginCookie())
+			.header(APIBase.REAL_IP_HDR, "69.69.1.2")
+			.buildPost(entity)
+			.invoke();
+		log(r);
+		return r.getStatus();
+	}
+
 	private String getValidEdgesiteUUID(String token) {
 		String msg = testGet(EdgesiteAPI.EDGESITE_PATH, getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
 		log(msg);
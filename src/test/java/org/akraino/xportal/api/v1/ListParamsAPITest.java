@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.xportal.api.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.MediaType;
+
+import org.akraino.regional_controller.api.v1.EdgesiteAPI;
+import org.akraino.regional_controller.api.v1.NodeAPI;
+import org.akraino.regional_controller.api.v1.PODAPI;
+import org.akraino.regional_controller.api.v1.RegionAPI;
+import org.akraino.regional_controller.db.ListQuery;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the query parameters of the list endpoints (see ListParams): paging, the name and uuid
+ * filters, the fields projection, the filters of each type of object, and unknown parameters.
+ * Expected results are worked out from the unfiltered list, since other tests add objects.
+ */
+public class ListParamsAPITest extends BaseAPITest {
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		startServer();
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		stopServer();
+	}
+
+	@Test
+	public void testCursorWalksWholeList() {
+		List<String> all = uuids(getList(RegionAPI.REGION_PATH, "regions", query()));
+		List<String> paged = new ArrayList<>();
+		String next = null;
+		do {
+			Map<String, String> q = query("limit", "2");
+			if (next != null)
+				q.put("cursor", next);
+			JSONObject jo = getObject(RegionAPI.REGION_PATH, q);
+			List<String> page = uuids(jo.getJSONArray("regions"));
+			assertTrue(page.size() <= 2);
+			next = jo.optString("next", null);
+			if (next != null) {
+				// A full page; next is the UUID of its last object
+				assertEquals(2, page.size());
+				assertEquals(page.get(page.size() - 1), next);
+			}
+			paged.addAll(page);
+		} while (next != null);
+		assertEquals(all, paged);
+	}
+
+	@Test
+	public void testLastPageHasNoNext() {
+		int n = getList(RegionAPI.REGION_PATH, "regions", query()).length();
+		JSONObject jo = getObject(RegionAPI.REGION_PATH, query("limit", String.valueOf(n + 1)));
+		assertEquals(n, jo.getJSONArray("regions").length());
+		assertFalse(jo.has("next"));
+	}
+
+	@Test
+	public void testBadLimit() {
+		testGet(RegionAPI.REGION_PATH, query("limit", "abc"), getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+		testGet(RegionAPI.REGION_PATH, query("limit", String.valueOf(ListQuery.MAX_LIMIT + 1)), getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+	}
+
+	@Test
+	public void testNameIsExactAndCaseless() {
+		JSONArray ja = getList(RegionAPI.REGION_PATH, "regions", query("name", "us west"));
+		assertEquals(1, ja.length());
+		assertEquals("US West", ja.getJSONObject(0).getString("name"));
+	}
+
+	@Test
+	public void testNameContains() {
+		JSONArray all = getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query());
+		int expected = count(all, jo -> jo.getString("name").toLowerCase().contains("cluster"));
+		assertTrue(expected > 0);
+		JSONArray ja = getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query("name~", "CLUSTER"));
+		assertEquals(expected, ja.length());
+	}
+
+	@Test
+	public void testNameContainsWildcardsAreLiteral() {
+		// In SQL these would match every name, if they were not escaped
+		assertEquals(0, getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query("name~", "%")).length());
+		assertEquals(0, getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query("name~", "Cluster_1")).length());
+	}
+
+	@Test
+	public void testUuidList() {
+		List<String> all = uuids(getList(RegionAPI.REGION_PATH, "regions", query()));
+		List<String> want = Arrays.asList(all.get(0), all.get(2), all.get(1));
+		List<String> got = uuids(getList(RegionAPI.REGION_PATH, "regions", query("uuid", String.join(",", want))));
+		// Returned in UUID order, whatever the order asked for
+		assertEquals(all.subList(0, 3), got);
+	}
+
+	@Test
+	public void testTooManyUuids() {
+		StringBuilder sb = new StringBuilder("0");
+		for (int i = 1; i <= ListQuery.MAX_UUIDS; i++) {
+			sb.append(',').append(i);
+		}
+		testGet(RegionAPI.REGION_PATH, query("uuid", sb.toString()), getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+	}
+
+	@Test
+	public void testFieldsProjection() {
+		JSONArray ja = getList(NodeAPI.NODE_PATH, "nodes", query("fields", "name"));
+		assertTrue(ja.length() > 0);
+		Set<String> allowed = new HashSet<>(Arrays.asList("uuid", "url", "name"));
+		for (int i = 0; i < ja.length(); i++) {
+			JSONObject jo = ja.getJSONObject(i);
+			assertTrue(jo.has("name"));
+			assertTrue(allowed.containsAll(jo.keySet()));
+		}
+	}
+
+	@Test
+	public void testNodeHardwareFilter() {
+		JSONArray all = getList(NodeAPI.NODE_PATH, "nodes", query());
+		String hw = all.getJSONObject(all.length() - 1).getString("hardware");
+		int expected = count(all, jo -> hw.equals(jo.optString("hardware")));
+		assertEquals(expected, getList(NodeAPI.NODE_PATH, "nodes", query("hardware", hw)).length());
+		assertTrue(expected < all.length());
+	}
+
+	@Test
+	public void testEdgesiteRegionFilter() {
+		JSONArray all = getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query());
+		String region = all.getJSONObject(0).getJSONArray("regions").getString(0);
+		int expected = count(all, jo -> contains(jo.getJSONArray("regions"), region));
+		assertEquals(expected, getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query("region", region)).length());
+	}
+
+	@Test
+	public void testEdgesiteNodeFilter() {
+		JSONArray all = getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query());
+		String node = null;
+		for (int i = 0; i < all.length() && node == null; i++) {
+			JSONArray nodes = all.getJSONObject(i).getJSONArray("nodes");
+			if (nodes.length() > 0)
+				node = nodes.getString(0);
+		}
+		assertTrue(node != null);
+		final String n = node;
+		int expected = count(all, jo -> contains(jo.getJSONArray("nodes"), n));
+		assertEquals(expected, getList(EdgesiteAPI.EDGESITE_PATH, "edgesites", query("node", node)).length());
+	}
+
+	@Test
+	public void testPodFilters() {
+		JSONArray all = getList(PODAPI.POD_PATH, "pods", query());
+		for (String state : new String[] { "ACTIVE", "dead" }) {
+			int expected = count(all, jo -> state.equalsIgnoreCase(jo.getString("state")));
+			assertEquals(expected, getList(PODAPI.POD_PATH, "pods", query("state", state)).length());
+		}
+		String other = "00000000-0000-0000-0000-00000000abcd";
+		assertEquals(0, getList(PODAPI.POD_PATH, "pods", query("blueprint", other)).length());
+		assertEquals(0, getList(PODAPI.POD_PATH, "pods", query("edgesite", other)).length());
+		if (all.length() > 0) {
+			JSONObject pod = all.getJSONObject(0);
+			String bp = pod.getString("blueprint");
+			String es = pod.getString("edgesite");
+			assertEquals(count(all, jo -> bp.equals(jo.getString("blueprint"))),
+				getList(PODAPI.POD_PATH, "pods", query("blueprint", bp)).length());
+			assertEquals(count(all, jo -> es.equals(jo.getString("edgesite"))),
+				getList(PODAPI.POD_PATH, "pods", query("edgesite", es)).length());
+		}
+	}
+
+	@Test
+	public void testUnknownParameter() {
+		// ARC-1038: a misspelt filter is rejected, rather than ignored
+		testGet(NodeAPI.NODE_PATH, query("hardwre", "x"), getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+		testGet(PODAPI.POD_PATH, query("states", "ACTIVE"), getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+		// A filter of one type of object is not accepted by another
+		testGet(RegionAPI.REGION_PATH, query("hardware", "x"), getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+	}
+
+	private static Map<String, String> query(String... pairs) {
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			map.put(pairs[i], pairs[i+1]);
+		}
+		return map;
+	}
+
+	private JSONObject getObject(String path, Map<String, String> query) {
+		String msg = testGet(path, query, getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+		return new JSONObject(new JSONTokener(msg));
+	}
+
+	private JSONArray getList(String path, String tag, Map<String, String> query) {
+		return getObject(path, query).getJSONArray(tag);
+	}
+
+	private static List<String> uuids(JSONArray ja) {
+		List<String> list = new ArrayList<>();
+		for (int i = 0; i < ja.length(); i++) {
+			list.add(ja.getJSONObject(i).getString("uuid"));
+		}
+		return list;
+	}
+
+	private static int count(JSONArray ja, Predicate<JSONObject> p) {
+		int n = 0;
+		for (int i = 0; i < ja.length(); i++) {
+			if (p.test(ja.getJSONObject(i)))
+				n++;
+		}
+		return n;
+	}
+
+	private static boolean contains(JSONArray ja, String s) {
+		for (int i = 0; i < ja.length(); i++) {
+			if (s.equalsIgnoreCase(ja.getString(i)))
+				return true;
+		}
+		return false;
+	}
+}
@@ -16,11 +16,14 @@
 
 package org.akraino.xportal.api.v1;
 
+import static org.junit.Assert.assertTrue;
+
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.MediaType;
 
 import org.akraino.regional_controller.api.v1.APIBase;
 import org.akraino.regional_controller.api.v1.RegionAPI;
+import org.akraino.regional_controller.beans.Region;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONTokener;
@@ -96,6 +99,39 @@ public class RegionAPITest extends BaseAPITest {
         testGet(RegionAPI.REGION_PATH + "/" + region_id, getNoAccessLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_FORBIDDEN);
     }
 
+    @Test
+    public void testGetRegionRecursive() {
+        // Everything is below the Universal region
+        String msg = testGet(RegionAPI.REGION_PATH + "/" + Region.UNIVERSAL_REGION, "recursive", "true", getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+        JSONObject jo = new JSONObject(new JSONTokener(msg));
+        JSONObject desc = jo.getJSONObject("descendants");
+        JSONArray regions = desc.getJSONArray("regions");
+        assertTrue(regions.length() > 0);
+        for (int i = 0; i < regions.length(); i++) {
+            assertTrue(!Region.UNIVERSAL_REGION.equals(regions.getJSONObject(i).getString("uuid")));
+        }
+        assertTrue(desc.has("edgesites"));
+        assertTrue(desc.has("pods"));
+    }
+
+    @Test
+    public void testGetRegionRecursiveNoAccess() {
+        testGet(RegionAPI.REGION_PATH + "/" + Region.UNIVERSAL_REGION, "recursive", "true", getNoAccessLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_FORBIDDEN);
+    }
+
+    @Test
+    public void testGetRegionsPaged() {
+        String msg = testGet(RegionAPI.REGION_PATH, "limit", "2", getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+        JSONObject jo = new JSONObject(new JSONTokener(msg));
+        assertTrue(jo.getJSONArray("regions").length() == 2);
+        assertTrue(jo.has("next"));
+    }
+
+    @Test
+    public void testGetRegionsBadLimit() {
+        testGet(RegionAPI.REGION_PATH, "limit", "0", getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_BAD_REQUEST);
+    }
+
     @Test
     public void testGetSpecificBadRegion() {
         // Get a bad region
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2019 AT&T Intellectual Property. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.akraino.xportal.api.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.Response;
+
+import org.akraino.regional_controller.api.v1.UncaughtExceptionMapper;
+import org.akraino.regional_controller.db.RequestContext;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that an exception escaping a resource method ends the request's RequestContext (releasing its
+ * Connection), and that WebApplicationExceptions keep their own status.
+ */
+public class UncaughtExceptionMapperTest {
+	@After
+	public void tearDown() {
+		RequestContext.end();
+	}
+
+	@Test
+	public void testRuntimeExceptionEndsContext() {
+		RequestContext.begin();
+		Response r = new UncaughtExceptionMapper().toResponse(new IllegalArgumentException("Unsupported filter"));
+		assertNull(RequestContext.current());
+		assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, r.getStatus());
+		JSONObject jo = new JSONObject((String) r.getEntity());
+		assertEquals("ARC-9999", jo.getString("errorId"));
+	}
+
+	@Test
+	public void testWebApplicationExceptionKeepsStatus() {
+		Response r = new UncaughtExceptionMapper().toResponse(new NotFoundException("ARC-4004: not found"));
+		assertEquals(HttpServletResponse.SC_NOT_FOUND, r.getStatus());
+		JSONObject jo = new JSONObject((String) r.getEntity());
+		assertEquals("ARC-4004", jo.getString("errorId"));
+	}
+}
@@ -16,11 +16,14 @@
 
 package org.akraino.xportal.api.v1;
 
+import static org.junit.Assert.assertTrue;
+
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.MediaType;
 
 import org.akraino.regional_controller.api.v1.APIBase;
 import org.akraino.regional_controller.api.v1.VersionAPI;
+import org.json.JSONObject;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -46,4 +49,10 @@ public class VersionAPITest extends BaseAPITest {
 	public void testGetVersionsYAML() {
 		testGet(VersionAPI.VERSION_PATH, getLoginCookie(), APIBase.APPLICATION_YAML, HttpServletResponse.SC_OK);
 	}
+
+    @Test
+	public void testGetVersionsDBStatistics() {
+		String s = testGet(VersionAPI.VERSION_PATH, getLoginCookie(), MediaType.APPLICATION_JSON, HttpServletResponse.SC_OK);
+		assertTrue(new JSONObject(s).has("db"));
+	}
 }